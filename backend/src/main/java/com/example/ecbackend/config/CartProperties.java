@@ -0,0 +1,336 @@
+package com.example.ecbackend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * カート機能の設定 (application.properties の cart.*)
+ */
+@ConfigurationProperties(prefix = "cart")
+public class CartProperties {
+
+    private final SessionCache sessionCache = new SessionCache();
+
+    private final Storage storage = new Storage();
+
+    private final Sweeper sweeper = new Sweeper();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final Activity activity = new Activity();
+
+    private final Events events = new Events();
+
+    public SessionCache getSessionCache() {
+        return sessionCache;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public Sweeper getSweeper() {
+        return sweeper;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public Activity getActivity() {
+        return activity;
+    }
+
+    public Events getEvents() {
+        return events;
+    }
+
+    /**
+     * セッションID → カートID・商品点数 キャッシュの設定
+     */
+    public static class SessionCache {
+        /** 保持するセッション数の上限 */
+        private int maxSize = 10_000;
+
+        /** 登録からの有効期間 */
+        private Duration ttl = Duration.ofMinutes(30);
+
+        /** 商品点数の有効期間 (他のノードでのカートの更新は、この期間内に反映される) */
+        private Duration countTtl = Duration.ofSeconds(30);
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getCountTtl() {
+            return countTtl;
+        }
+
+        public void setCountTtl(Duration countTtl) {
+            this.countTtl = countTtl;
+        }
+    }
+
+    /**
+     * カートの保存方式の設定
+     */
+    public static class Storage {
+
+        public enum Mode {
+            /** カート操作のたびにDBへ書き込む */
+            DATABASE,
+            /** メモリ上のカートとローカルWALに書き込み、DBへは非同期にまとめて反映する */
+            WRITE_BEHIND
+        }
+
+        private Mode mode = Mode.DATABASE;
+
+        /** WALファイルの出力先ディレクトリ */
+        private Path walDir = Path.of("data", "cart-wal");
+
+        /** WALセグメントを切り替えるサイズ */
+        private DataSize walSegmentSize = DataSize.ofMegabytes(64);
+
+        /** DBへ反映する間隔 */
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /** メモリ上のカートのシャード数 */
+        private int shards = 64;
+
+        /** DBへ反映済みのカートをメモリから追い出すまでの未使用期間 */
+        private Duration idleEviction = Duration.ofMinutes(30);
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public Path getWalDir() {
+            return walDir;
+        }
+
+        public void setWalDir(Path walDir) {
+            this.walDir = walDir;
+        }
+
+        public DataSize getWalSegmentSize() {
+            return walSegmentSize;
+        }
+
+        public void setWalSegmentSize(DataSize walSegmentSize) {
+            this.walSegmentSize = walSegmentSize;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public void setShards(int shards) {
+            this.shards = shards;
+        }
+
+        public Duration getIdleEviction() {
+            return idleEviction;
+        }
+
+        public void setIdleEviction(Duration idleEviction) {
+            this.idleEviction = idleEviction;
+        }
+    }
+
+    /**
+     * 放置されたカートの定期削除の設定
+     */
+    public static class Sweeper {
+        /** 定期削除を行うかどうか */
+        private boolean enabled = true;
+
+        /** 最終更新からこの期間を過ぎたカートを削除する */
+        private Duration ttl = Duration.ofDays(7);
+
+        /** 1回のトランザクションで削除するカート数 */
+        private int chunkSize = 500;
+
+        /** チャンク間の待機時間 (ロックやI/Oを他のリクエストに譲るため) */
+        private Duration pause = Duration.ofMillis(50);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public Duration getPause() {
+            return pause;
+        }
+
+        public void setPause(Duration pause) {
+            this.pause = pause;
+        }
+    }
+
+    /**
+     * カート更新APIの Idempotency-Key による再送検出の設定
+     */
+    public static class Idempotency {
+        /** メモリ上に保持するキーの数の上限 */
+        private int maxSize = 10_000;
+
+        /** キーと応答を保持する期間 */
+        private Duration ttl = Duration.ofHours(24);
+
+        /** キーをDBにも記録し、他のノードと共有するかどうか */
+        private boolean shared = true;
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public boolean isShared() {
+            return shared;
+        }
+
+        public void setShared(boolean shared) {
+            this.shared = shared;
+        }
+    }
+
+    /**
+     * カートの参照日時 (carts.updated_at) をまとめて反映する設定
+     */
+    public static class Activity {
+        /** 1回のUPDATE文で反映するカート数 */
+        private int batchSize = 500;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * 分析用のカート操作イベントの記録の設定
+     */
+    public static class Events {
+        /** バッファが満杯の場合の扱い */
+        public enum Overflow {
+            /** イベントを破棄して件数のみ数える (カート操作を待たせない) */
+            DROP,
+            /** 空きができるまでカート操作のスレッドを待たせる */
+            BLOCK
+        }
+
+        /** イベントを記録するかどうか */
+        private boolean enabled = true;
+
+        /** メモリ上に溜めるイベント数の上限 (2のべき乗に切り上げる) */
+        private int capacity = 8192;
+
+        /** 1回のバッチINSERTで書き込むイベント数 */
+        private int batchSize = 500;
+
+        private Overflow overflow = Overflow.DROP;
+
+        /** バッファが空の場合に書き込みスレッドが次に確認するまでの間隔 */
+        private Duration pollInterval = Duration.ofMillis(100);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Overflow getOverflow() {
+            return overflow;
+        }
+
+        public void setOverflow(Overflow overflow) {
+            this.overflow = overflow;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+    }
+}
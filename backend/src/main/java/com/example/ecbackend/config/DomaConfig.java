@@ -5,18 +5,31 @@ import org.seasar.doma.jdbc.dialect.Dialect;
 import org.seasar.doma.jdbc.dialect.PostgresDialect;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import javax.sql.DataSource;
 
+/**
+ * PostgreSQL用のDomaの設定クラス
+ *
+ * テストでは {@link TestDomaConfig} のH2用Dialectを使い、H2用のSQLファイル (*-h2.sql) を選択させる
+ * (両方を登録すると同名の getDialect Bean が上書きされ、テストでもPostgreSQL用のSQLが使われる)。
+ */
 @Configuration
+@Profile("!test")
 public class DomaConfig implements Config {
 
     private DataSource dataSource;
 
+    /** @BatchInsert / @BatchUpdate で1回の executeBatch にまとめる行数 */
+    private final int batchSize;
+
     @Autowired
-    public DomaConfig(DataSource dataSource) {
+    public DomaConfig(DataSource dataSource, @Value("${doma.batch-size:100}") int batchSize) {
         this.dataSource = new TransactionAwareDataSourceProxy(dataSource);
+        this.batchSize = batchSize;
     }
 
     @Override
@@ -24,6 +37,11 @@ public class DomaConfig implements Config {
         return this.dataSource;
     }
 
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
     @Override
     @Bean
     public Dialect getDialect() {
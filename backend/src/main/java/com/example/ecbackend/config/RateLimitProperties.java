@@ -0,0 +1,82 @@
+package com.example.ecbackend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * カート・注文APIのレート制限の設定 (application.properties の rate-limit.*)
+ */
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    /** レート制限を行うかどうか */
+    private boolean enabled = true;
+
+    /** レート制限の対象とするパス (前方一致) */
+    private List<String> paths = new ArrayList<>(List.of("/api/cart", "/api/orders"));
+
+    /** X-Session-ID ごとの制限 */
+    private final Limit session = new Limit(20, Duration.ofMillis(100));
+
+    /** クライアントIPごとの制限 */
+    private final Limit ip = new Limit(100, Duration.ofMillis(20));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    public void setPaths(List<String> paths) {
+        this.paths = paths;
+    }
+
+    public Limit getSession() {
+        return session;
+    }
+
+    public Limit getIp() {
+        return ip;
+    }
+
+    /**
+     * トークンバケットの設定
+     */
+    public static class Limit {
+        /** 連続して受け付けるリクエスト数 (バケットの容量) */
+        private int burst;
+
+        /** トークン1個が補充されるまでの時間 (定常的に受け付ける間隔) */
+        private Duration refillInterval;
+
+        public Limit(int burst, Duration refillInterval) {
+            this.burst = burst;
+            this.refillInterval = refillInterval;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public Duration getRefillInterval() {
+            return refillInterval;
+        }
+
+        public void setRefillInterval(Duration refillInterval) {
+            this.refillInterval = refillInterval;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.ecbackend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * デッドロック・直列化の失敗で失敗したトランザクションの再試行の設定 (application.properties の transaction.retry.*)
+ */
+@ConfigurationProperties(prefix = "transaction.retry")
+public class TransactionRetryProperties {
+
+    /** 最初の実行を含む最大試行回数 (1 で再試行しない) */
+    private int maxAttempts = 3;
+
+    /** 1回目の再試行までの待ち時間の上限 (再試行ごとに2倍にする) */
+    private Duration initialBackoff = Duration.ofMillis(20);
+
+    /** 再試行までの待ち時間の上限 */
+    private Duration maxBackoff = Duration.ofMillis(200);
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(Duration initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.ecbackend.config;
+
+import com.example.ecbackend.entity.CartItem;
+import com.example.ecbackend.entity.Product;
+import com.example.ecbackend.model.FieldSelection;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Web層 (メッセージ変換・シリアライズ) の設定
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * fields= による部分レスポンスのためのJacksonフィルター設定
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldSelectionCustomizer() {
+        return builder -> builder
+                .mixIn(Product.class, FieldSelectionMixIn.class)
+                .mixIn(CartItem.class, FieldSelectionMixIn.class)
+                .filters(FieldSelection.defaultFilters());
+    }
+
+    /**
+     * Accept: application/cbor 用のコンバーター
+     *
+     * JSONと同じビルダー設定 (フィルター・日時形式など) を共有させるため、
+     * Spring MVC既定のコンバーターをこのBeanで置き換える。
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * Accept: application/x-jackson-smile 用のコンバーター
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @JsonFilter(FieldSelection.FILTER_ID)
+    interface FieldSelectionMixIn {
+    }
+}
@@ -1,10 +1,20 @@
 package com.example.ecbackend.controller;
 
+import com.example.ecbackend.domain.SessionKey;
 import com.example.ecbackend.entity.CartItem;
+import com.example.ecbackend.filter.SessionKeyFilter;
+import com.example.ecbackend.model.CartAvailability;
+import com.example.ecbackend.model.CartCount;
+import com.example.ecbackend.model.CartOperation;
+import com.example.ecbackend.model.CartSummary;
+import com.example.ecbackend.model.CartSyncRequest;
+import com.example.ecbackend.model.CartView;
+import com.example.ecbackend.model.FieldSelection;
 import com.example.ecbackend.service.CartService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -18,35 +28,106 @@ public class CartController {
     private CartService cartService;
 
     @GetMapping
-    public ResponseEntity<List<CartItem>> getCartItems(@RequestHeader("X-Session-ID") String sessionId) {
-        if (sessionId == null || sessionId.isEmpty()) {
-            return ResponseEntity.badRequest().build();
-        }
-        List<CartItem> cartItems = cartService.getCartItems(sessionId);
-        return ResponseEntity.ok(cartItems);
+    public ResponseEntity<MappingJacksonValue> getCartItems(
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey,
+            @RequestParam(required = false) String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, FieldSelection.CART_ITEM_COLUMNS);
+        List<CartItem> cartItems = cartService.getCartItems(sessionKey, selection);
+        return ResponseEntity.ok(selection.apply(cartItems));
+    }
+
+    @GetMapping("/view")
+    public ResponseEntity<CartView> getCartView(@RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey) {
+        return ResponseEntity.ok(cartService.getCartView(sessionKey));
+    }
+
+    /**
+     * カートバッジ向けに商品点数と合計金額のみを返す
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<CartSummary> getCartSummary(@RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey) {
+        return ResponseEntity.ok(cartService.getCartSummary(sessionKey));
+    }
+
+    /**
+     * ヘッダーのカートバッジ向けに商品点数のみを返す
+     *
+     * 点数をETagとして返し、If-None-Match が一致する場合は本文なしの304を返す。
+     */
+    @GetMapping("/count")
+    public ResponseEntity<CartCount> getCartCount(@RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey) {
+        CartCount count = new CartCount(cartService.getCartCount(sessionKey));
+        return ResponseEntity.ok().eTag(count.etag()).body(count);
+    }
+
+    /**
+     * 注文前にカート内の各商品の在庫を確認し、不足している明細を返す
+     */
+    @GetMapping("/availability")
+    public ResponseEntity<CartAvailability> getAvailability(
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey) {
+        return ResponseEntity.ok(cartService.getAvailability(sessionKey));
+    }
+
+    /**
+     * カートに追加した後に価格が変更された商品を返す
+     */
+    @GetMapping("/price-changes")
+    public ResponseEntity<List<CartItem>> getPriceChangedItems(
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey) {
+        return ResponseEntity.ok(cartService.getPriceChangedItems(sessionKey));
     }
 
     @PostMapping
     public ResponseEntity<CartItem> addToCart(
-            @RequestHeader("X-Session-ID") String sessionId,
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey,
             @RequestBody CartItem cartItem) {
-        if (sessionId == null || sessionId.isEmpty()) {
-            return ResponseEntity.badRequest().build();
-        }
-        CartItem addedItem = cartService.addToCart(sessionId, cartItem.getProductId(), cartItem.getQuantity());
+        CartItem addedItem = cartService.addToCart(sessionKey, cartItem.getProductId(), cartItem.getQuantity());
         return ResponseEntity.status(HttpStatus.CREATED).body(addedItem);
     }
 
+    /**
+     * 複数のカート操作 (add / update / remove) を1リクエスト・1トランザクションで適用する
+     */
+    @PatchMapping
+    public ResponseEntity<List<CartItem>> applyOperations(
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey,
+            @RequestBody List<CartOperation> operations) {
+        return ResponseEntity.ok(cartService.applyOperations(sessionKey, operations));
+    }
+
+    /**
+     * ブラウザ側 (localStorage) のカートとサーバー側のカートを突き合わせ、差分のみを適用する
+     */
+    @PutMapping("/sync")
+    public ResponseEntity<List<CartItem>> syncCart(
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey,
+            @RequestBody CartSyncRequest request) {
+        return ResponseEntity.ok(cartService.syncCart(sessionKey, request));
+    }
+
+    /**
+     * カートを空にする (drop=true の場合はカート自体も削除する)
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> clearCart(
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey,
+            @RequestParam(defaultValue = "false") boolean drop) {
+        if (drop) {
+            cartService.deleteCart(sessionKey);
+        } else {
+            cartService.clearCart(sessionKey);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<Void> updateCartItem(
-            @RequestHeader("X-Session-ID") String sessionId,
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey,
             @PathVariable Long id,
             @RequestBody CartItem cartItem) {
-        if (sessionId == null || sessionId.isEmpty()) {
-            return ResponseEntity.badRequest().build();
-        }
         try {
-            cartService.updateCartItem(sessionId, id, cartItem.getQuantity());
+            cartService.updateCartItem(sessionKey, id, cartItem.getQuantity());
             return ResponseEntity.noContent().build();
         } catch (NoSuchElementException e) {
             return ResponseEntity.notFound().build();
@@ -55,15 +136,25 @@ public class CartController {
         }
     }
 
+    /**
+     * カート内商品の数量を delta だけ加減算する (0以下になった場合は削除して204を返す)
+     */
+    @PostMapping("/{id}/increment")
+    public ResponseEntity<CartItem> incrementCartItem(
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey,
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "1") int delta) {
+        return cartService.incrementCartItem(sessionKey, id, delta)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> removeFromCart(
-            @RequestHeader("X-Session-ID") String sessionId,
+            @RequestAttribute(SessionKeyFilter.ATTRIBUTE) SessionKey sessionKey,
             @PathVariable Long id) {
-        if (sessionId == null || sessionId.isEmpty()) {
-            return ResponseEntity.badRequest().build();
-        }
         try {
-            cartService.removeFromCart(sessionId, id);
+            cartService.removeFromCart(sessionKey, id);
             return ResponseEntity.noContent().build();
         } catch (NoSuchElementException e) {
             return ResponseEntity.notFound().build();
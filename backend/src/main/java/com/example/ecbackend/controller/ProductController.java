@@ -2,8 +2,11 @@ package com.example.ecbackend.controller;
 
 import com.example.ecbackend.entity.Product;
 import com.example.ecbackend.dao.ProductDao;
+import com.example.ecbackend.model.FieldSelection;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import java.util.List;
 
@@ -17,12 +20,20 @@ public class ProductController {
     }
 
     @GetMapping("/api/products")
-    public List<Product> getProducts() {
-        return productDao.selectAll();
+    public MappingJacksonValue getProducts(@RequestParam(required = false) String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, FieldSelection.PRODUCT_COLUMNS);
+        List<Product> products = selection.isAll()
+                ? productDao.selectAll()
+                : productDao.selectAllWithColumns(selection.getColumns());
+        return selection.apply(products);
     }
 
     @GetMapping("/api/products/{id}")
-    public Product getProduct(@PathVariable Long id) {
-        return productDao.selectById(id);
+    public MappingJacksonValue getProduct(@PathVariable Long id, @RequestParam(required = false) String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, FieldSelection.PRODUCT_COLUMNS);
+        Product product = selection.isAll()
+                ? productDao.selectById(id)
+                : productDao.selectByIdWithColumns(id, selection.getColumns());
+        return selection.apply(product);
     }
-}
\ No newline at end of file
+}
@@ -1,22 +1,137 @@
 package com.example.ecbackend.dao;
 
+import com.example.ecbackend.domain.SessionKey;
 import com.example.ecbackend.entity.Cart;
+import com.example.ecbackend.entity.CartShortage;
+import com.example.ecbackend.entity.CartViewLine;
 import org.seasar.doma.Dao;
+import org.seasar.doma.Delete;
 import org.seasar.doma.Insert;
 import org.seasar.doma.Select;
+import org.seasar.doma.Update;
 import org.seasar.doma.boot.ConfigAutowireable;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Dao
 @ConfigAutowireable
 public interface CartDao {
+    /**
+     * セッションキーでカートを検索する
+     *
+     * @param sessionKey セッションキー
+     * @return カート
+     */
     @Select
-    Optional<Cart> findBySessionId(String sessionId);
+    Optional<Cart> findBySessionKey(SessionKey sessionKey);
 
     @Select
     Optional<Cart> findById(Long id);
 
+    /**
+     * セッションキーでカートの商品点数 (数量の合計) のみを取得する
+     *
+     * @param sessionKey セッションキー
+     * @return 商品点数 (カートが存在しない場合は空)
+     */
+    @Select
+    Optional<Integer> findItemCount(SessionKey sessionKey);
+
+    /**
+     * ユーザーIDでカートを検索する
+     *
+     * @param userId ユーザーID
+     * @return カート
+     */
+    @Select
+    Optional<Cart> findByUserId(Long userId);
+
     @Insert
     int insert(Cart cart);
-} 
\ No newline at end of file
+
+    /**
+     * セッションキーのカートがなければ作成し、カートIDを返す
+     *
+     * 同じセッションの最初の追加が同時に行われても、一意制約違反にならず同じカートIDを返す。
+     * 既にカートがある場合は最終更新日時のみ更新する。
+     *
+     * @param sessionKey セッションキー
+     * @return 作成した、または既存のカートID
+     */
+    @Select
+    Long insertIfAbsent(SessionKey sessionKey);
+
+    /**
+     * カートを削除する (カート内商品は先に削除しておくこと)
+     *
+     * @param id カートID
+     * @return 削除件数
+     */
+    @Delete(sqlFile = true)
+    int deleteById(Long id);
+
+    /**
+     * カートをユーザーのものとし、現在のセッションキーに紐付け直す
+     *
+     * @param id カートID
+     * @param sessionKey 紐付けるセッションキー
+     * @param userId ユーザーID
+     * @return 更新件数
+     */
+    @Update(sqlFile = true)
+    int assignOwner(Long id, SessionKey sessionKey, Long userId);
+
+    /**
+     * 複数のカートの最終更新日時を1文でまとめて更新する (既に新しい日時の場合は更新しない)
+     *
+     * @param carts カートIDと最終更新日時 (id / updatedAt のみ使用)
+     * @return 更新件数
+     */
+    @Update(sqlFile = true)
+    int touchAll(List<Cart> carts);
+
+    /**
+     * 最終更新から一定期間が過ぎたゲストのカートをID順に取得し、行ロックする
+     *
+     * カート内商品が期限以降に更新されている場合は対象外とする。
+     * 他のトランザクションがロック中のカートは待たずに読み飛ばす。
+     *
+     * @param cutoff この日時より前に更新されたカートが対象
+     * @param afterId このIDより大きいカートが対象 (キーセットページング)
+     * @param chunkSize 取得件数の上限
+     * @return カートのリスト (ID昇順)
+     */
+    @Select
+    List<Cart> findIdleForUpdate(LocalDateTime cutoff, Long afterId, int chunkSize);
+
+    /**
+     * カートをまとめて削除する (カート内商品は先に削除しておくこと)
+     *
+     * @param ids カートIDのリスト
+     * @return 削除件数
+     */
+    @Delete(sqlFile = true)
+    int deleteByIds(List<Long> ids);
+
+    /**
+     * カート・カート内商品・商品を結合した表示用明細を1回のクエリで取得する
+     *
+     * 単価と合計はカート内商品・カートに記録したものを使い、商品からは商品名と価格の版数のみ参照する。
+     *
+     * @param sessionKey セッションキー
+     * @return 明細行のリスト (カートが存在しない場合は空)
+     */
+    @Select
+    List<CartViewLine> findViewBySessionKey(SessionKey sessionKey);
+
+    /**
+     * 現在の在庫が数量に足りないカート内商品を1回のクエリで取得する
+     *
+     * @param sessionKey セッションキー
+     * @return 在庫が不足している明細のリスト (カート内商品ID順、不足がなければ空)
+     */
+    @Select
+    List<CartShortage> findShortagesBySessionKey(SessionKey sessionKey);
+}
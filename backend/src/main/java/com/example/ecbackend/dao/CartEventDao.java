@@ -0,0 +1,32 @@
+package com.example.ecbackend.dao;
+
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.CartEvent;
+import org.seasar.doma.BatchInsert;
+import org.seasar.doma.Dao;
+import org.seasar.doma.Select;
+import org.seasar.doma.boot.ConfigAutowireable;
+
+import java.util.List;
+
+@Dao
+@ConfigAutowireable
+public interface CartEventDao {
+    /**
+     * カート操作イベントをJDBCバッチでまとめて追記する
+     *
+     * @param events 追記するイベント
+     * @return 各行の追加件数
+     */
+    @BatchInsert
+    int[] insertAll(List<CartEvent> events);
+
+    /**
+     * セッションのカート操作イベントを発生順に取得する
+     *
+     * @param sessionKey セッションキー
+     * @return カート操作イベントのリスト
+     */
+    @Select
+    List<CartEvent> findBySessionKey(SessionKey sessionKey);
+}
@@ -0,0 +1,82 @@
+package com.example.ecbackend.dao;
+
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.CartIdempotencyKey;
+import org.seasar.doma.Dao;
+import org.seasar.doma.Delete;
+import org.seasar.doma.Insert;
+import org.seasar.doma.Select;
+import org.seasar.doma.Update;
+import org.seasar.doma.boot.ConfigAutowireable;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Dao
+@ConfigAutowireable
+public interface CartIdempotencyKeyDao {
+    /**
+     * セッションキーと Idempotency-Key で記録を検索する
+     *
+     * @param sessionKey セッションキー
+     * @param idempotencyKey Idempotency-Key
+     * @return 記録 (期限切れの行も含む)
+     */
+    @Select
+    Optional<CartIdempotencyKey> findByKey(SessionKey sessionKey, String idempotencyKey);
+
+    /**
+     * キーを処理中として登録する (既に登録済みの場合は何もしない)
+     *
+     * @param sessionKey セッションキー
+     * @param idempotencyKey Idempotency-Key
+     * @param fingerprint リクエストのメソッド・パスとボディのハッシュ
+     * @param expiresAt 有効期限
+     * @return 登録件数 (他のリクエストが先に登録していた場合は0)
+     */
+    @Insert(sqlFile = true)
+    int claim(SessionKey sessionKey, String idempotencyKey, String fingerprint, LocalDateTime expiresAt);
+
+    /**
+     * 処理中のキーに応答を記録する
+     *
+     * @param sessionKey セッションキー
+     * @param idempotencyKey Idempotency-Key
+     * @param status ステータスコード
+     * @param contentType 応答のContent-Type
+     * @param body 応答の本文
+     * @return 更新件数
+     */
+    @Update(sqlFile = true)
+    int complete(SessionKey sessionKey, String idempotencyKey, int status, String contentType, byte[] body);
+
+    /**
+     * 処理中のキーを削除し、同じキーでの再実行を許可する
+     *
+     * @param sessionKey セッションキー
+     * @param idempotencyKey Idempotency-Key
+     * @return 削除件数
+     */
+    @Delete(sqlFile = true)
+    int release(SessionKey sessionKey, String idempotencyKey);
+
+    /**
+     * 期限切れのキーを1件削除する
+     *
+     * @param sessionKey セッションキー
+     * @param idempotencyKey Idempotency-Key
+     * @param now 現在日時
+     * @return 削除件数
+     */
+    @Delete(sqlFile = true)
+    int deleteExpiredKey(SessionKey sessionKey, String idempotencyKey, LocalDateTime now);
+
+    /**
+     * 期限切れのキーをすべて削除する
+     *
+     * @param now 現在日時
+     * @return 削除件数
+     */
+    @Delete(sqlFile = true)
+    int deleteExpired(LocalDateTime now);
+}
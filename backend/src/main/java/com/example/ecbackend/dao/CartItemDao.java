@@ -1,6 +1,10 @@
 package com.example.ecbackend.dao;
 
+import com.example.ecbackend.domain.SessionKey;
 import com.example.ecbackend.entity.CartItem;
+import org.seasar.doma.BatchDelete;
+import org.seasar.doma.BatchInsert;
+import org.seasar.doma.BatchUpdate;
 import org.seasar.doma.Dao;
 import org.seasar.doma.Delete;
 import org.seasar.doma.Insert;
@@ -20,15 +24,191 @@ public interface CartItemDao {
     @Select
     List<CartItem> findByCartId(Long cartId);
 
+    /**
+     * 複数のカートのカート内商品をまとめて取得する
+     *
+     * @param cartIds カートIDのリスト
+     * @return カート内商品のリスト
+     */
+    @Select
+    List<CartItem> findByCartIds(List<Long> cartIds);
+
+    @Select
+    List<CartItem> findByCartIdWithColumns(Long cartId, String columns);
+
     @Select
     Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
 
+    /**
+     * カートに追加した後に価格が変更された商品を取得する
+     *
+     * カート内商品の価格の版数を商品の現在の版数と比較する。
+     *
+     * @param cartId カートID
+     * @return 価格が変更されたカート内商品 (単価は追加した時点のもの)
+     */
+    @Select
+    List<CartItem> findPriceChanged(Long cartId);
+
     @Insert
     int insert(CartItem cartItem);
 
+    /**
+     * カート内商品を1文で追加する (同じ商品が既にあれば数量を加算する)
+     *
+     * PostgreSQLでは INSERT ... ON CONFLICT、H2では MERGE を使用する。
+     * 新しく追加する場合は商品の現在の単価と価格の版数を記録する (既存の行の記録は変えない)。
+     *
+     * @param cartId カートID
+     * @param productId 商品ID
+     * @param quantity 追加する数量
+     * @return 追加・更新後のカート内商品 (商品が存在しない場合はnull)
+     */
+    @Select
+    CartItem upsert(Long cartId, Long productId, int quantity);
+
+    /**
+     * セッションのカートに属するカート内商品の数量を更新する
+     *
+     * 所有者の確認を WHERE 句で行うため、カートの検索・商品の検索・更新を1文で済ませる。
+     *
+     * @param id カート内商品ID
+     * @param sessionKey セッションキー
+     * @param quantity 数量
+     * @return 更新件数 (商品が存在しない、または他のカートの商品の場合は0)
+     */
+    @Update(sqlFile = true)
+    int updateQuantityInSession(Long id, SessionKey sessionKey, int quantity);
+
+    /**
+     * セッションのカートに属するカート内商品を削除する
+     *
+     * @param id カート内商品ID
+     * @param sessionKey セッションキー
+     * @return 削除件数 (商品が存在しない、または他のカートの商品の場合は0)
+     */
+    @Delete(sqlFile = true)
+    int deleteInSession(Long id, SessionKey sessionKey);
+
+    /**
+     * カート内商品の数量をDB上で加減算する (読み込み・書き戻しを挟まないため、同時更新でも加減算が失われない)
+     *
+     * 加減算後の数量が0以下になる場合は更新しない ({@link #deleteIfDepleted} で削除する)。
+     *
+     * @param id カート内商品ID
+     * @param cartId カートID (他のカートの商品は更新しない)
+     * @param delta 加減算する数量
+     * @return 更新後のカート内商品 (対象がない、または数量が0以下になる場合は空)
+     */
+    @Select
+    Optional<CartItem> incrementQuantity(Long id, Long cartId, int delta);
+
+    /**
+     * 加減算後の数量が0以下になるカート内商品を削除する
+     *
+     * @param id カート内商品ID
+     * @param cartId カートID
+     * @param delta 加減算する数量
+     * @return 削除件数
+     */
+    @Delete(sqlFile = true)
+    int deleteIfDepleted(Long id, Long cartId, int delta);
+
+    /**
+     * カート内商品を取得し、トランザクションの終了まで行ロックする
+     *
+     * @param id カート内商品ID
+     * @param cartId カートID (他のカートの商品は取得しない)
+     * @return カート内商品
+     */
+    @Select
+    Optional<CartItem> findByIdForUpdate(Long id, Long cartId);
+
+    /**
+     * 複数のカート内商品をバッチで追加する (同じ商品が既にあれば数量を加算する)
+     *
+     * @param cartItems 追加するカート内商品 (cartId・productId・quantity を使用)
+     * @return 各行の更新件数 (商品が存在しない行は0)
+     */
+    @BatchInsert(sqlFile = true)
+    int[] upsertAll(List<CartItem> cartItems);
+
+    /**
+     * 複数のカート内商品の数量をバッチで絶対値に設定する (存在しなければ追加する)
+     *
+     * 何度実行しても同じ結果になるため、write-behind のDB反映に使用する。
+     *
+     * @param cartItems カート内商品 (cartId・productId・quantity を使用)
+     * @return 各行の更新件数
+     */
+    @BatchInsert(sqlFile = true)
+    int[] replaceQuantities(List<CartItem> cartItems);
+
     @Update
     int update(CartItem cartItem);
 
+    /**
+     * 複数のカート内商品の数量をバッチで更新する
+     *
+     * cart_id も条件に含めるため、他のカートの商品は更新されず件数が0になる。
+     *
+     * @param cartItems 更新するカート内商品 (id・cartId・quantity を使用)
+     * @return 各行の更新件数
+     */
+    @BatchUpdate(sqlFile = true)
+    int[] updateQuantities(List<CartItem> cartItems);
+
     @Delete
     int delete(CartItem cartItem);
+
+    /**
+     * カート内商品を1文ですべて削除する
+     *
+     * @param cartId カートID
+     * @return 削除件数
+     */
+    @Delete(sqlFile = true)
+    int deleteByCartId(Long cartId);
+
+    /**
+     * 複数のカートのカート内商品をまとめて削除する
+     *
+     * @param cartIds カートIDのリスト
+     * @return 削除件数
+     */
+    @Delete(sqlFile = true)
+    int deleteByCartIds(List<Long> cartIds);
+
+    /**
+     * カートの商品を別のカートへ1文でまとめて移す (同じ商品があれば数量を加算する)
+     *
+     * 移し先にない商品は、移し元で記録した単価と価格の版数のまま移す。
+     * 移し元のカート内商品はそのまま残るので、必要に応じて削除すること。
+     *
+     * @param sourceCartId 移し元のカートID
+     * @param targetCartId 移し先のカートID
+     * @return 追加・更新件数
+     */
+    @Insert(sqlFile = true)
+    int mergeCart(Long sourceCartId, Long targetCartId);
+
+    /**
+     * 複数のカート内商品をバッチで削除する
+     *
+     * cart_id も条件に含めるため、他のカートの商品は削除されず件数が0になる。
+     *
+     * @param cartItems 削除するカート内商品 (id・cartId を使用)
+     * @return 各行の削除件数
+     */
+    @BatchDelete(sqlFile = true)
+    int[] deleteAll(List<CartItem> cartItems);
+
+    /**
+     * カートIDと商品IDの組でカート内商品をバッチで削除する
+     *
+     * @param cartItems 削除するカート内商品 (cartId・productId を使用)
+     * @return 各行の削除件数
+     */
+    @BatchDelete(sqlFile = true)
+    int[] deleteByCartIdAndProductId(List<CartItem> cartItems);
 } 
\ No newline at end of file
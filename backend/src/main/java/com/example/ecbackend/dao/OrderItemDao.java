@@ -1,6 +1,7 @@
 package com.example.ecbackend.dao;
 
 import com.example.ecbackend.entity.OrderItem;
+import org.seasar.doma.BatchInsert;
 import org.seasar.doma.Dao;
 import org.seasar.doma.Insert;
 import org.seasar.doma.Select;
@@ -24,6 +25,18 @@ public interface OrderItemDao {
      */
     @Insert
     int insert(OrderItem orderItem);
+
+    /**
+     * 注文明細をJDBCバッチでまとめて登録する
+     *
+     * バッチサイズ (doma.batch-size) ごとに1回の executeBatch で送信する。
+     * 生成されたIDは読み戻さない。
+     *
+     * @param orderItems 注文明細エンティティのリスト (orderId 設定済み)
+     * @return 各行の登録件数
+     */
+    @BatchInsert(sqlFile = true)
+    int[] insertAll(List<OrderItem> orderItems);
     
     /**
      * 注文明細を更新する
@@ -1,6 +1,8 @@
 package com.example.ecbackend.dao;
 
+import com.example.ecbackend.entity.OrderItem;
 import com.example.ecbackend.entity.Product;
+import org.seasar.doma.BatchUpdate;
 import org.seasar.doma.Dao;
 import org.seasar.doma.Select;
 import org.seasar.doma.Insert;
@@ -18,10 +20,54 @@ public interface ProductDao {
 
     @Select
     Product selectById(Long id);
+
+    /**
+     * 複数の商品をIDで取得する (存在しないIDは結果に含まれない)
+     */
+    @Select
+    List<Product> selectByIds(List<Long> ids);
+
+    @Select
+    List<Product> selectAllWithColumns(String columns);
+
+    /**
+     * 全商品のIDと在庫数のみを取得する
+     */
+    @Select
+    List<Product> selectIdAndStock();
+
+    /**
+     * 指定した商品のIDと在庫数のみを取得する
+     */
+    @Select
+    List<Product> selectIdAndStockByIds(List<Long> ids);
+
+    @Select
+    Product selectByIdWithColumns(Long id, String columns);
     
     @Insert
     int insert(Product product);
     
     @Update
     int update(Product product);
+
+    /**
+     * 注文明細の数量だけ在庫を減らす (在庫が足りない商品は更新しない)
+     *
+     * 在庫の確認と更新を1つのUPDATE文で行うため、同時に注文されても在庫がマイナスにならない。
+     *
+     * @param orderItems 注文明細 (productId・quantity を使用)
+     * @return 各行の更新件数 (在庫不足または商品が存在しない場合は0)
+     */
+    @BatchUpdate(sqlFile = true)
+    int[] decrementStock(List<OrderItem> orderItems);
+
+    /**
+     * 注文明細の数量だけ在庫を戻す
+     *
+     * @param orderItems 注文明細 (productId・quantity を使用)
+     * @return 各行の更新件数 (商品が存在しない場合は0)
+     */
+    @BatchUpdate(sqlFile = true)
+    int[] incrementStock(List<OrderItem> orderItems);
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.example.ecbackend.domain;
+
+import java.util.Objects;
+
+/**
+ * カートのセッションキー (128ビット)
+ *
+ * X-Session-ID ヘッダーのUUID文字列を上位・下位64ビットの2つのlongとして保持する。
+ * carts テーブルでは session_key_hi / session_key_lo の2つの BIGINT カラムに対応する。
+ */
+public final class SessionKey {
+
+    private static final int UUID_LENGTH = 36;
+
+    private final long hi;
+    private final long lo;
+
+    public SessionKey(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    /**
+     * UUID形式 (xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx) の文字列を解析する
+     *
+     * @param value セッションID
+     * @return セッションキー
+     * @throws IllegalArgumentException UUID形式でない場合
+     */
+    public static SessionKey parse(String value) {
+        if (value == null || value.length() != UUID_LENGTH) {
+            throw invalid();
+        }
+        long hi = 0;
+        long lo = 0;
+        int digits = 0;
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    throw invalid();
+                }
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                throw invalid();
+            }
+            if (digits < 16) {
+                hi = (hi << 4) | digit;
+            } else {
+                lo = (lo << 4) | digit;
+            }
+            digits++;
+        }
+        return new SessionKey(hi, lo);
+    }
+
+    public long getHi() {
+        return hi;
+    }
+
+    public long getLo() {
+        return lo;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SessionKey)) return false;
+        SessionKey that = (SessionKey) o;
+        return hi == that.hi && lo == that.lo;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hi, lo);
+    }
+
+    /**
+     * 小文字のUUID形式で返す
+     */
+    @Override
+    public String toString() {
+        String hex = String.format("%016x%016x", hi, lo);
+        return hex.substring(0, 8) + "-" + hex.substring(8, 12) + "-" + hex.substring(12, 16)
+                + "-" + hex.substring(16, 20) + "-" + hex.substring(20);
+    }
+
+    private static IllegalArgumentException invalid() {
+        return new IllegalArgumentException("セッションIDの形式が不正です");
+    }
+}
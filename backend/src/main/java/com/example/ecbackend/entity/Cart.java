@@ -1,5 +1,6 @@
 package com.example.ecbackend.entity;
 
+import com.example.ecbackend.domain.SessionKey;
 import org.seasar.doma.Entity;
 import org.seasar.doma.GeneratedValue;
 import org.seasar.doma.GenerationType;
@@ -16,8 +17,23 @@ public class Cart {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "session_id")
-    private String sessionId;
+    @Column(name = "session_key_hi")
+    private Long sessionKeyHi;
+
+    @Column(name = "session_key_lo")
+    private Long sessionKeyLo;
+
+    /** ログインユーザーのカートの場合のユーザーID (ゲストのカートはnull) */
+    @Column(name = "user_id")
+    private Long userId;
+
+    /** カート内商品の単価スナップショット × 数量の合計 (cart_items の変更と同じ文の中でトリガーが更新する) */
+    @Column(name = "total_amount")
+    private int totalAmount;
+
+    /** カート内商品の数量の合計 (同上) */
+    @Column(name = "item_count")
+    private int itemCount;
 
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -33,12 +49,59 @@ public class Cart {
         this.id = id;
     }
 
-    public String getSessionId() {
-        return sessionId;
+    public Long getSessionKeyHi() {
+        return sessionKeyHi;
+    }
+
+    public void setSessionKeyHi(Long sessionKeyHi) {
+        this.sessionKeyHi = sessionKeyHi;
+    }
+
+    public Long getSessionKeyLo() {
+        return sessionKeyLo;
+    }
+
+    public void setSessionKeyLo(Long sessionKeyLo) {
+        this.sessionKeyLo = sessionKeyLo;
+    }
+
+    /**
+     * セッションキーを取得する (未設定の場合はnull)
+     */
+    public SessionKey getSessionKey() {
+        if (sessionKeyHi == null || sessionKeyLo == null) {
+            return null;
+        }
+        return new SessionKey(sessionKeyHi, sessionKeyLo);
+    }
+
+    public void setSessionKey(SessionKey sessionKey) {
+        this.sessionKeyHi = sessionKey != null ? sessionKey.getHi() : null;
+        this.sessionKeyLo = sessionKey != null ? sessionKey.getLo() : null;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public int getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(int totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public int getItemCount() {
+        return itemCount;
     }
 
-    public void setSessionId(String sessionId) {
-        this.sessionId = sessionId;
+    public void setItemCount(int itemCount) {
+        this.itemCount = itemCount;
     }
 
     public LocalDateTime getCreatedAt() {
@@ -56,4 +119,4 @@ public class Cart {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
-} 
\ No newline at end of file
+}
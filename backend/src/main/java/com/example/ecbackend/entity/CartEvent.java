@@ -0,0 +1,119 @@
+package com.example.ecbackend.entity;
+
+import com.example.ecbackend.domain.SessionKey;
+import org.seasar.doma.Column;
+import org.seasar.doma.Entity;
+import org.seasar.doma.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分析用のカート操作イベント (cart_events に追記のみ行う)
+ *
+ * id はDBで採番し、バッチ挿入で生成値を読み戻さないようエンティティには持たない。
+ */
+@Entity
+@Table(name = "cart_events")
+public class CartEvent {
+
+    public enum Type {
+        /** 商品の追加 (quantity は追加した数量) */
+        ADD,
+        /** 数量の変更 (quantity は変更後の数量) */
+        UPDATE,
+        /** 商品の削除 */
+        REMOVE,
+        /** カートを空にした */
+        CLEAR
+    }
+
+    @Column(name = "session_key_hi")
+    private Long sessionKeyHi;
+
+    @Column(name = "session_key_lo")
+    private Long sessionKeyLo;
+
+    @Column(name = "event_type")
+    private Type eventType;
+
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Column(name = "quantity")
+    private Integer quantity;
+
+    @Column(name = "occurred_at")
+    private LocalDateTime occurredAt;
+
+    public static CartEvent of(SessionKey sessionKey, Type eventType, Long productId, Long itemId, Integer quantity,
+                               LocalDateTime occurredAt) {
+        CartEvent event = new CartEvent();
+        event.sessionKeyHi = sessionKey.getHi();
+        event.sessionKeyLo = sessionKey.getLo();
+        event.eventType = eventType;
+        event.productId = productId;
+        event.itemId = itemId;
+        event.quantity = quantity;
+        event.occurredAt = occurredAt;
+        return event;
+    }
+
+    public Long getSessionKeyHi() {
+        return sessionKeyHi;
+    }
+
+    public void setSessionKeyHi(Long sessionKeyHi) {
+        this.sessionKeyHi = sessionKeyHi;
+    }
+
+    public Long getSessionKeyLo() {
+        return sessionKeyLo;
+    }
+
+    public void setSessionKeyLo(Long sessionKeyLo) {
+        this.sessionKeyLo = sessionKeyLo;
+    }
+
+    public Type getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(Type eventType) {
+        this.eventType = eventType;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    public void setOccurredAt(LocalDateTime occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.ecbackend.entity;
+
+import org.seasar.doma.Column;
+import org.seasar.doma.Entity;
+import org.seasar.doma.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * カート更新APIの Idempotency-Key と、そのキーで最初に処理したリクエストの応答
+ */
+@Entity
+@Table(name = "cart_idempotency_keys")
+public class CartIdempotencyKey {
+    @Column(name = "session_key_hi")
+    private Long sessionKeyHi;
+
+    @Column(name = "session_key_lo")
+    private Long sessionKeyLo;
+
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    /** リクエストのメソッド・パスとボディのハッシュ (同じキーを別の操作に使い回していないかの確認用) */
+    @Column(name = "fingerprint")
+    private String fingerprint;
+
+    /** 応答のステータスコード (処理中はnull) */
+    @Column(name = "status")
+    private Integer status;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "body")
+    private byte[] body;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
+    public Long getSessionKeyHi() {
+        return sessionKeyHi;
+    }
+
+    public void setSessionKeyHi(Long sessionKeyHi) {
+        this.sessionKeyHi = sessionKeyHi;
+    }
+
+    public Long getSessionKeyLo() {
+        return sessionKeyLo;
+    }
+
+    public void setSessionKeyLo(Long sessionKeyLo) {
+        this.sessionKeyLo = sessionKeyLo;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -25,6 +25,14 @@ public class CartItem {
     @Column(name = "quantity")
     private int quantity;
 
+    /** カートに追加した時点の単価 */
+    @Column(name = "unit_price")
+    private Integer unitPrice;
+
+    /** カートに追加した時点の商品価格の版数 ({@link Product#getPriceVersion()} と異なれば価格が変更されている) */
+    @Column(name = "price_version")
+    private Integer priceVersion;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -63,6 +71,22 @@ public class CartItem {
         this.quantity = quantity;
     }
 
+    public Integer getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(Integer unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    public Integer getPriceVersion() {
+        return priceVersion;
+    }
+
+    public void setPriceVersion(Integer priceVersion) {
+        this.priceVersion = priceVersion;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,79 @@
+package com.example.ecbackend.entity;
+
+import org.seasar.doma.Column;
+import org.seasar.doma.Entity;
+
+/**
+ * 現在の在庫が数量に足りないカート内商品 (cart_items ⋈ products の結果)
+ */
+@Entity
+public class CartShortage {
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "product_name")
+    private String productName;
+
+    /** カート内の数量 */
+    @Column(name = "requested")
+    private int requested;
+
+    /** 現在の在庫数 */
+    @Column(name = "available")
+    private int available;
+
+    /** 不足数 (requested - available) */
+    @Column(name = "shortfall")
+    private int shortfall;
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public void setRequested(int requested) {
+        this.requested = requested;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(int available) {
+        this.available = available;
+    }
+
+    public int getShortfall() {
+        return shortfall;
+    }
+
+    public void setShortfall(int shortfall) {
+        this.shortfall = shortfall;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.ecbackend.entity;
+
+import org.seasar.doma.Column;
+import org.seasar.doma.Entity;
+
+/**
+ * カート表示用の明細行 (carts ⋈ cart_items ⋈ products の結果)
+ */
+@Entity
+public class CartViewLine {
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "product_name")
+    private String productName;
+
+    @Column(name = "unit_price")
+    private Integer unitPrice;
+
+    @Column(name = "quantity")
+    private int quantity;
+
+    @Column(name = "subtotal")
+    private Integer subtotal;
+
+    @Column(name = "cart_total")
+    private Integer cartTotal;
+
+    /** カートに追加した後に商品の価格が変更されたかどうか */
+    @Column(name = "price_changed")
+    private boolean priceChanged;
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public Integer getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(Integer unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public Integer getSubtotal() {
+        return subtotal;
+    }
+
+    public void setSubtotal(Integer subtotal) {
+        this.subtotal = subtotal;
+    }
+
+    public Integer getCartTotal() {
+        return cartTotal;
+    }
+
+    public void setCartTotal(Integer cartTotal) {
+        this.cartTotal = cartTotal;
+    }
+
+    public boolean isPriceChanged() {
+        return priceChanged;
+    }
+
+    public void setPriceChanged(boolean priceChanged) {
+        this.priceChanged = priceChanged;
+    }
+}
@@ -21,6 +21,9 @@ public class Product {
     private Integer stock;
     @Column(name = "image_url")
     private String imageUrl;
+    /** 価格の版数 (価格を変更するたびに1増える) */
+    @Column(name = "price_version")
+    private Integer priceVersion;
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     @Column(name = "updated_at")
@@ -74,6 +77,14 @@ public class Product {
         this.imageUrl = imageUrl;
     }
 
+    public Integer getPriceVersion() {
+        return priceVersion;
+    }
+
+    public void setPriceVersion(Integer priceVersion) {
+        this.priceVersion = priceVersion;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
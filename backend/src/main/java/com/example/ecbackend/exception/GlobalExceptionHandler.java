@@ -1,8 +1,10 @@
 package com.example.ecbackend.exception;
 
 import com.example.ecbackend.model.Result;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MissingRequestHeaderException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -36,6 +38,16 @@ public class GlobalExceptionHandler {
                 .body(Result.of(HttpStatus.BAD_REQUEST.value(), null, "パラメータの型が不正です: " + ex.getName()));
     }
 
+    /**
+     * リクエストボディを読み取れない場合 (JSONの形式不正や未知の列挙値など) のハンドラー
+     */
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<Result<String>> handleMessageNotReadable(HttpMessageNotReadableException ex) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Result.of(HttpStatus.BAD_REQUEST.value(), null, "リクエストボディの形式が不正です"));
+    }
+
     /**
      * 要素が見つからない場合のハンドラー
      */
@@ -56,6 +68,27 @@ public class GlobalExceptionHandler {
                 .body(Result.of(HttpStatus.BAD_REQUEST.value(), null, ex.getMessage()));
     }
 
+    /**
+     * 在庫不足など、現在の状態では実行できない操作のハンドラー
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Result<String>> handleIllegalState(IllegalStateException ex) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(Result.of(HttpStatus.CONFLICT.value(), null, ex.getMessage()));
+    }
+
+    /**
+     * レート制限を超えたリクエストのハンドラー
+     */
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Result<String>> handleRateLimitExceeded(RateLimitExceededException ex) {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Result.of(HttpStatus.TOO_MANY_REQUESTS.value(), null, ex.getMessage()));
+    }
+
     /**
      * セキュリティ関連の例外のハンドラー
      */
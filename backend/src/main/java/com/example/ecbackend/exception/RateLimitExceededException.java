@@ -0,0 +1,21 @@
+package com.example.ecbackend.exception;
+
+/**
+ * リクエスト数が制限を超えた場合の例外 (429 Too Many Requests)
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(long retryAfterSeconds) {
+        super("リクエストが多すぎます。" + retryAfterSeconds + "秒後に再度お試しください");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * 再試行までの秒数 (Retry-After ヘッダーの値)
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.ecbackend.filter;
+
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.service.IdempotencyStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * カート更新APIの Idempotency-Key ヘッダーによる再送検出フィルター
+ *
+ * 同じセッション・同じキーのリクエストが再送された場合は、処理を実行せずに最初の応答をそのまま返す
+ * (応答ヘッダー {@link #REPLAYED_HEADER} を付与する)。
+ * 最初のリクエストが処理中の場合は409、同じキーを別の操作に使った場合は400を返す。
+ * 別の操作かどうかは、メソッド・パス・クエリとリクエストボディのハッシュで判定する。
+ * 5xxの応答は記録せず、同じキーでの再実行を許可する。
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final String CART_PATH = "/api/cart";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore idempotencyStore;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+
+    public IdempotencyFilter(IdempotencyStore idempotencyStore,
+                             @Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver) {
+        this.idempotencyStore = idempotencyStore;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean cartPath = path.equals(CART_PATH) || path.startsWith(CART_PATH + "/");
+        String method = request.getMethod();
+        boolean readOnly = HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)
+                || HttpMethod.OPTIONS.matches(method);
+        return !cartPath || readOnly || CorsUtils.isPreFlightRequest(request) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SessionKey sessionKey;
+        try {
+            sessionKey = SessionKey.parse(request.getHeader(SessionKeyFilter.HEADER));
+        } catch (IllegalArgumentException e) {
+            // セッションIDの検証エラーは SessionKeyFilter に任せる
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String idempotencyKey = request.getHeader(HEADER);
+        // ボディをフィンガープリントに含めるため、先に読み込んでコントローラーには読み込んだ内容を渡す
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        Optional<IdempotencyStore.StoredResponse> stored;
+        try {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+                throw new IllegalArgumentException(HEADER + " は1〜" + MAX_KEY_LENGTH + "文字で指定してください");
+            }
+            stored = idempotencyStore.begin(sessionKey, idempotencyKey, fingerprint(cachedRequest));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            handlerExceptionResolver.resolveException(request, response, null, e);
+            return;
+        }
+        if (stored.isPresent()) {
+            replay(stored.get(), response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(cachedRequest, wrapper);
+        } catch (IOException | ServletException | RuntimeException e) {
+            idempotencyStore.release(sessionKey, idempotencyKey);
+            throw e;
+        }
+        if (wrapper.getStatus() < HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+            idempotencyStore.complete(sessionKey, idempotencyKey, new IdempotencyStore.StoredResponse(
+                    wrapper.getStatus(), wrapper.getContentType(), wrapper.getContentAsByteArray()));
+        } else {
+            idempotencyStore.release(sessionKey, idempotencyKey);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private static String fingerprint(CachedBodyRequest request) {
+        String query = request.getQueryString();
+        String target = request.getMethod() + " " + request.getRequestURI() + (query != null ? "?" + query : "");
+        return request.body.length == 0 ? target : target + " " + sha256(request.body);
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void replay(IdempotencyStore.StoredResponse stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    /**
+     * 読み込み済みのボディを何度でも読めるリクエスト
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return input.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
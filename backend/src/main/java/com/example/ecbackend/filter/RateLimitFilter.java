@@ -0,0 +1,116 @@
+package com.example.ecbackend.filter;
+
+import com.example.ecbackend.config.RateLimitProperties;
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.exception.RateLimitExceededException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * カート・注文APIのレート制限フィルター
+ *
+ * X-Session-ID ごと・クライアントIPごとのトークンバケットでリクエスト数を制限し、
+ * 超過したリクエストは 429 (Retry-After ヘッダー付き) で拒否する。
+ * セキュリティフィルターチェーンの先頭付近 ({@code SecurityConfig}) で実行し、
+ * 過剰なリクエストがDBコネクションを取得する前に拒否する。
+ */
+@Component
+// @WebMvcTest ではプロパティのスキャンが行われず、フィルターだけが登録されるため、設定もここで登録する
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final RateLimitProperties properties;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+    private final TokenBuckets<SessionKey> sessionBuckets;
+    private final TokenBuckets<String> ipBuckets;
+
+    @Autowired
+    public RateLimitFilter(RateLimitProperties properties,
+                           @Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver) {
+        this(properties, handlerExceptionResolver, System::nanoTime);
+    }
+
+    RateLimitFilter(RateLimitProperties properties, HandlerExceptionResolver handlerExceptionResolver,
+                    LongSupplier nanoClock) {
+        this.properties = properties;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+        this.sessionBuckets = new TokenBuckets<>(properties.getSession().getBurst(),
+                properties.getSession().getRefillInterval(), nanoClock);
+        this.ipBuckets = new TokenBuckets<>(properties.getIp().getBurst(),
+                properties.getIp().getRefillInterval(), nanoClock);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!properties.isEnabled() || CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return properties.getPaths().stream()
+                .noneMatch(prefix -> path.equals(prefix) || path.startsWith(prefix + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        // プロキシ配下では server.forward-headers-strategy により X-Forwarded-For が反映される
+        long waitNanos = ipBuckets.tryAcquire(request.getRemoteAddr());
+        if (waitNanos == 0) {
+            SessionKey sessionKey = sessionKey(request);
+            if (sessionKey != null) {
+                waitNanos = sessionBuckets.tryAcquire(sessionKey);
+            }
+        }
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            handlerExceptionResolver.resolveException(request, response, null,
+                    new RateLimitExceededException(retryAfter));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * 補充が終わったバケットを削除し、キーの数だけメモリが増え続けないようにする
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.cleanup-interval:PT1M}", initialDelayString = "${rate-limit.cleanup-interval:PT1M}")
+    void cleanup() {
+        int removed = sessionBuckets.cleanup() + ipBuckets.cleanup();
+        log.debug("Removed {} idle rate limit buckets", removed);
+    }
+
+    int bucketCount() {
+        return sessionBuckets.size() + ipBuckets.size();
+    }
+
+    private static SessionKey sessionKey(HttpServletRequest request) {
+        String header = request.getHeader(SessionKeyFilter.HEADER);
+        if (header == null || header.isEmpty()) {
+            return null;
+        }
+        try {
+            return SessionKey.parse(header);
+        } catch (IllegalArgumentException e) {
+            // セッションIDの検証エラーは SessionKeyFilter に任せる (IPごとの制限は適用済み)
+            return null;
+        }
+    }
+}
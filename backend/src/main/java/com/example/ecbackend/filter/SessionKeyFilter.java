@@ -0,0 +1,62 @@
+package com.example.ecbackend.filter;
+
+import com.example.ecbackend.domain.SessionKey;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+
+/**
+ * カートAPIの X-Session-ID ヘッダーを一度だけ解析・検証するフィルター
+ *
+ * 解析したセッションキーはリクエスト属性 {@link #ATTRIBUTE} に格納し、
+ * コントローラーでは {@code @RequestAttribute} で受け取る。
+ * ヘッダーが無い、またはUUID形式でない場合はDBに到達する前に400エラーを返す。
+ */
+@Component
+public class SessionKeyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Session-ID";
+    public static final String ATTRIBUTE = "sessionKey";
+
+    private static final String CART_PATH = "/api/cart";
+
+    private final HandlerExceptionResolver handlerExceptionResolver;
+
+    public SessionKeyFilter(@Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver) {
+        this.handlerExceptionResolver = handlerExceptionResolver;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean cartPath = path.equals(CART_PATH) || path.startsWith(CART_PATH + "/");
+        return !cartPath || CorsUtils.isPreFlightRequest(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HEADER);
+        SessionKey sessionKey;
+        try {
+            if (header == null || header.isEmpty()) {
+                throw new IllegalArgumentException("必須のヘッダーが不足しています: " + HEADER);
+            }
+            sessionKey = SessionKey.parse(header);
+        } catch (IllegalArgumentException e) {
+            // GlobalExceptionHandler に委譲し、他のエラーと同じ形式のレスポンスを返す
+            handlerExceptionResolver.resolveException(request, response, null, e);
+            return;
+        }
+        request.setAttribute(ATTRIBUTE, sessionKey);
+        filterChain.doFilter(request, response);
+    }
+}
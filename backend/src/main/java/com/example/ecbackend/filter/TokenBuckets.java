@@ -0,0 +1,80 @@
+package com.example.ecbackend.filter;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * キーごとのトークンバケット
+ *
+ * 各バケットは「次のトークンが補充される理論上の時刻」(GCRA) を AtomicLong 1個で持ち、
+ * CAS で更新するためロックを取らない。
+ * 満タンまで補充されたバケットは保持する必要がないため、{@link #cleanup()} で削除する。
+ *
+ * @param <K> バケットのキー
+ */
+final class TokenBuckets<K> {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier nanoClock;
+    private final Map<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    TokenBuckets(int burst, Duration refillInterval, LongSupplier nanoClock) {
+        if (burst < 1 || refillInterval.isNegative() || refillInterval.isZero()) {
+            throw new IllegalArgumentException("burst must be positive and refillInterval must be positive");
+        }
+        this.intervalNanos = refillInterval.toNanos();
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * トークンを1個消費する
+     *
+     * @param key バケットのキー
+     * @return 受け付けた場合は0、トークンが無い場合は次のトークンが補充されるまでのナノ秒
+     */
+    long tryAcquire(K key) {
+        long now = nanoClock.getAsLong();
+        AtomicLong arrival = buckets.get(key);
+        if (arrival == null) {
+            arrival = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = arrival.get();
+            long base = current - now > 0 ? current : now;
+            long ahead = base - now;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (arrival.compareAndSet(current, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 満タンまで補充されたバケットを削除する
+     *
+     * 削除と同時に消費されたバケットは、次のリクエストで満タンのバケットとして作り直される。
+     *
+     * @return 削除したバケット数
+     */
+    int cleanup() {
+        long now = nanoClock.getAsLong();
+        int removed = 0;
+        for (Map.Entry<K, AtomicLong> entry : buckets.entrySet()) {
+            if (entry.getValue().get() - now <= 0 && buckets.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    int size() {
+        return buckets.size();
+    }
+}
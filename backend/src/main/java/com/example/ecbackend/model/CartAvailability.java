@@ -0,0 +1,30 @@
+package com.example.ecbackend.model;
+
+import com.example.ecbackend.entity.CartShortage;
+
+import java.util.List;
+
+/**
+ * 注文前の在庫確認の結果
+ */
+public class CartAvailability {
+    private final List<CartShortage> shortages;
+
+    public CartAvailability(List<CartShortage> shortages) {
+        this.shortages = shortages;
+    }
+
+    /**
+     * カート内のすべての商品を現在の在庫で注文できるかどうか
+     */
+    public boolean isAvailable() {
+        return shortages.isEmpty();
+    }
+
+    /**
+     * 在庫が不足している明細 (カート内商品ID順)
+     */
+    public List<CartShortage> getShortages() {
+        return shortages;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.ecbackend.model;
+
+/**
+ * カートバッジ向けの商品点数 (数量の合計)
+ */
+public class CartCount {
+    private final int count;
+
+    public CartCount(int count) {
+        this.count = count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * 点数が変わらない限り同じ値になるETag
+     */
+    public String etag() {
+        return "\"" + count + "\"";
+    }
+}
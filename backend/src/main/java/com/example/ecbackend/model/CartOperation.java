@@ -0,0 +1,114 @@
+package com.example.ecbackend.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * PATCH /api/cart で一括適用するカート操作
+ *
+ * <ul>
+ *   <li>add: productId の商品を quantity 個追加する (既にあれば加算)</li>
+ *   <li>update: itemId のカート内商品の数量を quantity に変更する</li>
+ *   <li>remove: itemId のカート内商品を削除する</li>
+ * </ul>
+ */
+public class CartOperation {
+
+    public enum Op {
+        @JsonProperty("add") ADD,
+        @JsonProperty("update") UPDATE,
+        @JsonProperty("remove") REMOVE
+    }
+
+    private Op op;
+    private Long productId;
+    private Long itemId;
+    private int quantity;
+
+    public CartOperation() {
+    }
+
+    public CartOperation(Op op, Long productId, Long itemId, int quantity) {
+        this.op = op;
+        this.productId = productId;
+        this.itemId = itemId;
+        this.quantity = quantity;
+    }
+
+    public static CartOperation add(Long productId, int quantity) {
+        return new CartOperation(Op.ADD, productId, null, quantity);
+    }
+
+    public static CartOperation update(Long itemId, int quantity) {
+        return new CartOperation(Op.UPDATE, null, itemId, quantity);
+    }
+
+    public static CartOperation remove(Long itemId) {
+        return new CartOperation(Op.REMOVE, null, itemId, 0);
+    }
+
+    /**
+     * 操作の内容を検証する
+     *
+     * @throws IllegalArgumentException 必須項目が不足している、または数量が不正な場合
+     */
+    public void validate() {
+        if (op == null) {
+            throw new IllegalArgumentException("op is required");
+        }
+        switch (op) {
+            case ADD -> {
+                if (productId == null) {
+                    throw new IllegalArgumentException("Product ID cannot be null");
+                }
+                if (quantity <= 0) {
+                    throw new IllegalArgumentException("Quantity must be positive");
+                }
+            }
+            case UPDATE -> {
+                if (itemId == null) {
+                    throw new IllegalArgumentException("Item ID cannot be null");
+                }
+                if (quantity <= 0) {
+                    throw new IllegalArgumentException("Quantity must be positive");
+                }
+            }
+            case REMOVE -> {
+                if (itemId == null) {
+                    throw new IllegalArgumentException("Item ID cannot be null");
+                }
+            }
+        }
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public void setOp(Op op) {
+        this.op = op;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
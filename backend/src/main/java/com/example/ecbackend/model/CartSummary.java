@@ -0,0 +1,36 @@
+package com.example.ecbackend.model;
+
+import com.example.ecbackend.entity.Cart;
+
+/**
+ * カートバッジなど向けの要約 (商品点数と合計金額のみ)
+ *
+ * carts に保持している合計をそのまま返すため、カート内商品や商品を結合しない。
+ */
+public class CartSummary {
+    private static final CartSummary EMPTY = new CartSummary(0, 0);
+
+    private final int itemCount;
+    private final int totalAmount;
+
+    public CartSummary(int itemCount, int totalAmount) {
+        this.itemCount = itemCount;
+        this.totalAmount = totalAmount;
+    }
+
+    public static CartSummary of(Cart cart) {
+        return new CartSummary(cart.getItemCount(), cart.getTotalAmount());
+    }
+
+    public static CartSummary empty() {
+        return EMPTY;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getTotalAmount() {
+        return totalAmount;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.ecbackend.model;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * PUT /api/cart/sync で受け取るブラウザ側 (localStorage) のカート
+ *
+ * items はブラウザ側のカートの全商品、clientUpdatedAt はブラウザ側で最後にカートを変更した日時。
+ */
+public class CartSyncRequest {
+
+    private List<Item> items;
+    private Instant clientUpdatedAt;
+
+    public CartSyncRequest() {
+    }
+
+    public CartSyncRequest(List<Item> items, Instant clientUpdatedAt) {
+        this.items = items;
+        this.clientUpdatedAt = clientUpdatedAt;
+    }
+
+    /**
+     * 内容を検証する
+     *
+     * @param maxItems 受け付ける商品数の上限
+     * @throws IllegalArgumentException 商品の指定が不正な場合
+     */
+    public void validate(int maxItems) {
+        if (items == null) {
+            throw new IllegalArgumentException("Items cannot be null");
+        }
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("Too many items: " + items.size());
+        }
+        Set<Long> productIds = new HashSet<>();
+        for (Item item : items) {
+            if (item == null || item.getProductId() == null) {
+                throw new IllegalArgumentException("Product ID cannot be null");
+            }
+            if (item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive");
+            }
+            if (!productIds.add(item.getProductId())) {
+                throw new IllegalArgumentException("Duplicate product ID: " + item.getProductId());
+            }
+        }
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+
+    public Instant getClientUpdatedAt() {
+        return clientUpdatedAt;
+    }
+
+    public void setClientUpdatedAt(Instant clientUpdatedAt) {
+        this.clientUpdatedAt = clientUpdatedAt;
+    }
+
+    /**
+     * ブラウザ側のカート内商品
+     */
+    public static class Item {
+        private Long productId;
+        private int quantity;
+
+        public Item() {
+        }
+
+        public Item(Long productId, int quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+
+        public void setProductId(Long productId) {
+            this.productId = productId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
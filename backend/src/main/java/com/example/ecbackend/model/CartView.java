@@ -0,0 +1,39 @@
+package com.example.ecbackend.model;
+
+import com.example.ecbackend.entity.CartViewLine;
+
+import java.util.List;
+
+/**
+ * カート表示用のレスポンス (商品名・単価・小計・合計を含む)
+ */
+public class CartView {
+    private final List<CartViewLine> items;
+    private final int totalAmount;
+
+    public CartView(List<CartViewLine> items, int totalAmount) {
+        this.items = items;
+        this.totalAmount = totalAmount;
+    }
+
+    /**
+     * 明細行からカート表示を組み立てる
+     *
+     * @param lines 明細行 (各行に同じカート合計を持つ)
+     * @return カート表示
+     */
+    public static CartView of(List<CartViewLine> lines) {
+        if (lines.isEmpty()) {
+            return new CartView(List.of(), 0);
+        }
+        return new CartView(lines, lines.get(0).getCartTotal());
+    }
+
+    public List<CartViewLine> getItems() {
+        return items;
+    }
+
+    public int getTotalAmount() {
+        return totalAmount;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.ecbackend.model;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * fields= クエリパラメータで指定された部分レスポンス（スパースフィールドセット）
+ *
+ * SQLの射影カラムとJacksonの出力フィルターの両方に同じ選択を適用する。
+ * 識別子 (id) は常に含める。
+ */
+public final class FieldSelection {
+
+    /** {@code @JsonFilter} に指定するフィルターID */
+    public static final String FILTER_ID = "fieldSelection";
+
+    /** 商品のプロパティ名とカラム名の対応 */
+    public static final Map<String, String> PRODUCT_COLUMNS = columns(
+            "id", "id",
+            "name", "name",
+            "description", "description",
+            "price", "price",
+            "stock", "stock",
+            "imageUrl", "image_url",
+            "createdAt", "created_at",
+            "updatedAt", "updated_at");
+
+    /** カート内商品のプロパティ名とカラム名の対応 */
+    public static final Map<String, String> CART_ITEM_COLUMNS = columns(
+            "id", "id",
+            "cartId", "cart_id",
+            "productId", "product_id",
+            "quantity", "quantity",
+            "unitPrice", "unit_price",
+            "priceVersion", "price_version",
+            "createdAt", "created_at",
+            "updatedAt", "updated_at");
+
+    private static final FieldSelection ALL = new FieldSelection(null, null);
+
+    private final Set<String> properties;
+    private final String columns;
+
+    private FieldSelection(Set<String> properties, String columns) {
+        this.properties = properties;
+        this.columns = columns;
+    }
+
+    /**
+     * すべての項目を対象とする選択を返す
+     */
+    public static FieldSelection all() {
+        return ALL;
+    }
+
+    /**
+     * fields= パラメータを解析する
+     *
+     * @param fields カンマ区切りのプロパティ名 (nullまたは空の場合はすべての項目)
+     * @param allowed 選択可能なプロパティ名とカラム名の対応
+     * @return 項目選択
+     * @throws IllegalArgumentException 選択できないプロパティ名が含まれる場合
+     */
+    public static FieldSelection parse(String fields, Map<String, String> allowed) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> properties = new LinkedHashSet<>();
+        properties.add("id");
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!allowed.containsKey(name)) {
+                throw new IllegalArgumentException("不明なフィールドが指定されました: " + name);
+            }
+            properties.add(name);
+        }
+        StringBuilder columns = new StringBuilder();
+        for (String property : properties) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+            }
+            columns.append(allowed.get(property));
+        }
+        return new FieldSelection(Collections.unmodifiableSet(properties), columns.toString());
+    }
+
+    public boolean isAll() {
+        return properties == null;
+    }
+
+    public Set<String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * SELECT句に埋め込むカラムリスト (許可リストで検証済み)
+     */
+    public String getColumns() {
+        return columns;
+    }
+
+    /**
+     * レスポンスボディにこの選択の出力フィルターを適用する
+     *
+     * @param body レスポンスボディ
+     * @return フィルター付きのレスポンスボディ
+     */
+    public MappingJacksonValue apply(Object body) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        SimpleBeanPropertyFilter filter = isAll()
+                ? SimpleBeanPropertyFilter.serializeAll()
+                : SimpleBeanPropertyFilter.filterOutAllExcept(properties);
+        value.setFilters(new SimpleFilterProvider().addFilter(FILTER_ID, filter));
+        return value;
+    }
+
+    /**
+     * フィルター指定のないシリアライズ時に使用する既定のフィルター
+     */
+    public static FilterProvider defaultFilters() {
+        return new SimpleFilterProvider()
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())
+                .setFailOnUnknownId(false);
+    }
+
+    private static Map<String, String> columns(String... pairs) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put(pairs[i], pairs[i + 1]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+}
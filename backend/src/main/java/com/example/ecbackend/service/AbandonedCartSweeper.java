@@ -0,0 +1,150 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.dao.CartDao;
+import com.example.ecbackend.dao.CartItemDao;
+import com.example.ecbackend.entity.Cart;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 放置されたカートを定期的に削除する
+ *
+ * 最終更新から cart.sweeper.ttl を過ぎたカートを、ID順のチャンクごとに短いトランザクションで削除する。
+ * 他のリクエストが使用中 (ロック中) のカートは読み飛ばし、チャンク間には待機を挟む。
+ */
+@Component
+@ConditionalOnProperty(prefix = "cart.sweeper", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AbandonedCartSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(AbandonedCartSweeper.class);
+
+    private final CartProperties.Sweeper properties;
+    private final CartDao cartDao;
+    private final CartItemDao cartItemDao;
+    private final CartIdCache cartIdCache;
+    private final WriteBehindCartStore cartStore;
+    private final CartActivityTracker activityTracker;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter purgedCarts;
+    private final Counter purgedItems;
+    private final Timer sweepDuration;
+
+    public AbandonedCartSweeper(CartProperties properties, CartDao cartDao, CartItemDao cartItemDao,
+                                CartIdCache cartIdCache, WriteBehindCartStore cartStore, CartActivityTracker activityTracker,
+                                PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.properties = properties.getSweeper();
+        this.cartDao = cartDao;
+        this.cartItemDao = cartItemDao;
+        this.cartIdCache = cartIdCache;
+        this.cartStore = cartStore;
+        this.activityTracker = activityTracker;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purgedCarts = Counter.builder("cart.sweeper.purged")
+                .description("Rows deleted by the abandoned cart sweeper")
+                .tag("table", "carts")
+                .register(meterRegistry);
+        this.purgedItems = Counter.builder("cart.sweeper.purged")
+                .description("Rows deleted by the abandoned cart sweeper")
+                .tag("table", "cart_items")
+                .register(meterRegistry);
+        this.sweepDuration = Timer.builder("cart.sweeper.duration")
+                .description("Time taken by one abandoned cart sweep")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${cart.sweeper.interval:PT10M}", initialDelayString = "${cart.sweeper.interval:PT10M}")
+    void scheduledSweep() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            log.error("Abandoned cart sweep failed", e);
+        }
+    }
+
+    /**
+     * 期限切れのカートをすべて削除する
+     *
+     * メモリ上に記録された参照日時を先にDBへ反映し、最近参照されたカートを削除しないようにする。
+     *
+     * @return 削除したカート数
+     */
+    public int sweep() {
+        return sweepDuration.record(() -> {
+            activityTracker.flush();
+            LocalDateTime cutoff = LocalDateTime.now().minus(properties.getTtl());
+            long afterId = 0;
+            int total = 0;
+            while (true) {
+                List<Cart> chunk = purgeChunk(cutoff, afterId);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                total += chunk.size();
+                afterId = chunk.get(chunk.size() - 1).getId();
+                if (chunk.size() < properties.getChunkSize() || !pause()) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                log.info("Purged {} abandoned carts older than {}", total, cutoff);
+            }
+            return total;
+        });
+    }
+
+    /**
+     * 1チャンク分のカートを1トランザクションで削除する
+     *
+     * @return 削除したカート (ID昇順)
+     */
+    private List<Cart> purgeChunk(LocalDateTime cutoff, long afterId) {
+        int[] deletedItems = new int[1];
+        List<Cart> chunk = transactionTemplate.execute(status -> {
+            List<Cart> carts = cartDao.findIdleForUpdate(cutoff, afterId, properties.getChunkSize());
+            if (!carts.isEmpty()) {
+                List<Long> ids = carts.stream().map(Cart::getId).toList();
+                deletedItems[0] = cartItemDao.deleteByCartIds(ids);
+                cartDao.deleteByIds(ids);
+            }
+            return carts;
+        });
+        purgedCarts.increment(chunk.size());
+        purgedItems.increment(deletedItems[0]);
+        // 削除したカートIDがキャッシュやメモリ上に残っていると、以降の追加が存在しないカートを参照してしまう
+        for (Cart cart : chunk) {
+            cartIdCache.evict(cart.getSessionKey());
+            if (cartStore.isEnabled()) {
+                cartStore.forget(cart.getSessionKey());
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * チャンク間で待機する
+     *
+     * @return 割り込まれた場合はfalse (残りは次回の実行に回す)
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.getPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.dao.CartDao;
+import com.example.ecbackend.entity.Cart;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * カートの参照日時をメモリに記録し、carts.updated_at へまとめて反映する
+ *
+ * カートを参照するたびに UPDATE を発行せず、参照系の処理を読み取り専用のままにするためのもの。
+ * 同じカートの参照は最新の日時1件にまとめ、定期的に1文のバッチUPDATEで反映する。
+ * 放置カートの削除の前にも反映し、削除の判定が最新の参照日時に基づくようにする。
+ */
+@Component
+public class CartActivityTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(CartActivityTracker.class);
+
+    private final CartDao cartDao;
+    private final int batchSize;
+    private final Supplier<LocalDateTime> clock;
+    private final Map<Long, LocalDateTime> touches = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CartActivityTracker(CartDao cartDao, CartProperties properties) {
+        this(cartDao, properties.getActivity().getBatchSize(), LocalDateTime::now);
+    }
+
+    CartActivityTracker(CartDao cartDao, int batchSize, Supplier<LocalDateTime> clock) {
+        this.cartDao = cartDao;
+        this.batchSize = batchSize;
+        this.clock = clock;
+    }
+
+    /**
+     * カートが参照されたことを記録する (DBへはアクセスしない)
+     *
+     * @param cartId カートID
+     */
+    public void touch(Long cartId) {
+        if (cartId != null) {
+            touches.merge(cartId, clock.get(), CartActivityTracker::latest);
+        }
+    }
+
+    /**
+     * 未反映のカート数
+     */
+    public int pending() {
+        return touches.size();
+    }
+
+    @Scheduled(fixedDelayString = "${cart.activity.flush-interval:PT30S}", initialDelayString = "${cart.activity.flush-interval:PT30S}")
+    void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Cart activity flush failed", e);
+        }
+    }
+
+    /**
+     * 記録した参照日時をDBへ反映する
+     *
+     * 反映に失敗したカートは記録に戻し、次回の反映で再度書き込む。
+     *
+     * @return 更新したカート数
+     */
+    @PreDestroy
+    public int flush() {
+        if (touches.isEmpty()) {
+            return 0;
+        }
+        int updated = 0;
+        List<Cart> batch = new ArrayList<>(Math.min(batchSize, touches.size()));
+        for (Map.Entry<Long, LocalDateTime> entry : touches.entrySet()) {
+            // 反映中に新しく参照されたカートは記録に残し、次回に反映する
+            if (touches.remove(entry.getKey(), entry.getValue())) {
+                batch.add(cart(entry.getKey(), entry.getValue()));
+            }
+            if (batch.size() >= batchSize) {
+                updated += write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            updated += write(batch);
+        }
+        log.debug("Flushed activity times of {} carts", updated);
+        return updated;
+    }
+
+    private int write(List<Cart> batch) {
+        try {
+            return cartDao.touchAll(batch);
+        } catch (RuntimeException e) {
+            batch.forEach(cart -> touches.merge(cart.getId(), cart.getUpdatedAt(), CartActivityTracker::latest));
+            throw e;
+        }
+    }
+
+    private static Cart cart(Long cartId, LocalDateTime touchedAt) {
+        Cart cart = new Cart();
+        cart.setId(cartId);
+        cart.setUpdatedAt(touchedAt);
+        return cart;
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.domain.SessionKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * セッションキー → カートの商品点数 のプロセス内キャッシュ
+ *
+ * ページ遷移のたびに呼ばれるカートバッジ (GET /api/cart/count) をDBにアクセスせずに返すためのもの。
+ * カートを更新した処理はコミット後に更新後の点数を {@link #update} で書き込み、更新直後の参照でもDBを読まない。
+ * 更新後の点数と {@link #version} はカートの行ロックを保持したまま取得するため、コミット後の書き込みが前後しても新しい世代が残る。
+ * キャッシュにない場合に読んだ点数は、読み込み前に取得した {@link #stamp} と一致する場合のみ登録する
+ * (読み込み中に書き込まれた点数を古い点数で上書きしないため)。
+ * 他のノードでの更新は反映されないため、有効期間は短く設定する (cart.session-cache.count-ttl)。
+ */
+@Component
+public class CartCountCache {
+
+    /** 破棄済みのエントリを表す点数 */
+    private static final int EVICTED = -1;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<SessionKey, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong stamps = new AtomicLong();
+
+    @Autowired
+    public CartCountCache(CartProperties properties) {
+        this(properties.getSessionCache().getMaxSize(),
+                properties.getSessionCache().getCountTtl().toNanos(),
+                System::nanoTime);
+    }
+
+    CartCountCache(int maxSize, long ttlNanos, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * キャッシュ済みの商品点数を取得する
+     *
+     * @param sessionKey セッションキー
+     * @return 商品点数 (未登録または期限切れの場合は空)
+     */
+    public Optional<Integer> get(SessionKey sessionKey) {
+        Entry entry = entries.get(sessionKey);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.isExpired(clock.getAsLong())) {
+            entries.remove(sessionKey, entry);
+            return Optional.empty();
+        }
+        return entry.isEvicted() ? Optional.empty() : Optional.of(entry.count);
+    }
+
+    /**
+     * DBから商品点数を読む前に、登録時に渡す値を取得する
+     *
+     * @param sessionKey セッションキー
+     * @return 現在のエントリの世代 (エントリがない場合は0)
+     */
+    public long stamp(SessionKey sessionKey) {
+        Entry entry = entries.get(sessionKey);
+        return entry != null ? entry.stamp : 0L;
+    }
+
+    /**
+     * DBから読んだ商品点数を登録する (読み込み後にエントリが破棄・更新されていた場合は登録しない)
+     *
+     * @param sessionKey セッションキー
+     * @param count 商品点数 (カートが存在しない場合は0)
+     * @param stamp 読み込み前に {@link #stamp} で取得した値
+     */
+    public void put(SessionKey sessionKey, int count, long stamp) {
+        long now = clock.getAsLong();
+        entries.compute(sessionKey, (key, current) -> (current != null ? current.stamp : 0L) == stamp
+                ? new Entry(count, stamps.incrementAndGet(), current != null ? current.version : 0L, now + ttlNanos)
+                : current);
+        if (entries.size() > maxSize) {
+            evict(now);
+        }
+    }
+
+    /**
+     * カートを更新したトランザクション内で、更新後の商品点数と合わせて {@link #update} に渡す世代を取得する
+     *
+     * カートの行ロックを保持している間 (コミット前) に取得することで、同じカートを後から更新した処理ほど大きい値となる。
+     *
+     * @return 世代
+     */
+    public long version() {
+        return stamps.incrementAndGet();
+    }
+
+    /**
+     * カートを更新した処理のコミット後に、更新後の商品点数を書き込む (より新しい世代の点数が書き込み済みの場合は書き込まない)
+     *
+     * @param sessionKey セッションキー
+     * @param count 更新後の商品点数
+     * @param version 更新後の点数を読んだ時点で {@link #version} で取得した値
+     */
+    public void update(SessionKey sessionKey, int count, long version) {
+        long now = clock.getAsLong();
+        entries.compute(sessionKey, (key, current) -> current == null || current.version < version
+                ? new Entry(count, stamps.incrementAndGet(), version, now + ttlNanos)
+                : current);
+        if (entries.size() > maxSize) {
+            evict(now);
+        }
+    }
+
+    /**
+     * キャッシュした商品点数を破棄する
+     *
+     * 破棄前に読み始めた点数や、破棄前に取得した世代の点数が後から登録されないよう、有効期間の間は破棄済みの目印を残す。
+     *
+     * @param sessionKey セッションキー
+     */
+    public void evict(SessionKey sessionKey) {
+        long now = clock.getAsLong();
+        long stamp = stamps.incrementAndGet();
+        entries.put(sessionKey, new Entry(EVICTED, stamp, stamp, now + ttlNanos));
+        if (entries.size() > maxSize) {
+            evict(now);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 期限切れのエントリを削除し、それでも上限を超える場合は上限の9割まで削減する
+     */
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        int target = maxSize - maxSize / 10;
+        Iterator<SessionKey> keys = entries.keySet().iterator();
+        while (entries.size() > target && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final int count;
+        private final long stamp;
+        /** 書き込まれた点数の世代 (DBから読んで登録した場合は登録前のエントリのものを引き継ぐ) */
+        private final long version;
+        private final long expiresAt;
+
+        private Entry(int count, long stamp, long version, long expiresAt) {
+            this.count = count;
+            this.stamp = stamp;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isEvicted() {
+            return count == EVICTED;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.dao.CartEventDao;
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.CartEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 分析用のカート操作イベントをリクエストの処理とは別のスレッドで cart_events に書き込む
+ *
+ * カート操作のスレッドはイベントを容量固定のリングバッファに追加するだけで、DBにはアクセスしない。
+ * 書き込みスレッド1本がバッファから取り出し、JDBCバッチでまとめて追記する。
+ * バッファが満杯の場合は cart.events.overflow に従い、イベントを破棄して数えるか、空きができるまで待つ。
+ */
+@Component
+public class CartEventLog {
+
+    private static final Logger log = LoggerFactory.getLogger(CartEventLog.class);
+
+    /** BLOCK でバッファの空きを待つ間隔 */
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final CartEventDao cartEventDao;
+    private final CartProperties.Events properties;
+    private final Supplier<LocalDateTime> clock;
+    private final MpscRingBuffer<CartEvent> buffer;
+
+    private final Counter droppedOnOverflow;
+    private final Counter droppedOnFailure;
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean stopped;
+    private Thread writer;
+
+    @Autowired
+    public CartEventLog(CartEventDao cartEventDao, CartProperties properties, MeterRegistry meterRegistry) {
+        this(cartEventDao, properties.getEvents(), meterRegistry, LocalDateTime::now);
+    }
+
+    CartEventLog(CartEventDao cartEventDao, CartProperties.Events properties, MeterRegistry meterRegistry,
+                 Supplier<LocalDateTime> clock) {
+        this.cartEventDao = cartEventDao;
+        this.properties = properties;
+        this.clock = clock;
+        this.buffer = new MpscRingBuffer<>(properties.getCapacity());
+        Gauge.builder("cart.events.queue.depth", buffer, MpscRingBuffer::size)
+                .description("Cart events waiting to be written")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("cart.events.batch.size")
+                .description("Cart events written by one batch insert")
+                .register(meterRegistry);
+        this.droppedOnOverflow = Counter.builder("cart.events.dropped")
+                .description("Cart events discarded without being written")
+                .tag("reason", "overflow")
+                .register(meterRegistry);
+        this.droppedOnFailure = Counter.builder("cart.events.dropped")
+                .description("Cart events discarded without being written")
+                .tag("reason", "write-failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 書き込みスレッドを開始する
+     */
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        writer = new Thread(this::runWriter, "cart-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 書き込みスレッドを止め、バッファに残ったイベントを書き込む
+     */
+    @PreDestroy
+    void stop() {
+        stopped = true;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (writer.isAlive()) {
+                log.warn("Cart event writer did not stop; {} events were not written", buffer.size());
+                return;
+            }
+        }
+        drainAll();
+    }
+
+    /**
+     * カート操作イベントをバッファに追加する (DBへはアクセスしない)
+     *
+     * @param sessionKey セッションキー
+     * @param type 操作の種類
+     * @param productId 商品ID (不明な場合はnull)
+     * @param itemId カート内商品ID (不明な場合はnull)
+     * @param quantity 数量 (種類ごとの意味は {@link CartEvent.Type} を参照)
+     */
+    public void record(SessionKey sessionKey, CartEvent.Type type, Long productId, Long itemId, Integer quantity) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        CartEvent event = CartEvent.of(sessionKey, type, productId, itemId, quantity, clock.get());
+        if (buffer.offer(event)) {
+            return;
+        }
+        if (properties.getOverflow() == CartProperties.Events.Overflow.BLOCK) {
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                if (buffer.offer(event)) {
+                    return;
+                }
+            }
+        }
+        droppedOnOverflow.increment();
+    }
+
+    /**
+     * 書き込み待ちのイベント数
+     */
+    public int pending() {
+        return buffer.size();
+    }
+
+    private void runWriter() {
+        long idleNanos = properties.getPollInterval().toNanos();
+        while (!stopped) {
+            try {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(idleNanos);
+                }
+            } catch (RuntimeException e) {
+                log.error("Cart event writer failed", e);
+                LockSupport.parkNanos(idleNanos);
+            }
+        }
+    }
+
+    /**
+     * バッファからバッチ1回分のイベントを取り出して書き込む (書き込みスレッドからのみ呼び出す)
+     *
+     * 書き込みに失敗したイベントは破棄して数える (書き込めない間にバッファが溢れ続けないようにするため)。
+     *
+     * @return 取り出したイベント数
+     */
+    int drain() {
+        List<CartEvent> batch = new ArrayList<>(properties.getBatchSize());
+        int drained = buffer.drain(batch, properties.getBatchSize());
+        if (drained == 0) {
+            return 0;
+        }
+        try {
+            cartEventDao.insertAll(batch);
+            batchSizes.record(drained);
+        } catch (RuntimeException e) {
+            droppedOnFailure.increment(drained);
+            log.warn("Failed to write {} cart events", drained, e);
+        }
+        return drained;
+    }
+
+    /**
+     * バッファが空になるまで書き込む
+     *
+     * @return 取り出したイベント数
+     */
+    int drainAll() {
+        int total = 0;
+        int drained;
+        while ((drained = drain()) > 0) {
+            total += drained;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.domain.SessionKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * セッションキー → カートID のプロセス内キャッシュ
+ *
+ * カート操作のたびに発行される carts のセッションキー検索を省略するためのもの。
+ * 件数の上限と登録からの有効期間を持ち、カート削除時には明示的に削除する。
+ */
+@Component
+public class CartIdCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<SessionKey, Entry> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CartIdCache(CartProperties properties) {
+        this(properties.getSessionCache().getMaxSize(),
+                properties.getSessionCache().getTtl().toNanos(),
+                System::nanoTime);
+    }
+
+    CartIdCache(int maxSize, long ttlNanos, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * キャッシュ済みのカートIDを取得する
+     *
+     * @param sessionKey セッションキー
+     * @return カートID (未登録または期限切れの場合は空)
+     */
+    public Optional<Long> get(SessionKey sessionKey) {
+        Entry entry = entries.get(sessionKey);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.isExpired(clock.getAsLong())) {
+            entries.remove(sessionKey, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry.cartId);
+    }
+
+    /**
+     * カートIDを登録する
+     *
+     * @param sessionKey セッションキー
+     * @param cartId カートID
+     */
+    public void put(SessionKey sessionKey, Long cartId) {
+        long now = clock.getAsLong();
+        entries.put(sessionKey, new Entry(cartId, now + ttlNanos));
+        if (entries.size() > maxSize) {
+            evict(now);
+        }
+    }
+
+    /**
+     * カートの削除に合わせてキャッシュから削除する
+     *
+     * @param sessionKey セッションキー
+     */
+    public void evict(SessionKey sessionKey) {
+        entries.remove(sessionKey);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 期限切れのエントリを削除し、それでも上限を超える場合は上限の9割まで削減する
+     */
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        int target = maxSize - maxSize / 10;
+        Iterator<SessionKey> keys = entries.keySet().iterator();
+        while (entries.size() > target && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final Long cartId;
+        private final long expiresAt;
+
+        private Entry(Long cartId, long expiresAt) {
+            this.cartId = cartId;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -2,95 +2,786 @@ package com.example.ecbackend.service;
 
 import com.example.ecbackend.dao.CartDao;
 import com.example.ecbackend.dao.CartItemDao;
+import com.example.ecbackend.domain.SessionKey;
 import com.example.ecbackend.entity.Cart;
+import com.example.ecbackend.entity.CartEvent;
 import com.example.ecbackend.entity.CartItem;
+import com.example.ecbackend.model.CartAvailability;
+import com.example.ecbackend.model.CartOperation;
+import com.example.ecbackend.model.CartSummary;
+import com.example.ecbackend.model.CartSyncRequest;
+import com.example.ecbackend.model.CartView;
+import com.example.ecbackend.model.FieldSelection;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Service
 @Transactional
 public class CartService {
+    /** PATCH /api/cart で1回に受け付ける操作数の上限 */
+    static final int MAX_OPERATIONS = 100;
+
     private final CartDao cartDao;
     private final CartItemDao cartItemDao;
+    private final CartIdCache cartIdCache;
+    private final CartCountCache cartCountCache;
+    private final WriteBehindCartStore cartStore;
+    private final ProductCatalogIndex catalogIndex;
+    private final CartActivityTracker activityTracker;
+    private final CartEventLog eventLog;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate writeTransaction;
 
-    public CartService(CartDao cartDao, CartItemDao cartItemDao) {
+    public CartService(CartDao cartDao, CartItemDao cartItemDao, CartIdCache cartIdCache, CartCountCache cartCountCache,
+                       WriteBehindCartStore cartStore, ProductCatalogIndex catalogIndex,
+                       CartActivityTracker activityTracker, CartEventLog eventLog,
+                       PlatformTransactionManager transactionManager) {
         this.cartDao = cartDao;
         this.cartItemDao = cartItemDao;
+        this.cartIdCache = cartIdCache;
+        this.cartCountCache = cartCountCache;
+        this.cartStore = cartStore;
+        this.catalogIndex = catalogIndex;
+        this.activityTracker = activityTracker;
+        this.eventLog = eventLog;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public List<CartItem> getCartItems(SessionKey sessionKey) {
+        return getCartItems(sessionKey, FieldSelection.all());
     }
 
-    public List<CartItem> getCartItems(String sessionId) {
-        Optional<Cart> cart = cartDao.findBySessionId(sessionId);
-        if (cart.isPresent()) {
-            return cartItemDao.findByCartId(cart.get().getId());
+    /**
+     * カート内商品を指定された項目のみ取得する
+     *
+     * write-behind モードではメモリ上のカートから取得し、DBから取得する場合と同じく指定された項目のみを設定する。
+     *
+     * @param sessionKey セッションキー
+     * @param fields 取得する項目
+     * @return カート内商品のリスト
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<CartItem> getCartItems(SessionKey sessionKey, FieldSelection fields) {
+        if (cartStore.isEnabled()) {
+            List<CartItem> items = cartStore.getItems(sessionKey);
+            return fields.isAll() ? items : items.stream().map(item -> project(item, fields)).toList();
         }
-        return List.of();
+        return readOnlyTransaction.execute(status -> {
+            Optional<Long> cartId = findCartId(sessionKey);
+            if (cartId.isPresent()) {
+                activityTracker.touch(cartId.get());
+                if (fields.isAll()) {
+                    return cartItemDao.findByCartId(cartId.get());
+                }
+                return cartItemDao.findByCartIdWithColumns(cartId.get(), fields.getColumns());
+            }
+            return List.of();
+        });
+    }
+
+    /**
+     * 注文用に、追加した時点の単価を含むカート内商品をDBから取得する
+     *
+     * 呼び出し元 (注文処理) のトランザクション内で読む。
+     * write-behind モードでは未反映の変更を先にDBへ反映する (メモリ上のカートは単価を持たないため、DBから読む)。
+     *
+     * @param sessionKey セッションキー
+     * @return カート内商品のリスト (カートが存在しない場合は空)
+     */
+    public List<CartItem> getCheckoutItems(SessionKey sessionKey) {
+        flush(sessionKey);
+        return findCartId(sessionKey).map(cartItemDao::findByCartId).orElse(List.of());
     }
 
-    public CartItem addToCart(String sessionId, Long productId, int quantity) {
-        Cart cart = cartDao.findBySessionId(sessionId)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    newCart.setSessionId(sessionId);
-                    cartDao.insert(newCart);
-                    return newCart;
-                });
+    /**
+     * 商品名・単価・小計・合計を含むカート表示を取得する
+     *
+     * 単価はカートに追加した時点のもの、合計は carts に保持しているものを使い、商品の現在の価格から計算し直さない。
+     * 価格が変更された商品は明細行の priceChanged で示す。
+     * write-behind モードでは未反映の変更をDBへ反映してから取得する。
+     *
+     * @param sessionKey セッションキー
+     * @return カート表示
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CartView getCartView(SessionKey sessionKey) {
+        return readFlushed(sessionKey, () -> {
+            touch(sessionKey);
+            return CartView.of(cartDao.findViewBySessionKey(sessionKey));
+        });
+    }
+
+    /**
+     * カートの商品点数と合計金額を取得する
+     *
+     * carts に保持している合計を読むだけで、カート内商品や商品は参照しない。
+     * write-behind モードでは未反映の変更をDBへ反映してから取得する。
+     *
+     * @param sessionKey セッションキー
+     * @return カートの要約 (カートが存在しない場合は0件・0円)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CartSummary getCartSummary(SessionKey sessionKey) {
+        return readFlushed(sessionKey, () -> {
+            Optional<Cart> cart = cartDao.findBySessionKey(sessionKey);
+            cart.ifPresent(found -> activityTracker.touch(found.getId()));
+            return cart.map(CartSummary::of).orElse(CartSummary.empty());
+        });
+    }
+
+    /**
+     * カートバッジ向けに商品点数 (数量の合計) のみを取得する
+     *
+     * キャッシュから返し、DBにはアクセスしない
+     * (カートの更新はコミット後に更新後の点数をキャッシュへ書き込むため、キャッシュにない場合のみ carts の点数を1回読んで登録する)。
+     * バッジの表示はカートの参照とみなさず、参照日時は記録しない (カートIDの検索も行わない)。
+     * キャッシュに当たる場合にコネクションを取得しないよう、トランザクションは開始しない。
+     * write-behind モードではメモリ上のカートから数える。
+     *
+     * @param sessionKey セッションキー
+     * @return 商品点数 (カートが存在しない場合は0)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public int getCartCount(SessionKey sessionKey) {
+        if (cartStore.isEnabled()) {
+            return cartStore.getItems(sessionKey).stream().mapToInt(CartItem::getQuantity).sum();
+        }
+        return cartCountCache.get(sessionKey).orElseGet(() -> loadCount(sessionKey));
+    }
 
-        CartItem cartItem = new CartItem();
-        cartItem.setCartId(cart.getId());
-        cartItem.setProductId(productId);
-        cartItem.setQuantity(quantity);
-        cartItemDao.insert(cartItem);
-        return cartItem;
+    /**
+     * DBから商品点数を読み、読み込み中にカートが更新されていなければキャッシュへ登録する
+     */
+    private int loadCount(SessionKey sessionKey) {
+        long stamp = cartCountCache.stamp(sessionKey);
+        int count = cartDao.findItemCount(sessionKey).orElse(0);
+        cartCountCache.put(sessionKey, count, stamp);
+        return count;
     }
 
-    public void updateCartItem(String sessionId, Long itemId, int quantity) {
-        Cart cart = cartDao.findBySessionId(sessionId)
-                .orElseThrow(() -> new IllegalArgumentException("Cart not found"));
+    /**
+     * カート内の各商品を現在の在庫と突き合わせ、不足している明細を取得する
+     *
+     * 注文前の確認用で、読み取り専用の1回のクエリで判定する。
+     * 注文処理の途中で在庫不足が分かり、書き込みトランザクションがロールバックされるのを避けるためのもの。
+     * write-behind モードでは未反映の変更をDBへ反映してから判定する。
+     *
+     * @param sessionKey セッションキー
+     * @return 在庫確認の結果 (カートが存在しない場合は不足なし)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CartAvailability getAvailability(SessionKey sessionKey) {
+        return readFlushed(sessionKey, () -> {
+            touch(sessionKey);
+            return new CartAvailability(cartDao.findShortagesBySessionKey(sessionKey));
+        });
+    }
 
-        CartItem cartItem = cartItemDao.findById(itemId)
-                .orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
+    /**
+     * カートに追加した後に価格が変更された商品を取得する
+     *
+     * @param sessionKey セッションキー
+     * @return 価格が変更されたカート内商品 (単価は追加した時点のもの)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<CartItem> getPriceChangedItems(SessionKey sessionKey) {
+        return readFlushed(sessionKey, () -> {
+            Optional<Long> cartId = findCartId(sessionKey);
+            cartId.ifPresent(activityTracker::touch);
+            return cartId.map(cartItemDao::findPriceChanged).orElse(List.of());
+        });
+    }
 
-        if (!cartItem.getCartId().equals(cart.getId())) {
-            throw new IllegalArgumentException("Cart item does not belong to this cart");
+    /**
+     * カートに商品を追加する
+     *
+     * 商品の存在と在庫はメモリ上のインデックスで確認し、確認できた追加は商品をDBから読まずに受け付ける。
+     * write-behind モードではメモリ上のカートとWALのみを変更するため、トランザクションを開始しない (以降の変更操作も同様)。
+     *
+     * @throws NoSuchElementException 商品が存在しない場合
+     * @throws IllegalStateException 在庫が不足している場合
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CartItem addToCart(SessionKey sessionKey, Long productId, int quantity) {
+        catalogIndex.requireAvailable(productId, quantity);
+        if (cartStore.isEnabled()) {
+            CartItem item = cartStore.add(sessionKey, productId, quantity);
+            recordEvent(sessionKey, CartEvent.Type.ADD, productId, item.getId(), quantity);
+            return item;
         }
+        return writeTransaction.execute(status -> {
+            Long cartId = findCartId(sessionKey).orElseGet(() -> createCart(sessionKey));
+            CartItem item = cartItemDao.upsert(cartId, productId, quantity);
+            if (item == null) {
+                // インデックスの反映前に商品が削除された場合
+                throw new NoSuchElementException("Product not found with id: " + productId);
+            }
+            writeCount(sessionKey);
+            recordEvent(sessionKey, CartEvent.Type.ADD, productId, item.getId(), quantity);
+            return item;
+        });
+    }
 
-        cartItem.setQuantity(quantity);
-        cartItemDao.update(cartItem);
+    /**
+     * カート内商品の数量を変更する
+     *
+     * @throws NoSuchElementException カート内商品が存在しない場合
+     * @throws SecurityException 他のカートの商品の場合
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void updateCartItem(SessionKey sessionKey, Long itemId, int quantity) {
+        if (cartStore.isEnabled()) {
+            cartStore.update(sessionKey, itemId, quantity);
+            recordEvent(sessionKey, CartEvent.Type.UPDATE, null, itemId, quantity);
+            return;
+        }
+        writeTransaction.executeWithoutResult(status -> {
+            requireOwnedItemAffected(cartItemDao.updateQuantityInSession(itemId, sessionKey, quantity), itemId);
+            writeCount(sessionKey);
+            recordEvent(sessionKey, CartEvent.Type.UPDATE, null, itemId, quantity);
+        });
     }
 
-    public void removeFromCart(String sessionId, Long itemId) {
-        Cart cart = cartDao.findBySessionId(sessionId)
-                .orElseThrow(() -> new IllegalArgumentException("Cart not found"));
+    /**
+     * カート内商品を削除する
+     *
+     * @throws NoSuchElementException カート内商品が存在しない場合
+     * @throws SecurityException 他のカートの商品の場合
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void removeFromCart(SessionKey sessionKey, Long itemId) {
+        if (cartStore.isEnabled()) {
+            cartStore.remove(sessionKey, itemId);
+            recordEvent(sessionKey, CartEvent.Type.REMOVE, null, itemId, null);
+            return;
+        }
+        writeTransaction.executeWithoutResult(status -> {
+            requireOwnedItemAffected(cartItemDao.deleteInSession(itemId, sessionKey), itemId);
+            writeCount(sessionKey);
+            recordEvent(sessionKey, CartEvent.Type.REMOVE, null, itemId, null);
+        });
+    }
 
-        CartItem cartItem = cartItemDao.findById(itemId)
-                .orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
+    /**
+     * 所有者の条件付きで更新・削除した件数を確認する
+     *
+     * 0件の場合のみ商品を検索し、存在しないのか他のカートの商品なのかを判別する。
+     *
+     * @throws NoSuchElementException カート内商品が存在しない場合
+     * @throws SecurityException 他のカートの商品の場合
+     */
+    private void requireOwnedItemAffected(int count, Long itemId) {
+        if (count > 0) {
+            return;
+        }
+        if (cartItemDao.findById(itemId).isEmpty()) {
+            throw new NoSuchElementException("Cart item not found");
+        }
+        throw new SecurityException("Cart item does not belong to this cart");
+    }
 
-        if (!cartItem.getCartId().equals(cart.getId())) {
-            throw new IllegalArgumentException("Cart item does not belong to this cart");
+    /**
+     * カート内商品の数量を加減算する
+     *
+     * 数量の読み込み・書き戻しをせずDB上で加減算するため、同時に更新しても加減算が失われない。
+     * 数量が0以下になった場合はカート内商品を削除する。
+     *
+     * @param sessionKey セッションキー
+     * @param itemId カート内商品ID
+     * @param delta 加減算する数量 (負の値で減算)
+     * @return 更新後のカート内商品 (削除した場合は空)
+     * @throws IllegalArgumentException delta が0の場合
+     * @throws NoSuchElementException カートまたはカート内商品がこのカートに存在しない場合
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<CartItem> incrementCartItem(SessionKey sessionKey, Long itemId, int delta) {
+        if (delta == 0) {
+            throw new IllegalArgumentException("Delta cannot be zero");
+        }
+        if (cartStore.isEnabled()) {
+            Optional<CartItem> updated = cartStore.increment(sessionKey, itemId, delta);
+            recordIncrement(sessionKey, itemId, updated);
+            return updated;
         }
+        return writeTransaction.execute(status -> {
+            Long cartId = findCartId(sessionKey)
+                    .orElseThrow(() -> new NoSuchElementException("Cart not found"));
 
-        cartItemDao.delete(cartItem);
+            Optional<CartItem> updated = cartItemDao.incrementQuantity(itemId, cartId, delta);
+            if (updated.isEmpty() && cartItemDao.deleteIfDepleted(itemId, cartId, delta) == 0) {
+                // 2文の間に他のリクエストが数量を変えると、どちらにも一致しないことがある。
+                // 行をロックして存在を確かめ、ロックしたまま再実行する (ロック中は数量が変わらないため、どちらかが必ず一致する)
+                if (cartItemDao.findByIdForUpdate(itemId, cartId).isEmpty()) {
+                    throw new NoSuchElementException("Cart item not found");
+                }
+                updated = cartItemDao.incrementQuantity(itemId, cartId, delta);
+                if (updated.isEmpty()) {
+                    cartItemDao.deleteIfDepleted(itemId, cartId, delta);
+                }
+            }
+            writeCount(sessionKey);
+            recordIncrement(sessionKey, itemId, updated);
+            return updated;
+        });
+    }
+
+    /**
+     * 複数のカート操作を1トランザクションで順番に適用する
+     *
+     * 連続する同じ種類の操作はまとめてバッチ実行する。
+     * 1件でも失敗した場合はすべての操作がロールバックされる。
+     *
+     * @param sessionKey セッションキー
+     * @param operations 適用する操作 (指定順に適用)
+     * @return 適用後のカート内商品のリスト
+     * @throws IllegalArgumentException 操作が不正な場合、または対象のカート内商品がこのカートに存在しない場合
+     * @throws NoSuchElementException 追加する商品が存在しない場合
+     * @throws IllegalStateException 追加する商品の在庫が不足している場合
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<CartItem> applyOperations(SessionKey sessionKey, List<CartOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("Operations cannot be empty");
+        }
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new IllegalArgumentException("Too many operations: " + operations.size());
+        }
+        operations.forEach(CartOperation::validate);
+        requireAvailable(operations);
+        return applyValidated(sessionKey, operations);
+    }
+
+    /**
+     * ブラウザ側 (localStorage) のカートとサーバー側のカートを1回の呼び出しで突き合わせる
+     *
+     * 差分のみを操作の種類ごとのバッチで適用する。
+     * ブラウザ側の最終変更がサーバー側より新しい (またはサーバー側が空の) 場合はブラウザ側の内容に合わせ、
+     * そうでなければサーバー側を優先してブラウザ側にしかない商品のみ追加する。
+     *
+     * @param sessionKey セッションキー
+     * @param request ブラウザ側のカート
+     * @return 突き合わせ後のカート内商品のリスト
+     * @throws IllegalArgumentException 商品の指定が不正な場合
+     * @throws NoSuchElementException 追加する商品が存在しない場合
+     * @throws IllegalStateException 追加する商品の在庫が不足している場合
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<CartItem> syncCart(SessionKey sessionKey, CartSyncRequest request) {
+        request.validate(MAX_OPERATIONS);
+        List<CartItem> current = getCartItems(sessionKey);
+        boolean clientWins = isClientNewer(request.getClientUpdatedAt(), current);
+
+        Map<Long, CartItem> serverItems = new HashMap<>();
+        current.forEach(item -> serverItems.put(item.getProductId(), item));
+        Set<Long> clientProductIds = new HashSet<>();
+        List<CartOperation> removes = new ArrayList<>();
+        List<CartOperation> updates = new ArrayList<>();
+        List<CartOperation> adds = new ArrayList<>();
+        for (CartSyncRequest.Item item : request.getItems()) {
+            clientProductIds.add(item.getProductId());
+            CartItem serverItem = serverItems.get(item.getProductId());
+            if (serverItem == null) {
+                adds.add(CartOperation.add(item.getProductId(), item.getQuantity()));
+            } else if (clientWins && serverItem.getQuantity() != item.getQuantity()) {
+                updates.add(CartOperation.update(serverItem.getId(), item.getQuantity()));
+            }
+        }
+        if (clientWins) {
+            for (CartItem serverItem : current) {
+                if (!clientProductIds.contains(serverItem.getProductId())) {
+                    removes.add(CartOperation.remove(serverItem.getId()));
+                }
+            }
+        }
+        if (removes.isEmpty() && updates.isEmpty() && adds.isEmpty()) {
+            return current;
+        }
+
+        // 同じ種類の操作を連続させ、種類ごとに1回のバッチで実行されるようにする
+        List<CartOperation> operations = new ArrayList<>(removes.size() + updates.size() + adds.size());
+        operations.addAll(removes);
+        operations.addAll(updates);
+        operations.addAll(adds);
+        requireAvailable(adds);
+        return applyValidated(sessionKey, operations);
+    }
+
+    /**
+     * 追加操作の商品の存在と在庫をメモリ上のインデックスで確認する
+     */
+    private void requireAvailable(List<CartOperation> operations) {
+        for (CartOperation operation : operations) {
+            if (operation.getOp() == CartOperation.Op.ADD) {
+                catalogIndex.requireAvailable(operation.getProductId(), operation.getQuantity());
+            }
+        }
+    }
+
+    /**
+     * ブラウザ側の最終変更がサーバー側のカート内商品のどの更新よりも新しいかどうか
+     */
+    private boolean isClientNewer(Instant clientUpdatedAt, List<CartItem> serverItems) {
+        if (serverItems.isEmpty()) {
+            return true;
+        }
+        if (clientUpdatedAt == null) {
+            return false;
+        }
+        LocalDateTime client = LocalDateTime.ofInstant(clientUpdatedAt, ZoneId.systemDefault());
+        return serverItems.stream()
+                .map(CartItem::getUpdatedAt)
+                .filter(Objects::nonNull)
+                .noneMatch(updatedAt -> updatedAt.isAfter(client));
+    }
+
+    /**
+     * 検証済みの操作を順番に適用する
+     */
+    private List<CartItem> applyValidated(SessionKey sessionKey, List<CartOperation> operations) {
+        if (cartStore.isEnabled()) {
+            List<CartItem> items = cartStore.apply(sessionKey, operations);
+            recordOperations(sessionKey, operations);
+            return items;
+        }
+        return writeTransaction.execute(status -> {
+            boolean hasAdd = operations.stream().anyMatch(op -> op.getOp() == CartOperation.Op.ADD);
+            Long cartId = hasAdd
+                    ? findCartId(sessionKey).orElseGet(() -> createCart(sessionKey))
+                    : findCartId(sessionKey).orElseThrow(() -> new IllegalArgumentException("Cart not found"));
+
+            int start = 0;
+            while (start < operations.size()) {
+                CartOperation.Op op = operations.get(start).getOp();
+                int end = start + 1;
+                while (end < operations.size() && operations.get(end).getOp() == op) {
+                    end++;
+                }
+                applyRun(cartId, op, operations.subList(start, end));
+                start = end;
+            }
+            List<CartItem> items = cartItemDao.findByCartId(cartId);
+            writeCount(sessionKey, items.stream().mapToInt(CartItem::getQuantity).sum());
+            recordOperations(sessionKey, operations);
+            return items;
+        });
+    }
+
+    /**
+     * 同じ種類の連続した操作を1回のバッチで実行する
+     */
+    private void applyRun(Long cartId, CartOperation.Op op, List<CartOperation> run) {
+        List<CartItem> items = new ArrayList<>(run.size());
+        for (CartOperation operation : run) {
+            CartItem item = new CartItem();
+            item.setId(operation.getItemId());
+            item.setCartId(cartId);
+            item.setProductId(operation.getProductId());
+            item.setQuantity(operation.getQuantity());
+            items.add(item);
+        }
+        switch (op) {
+            case ADD -> requireAllAdded(cartItemDao.upsertAll(items), items);
+            case UPDATE -> requireAllAffected(cartItemDao.updateQuantities(items), items);
+            case REMOVE -> requireAllAffected(cartItemDao.deleteAll(items), items);
+        }
+    }
+
+    private void requireAllAdded(int[] counts, List<CartItem> items) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new NoSuchElementException("Product not found with id: " + items.get(i).getProductId());
+            }
+        }
+    }
+
+    private void requireAllAffected(int[] counts, List<CartItem> items) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new IllegalArgumentException("Cart item not found in this cart: " + items.get(i).getId());
+            }
+        }
     }
 
     /**
      * カートを空にする
      *
-     * @param sessionId セッションID
-     */
-    public void clearCart(String sessionId) {
-        Optional<Cart> cartOpt = cartDao.findBySessionId(sessionId);
-        
-        if (cartOpt.isPresent()) {
-            Cart cart = cartOpt.get();
-            List<CartItem> cartItems = cartItemDao.findByCartId(cart.getId());
-            
-            for (CartItem item : cartItems) {
-                cartItemDao.delete(item);
+     * カートの大きさに関わらず DELETE 1文で削除する。
+     *
+     * @param sessionKey セッションキー
+     */
+    public void clearCart(SessionKey sessionKey) {
+        findCartId(sessionKey).ifPresent(cartItemDao::deleteByCartId);
+        evictCount(sessionKey);
+        if (cartStore.isEnabled()) {
+            cartStore.clear(sessionKey);
+        }
+        recordEvent(sessionKey, CartEvent.Type.CLEAR, null, null, null);
+    }
+
+    /**
+     * カート内商品とカート自体を削除する
+     *
+     * 削除前のカートIDが他のリクエストから再びキャッシュされないよう、キャッシュはコミット後にも削除する。
+     *
+     * @param sessionKey セッションキー
+     */
+    public void deleteCart(SessionKey sessionKey) {
+        findCartId(sessionKey).ifPresent(cartId -> {
+            cartItemDao.deleteByCartId(cartId);
+            cartDao.deleteById(cartId);
+            cartIdCache.evict(sessionKey);
+            afterCommit(() -> cartIdCache.evict(sessionKey));
+        });
+        evictCount(sessionKey);
+        if (cartStore.isEnabled()) {
+            cartStore.discard(sessionKey);
+        }
+        recordEvent(sessionKey, CartEvent.Type.CLEAR, null, null, null);
+    }
+
+    /**
+     * ログインしたゲストのカートをユーザーのカートに統合する
+     *
+     * ユーザーのカートがあればゲストのカートの商品を1文でまとめて移して (同じ商品は数量を加算) ゲストのカートを削除し、
+     * なければゲストのカートをそのままユーザーのカートとする。
+     * いずれの場合も、以降は現在のセッションキーでユーザーのカートを参照できるよう紐付け直す。
+     *
+     * 指定したユーザーのカートを呼び出し元のセッションに紐付けるため、ログイン処理が認証に成功した後にのみ呼び出す。
+     * クライアントが指定したユーザーIDを渡してはならない (HTTP APIとしては公開しない)。
+     *
+     * @param sessionKey ゲストのセッションキー
+     * @param userId 認証済みのユーザーのID
+     * @return 統合後のカート内商品のリスト
+     */
+    public List<CartItem> mergeGuestCart(SessionKey sessionKey, Long userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null");
+        }
+        flush(sessionKey);
+        Optional<Long> guestCartId = findCartId(sessionKey);
+        Optional<Cart> userCart = cartDao.findByUserId(userId);
+
+        Long cartId;
+        SessionKey previousKey = null;
+        if (userCart.isEmpty()) {
+            cartId = guestCartId.orElseGet(() -> createCart(sessionKey));
+        } else {
+            cartId = userCart.get().getId();
+            previousKey = userCart.get().getSessionKey();
+            flush(previousKey);
+            guestCartId.filter(id -> !id.equals(cartId)).ifPresent(guestId -> {
+                cartItemDao.mergeCart(guestId, cartId);
+                cartItemDao.deleteByCartId(guestId);
+                cartDao.deleteById(guestId);
+            });
+        }
+        cartDao.assignOwner(cartId, sessionKey, userId);
+        evictCount(sessionKey);
+
+        // 旧セッションキーとゲストのカートIDをキャッシュ・メモリ上から取り除き、現在のセッションキーを統合後のカートに向ける
+        SessionKey replacedKey = previousKey;
+        cartIdCache.evict(sessionKey);
+        afterCommit(() -> {
+            cartIdCache.put(sessionKey, cartId);
+            if (replacedKey != null) {
+                cartIdCache.evict(replacedKey);
+                cartCountCache.evict(replacedKey);
+            }
+            if (cartStore.isEnabled()) {
+                cartStore.forget(sessionKey);
+                if (replacedKey != null) {
+                    cartStore.forget(replacedKey);
+                }
+            }
+        });
+        return cartItemDao.findByCartId(cartId);
+    }
+
+    /**
+     * write-behind モードで未反映のカートの変更を、現在のトランザクション内でDBへ反映する
+     *
+     * DBのカートを直接参照する処理 (チェックアウトなど) の前に呼び出す。データベースモードでは何もしない。
+     *
+     * @param sessionKey セッションキー
+     */
+    public void flush(SessionKey sessionKey) {
+        if (cartStore.isEnabled()) {
+            cartStore.flush(sessionKey);
+        }
+    }
+
+    /**
+     * カートが参照されたことを記録する (carts.updated_at へは後でまとめて反映する)
+     *
+     * 放置後に戻ってきたユーザーのカートIDはキャッシュから消えているため、キャッシュにない場合はDBから引いて記録する
+     * (参照中のカートが定期削除の対象にならないようにするため)。
+     */
+    private void touch(SessionKey sessionKey) {
+        findCartId(sessionKey).ifPresent(activityTracker::touch);
+    }
+
+    /**
+     * セッションキーに対応するカートIDを取得する (キャッシュになければDBを検索してキャッシュする)
+     */
+    private Optional<Long> findCartId(SessionKey sessionKey) {
+        Optional<Long> cached = cartIdCache.get(sessionKey);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<Long> cartId = cartDao.findBySessionKey(sessionKey).map(Cart::getId);
+        cartId.ifPresent(id -> cartIdCache.put(sessionKey, id));
+        return cartId;
+    }
+
+    /**
+     * 更新後の商品点数をトランザクション内で読み、コミット後にキャッシュへ書き込む
+     *
+     * カート内商品を変更した後 (トリガーが carts の行をロックしている間) に点数と世代を取得するため、
+     * 同時に更新したトランザクションのコミット後処理の順序に関わらず古い点数が残らない。
+     * ロールバックされた場合はキャッシュを変更しない。
+     */
+    private void writeCount(SessionKey sessionKey) {
+        writeCount(sessionKey, cartDao.findItemCount(sessionKey).orElse(0));
+    }
+
+    private void writeCount(SessionKey sessionKey, int count) {
+        long version = cartCountCache.version();
+        afterCommit(() -> cartCountCache.update(sessionKey, count, version));
+    }
+
+    /**
+     * コミット後にキャッシュした商品点数を破棄する (次の参照でコミット済みの点数を読み直す)
+     *
+     * カートを空にする・統合するなど、carts の行をロックしないことがある処理で使用する。
+     * 点数を登録せずに破棄するため、同時に更新したトランザクションのコミット後処理の順序に関わらず古い点数が残らない。
+     * ロールバックされた場合はキャッシュを変更しない。
+     */
+    private void evictCount(SessionKey sessionKey) {
+        afterCommit(() -> cartCountCache.evict(sessionKey));
+    }
+
+    /**
+     * 分析用のカート操作イベントをコミット後に記録する
+     *
+     * イベントはバッファに追加するだけで、書き込みはカート操作とは別のスレッドで行う。
+     * ロールバックされた操作のイベントは記録しない。
+     */
+    private void recordEvent(SessionKey sessionKey, CartEvent.Type type, Long productId, Long itemId, Integer quantity) {
+        afterCommit(() -> eventLog.record(sessionKey, type, productId, itemId, quantity));
+    }
+
+    /**
+     * 数量の加減算の結果をイベントとして記録する (0以下になり削除した場合は削除として記録する)
+     */
+    private void recordIncrement(SessionKey sessionKey, Long itemId, Optional<CartItem> updated) {
+        if (updated.isPresent()) {
+            recordEvent(sessionKey, CartEvent.Type.UPDATE, updated.get().getProductId(), itemId,
+                    updated.get().getQuantity());
+        } else {
+            recordEvent(sessionKey, CartEvent.Type.REMOVE, null, itemId, null);
+        }
+    }
+
+    /**
+     * 一括適用した各操作をイベントとして記録する
+     */
+    private void recordOperations(SessionKey sessionKey, List<CartOperation> operations) {
+        List<CartOperation> applied = List.copyOf(operations);
+        afterCommit(() -> applied.forEach(operation -> eventLog.record(sessionKey, eventType(operation.getOp()),
+                operation.getProductId(), operation.getItemId(),
+                operation.getOp() == CartOperation.Op.REMOVE ? null : operation.getQuantity())));
+    }
+
+    private static CartEvent.Type eventType(CartOperation.Op op) {
+        return switch (op) {
+            case ADD -> CartEvent.Type.ADD;
+            case UPDATE -> CartEvent.Type.UPDATE;
+            case REMOVE -> CartEvent.Type.REMOVE;
+        };
+    }
+
+    /**
+     * カートを作成する (同時に作成された場合は既存のカートを使う)
+     *
+     * ロールバックされたカートIDをキャッシュしないよう、キャッシュへの登録はコミット後に行う。
+     */
+    private Long createCart(SessionKey sessionKey) {
+        Long cartId = cartDao.insertIfAbsent(sessionKey);
+        afterCommit(() -> cartIdCache.put(sessionKey, cartId));
+        return cartId;
+    }
+
+    /**
+     * DBのカートを読む処理をトランザクション内で実行する
+     *
+     * データベースモードでは読み取り専用トランザクションで読む。
+     * write-behind モードでは未反映の変更をDBへ書き込む必要があるため、書き込み可能なトランザクションで反映してから読む。
+     */
+    private <T> T readFlushed(SessionKey sessionKey, Supplier<T> read) {
+        if (!cartStore.isEnabled()) {
+            return readOnlyTransaction.execute(status -> read.get());
+        }
+        return writeTransaction.execute(status -> {
+            cartStore.flush(sessionKey);
+            return read.get();
+        });
+    }
+
+    /**
+     * 指定された項目のみを設定したカート内商品のコピーを作成する (DBから指定された列のみを読んだ場合と同じ形にする)
+     */
+    private static CartItem project(CartItem item, FieldSelection fields) {
+        CartItem projected = new CartItem();
+        for (String property : fields.getProperties()) {
+            switch (property) {
+                case "id" -> projected.setId(item.getId());
+                case "cartId" -> projected.setCartId(item.getCartId());
+                case "productId" -> projected.setProductId(item.getProductId());
+                case "quantity" -> projected.setQuantity(item.getQuantity());
+                case "unitPrice" -> projected.setUnitPrice(item.getUnitPrice());
+                case "priceVersion" -> projected.setPriceVersion(item.getPriceVersion());
+                case "createdAt" -> projected.setCreatedAt(item.getCreatedAt());
+                case "updatedAt" -> projected.setUpdatedAt(item.getUpdatedAt());
+                default -> throw new IllegalArgumentException("不明なフィールドが指定されました: " + property);
             }
         }
+        return projected;
+    }
+
+    /**
+     * トランザクションのコミット後に処理を実行する (トランザクション外の場合は即時実行する)
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,319 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.domain.SessionKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * write-behind モードのカート更新を記録するローカルWAL (先行書き込みログ)
+ *
+ * 1レコードは固定長32バイト (セッションキー上位・下位, 商品ID, 数量, CRC32)。
+ * 数量は差分ではなく操作後の絶対値を記録するため、同じレコードを何度再生しても結果は変わらない。
+ * 追記は専用スレッドが複数リクエスト分をまとめて書き込み、1回の fsync で永続化する (グループコミット)。
+ * セグメントファイルは一定サイズごと、またはDB反映の開始時に切り替え、反映が済んだものから削除する。
+ */
+class CartWriteAheadLog implements Closeable {
+
+    static final int RECORD_SIZE = 32;
+
+    /** カートを空にしたことを表すレコードの商品ID */
+    static final long CLEAR = 0L;
+
+    private static final Logger log = LoggerFactory.getLogger(CartWriteAheadLog.class);
+    private static final String PREFIX = "cart-wal-";
+    private static final String SUFFIX = ".log";
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - Integer.BYTES;
+
+    private final Path dir;
+    private final long segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(RECORD_SIZE * 1024);
+    private long appendedSeq;
+    private long durableSeq;
+    private IOException failure;
+    private boolean closed;
+
+    private final Object io = new Object();
+    private FileChannel channel;
+    private long segmentNo;
+    private long segmentBytes;
+
+    private Thread syncer;
+
+    CartWriteAheadLog(Path dir, long segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 既存のセグメントの後ろに新しいセグメントを作成し、書き込みを開始する
+     */
+    void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> segments = segments();
+        long last = segments.isEmpty() ? 0 : segmentNo(segments.get(segments.size() - 1));
+        synchronized (io) {
+            openSegment(last + 1);
+        }
+        syncer = new Thread(this::syncLoop, "cart-wal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * レコードを追記する (永続化は {@link #awaitDurable(long)} で待つ)
+     *
+     * @return 追記したレコードの通番
+     */
+    long append(SessionKey sessionKey, long productId, int quantity) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Cart WAL is closed");
+            }
+            if (pending.remaining() < RECORD_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            int start = pending.position();
+            pending.putLong(sessionKey.getHi())
+                    .putLong(sessionKey.getLo())
+                    .putLong(productId)
+                    .putInt(quantity);
+            CRC32 crc = new CRC32();
+            crc.update(pending.array(), start, PAYLOAD_SIZE);
+            pending.putInt((int) crc.getValue());
+            workAvailable.signal();
+            return ++appendedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定した通番までのレコードが fsync されるまで待つ
+     */
+    void awaitDurable(long seq) {
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failure != null) {
+                    throw new IllegalStateException("Failed to write cart WAL", failure);
+                }
+                if (closed) {
+                    throw new IllegalStateException("Cart WAL is closed");
+                }
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 新しいセグメントに切り替える
+     *
+     * @return 新しいセグメントの番号 (これより前のセグメントは、切り替え前の変更をDBへ反映した後に削除できる)
+     */
+    long rotate() throws IOException {
+        synchronized (io) {
+            channel.force(false);
+            channel.close();
+            openSegment(segmentNo + 1);
+            return segmentNo;
+        }
+    }
+
+    /**
+     * 指定した番号より前のセグメントを削除する
+     */
+    void deleteSegmentsBefore(long segmentNo) throws IOException {
+        for (Path segment : segments()) {
+            if (segmentNo(segment) < segmentNo) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    /**
+     * 既存のすべてのセグメントのレコードを書き込み順に読み込む
+     *
+     * 末尾の書きかけのレコードや CRC が一致しないレコードがあれば、そのセグメントの読み込みをそこで打ち切る。
+     */
+    List<Record> readAll() throws IOException {
+        List<Record> records = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return records;
+        }
+        byte[] buf = new byte[RECORD_SIZE];
+        for (Path segment : segments()) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(segment))) {
+                DataInputStream data = new DataInputStream(in);
+                while (true) {
+                    try {
+                        data.readFully(buf);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    ByteBuffer record = ByteBuffer.wrap(buf);
+                    CRC32 crc = new CRC32();
+                    crc.update(buf, 0, PAYLOAD_SIZE);
+                    if (record.getInt(PAYLOAD_SIZE) != (int) crc.getValue()) {
+                        log.warn("Cart WAL segment {} has a corrupt record; ignoring the rest of the segment", segment);
+                        break;
+                    }
+                    records.add(new Record(new SessionKey(record.getLong(0), record.getLong(8)),
+                            record.getLong(16), record.getInt(24)));
+                }
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (syncer != null) {
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (io) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * 溜まったレコードをまとめて書き込み、fsync して待機中のスレッドに通知する
+     */
+    private void syncLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long target;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    workAvailable.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = spare;
+                target = appendedSeq;
+            } finally {
+                lock.unlock();
+            }
+
+            batch.flip();
+            try {
+                synchronized (io) {
+                    int size = batch.remaining();
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    channel.force(false);
+                    segmentBytes += size;
+                    if (segmentBytes >= segmentSize) {
+                        channel.close();
+                        openSegment(segmentNo + 1);
+                    }
+                }
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    durable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                log.error("Failed to write cart WAL", e);
+                return;
+            }
+            batch.clear();
+
+            lock.lock();
+            try {
+                spare = batch;
+                durableSeq = target;
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void openSegment(long no) throws IOException {
+        channel = FileChannel.open(dir.resolve(String.format("%s%020d%s", PREFIX, no, SUFFIX)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentNo = no;
+        segmentBytes = 0;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(p -> p.getFileName().toString().startsWith(PREFIX) && p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentNo(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * WALの1レコード
+     */
+    static final class Record {
+        final SessionKey sessionKey;
+        final long productId;
+        final int quantity;
+
+        Record(SessionKey sessionKey, long productId, int quantity) {
+            this.sessionKey = sessionKey;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        boolean isClear() {
+            return productId == CLEAR;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.dao.CartIdempotencyKeyDao;
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.CartIdempotencyKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * カート更新APIの Idempotency-Key と応答の記録
+ *
+ * 最近のキーはプロセス内のLRUに保持し、再送をDBにアクセスせずに判定する。
+ * cart.idempotency.shared が有効な場合は cart_idempotency_keys テーブルにも記録し、
+ * 別のノードで処理されたキーの再送も検出する。
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private final CartIdempotencyKeyDao idempotencyKeyDao;
+    private final int maxSize;
+    private final Duration ttl;
+    private final boolean shared;
+    private final Clock clock;
+    private final Map<Key, Entry> entries;
+
+    @Autowired
+    public IdempotencyStore(CartIdempotencyKeyDao idempotencyKeyDao, CartProperties properties) {
+        this(idempotencyKeyDao,
+                properties.getIdempotency().getMaxSize(),
+                properties.getIdempotency().getTtl(),
+                properties.getIdempotency().isShared(),
+                Clock.systemDefaultZone());
+    }
+
+    IdempotencyStore(CartIdempotencyKeyDao idempotencyKeyDao, int maxSize, Duration ttl, boolean shared, Clock clock) {
+        this.idempotencyKeyDao = idempotencyKeyDao;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.shared = shared;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > IdempotencyStore.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * キーの処理を開始する
+     *
+     * 未使用のキーであれば処理中として登録し、空を返す (呼び出し側がリクエストを処理する)。
+     * 処理済みのキーであれば記録した応答を返す。
+     *
+     * @param sessionKey セッションキー
+     * @param idempotencyKey Idempotency-Key
+     * @param fingerprint リクエストのメソッド・パスとボディのハッシュ
+     * @return 記録済みの応答 (新しいキーの場合は空)
+     * @throws IllegalArgumentException 同じキーが別のリクエストに使われている場合
+     * @throws IllegalStateException 同じキーのリクエストが処理中の場合
+     */
+    public Optional<StoredResponse> begin(SessionKey sessionKey, String idempotencyKey, String fingerprint) {
+        Key key = new Key(sessionKey, idempotencyKey);
+        LocalDateTime now = LocalDateTime.now(clock);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && !entry.expiresAt.isAfter(now)) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null && !shared) {
+                entries.put(key, new Entry(fingerprint, null, now.plus(ttl)));
+                return Optional.empty();
+            }
+        }
+        if (entry == null) {
+            entry = claim(key, fingerprint, now);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (entry.response != null) {
+                // 他のノードで処理中のキーは、完了後に応答を読めるようにメモリには載せない
+                synchronized (entries) {
+                    entries.putIfAbsent(key, entry);
+                }
+            }
+        }
+        return replay(entry, fingerprint);
+    }
+
+    /**
+     * 処理を終えたキーに応答を記録する
+     *
+     * @param sessionKey セッションキー
+     * @param idempotencyKey Idempotency-Key
+     * @param response 応答
+     */
+    public void complete(SessionKey sessionKey, String idempotencyKey, StoredResponse response) {
+        Key key = new Key(sessionKey, idempotencyKey);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entries.put(key, new Entry(entry.fingerprint, response, entry.expiresAt));
+            }
+        }
+        if (shared) {
+            idempotencyKeyDao.complete(sessionKey, idempotencyKey,
+                    response.getStatus(), response.getContentType(), response.getBody());
+        }
+    }
+
+    /**
+     * 処理中のキーを破棄し、同じキーでの再実行を許可する (処理が失敗した場合に使用する)
+     *
+     * @param sessionKey セッションキー
+     * @param idempotencyKey Idempotency-Key
+     */
+    public void release(SessionKey sessionKey, String idempotencyKey) {
+        synchronized (entries) {
+            entries.remove(new Key(sessionKey, idempotencyKey));
+        }
+        if (shared) {
+            idempotencyKeyDao.release(sessionKey, idempotencyKey);
+        }
+    }
+
+    /**
+     * 期限切れのキーをDBから削除する
+     */
+    @Scheduled(fixedDelayString = "${cart.idempotency.purge-interval:PT10M}", initialDelayString = "${cart.idempotency.purge-interval:PT10M}")
+    void purgeExpired() {
+        if (!shared) {
+            return;
+        }
+        try {
+            int purged = idempotencyKeyDao.deleteExpired(LocalDateTime.now(clock));
+            log.debug("Purged {} expired idempotency keys", purged);
+        } catch (RuntimeException e) {
+            log.error("Idempotency key purge failed", e);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * DBにキーを登録する
+     *
+     * @return 他のリクエストが登録済みの場合はその記録 (自分が登録できた場合はnull)
+     */
+    private Entry claim(Key key, String fingerprint, LocalDateTime now) {
+        LocalDateTime expiresAt = now.plus(ttl);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (idempotencyKeyDao.claim(key.sessionKey, key.idempotencyKey, fingerprint, expiresAt) > 0) {
+                synchronized (entries) {
+                    entries.put(key, new Entry(fingerprint, null, expiresAt));
+                }
+                return null;
+            }
+            Optional<CartIdempotencyKey> existing = idempotencyKeyDao.findByKey(key.sessionKey, key.idempotencyKey);
+            if (existing.isPresent() && existing.get().getExpiresAt().isAfter(now)) {
+                return Entry.of(existing.get());
+            }
+            // 期限切れの行 (または直前に解放された行) は削除して登録し直す
+            idempotencyKeyDao.deleteExpiredKey(key.sessionKey, key.idempotencyKey, now);
+        }
+        throw new IllegalStateException("Request with the same Idempotency-Key is in progress");
+    }
+
+    private static Optional<StoredResponse> replay(Entry entry, String fingerprint) {
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw new IllegalArgumentException("Idempotency-Key was already used for a different request");
+        }
+        if (entry.response == null) {
+            throw new IllegalStateException("Request with the same Idempotency-Key is in progress");
+        }
+        return Optional.of(entry.response);
+    }
+
+    /**
+     * 記録した応答
+     */
+    public static final class StoredResponse {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        public StoredResponse(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body != null ? body : new byte[0];
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    private static final class Key {
+        private final SessionKey sessionKey;
+        private final String idempotencyKey;
+
+        private Key(SessionKey sessionKey, String idempotencyKey) {
+            this.sessionKey = sessionKey;
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return sessionKey.equals(other.sessionKey) && idempotencyKey.equals(other.idempotencyKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sessionKey, idempotencyKey);
+        }
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        /** 処理中はnull */
+        private final StoredResponse response;
+        private final LocalDateTime expiresAt;
+
+        private Entry(String fingerprint, StoredResponse response, LocalDateTime expiresAt) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+
+        private static Entry of(CartIdempotencyKey row) {
+            StoredResponse response = row.getStatus() != null
+                    ? new StoredResponse(row.getStatus(), row.getContentType(), row.getBody())
+                    : null;
+            return new Entry(row.getFingerprint(), response, row.getExpiresAt());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.ecbackend.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 容量固定のリングバッファ (複数のスレッドから追加し、1つのスレッドのみが取り出す)
+ *
+ * 追加するスレッドは末尾の位置を CAS で確保してから要素を書き込むため、ロックを取らない。
+ * 取り出すスレッドは書き込みが終わった要素のみを読み、スロットを空けてから先頭を進める。
+ *
+ * @param <E> 要素の型
+ */
+final class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    /** 次に書き込む位置 (追加するスレッドが CAS で確保する) */
+    private final AtomicLong tail = new AtomicLong();
+    /** 次に読み出す位置 (取り出すスレッドのみが更新する) */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity 容量 (2のべき乗に切り上げる)
+     */
+    MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 要素を追加する
+     *
+     * @param element 追加する要素
+     * @return 追加できた場合はtrue、満杯の場合はfalse
+     */
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            if (position - head.get() >= slots.length()) {
+                return false;
+            }
+            if (tail.compareAndSet(position, position + 1)) {
+                slots.lazySet(index(position), element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 書き込みが終わっている要素を先頭から取り出す (取り出すスレッドからのみ呼び出す)
+     *
+     * 末尾の位置を確保したスレッドがまだ書き込んでいない要素があれば、そこで止める。
+     *
+     * @param sink 取り出した要素の追加先
+     * @param limit 取り出す最大件数
+     * @return 取り出した件数
+     */
+    int drain(List<? super E> sink, int limit) {
+        long position = head.get();
+        int drained = 0;
+        while (drained < limit) {
+            int index = index(position);
+            E element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            sink.add(element);
+            position++;
+            drained++;
+        }
+        head.lazySet(position);
+        return drained;
+    }
+
+    /**
+     * 格納されている (位置を確保済みの) 要素数
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    private int index(long position) {
+        return (int) position & mask;
+    }
+}
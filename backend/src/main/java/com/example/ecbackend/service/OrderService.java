@@ -3,18 +3,24 @@ package com.example.ecbackend.service;
 import com.example.ecbackend.dao.OrderDao;
 import com.example.ecbackend.dao.OrderItemDao;
 import com.example.ecbackend.dao.ProductDao;
+import com.example.ecbackend.domain.SessionKey;
 import com.example.ecbackend.entity.CartItem;
 import com.example.ecbackend.entity.Order;
 import com.example.ecbackend.entity.OrderItem;
 import com.example.ecbackend.entity.Product;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 注文に関するビジネスロジックを提供するサービス
@@ -26,36 +32,56 @@ public class OrderService {
     private final OrderItemDao orderItemDao;
     private final ProductDao productDao;
     private final CartService cartService;
+    private final ProductCatalogIndex catalogIndex;
+    private final TransactionRetryExecutor transactionRetry;
 
-    public OrderService(OrderDao orderDao, OrderItemDao orderItemDao, ProductDao productDao, CartService cartService) {
+    public OrderService(OrderDao orderDao, OrderItemDao orderItemDao, ProductDao productDao, CartService cartService,
+                        ProductCatalogIndex catalogIndex, TransactionRetryExecutor transactionRetry) {
         this.orderDao = orderDao;
         this.orderItemDao = orderItemDao;
         this.productDao = productDao;
         this.cartService = cartService;
+        this.catalogIndex = catalogIndex;
+        this.transactionRetry = transactionRetry;
     }
 
     /**
      * カートの内容から注文を作成する
      *
-     * @param sessionId セッションID
+     * 単価はカート表示と同じく、カートに追加した時点のものを使う (価格が変更された商品は {@link CartService#getPriceChangedItems} で確認できる)。
+     *
+     * @param sessionKey セッションキー
      * @param userId ユーザーID (ゲスト注文の場合はnull)
      * @param shippingAddress 配送先住所
      * @param paymentMethod 支払い方法
      * @return 作成された注文情報
      * @throws IllegalArgumentException カートが空の場合
-     * @throws IllegalStateException 在庫不足などで注文できない場合
+     * @throws IllegalStateException 在庫不足などで注文できない場合 (事前の確認には {@link CartService#getAvailability} を使う)
      */
-    public Order createOrderFromCart(String sessionId, Long userId, String shippingAddress, String paymentMethod) {
-        List<CartItem> cartItems = cartService.getCartItems(sessionId);
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Order createOrderFromCart(SessionKey sessionKey, Long userId, String shippingAddress, String paymentMethod) {
+        // デッドロック等で失敗した場合はトランザクション全体をやり直す
+        // (ロールバックされたカートの反映は未反映に戻り、在庫インデックス等への反映はコミット時のみ行われる)
+        return transactionRetry.execute("checkout",
+                status -> doCreateOrderFromCart(sessionKey, userId, shippingAddress, paymentMethod));
+    }
+
+    private Order doCreateOrderFromCart(SessionKey sessionKey, Long userId, String shippingAddress, String paymentMethod) {
+        // write-behind モードの未反映の変更を先にDBへ反映し、注文とカートのクリアを同じDBの状態に対して行う
+        List<CartItem> cartItems = cartService.getCheckoutItems(sessionKey);
         
         if (cartItems.isEmpty()) {
             throw new IllegalArgumentException("Cannot create order from empty cart");
         }
         
         // 注文オブジェクトの作成
+        LocalDateTime now = LocalDateTime.now();
         Order order = new Order();
         order.setUserId(userId);
-        order.setOrderDate(LocalDateTime.now());
+        order.setOrderDate(now);
+        // @Insert は null の列もそのまま送るため、NOT NULL の作成日時・更新日時を設定する
+        order.setCreatedAt(now);
+        order.setUpdatedAt(now);
         order.setStatus("PENDING");
         order.setShippingAddress(shippingAddress);
         order.setPaymentMethod(paymentMethod);
@@ -64,33 +90,41 @@ public class OrderService {
         AtomicInteger totalAmount = new AtomicInteger(0);
         List<OrderItem> orderItems = new ArrayList<>();
         
-        // 在庫確認と注文アイテムの作成
+        // 全明細の商品を1回で取得する
+        List<Long> productIds = cartItems.stream().map(CartItem::getProductId).toList();
+        Map<Long, Product> products = productDao.selectByIds(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        
+        // 注文アイテムの作成
         for (CartItem cartItem : cartItems) {
-            Product product = productDao.selectById(cartItem.getProductId());
+            Product product = products.get(cartItem.getProductId());
             if (product == null) {
                 throw new NoSuchElementException("Product not found with id: " + cartItem.getProductId());
             }
             
-            // 在庫確認
-            if (product.getStock() < cartItem.getQuantity()) {
-                throw new IllegalStateException("Insufficient stock for product: " + product.getName());
-            }
-            
-            // 注文アイテムの作成
             OrderItem orderItem = new OrderItem();
             orderItem.setProductId(product.getId());
             orderItem.setQuantity(cartItem.getQuantity());
-            orderItem.setUnitPrice(product.getPrice());
-            orderItem.setSubtotal(product.getPrice() * cartItem.getQuantity());
+            // 商品の現在の価格ではなく、カートに表示していた追加時点の単価で計算する
+            orderItem.setUnitPrice(cartItem.getUnitPrice());
+            orderItem.setSubtotal(cartItem.getUnitPrice() * cartItem.getQuantity());
             
             orderItems.add(orderItem);
             totalAmount.addAndGet(orderItem.getSubtotal());
-            
-            // 在庫の更新
-            product.setStock(product.getStock() - cartItem.getQuantity());
-            productDao.update(product);
         }
         
+        // 在庫の確認と更新を明細ごとに1文で行い、全明細をバッチで送信する
+        // (読み込んだ在庫数で判定しないため、同時に注文されても売り越さない。不足した場合は例外で全体をロールバックする)
+        List<OrderItem> stockUpdates = inLockOrder(orderItems);
+        int[] counts = productDao.decrementStock(stockUpdates);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                Product product = products.get(stockUpdates.get(i).getProductId());
+                throw new IllegalStateException("Insufficient stock for product: " + product.getName());
+            }
+        }
+        publishStock(productIds);
+        
         order.setTotalAmount(totalAmount.get());
         
         // 注文の保存
@@ -99,17 +133,19 @@ public class OrderService {
             throw new RuntimeException("Failed to create order");
         }
         
-        // 注文アイテムの保存
+        // 注文アイテムの保存 (明細数に関わらずバッチでまとめて送信する)
         for (OrderItem item : orderItems) {
             item.setOrderId(order.getId());
-            result = orderItemDao.insert(item);
-            if (result == 0) {
+        }
+        // reWriteBatchedInserts 有効時は件数が SUCCESS_NO_INFO (-2) になるため、0件のみを失敗とする
+        for (int count : orderItemDao.insertAll(orderItems)) {
+            if (count == 0) {
                 throw new RuntimeException("Failed to create order item");
             }
         }
         
         // カートの中身を空にする
-        cartService.clearCart(sessionId);
+        cartService.clearCart(sessionKey);
         
         return order;
     }
@@ -155,7 +191,15 @@ public class OrderService {
      * @throws NoSuchElementException 指定された注文が存在しない場合
      * @throws IllegalStateException 注文がキャンセル不可能な状態の場合
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void cancelOrder(Long orderId) {
+        transactionRetry.execute("cancel-order", status -> {
+            doCancelOrder(orderId);
+            return null;
+        });
+    }
+
+    private void doCancelOrder(Long orderId) {
         Order order = getOrderById(orderId);
         
         // キャンセル可能な状態かチェック
@@ -172,13 +216,30 @@ public class OrderService {
             throw new RuntimeException("Failed to cancel order");
         }
         
-        // 在庫を戻す
-        for (OrderItem item : order.getItems()) {
-            Product product = productDao.selectById(item.getProductId());
-            if (product != null) {
-                product.setStock(product.getStock() + item.getQuantity());
-                productDao.update(product);
-            }
+        // 在庫を戻す (削除済みの商品は更新件数が0になり、戻さない)
+        List<OrderItem> items = order.getItems();
+        if (items.isEmpty()) {
+            return;
+        }
+        productDao.incrementStock(inLockOrder(items));
+        publishStock(items.stream().map(OrderItem::getProductId).toList());
+    }
+
+    /**
+     * 在庫を更新する明細を商品IDの昇順に並べる
+     *
+     * 同じ商品を含む注文が同時に処理されても、products の行ロックを常に同じ順序で取るためデッドロックしない。
+     */
+    private static List<OrderItem> inLockOrder(List<OrderItem> items) {
+        return items.stream().sorted(Comparator.comparing(OrderItem::getProductId)).toList();
+    }
+
+    /**
+     * 更新後の在庫数をDBから読み直し、コミット後に在庫インデックスへ反映する
+     */
+    private void publishStock(List<Long> productIds) {
+        for (Product product : productDao.selectIdAndStockByIds(productIds)) {
+            catalogIndex.putAfterCommit(product.getId(), product.getStock());
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,221 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.dao.ProductDao;
+import com.example.ecbackend.entity.Product;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 商品ID → 在庫数のメモリ上のインデックス
+ *
+ * カートへの追加時に、DBへアクセスせず商品の存在と在庫を確認するために使用する。
+ * long / int の配列によるオープンアドレス法のハッシュ表で、読み取りはロックを取らない。
+ * 更新は商品の登録・更新・注文時にコミット後に反映し、DB側の直接の変更に備えて定期的に全件を読み直す。
+ *
+ * インデックスは自ノードの更新しか反映せず、読み直しと同時に反映した更新が古い値で上書きされることもある。
+ * そのためインデックスで見つからない・在庫が足りない場合は不明として扱い、DBで確認できた場合のみ拒否する。
+ */
+@Component
+public class ProductCatalogIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalogIndex.class);
+
+    /** 空きスロットを表すキー (商品IDは正の値) */
+    private static final long EMPTY = 0L;
+
+    /** インデックスに存在しない商品を表す在庫数 */
+    private static final int ABSENT = -1;
+
+    private final ProductDao productDao;
+
+    private volatile Table table = new Table(16);
+
+    public ProductCatalogIndex(ProductDao productDao) {
+        this.productDao = productDao;
+    }
+
+    /**
+     * DBの全商品を読み込み、インデックスを作り直す
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${catalog.index.refresh-interval:PT5M}", initialDelayString = "${catalog.index.refresh-interval:PT5M}")
+    public void reload() {
+        List<Product> products = productDao.selectIdAndStock();
+        Table loaded = new Table(capacityFor(products.size()));
+        for (Product product : products) {
+            loaded.put(product.getId(), stockOf(product));
+        }
+        synchronized (this) {
+            table = loaded;
+        }
+        log.debug("Loaded {} products into the catalog index", products.size());
+    }
+
+    /**
+     * 商品が存在し、指定した数量の在庫があることを確認する
+     *
+     * インデックスで確認できない場合はDBの在庫数を読み、インデックスにも反映する。
+     *
+     * @param productId 商品ID
+     * @param quantity 数量
+     * @throws NoSuchElementException 商品が存在しない場合
+     * @throws IllegalStateException 在庫が不足している場合
+     */
+    public void requireAvailable(Long productId, int quantity) {
+        if (productId == null || productId <= 0) {
+            throw new NoSuchElementException("Product not found with id: " + productId);
+        }
+        int indexed = table.get(productId);
+        if (indexed != ABSENT && indexed >= quantity) {
+            return;
+        }
+        int stock = loadStock(productId);
+        if (stock == ABSENT) {
+            throw new NoSuchElementException("Product not found with id: " + productId);
+        }
+        if (stock < quantity) {
+            throw new IllegalStateException("Insufficient stock for product id: " + productId);
+        }
+    }
+
+    /**
+     * 商品の在庫数を登録・更新する
+     */
+    public synchronized void put(Long productId, int stock) {
+        Table current = table;
+        if (!current.put(productId, Math.max(stock, 0))) {
+            Table grown = new Table(current.capacity() * 2);
+            current.copyTo(grown);
+            grown.put(productId, Math.max(stock, 0));
+            table = grown;
+        }
+    }
+
+    /**
+     * 現在のトランザクションのコミット後に在庫数を反映する (トランザクション外の場合は即時反映する)
+     */
+    public void putAfterCommit(Long productId, Integer stock) {
+        if (productId == null) {
+            return;
+        }
+        int value = stock != null ? stock : 0;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(productId, value);
+                }
+            });
+        } else {
+            put(productId, value);
+        }
+    }
+
+    /**
+     * DBから商品の在庫数を読み、インデックスに反映する
+     *
+     * @return 在庫数 (商品が存在しない場合は {@link #ABSENT})
+     */
+    private int loadStock(Long productId) {
+        List<Product> products = productDao.selectIdAndStockByIds(List.of(productId));
+        if (products.isEmpty()) {
+            return ABSENT;
+        }
+        int stock = stockOf(products.get(0));
+        put(productId, stock);
+        return stock;
+    }
+
+    private static int stockOf(Product product) {
+        return product.getStock() != null ? Math.max(product.getStock(), 0) : 0;
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < size) {
+            capacity <<= 1;
+        }
+        return capacity * 2;
+    }
+
+    /**
+     * 線形探索のオープンアドレス法ハッシュ表
+     *
+     * 在庫数を書いてからキーを書くことで、キーが見えた時点で在庫数も見えることを保証する。
+     * 書き込みは {@link ProductCatalogIndex} のロック内でのみ行う。
+     */
+    private static final class Table {
+        private final AtomicLongArray keys;
+        private final AtomicIntegerArray stocks;
+        private final int mask;
+        private int size;
+
+        private Table(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.stocks = new AtomicIntegerArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        private int get(long key) {
+            for (int i = slot(key); ; i = (i + 1) & mask) {
+                long k = keys.get(i);
+                if (k == key) {
+                    return stocks.get(i);
+                }
+                if (k == EMPTY) {
+                    return ABSENT;
+                }
+            }
+        }
+
+        /**
+         * @return 負荷率の上限を超えるため登録できなかった場合はfalse
+         */
+        private boolean put(long key, int stock) {
+            for (int i = slot(key); ; i = (i + 1) & mask) {
+                long k = keys.get(i);
+                if (k == key) {
+                    stocks.set(i, stock);
+                    return true;
+                }
+                if (k == EMPTY) {
+                    if ((size + 1) * 4 > capacity() * 3) {
+                        return false;
+                    }
+                    stocks.set(i, stock);
+                    keys.set(i, key);
+                    size++;
+                    return true;
+                }
+            }
+        }
+
+        private void copyTo(Table target) {
+            for (int i = 0; i <= mask; i++) {
+                long k = keys.get(i);
+                if (k != EMPTY) {
+                    target.put(k, stocks.get(i));
+                }
+            }
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 
 /**
  * 商品に関するビジネスロジックを提供するサービス
@@ -16,9 +17,11 @@ import java.util.NoSuchElementException;
 @Transactional
 public class ProductService {
     private final ProductDao productDao;
+    private final ProductCatalogIndex catalogIndex;
 
-    public ProductService(ProductDao productDao) {
+    public ProductService(ProductDao productDao, ProductCatalogIndex catalogIndex) {
         this.productDao = productDao;
+        this.catalogIndex = catalogIndex;
     }
 
     /**
@@ -64,6 +67,12 @@ public class ProductService {
         // 現在の商品情報を取得
         Product existingProduct = getProductById(product.getId());
         
+        // 価格が変わる場合は版数を上げ、カートに追加済みの商品の価格変更を検出できるようにする
+        if (!Objects.equals(existingProduct.getPrice(), product.getPrice())) {
+            int version = existingProduct.getPriceVersion() != null ? existingProduct.getPriceVersion() : 1;
+            existingProduct.setPriceVersion(version + 1);
+        }
+
         // 商品情報を更新
         existingProduct.setName(product.getName());
         existingProduct.setDescription(product.getDescription());
@@ -77,6 +86,7 @@ public class ProductService {
         if (result == 0) {
             throw new RuntimeException("Failed to update product with id: " + product.getId());
         }
+        catalogIndex.putAfterCommit(existingProduct.getId(), existingProduct.getStock());
         
         return existingProduct;
     }
@@ -103,12 +113,14 @@ public class ProductService {
         LocalDateTime now = LocalDateTime.now();
         product.setCreatedAt(now);
         product.setUpdatedAt(now);
+        product.setPriceVersion(1);
         
         // 商品を登録
         int result = productDao.insert(product);
         if (result == 0) {
             throw new RuntimeException("Failed to create product");
         }
+        catalogIndex.putAfterCommit(product.getId(), product.getStock());
         
         return product;
     }
@@ -0,0 +1,137 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.TransactionRetryProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * デッドロック・直列化の失敗 (SQLSTATE 40P01 / 40001) で失敗したトランザクションを最初から実行し直す
+ *
+ * 失敗したトランザクションはロールバック済みのため、コールバック全体を新しいトランザクションで再実行する。
+ * コミット後の処理 (afterCommit) はコミットされた試行でのみ動くため、コールバックはDB以外に副作用を残さないこと。
+ * 再試行までの待ち時間は上限付きの指数バックオフの範囲でランダムに選び、同時に失敗した処理同士が再び衝突しないようにする。
+ * 呼び出し元のトランザクションに参加する場合は、その一部だけをやり直せないため再試行しない。
+ */
+@Component
+public class TransactionRetryExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionRetryExecutor.class);
+
+    /** 再試行する SQLSTATE (deadlock_detected / serialization_failure) */
+    static final Set<String> RETRYABLE_SQL_STATES = Set.of("40P01", "40001");
+
+    /** 待ち時間の倍率の上限 (2^16 倍) */
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionRetryProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Sleeper sleeper;
+
+    @Autowired
+    public TransactionRetryExecutor(PlatformTransactionManager transactionManager, TransactionRetryProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this(new TransactionTemplate(transactionManager), properties, meterRegistry, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    TransactionRetryExecutor(TransactionTemplate transactionTemplate, TransactionRetryProperties properties,
+                             MeterRegistry meterRegistry, Sleeper sleeper) {
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.sleeper = sleeper;
+    }
+
+    /**
+     * コールバックをトランザクション内で実行し、デッドロック・直列化の失敗の場合は再試行する
+     *
+     * 再試行した回数は transaction.retries (operation・sqlstate・outcome=retried|exhausted) で数える。
+     *
+     * @param operation メトリクスとログに使う処理名
+     * @param action トランザクション内で実行する処理
+     * @return コールバックの戻り値
+     */
+    public <T> T execute(String operation, TransactionCallback<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionTemplate.execute(action);
+        }
+        int maxAttempts = Math.max(1, properties.getMaxAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (RuntimeException e) {
+                String sqlState = retryableSqlState(e);
+                if (sqlState == null) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    countRetry(operation, sqlState, "exhausted");
+                    log.warn("{} failed with SQLSTATE {} after {} attempts", operation, sqlState, attempt);
+                    throw e;
+                }
+                countRetry(operation, sqlState, "retried");
+                long backoffNanos = backoffNanos(attempt);
+                log.info("{} failed with SQLSTATE {} (attempt {}/{}); retrying in {} us",
+                        operation, sqlState, attempt, maxAttempts, TimeUnit.NANOSECONDS.toMicros(backoffNanos));
+                try {
+                    sleeper.sleep(backoffNanos);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * attempt 回目の失敗の後、再試行までに待つ時間 (0 から上限までの一様乱数)
+     */
+    long backoffNanos(int attempt) {
+        long initial = properties.getInitialBackoff().toNanos();
+        long max = properties.getMaxBackoff().toNanos();
+        long ceiling = Math.min(max, initial << Math.min(attempt - 1, MAX_BACKOFF_SHIFT));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * 原因をたどり、再試行する SQLSTATE の SQLException があればその SQLSTATE を返す
+     */
+    static String retryableSqlState(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                // バッチ実行の失敗 (BatchUpdateException) は個々の失敗を次の例外として連ねる
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    if (RETRYABLE_SQL_STATES.contains(next.getSQLState())) {
+                        return next.getSQLState();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void countRetry(String operation, String sqlState, String outcome) {
+        meterRegistry.counter("transaction.retries", "operation", operation, "sqlstate", sqlState, "outcome", outcome)
+                .increment();
+    }
+
+    /**
+     * 再試行までの待機 (テストでは待たずに記録する)
+     */
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+}
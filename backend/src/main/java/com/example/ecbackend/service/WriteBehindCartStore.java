@@ -0,0 +1,847 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.dao.CartDao;
+import com.example.ecbackend.dao.CartItemDao;
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.Cart;
+import com.example.ecbackend.entity.CartItem;
+import com.example.ecbackend.model.CartOperation;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * write-behind モードのカートストア (cart.storage.mode=write-behind の場合のみ有効)
+ *
+ * カートはセッションキーでシャーディングしたメモリ上のマップに保持し、変更はローカルWALへ追記・fsync した時点で確定とする。
+ * DB (carts / cart_items) へは一定間隔でまとめて非同期に反映し、起動時にはWALを再生して未反映の変更を反映する。
+ *
+ * メモリ上で追加した商品のIDはDBに反映されるまで負の仮IDとなり、反映後はDBのIDに置き換える。
+ * 置き換えた後も、仮IDはカートがメモリ上にある間は引き続き更新・削除に使用できる。
+ */
+@Component
+public class WriteBehindCartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    private final CartProperties.Storage properties;
+    private final CartDao cartDao;
+    private final CartItemDao cartItemDao;
+    private final CartIdCache cartIdCache;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    private final AtomicLong provisionalIds = new AtomicLong();
+    private Shard[] shards;
+    private CartWriteAheadLog wal;
+    private ScheduledExecutorService flusher;
+
+    public WriteBehindCartStore(CartProperties properties, CartDao cartDao, CartItemDao cartItemDao,
+                                CartIdCache cartIdCache, PlatformTransactionManager transactionManager) {
+        this.properties = properties.getStorage();
+        this.cartDao = cartDao;
+        this.cartItemDao = cartItemDao;
+        this.cartIdCache = cartIdCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = this.properties.getMode() == CartProperties.Storage.Mode.WRITE_BEHIND;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * WALを再生してDBへ反映した後、定期的なDB反映を開始する
+     */
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        shards = new Shard[properties.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        wal = new CartWriteAheadLog(properties.getWalDir(), properties.getWalSegmentSize().toBytes());
+        List<CartWriteAheadLog.Record> records = wal.readAll();
+        wal.open();
+        if (!records.isEmpty()) {
+            replay(records);
+            if (!flushAll()) {
+                throw new IllegalStateException("Failed to flush replayed cart WAL");
+            }
+            log.info("Replayed {} cart WAL records", records.size());
+        }
+        long interval = properties.getFlushInterval().toMillis();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAndEvict, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 定期的なDB反映を止め、残りの変更を反映してからWALを閉じる
+     */
+    @PreDestroy
+    void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+        wal.close();
+    }
+
+    /**
+     * カート内商品を取得する
+     */
+    public List<CartItem> getItems(SessionKey sessionKey) {
+        ResidentCart cart = resident(sessionKey);
+        Shard shard = shard(sessionKey);
+        shard.lock.lock();
+        try {
+            List<CartItem> items = new ArrayList<>(cart.lines.size());
+            for (Line line : cart.lines.values()) {
+                items.add(line.toCartItem(cart.cartId));
+            }
+            return items;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 商品を追加する (既にあれば数量を加算する)
+     */
+    public CartItem add(SessionKey sessionKey, Long productId, int quantity) {
+        ResidentCart cart = resident(sessionKey);
+        Shard shard = shard(sessionKey);
+        CartItem result;
+        long seq;
+        shard.lock.lock();
+        try {
+            Line line = cart.lines.computeIfAbsent(productId, this::newLine);
+            line.quantity += quantity;
+            line.updatedAt = LocalDateTime.now();
+            seq = record(sessionKey, cart, line.productId, line.quantity);
+            result = line.toCartItem(cart.cartId);
+        } finally {
+            shard.lock.unlock();
+        }
+        wal.awaitDurable(seq);
+        return result;
+    }
+
+    /**
+     * カート内商品の数量を変更する
+     */
+    public void update(SessionKey sessionKey, Long itemId, int quantity) {
+        ResidentCart cart = resident(sessionKey);
+        Shard shard = shard(sessionKey);
+        long seq;
+        shard.lock.lock();
+        try {
+            Line line = findLine(cart, cart.lines, itemId);
+            line.quantity = quantity;
+            line.updatedAt = LocalDateTime.now();
+            seq = record(sessionKey, cart, line.productId, line.quantity);
+        } finally {
+            shard.lock.unlock();
+        }
+        wal.awaitDurable(seq);
+    }
+
+    /**
+     * カート内商品を削除する
+     */
+    public void remove(SessionKey sessionKey, Long itemId) {
+        ResidentCart cart = resident(sessionKey);
+        Shard shard = shard(sessionKey);
+        long seq;
+        shard.lock.lock();
+        try {
+            Line line = findLine(cart, cart.lines, itemId);
+            cart.lines.remove(line.productId);
+            seq = record(sessionKey, cart, line.productId, 0);
+        } finally {
+            shard.lock.unlock();
+        }
+        wal.awaitDurable(seq);
+    }
+
+    /**
+     * カート内商品の数量を加減算する (0以下になった場合は削除する)
+     *
+     * @return 更新後のカート内商品 (削除した場合は空)
+     */
+    public Optional<CartItem> increment(SessionKey sessionKey, Long itemId, int delta) {
+        ResidentCart cart = resident(sessionKey);
+        Shard shard = shard(sessionKey);
+        Optional<CartItem> result;
+        long seq;
+        shard.lock.lock();
+        try {
+            Line line = findLine(cart, cart.lines, itemId);
+            int quantity = line.quantity + delta;
+            if (quantity > 0) {
+                line.quantity = quantity;
+                line.updatedAt = LocalDateTime.now();
+                result = Optional.of(line.toCartItem(cart.cartId));
+            } else {
+                cart.lines.remove(line.productId);
+                quantity = 0;
+                result = Optional.empty();
+            }
+            seq = record(sessionKey, cart, line.productId, quantity);
+        } finally {
+            shard.lock.unlock();
+        }
+        wal.awaitDurable(seq);
+        return result;
+    }
+
+    /**
+     * 複数の操作をまとめて適用する (1件でも失敗した場合はどの操作も適用しない)
+     *
+     * データベースモードの一括適用と同じく、対象のカート内商品が存在しない場合は不正な操作 (IllegalArgumentException) とする。
+     */
+    public List<CartItem> apply(SessionKey sessionKey, List<CartOperation> operations) {
+        ResidentCart cart = resident(sessionKey);
+        Shard shard = shard(sessionKey);
+        List<CartItem> result = new ArrayList<>();
+        long seq = 0;
+        shard.lock.lock();
+        try {
+            Map<Long, Line> working = new LinkedHashMap<>();
+            cart.lines.forEach((productId, line) -> working.put(productId, line.copy()));
+            LocalDateTime now = LocalDateTime.now();
+            for (CartOperation operation : operations) {
+                switch (operation.getOp()) {
+                    case ADD -> {
+                        Line line = working.computeIfAbsent(operation.getProductId(), this::newLine);
+                        line.quantity += operation.getQuantity();
+                        line.updatedAt = now;
+                    }
+                    case UPDATE -> {
+                        Line line = findOperationLine(cart, working, operation.getItemId());
+                        line.quantity = operation.getQuantity();
+                        line.updatedAt = now;
+                    }
+                    case REMOVE -> working.remove(findOperationLine(cart, working, operation.getItemId()).productId);
+                }
+            }
+            for (Line before : cart.lines.values()) {
+                if (!working.containsKey(before.productId)) {
+                    seq = record(sessionKey, cart, before.productId, 0);
+                }
+            }
+            for (Line after : working.values()) {
+                Line before = cart.lines.get(after.productId);
+                if (before == null || before.quantity != after.quantity) {
+                    seq = record(sessionKey, cart, after.productId, after.quantity);
+                }
+                result.add(after.toCartItem(cart.cartId));
+            }
+            cart.lines.clear();
+            cart.lines.putAll(working);
+        } finally {
+            shard.lock.unlock();
+        }
+        if (seq > 0) {
+            wal.awaitDurable(seq);
+        }
+        return result;
+    }
+
+    /**
+     * カートを空にしたことを記録する
+     *
+     * DB側の削除とは別に、メモリ上のカートとWALにも反映しておくことで、
+     * 再起動時のWAL再生で削除前の商品が復活しないようにする。
+     * 呼び出し元のトランザクション内ではコミットの直前に記録して永続化を待つ
+     * (コミット後に記録すると、その間に停止した場合に注文済みのカートがWAL再生で復活するため)。
+     * トランザクションがコミットされなかった場合は、空にする前の商品を戻してWALにも記録し直す。
+     */
+    public void clear(SessionKey sessionKey) {
+        clear(sessionKey, false);
+    }
+
+    /**
+     * カートを空にしたうえでメモリから取り除く (DB側のカートを削除した場合に使用する)
+     *
+     * 呼び出し元のトランザクション内では、コミットされた後にメモリから取り除く。
+     */
+    public void discard(SessionKey sessionKey) {
+        clear(sessionKey, true);
+    }
+
+    private void clear(SessionKey sessionKey, boolean discard) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            wal.awaitDurable(clearLines(sessionKey).seq());
+            if (discard) {
+                removeResident(sessionKey);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private List<Line> cleared;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                ClearedLines result = clearLines(sessionKey);
+                cleared = result.lines();
+                wal.awaitDurable(result.seq());
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    if (discard) {
+                        removeResident(sessionKey);
+                    }
+                } else if (cleared != null) {
+                    restore(sessionKey, cleared);
+                }
+            }
+        });
+    }
+
+    /**
+     * メモリ上のカートを空にしてWALにCLEARを追記する (永続化は待たない)
+     */
+    private ClearedLines clearLines(SessionKey sessionKey) {
+        Shard shard = shard(sessionKey);
+        shard.lock.lock();
+        try {
+            List<Line> cleared = new ArrayList<>();
+            ResidentCart cart = shard.carts.get(sessionKey);
+            if (cart != null) {
+                for (Line line : cart.lines.values()) {
+                    cart.dirty.put(line.productId, 0);
+                    cleared.add(line);
+                }
+                cart.lines.clear();
+            }
+            return new ClearedLines(cleared, wal.append(sessionKey, CartWriteAheadLog.CLEAR, 0));
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 空にした商品をメモリ上のカートに戻し、WALにも記録し直す (その後に追加された商品はそのままにする)
+     */
+    private void restore(SessionKey sessionKey, List<Line> cleared) {
+        ResidentCart cart = resident(sessionKey);
+        Shard shard = shard(sessionKey);
+        long seq = 0;
+        shard.lock.lock();
+        try {
+            for (Line line : cleared) {
+                if (cart.lines.putIfAbsent(line.productId, line) == null) {
+                    seq = record(sessionKey, cart, line.productId, line.quantity);
+                }
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+        if (seq > 0) {
+            wal.awaitDurable(seq);
+        }
+    }
+
+    private void removeResident(SessionKey sessionKey) {
+        Shard shard = shard(sessionKey);
+        shard.lock.lock();
+        try {
+            shard.carts.remove(sessionKey);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * DB側でカートが削除されたことをメモリ上のカートに反映する
+     *
+     * 未反映の変更がなければメモリから取り除き、あれば次回の反映時にカートを作成し直す。
+     */
+    public void forget(SessionKey sessionKey) {
+        Shard shard = shard(sessionKey);
+        shard.lock.lock();
+        try {
+            ResidentCart cart = shard.carts.get(sessionKey);
+            if (cart == null) {
+                return;
+            }
+            if (cart.dirty.isEmpty()) {
+                shard.carts.remove(sessionKey);
+            } else {
+                cart.cartId = null;
+                for (Line line : cart.lines.values()) {
+                    cart.dirty.putIfAbsent(line.productId, line.quantity);
+                }
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 指定したセッションの未反映の変更を、呼び出し元のトランザクション内でDBへ反映する
+     *
+     * チェックアウトなどDBのカートを直接参照する処理の前に呼び出す。
+     * トランザクションがロールバックされた場合は、変更を未反映の状態に戻す。
+     */
+    public void flush(SessionKey sessionKey) {
+        Shard shard = shard(sessionKey);
+        ResidentCart cart;
+        shard.lock.lock();
+        try {
+            cart = shard.carts.get(sessionKey);
+        } finally {
+            shard.lock.unlock();
+        }
+        if (cart == null) {
+            return;
+        }
+        cart.flushLock.lock();
+        PendingFlush pending = snapshot(sessionKey, cart);
+        if (pending == null) {
+            cart.flushLock.unlock();
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                write(List.of(pending));
+                completed(List.of(pending), true);
+            } catch (RuntimeException e) {
+                completed(List.of(pending), false);
+                throw e;
+            } finally {
+                cart.flushLock.unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    completed(List.of(pending), status == STATUS_COMMITTED);
+                } finally {
+                    cart.flushLock.unlock();
+                }
+            }
+        });
+        write(List.of(pending));
+    }
+
+    /**
+     * 定期実行: 未反映の変更をDBへ反映し、使われていないカートをメモリから追い出す
+     */
+    private void flushAndEvict() {
+        try {
+            flushAll();
+            evictIdle();
+        } catch (RuntimeException e) {
+            log.error("Cart write-behind flush failed", e);
+        }
+    }
+
+    /**
+     * すべての未反映の変更を1トランザクションでまとめてDBへ反映する
+     *
+     * @return 反映に成功した場合はtrue
+     */
+    private boolean flushAll() {
+        long segment;
+        try {
+            segment = wal.rotate();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<PendingFlush> batch = new ArrayList<>();
+        List<ResidentCart> skipped = new ArrayList<>();
+        for (Shard shard : shards) {
+            List<Map.Entry<SessionKey, ResidentCart>> dirty = new ArrayList<>();
+            shard.lock.lock();
+            try {
+                for (Map.Entry<SessionKey, ResidentCart> entry : shard.carts.entrySet()) {
+                    if (!entry.getValue().dirty.isEmpty()) {
+                        dirty.add(Map.entry(entry.getKey(), entry.getValue()));
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+            for (Map.Entry<SessionKey, ResidentCart> entry : dirty) {
+                ResidentCart cart = entry.getValue();
+                // チェックアウトなどで反映中のカートは次回に回す
+                if (!cart.flushLock.tryLock()) {
+                    skipped.add(cart);
+                    continue;
+                }
+                PendingFlush pending = snapshot(entry.getKey(), cart);
+                if (pending == null) {
+                    cart.flushLock.unlock();
+                } else {
+                    batch.add(pending);
+                }
+            }
+        }
+        boolean committed = false;
+        try {
+            if (!batch.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> write(batch));
+            }
+            committed = true;
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} carts to the database", batch.size(), e);
+        } finally {
+            completed(batch, committed);
+            batch.forEach(pending -> pending.cart.flushLock.unlock());
+        }
+        if (committed && skipped.isEmpty()) {
+            try {
+                wal.deleteSegmentsBefore(segment);
+            } catch (IOException e) {
+                log.warn("Failed to delete flushed cart WAL segments", e);
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * 未反映の変更を取り出す (変更がなければnull)
+     */
+    private PendingFlush snapshot(SessionKey sessionKey, ResidentCart cart) {
+        Shard shard = shard(sessionKey);
+        shard.lock.lock();
+        try {
+            if (cart.dirty.isEmpty()) {
+                return null;
+            }
+            PendingFlush pending = new PendingFlush(sessionKey, cart, cart.cartId, new HashMap<>(cart.dirty));
+            cart.dirty.clear();
+            return pending;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 取り出した変更をバッチでDBへ書き込み、追加・更新した商品のDBのIDを読み込む
+     */
+    private void write(List<PendingFlush> batch) {
+        List<CartItem> upserts = new ArrayList<>();
+        List<CartItem> deletes = new ArrayList<>();
+        for (PendingFlush pending : batch) {
+            boolean hasItems = pending.quantities.values().stream().anyMatch(quantity -> quantity > 0);
+            if (pending.cartId == null) {
+                pending.cartId = cartDao.findBySessionKey(pending.sessionKey)
+                        .map(Cart::getId)
+                        .orElseGet(() -> hasItems ? insertCart(pending.sessionKey) : null);
+            }
+            if (pending.cartId == null) {
+                continue;
+            }
+            pending.quantities.forEach((productId, quantity) -> {
+                CartItem item = new CartItem();
+                item.setCartId(pending.cartId);
+                item.setProductId(productId);
+                item.setQuantity(quantity);
+                (quantity > 0 ? upserts : deletes).add(item);
+            });
+        }
+        if (!deletes.isEmpty()) {
+            cartItemDao.deleteByCartIdAndProductId(deletes);
+        }
+        if (!upserts.isEmpty()) {
+            cartItemDao.replaceQuantities(upserts);
+            readItemIds(batch, upserts);
+        }
+    }
+
+    /**
+     * 書き込んだカートの商品のDBのIDを読み込み、反映結果として記録する (仮IDの置き換えに使用する)
+     */
+    private void readItemIds(List<PendingFlush> batch, List<CartItem> upserts) {
+        List<Long> cartIds = upserts.stream().map(CartItem::getCartId).distinct().toList();
+        Map<Long, Map<Long, Long>> itemIds = new HashMap<>();
+        for (CartItem item : cartItemDao.findByCartIds(cartIds)) {
+            itemIds.computeIfAbsent(item.getCartId(), id -> new HashMap<>()).put(item.getProductId(), item.getId());
+        }
+        for (PendingFlush pending : batch) {
+            if (pending.cartId != null) {
+                pending.itemIds = itemIds.getOrDefault(pending.cartId, Map.of());
+            }
+        }
+    }
+
+    private Long insertCart(SessionKey sessionKey) {
+        LocalDateTime now = LocalDateTime.now();
+        Cart cart = new Cart();
+        cart.setSessionKey(sessionKey);
+        cart.setCreatedAt(now);
+        cart.setUpdatedAt(now);
+        cartDao.insert(cart);
+        return cart.getId();
+    }
+
+    /**
+     * DB反映の結果をメモリ上のカートに戻す
+     *
+     * 成功した場合はカートIDを記録して仮IDの商品をDBのIDに置き換え、失敗した場合は (その後に変更されていない商品を) 未反映に戻す。
+     */
+    private void completed(List<PendingFlush> batch, boolean committed) {
+        for (PendingFlush pending : batch) {
+            Shard shard = shard(pending.sessionKey);
+            shard.lock.lock();
+            try {
+                if (committed) {
+                    if (pending.cartId != null && pending.cart.cartId == null) {
+                        pending.cart.cartId = pending.cartId;
+                        cartIdCache.put(pending.sessionKey, pending.cartId);
+                    }
+                    pending.itemIds.forEach((productId, itemId) -> {
+                        Line line = pending.cart.lines.get(productId);
+                        if (line != null && line.id < 0) {
+                            line.id = itemId;
+                        }
+                    });
+                } else {
+                    pending.quantities.forEach(pending.cart.dirty::putIfAbsent);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * DBへ反映済みで一定期間使われていないカートをメモリから追い出す
+     */
+    private void evictIdle() {
+        long threshold = System.nanoTime() - properties.getIdleEviction().toNanos();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                Iterator<ResidentCart> carts = shard.carts.values().iterator();
+                while (carts.hasNext()) {
+                    ResidentCart cart = carts.next();
+                    if (cart.dirty.isEmpty() && cart.lastAccess - threshold < 0 && !cart.flushLock.isLocked()) {
+                        carts.remove();
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * WALのレコードを書き込み順にメモリ上のカートへ適用する
+     */
+    private void replay(List<CartWriteAheadLog.Record> records) {
+        for (CartWriteAheadLog.Record record : records) {
+            ResidentCart cart = resident(record.sessionKey);
+            if (record.isClear()) {
+                for (Line line : cart.lines.values()) {
+                    cart.dirty.put(line.productId, 0);
+                }
+                cart.lines.clear();
+            } else if (record.quantity > 0) {
+                Line line = cart.lines.computeIfAbsent(record.productId, this::newLine);
+                line.quantity = record.quantity;
+                cart.dirty.put(record.productId, record.quantity);
+            } else {
+                cart.lines.remove(record.productId);
+                cart.dirty.put(record.productId, 0);
+            }
+        }
+    }
+
+    /**
+     * メモリ上のカートを取得する (なければDBから読み込む)
+     */
+    private ResidentCart resident(SessionKey sessionKey) {
+        Shard shard = shard(sessionKey);
+        shard.lock.lock();
+        try {
+            ResidentCart cart = shard.carts.get(sessionKey);
+            if (cart != null) {
+                cart.lastAccess = System.nanoTime();
+                return cart;
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+        // DBからの読み込み中にシャード内の他のカートを止めないよう、ロックの外で読み込む
+        ResidentCart loaded = new ResidentCart();
+        cartDao.findBySessionKey(sessionKey).ifPresent(found -> {
+            loaded.cartId = found.getId();
+            for (CartItem item : cartItemDao.findByCartId(found.getId())) {
+                loaded.lines.put(item.getProductId(), Line.of(item));
+            }
+        });
+        shard.lock.lock();
+        try {
+            ResidentCart cart = shard.carts.putIfAbsent(sessionKey, loaded);
+            return cart != null ? cart : loaded;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 数量の変更をメモリ上の未反映分とWALに記録する (シャードのロック内で呼び出す)
+     */
+    private long record(SessionKey sessionKey, ResidentCart cart, long productId, int quantity) {
+        cart.dirty.put(productId, quantity);
+        return wal.append(sessionKey, productId, quantity);
+    }
+
+    /**
+     * カート内商品をIDで検索する (DB反映後のIDと仮IDのどちらでも検索できる)
+     *
+     * @throws NoSuchElementException カートまたはカート内商品が存在しない場合
+     */
+    private Line findLine(ResidentCart cart, Map<Long, Line> lines, Long itemId) {
+        if (cart.cartId == null && cart.lines.isEmpty()) {
+            throw new NoSuchElementException("Cart not found");
+        }
+        for (Line line : lines.values()) {
+            if (line.id == itemId || line.provisionalId == itemId) {
+                return line;
+            }
+        }
+        throw new NoSuchElementException("Cart item not found");
+    }
+
+    private Line findOperationLine(ResidentCart cart, Map<Long, Line> lines, Long itemId) {
+        try {
+            return findLine(cart, lines, itemId);
+        } catch (NoSuchElementException e) {
+            throw new IllegalArgumentException("Cart item not found in this cart: " + itemId, e);
+        }
+    }
+
+    private Line newLine(Long productId) {
+        Line line = new Line();
+        line.productId = productId;
+        line.provisionalId = provisionalIds.decrementAndGet();
+        line.id = line.provisionalId;
+        line.createdAt = LocalDateTime.now();
+        line.updatedAt = line.createdAt;
+        return line;
+    }
+
+    private Shard shard(SessionKey sessionKey) {
+        return shards[Math.floorMod(sessionKey.hashCode(), shards.length)];
+    }
+
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<SessionKey, ResidentCart> carts = new HashMap<>();
+    }
+
+    private static final class ResidentCart {
+        /** DB反映の排他 (反映中の変更を別の反映が追い越さないようにする) */
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private final Map<Long, Line> lines = new LinkedHashMap<>();
+        /** 未反映の商品ID → 数量 (0は削除) */
+        private final Map<Long, Integer> dirty = new HashMap<>();
+        private Long cartId;
+        private long lastAccess = System.nanoTime();
+    }
+
+    private static final class Line {
+        private long id;
+        private long provisionalId;
+        private long productId;
+        private int quantity;
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+
+        private static Line of(CartItem item) {
+            Line line = new Line();
+            line.id = item.getId();
+            line.productId = item.getProductId();
+            line.quantity = item.getQuantity();
+            line.createdAt = item.getCreatedAt();
+            line.updatedAt = item.getUpdatedAt();
+            return line;
+        }
+
+        private Line copy() {
+            Line line = new Line();
+            line.id = id;
+            line.provisionalId = provisionalId;
+            line.productId = productId;
+            line.quantity = quantity;
+            line.createdAt = createdAt;
+            line.updatedAt = updatedAt;
+            return line;
+        }
+
+        private CartItem toCartItem(Long cartId) {
+            CartItem item = new CartItem();
+            item.setId(id);
+            item.setCartId(cartId);
+            item.setProductId(productId);
+            item.setQuantity(quantity);
+            item.setCreatedAt(createdAt);
+            item.setUpdatedAt(updatedAt);
+            return item;
+        }
+    }
+
+    private record ClearedLines(List<Line> lines, long seq) {
+    }
+
+    private static final class PendingFlush {
+        private final SessionKey sessionKey;
+        private final ResidentCart cart;
+        private final Map<Long, Integer> quantities;
+        private Long cartId;
+        /** DBへ反映した商品ID → カート内商品のDBのID */
+        private Map<Long, Long> itemIds = Map.of();
+
+        private PendingFlush(SessionKey sessionKey, ResidentCart cart, Long cartId, Map<Long, Integer> quantities) {
+            this.sessionKey = sessionKey;
+            this.cart = cart;
+            this.cartId = cartId;
+            this.quantities = quantities;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+UPDATE carts
+SET session_key_hi = /* sessionKey.hi */0,
+    session_key_lo = /* sessionKey.lo */0,
+    user_id = /* userId */1,
+    updated_at = CURRENT_TIMESTAMP
+WHERE id = /* id */1
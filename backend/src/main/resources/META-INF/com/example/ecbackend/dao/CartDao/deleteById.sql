@@ -0,0 +1,2 @@
+DELETE FROM carts
+WHERE id = /* id */1
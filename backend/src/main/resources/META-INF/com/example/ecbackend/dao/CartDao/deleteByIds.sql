@@ -0,0 +1,2 @@
+DELETE FROM carts
+WHERE id IN /* ids */(1, 2)
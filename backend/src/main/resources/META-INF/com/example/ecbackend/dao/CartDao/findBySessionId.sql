@@ -1,3 +0,0 @@
-SELECT /*%expand*/*
-FROM carts
-WHERE session_id = /* sessionId */'' 
\ No newline at end of file
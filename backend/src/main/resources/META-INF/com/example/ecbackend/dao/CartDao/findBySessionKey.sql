@@ -0,0 +1,4 @@
+SELECT /*%expand*/*
+FROM carts
+WHERE session_key_hi = /* sessionKey.hi */0
+  AND session_key_lo = /* sessionKey.lo */0
\ No newline at end of file
@@ -0,0 +1,3 @@
+SELECT /*%expand*/*
+FROM carts
+WHERE user_id = /* userId */1
@@ -0,0 +1,14 @@
+SELECT c.id, c.session_key_hi, c.session_key_lo, c.created_at, c.updated_at
+FROM carts c
+WHERE c.id > /* afterId */0
+  AND c.user_id IS NULL
+  AND c.updated_at < /* cutoff */'2024-01-01 00:00:00'
+  AND NOT EXISTS (
+      SELECT 1
+      FROM cart_items i
+      WHERE i.cart_id = c.id
+        AND i.updated_at >= /* cutoff */'2024-01-01 00:00:00'
+  )
+ORDER BY c.id
+LIMIT /* chunkSize */500
+FOR UPDATE OF c SKIP LOCKED
@@ -0,0 +1,4 @@
+SELECT item_count
+FROM carts
+WHERE session_key_hi = /* sessionKey.hi */0
+  AND session_key_lo = /* sessionKey.lo */0
@@ -0,0 +1,13 @@
+SELECT ci.id AS item_id,
+       ci.product_id,
+       p.name AS product_name,
+       ci.quantity AS requested,
+       p.stock AS available,
+       ci.quantity - p.stock AS shortfall
+FROM carts c
+JOIN cart_items ci ON ci.cart_id = c.id
+JOIN products p ON p.id = ci.product_id
+WHERE c.session_key_hi = /* sessionKey.hi */0
+  AND c.session_key_lo = /* sessionKey.lo */0
+  AND ci.quantity > p.stock
+ORDER BY ci.id
@@ -0,0 +1,14 @@
+SELECT ci.id AS item_id,
+       ci.product_id,
+       p.name AS product_name,
+       ci.unit_price,
+       ci.quantity,
+       ci.unit_price * ci.quantity AS subtotal,
+       c.total_amount AS cart_total,
+       ci.price_version <> p.price_version AS price_changed
+FROM carts c
+JOIN cart_items ci ON ci.cart_id = c.id
+JOIN products p ON p.id = ci.product_id
+WHERE c.session_key_hi = /* sessionKey.hi */0
+  AND c.session_key_lo = /* sessionKey.lo */0
+ORDER BY ci.id
@@ -0,0 +1,13 @@
+SELECT id
+FROM FINAL TABLE (
+    MERGE INTO carts t
+    USING (
+        SELECT CAST(/* sessionKey.hi */0 AS BIGINT) AS session_key_hi, CAST(/* sessionKey.lo */0 AS BIGINT) AS session_key_lo
+    ) AS s
+    ON t.session_key_hi = s.session_key_hi AND t.session_key_lo = s.session_key_lo
+    WHEN MATCHED THEN
+        UPDATE SET updated_at = CURRENT_TIMESTAMP
+    WHEN NOT MATCHED THEN
+        INSERT (session_key_hi, session_key_lo, created_at, updated_at)
+        VALUES (s.session_key_hi, s.session_key_lo, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+)
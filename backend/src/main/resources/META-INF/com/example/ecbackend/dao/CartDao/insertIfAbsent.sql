@@ -0,0 +1,5 @@
+INSERT INTO carts (session_key_hi, session_key_lo, created_at, updated_at)
+VALUES (/* sessionKey.hi */0, /* sessionKey.lo */0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+ON CONFLICT (session_key_hi, session_key_lo)
+DO UPDATE SET updated_at = CURRENT_TIMESTAMP
+RETURNING id
@@ -0,0 +1,11 @@
+UPDATE carts c
+SET updated_at = v.touched_at
+FROM (
+    VALUES
+    /*%for cart : carts */
+    (CAST(/* cart.id */1 AS BIGINT), CAST(/* cart.updatedAt */'2024-01-01 00:00:00' AS TIMESTAMP))
+    /*%if cart_has_next *//*# "," *//*%end */
+    /*%end */
+) AS v(id, touched_at)
+WHERE c.id = v.id
+  AND c.updated_at < v.touched_at
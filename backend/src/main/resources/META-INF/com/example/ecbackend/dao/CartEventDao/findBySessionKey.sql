@@ -0,0 +1,5 @@
+SELECT /*%expand*/*
+FROM cart_events
+WHERE session_key_hi = /* sessionKey.hi */0
+  AND session_key_lo = /* sessionKey.lo */0
+ORDER BY occurred_at, id
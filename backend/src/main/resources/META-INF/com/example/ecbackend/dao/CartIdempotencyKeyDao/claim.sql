@@ -0,0 +1,3 @@
+INSERT INTO cart_idempotency_keys (session_key_hi, session_key_lo, idempotency_key, fingerprint, expires_at)
+VALUES (/* sessionKey.hi */0, /* sessionKey.lo */0, /* idempotencyKey */'key', /* fingerprint */'POST /api/cart/items', /* expiresAt */'2024-01-01 00:00:00')
+ON CONFLICT DO NOTHING
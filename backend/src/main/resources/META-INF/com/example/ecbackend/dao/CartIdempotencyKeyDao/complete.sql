@@ -0,0 +1,8 @@
+UPDATE cart_idempotency_keys
+SET status = /* status */200,
+    content_type = /* contentType */'application/json',
+    body = /* body */''
+WHERE session_key_hi = /* sessionKey.hi */0
+  AND session_key_lo = /* sessionKey.lo */0
+  AND idempotency_key = /* idempotencyKey */'key'
+  AND status IS NULL
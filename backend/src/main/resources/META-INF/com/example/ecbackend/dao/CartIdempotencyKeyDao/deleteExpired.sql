@@ -0,0 +1,2 @@
+DELETE FROM cart_idempotency_keys
+WHERE expires_at <= /* now */'2024-01-01 00:00:00'
@@ -0,0 +1,5 @@
+DELETE FROM cart_idempotency_keys
+WHERE session_key_hi = /* sessionKey.hi */0
+  AND session_key_lo = /* sessionKey.lo */0
+  AND idempotency_key = /* idempotencyKey */'key'
+  AND expires_at <= /* now */'2024-01-01 00:00:00'
@@ -0,0 +1,5 @@
+SELECT /*%expand*/*
+FROM cart_idempotency_keys
+WHERE session_key_hi = /* sessionKey.hi */0
+  AND session_key_lo = /* sessionKey.lo */0
+  AND idempotency_key = /* idempotencyKey */'key'
@@ -0,0 +1,3 @@
+DELETE FROM cart_items
+WHERE id = /* cartItems.id */1
+  AND cart_id = /* cartItems.cartId */1
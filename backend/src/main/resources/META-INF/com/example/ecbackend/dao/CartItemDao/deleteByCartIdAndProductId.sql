@@ -0,0 +1,3 @@
+DELETE FROM cart_items
+WHERE cart_id = /* cartItems.cartId */1
+  AND product_id = /* cartItems.productId */1
@@ -0,0 +1,2 @@
+DELETE FROM cart_items
+WHERE cart_id IN /* cartIds */(1, 2)
@@ -0,0 +1,4 @@
+DELETE FROM cart_items
+WHERE id = /* id */1
+  AND cart_id = /* cartId */1
+  AND quantity + /* delta */1 <= 0
@@ -0,0 +1,8 @@
+DELETE FROM cart_items
+WHERE id = /* id */1
+  AND cart_id = (
+      SELECT c.id
+      FROM carts c
+      WHERE c.session_key_hi = /* sessionKey.hi */0
+        AND c.session_key_lo = /* sessionKey.lo */0
+  )
@@ -0,0 +1,3 @@
+SELECT /*# columns */
+FROM cart_items
+WHERE cart_id = /* cartId */1
\ No newline at end of file
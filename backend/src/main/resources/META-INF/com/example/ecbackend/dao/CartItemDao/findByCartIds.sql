@@ -0,0 +1,3 @@
+SELECT /*%expand*/*
+FROM cart_items
+WHERE cart_id IN /* cartIds */(1, 2)
\ No newline at end of file
@@ -0,0 +1,5 @@
+SELECT /*%expand*/*
+FROM cart_items
+WHERE id = /* id */1
+  AND cart_id = /* cartId */1
+FOR UPDATE
@@ -0,0 +1,6 @@
+SELECT ci.id, ci.cart_id, ci.product_id, ci.quantity, ci.unit_price, ci.price_version, ci.created_at, ci.updated_at
+FROM cart_items ci
+JOIN products p ON p.id = ci.product_id
+WHERE ci.cart_id = /* cartId */1
+  AND ci.price_version <> p.price_version
+ORDER BY ci.id
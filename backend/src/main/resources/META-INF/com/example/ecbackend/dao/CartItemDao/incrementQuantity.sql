@@ -0,0 +1,7 @@
+UPDATE cart_items
+SET quantity = quantity + /* delta */1,
+    updated_at = CURRENT_TIMESTAMP
+WHERE id = /* id */1
+  AND cart_id = /* cartId */1
+  AND quantity + /* delta */1 > 0
+RETURNING id, cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at
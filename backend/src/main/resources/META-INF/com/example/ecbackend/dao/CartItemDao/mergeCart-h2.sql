@@ -0,0 +1,12 @@
+MERGE INTO cart_items t
+USING (
+    SELECT CAST(/* targetCartId */2 AS BIGINT) AS cart_id, product_id, quantity, unit_price, price_version, created_at
+    FROM cart_items
+    WHERE cart_id = /* sourceCartId */1
+) AS s
+ON t.cart_id = s.cart_id AND t.product_id = s.product_id
+WHEN MATCHED THEN
+    UPDATE SET quantity = t.quantity + s.quantity, updated_at = CURRENT_TIMESTAMP
+WHEN NOT MATCHED THEN
+    INSERT (cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at)
+    VALUES (s.cart_id, s.product_id, s.quantity, s.unit_price, s.price_version, s.created_at, CURRENT_TIMESTAMP)
@@ -0,0 +1,7 @@
+INSERT INTO cart_items (cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at)
+SELECT /* targetCartId */2, s.product_id, s.quantity, s.unit_price, s.price_version, s.created_at, CURRENT_TIMESTAMP
+FROM cart_items s
+WHERE s.cart_id = /* sourceCartId */1
+ON CONFLICT (cart_id, product_id)
+DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity,
+              updated_at = CURRENT_TIMESTAMP
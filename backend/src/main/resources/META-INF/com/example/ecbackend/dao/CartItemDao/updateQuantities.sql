@@ -0,0 +1,5 @@
+UPDATE cart_items
+SET quantity = /* cartItems.quantity */1,
+    updated_at = CURRENT_TIMESTAMP
+WHERE id = /* cartItems.id */1
+  AND cart_id = /* cartItems.cartId */1
@@ -0,0 +1,10 @@
+UPDATE cart_items
+SET quantity = /* quantity */1,
+    updated_at = CURRENT_TIMESTAMP
+WHERE id = /* id */1
+  AND cart_id = (
+      SELECT c.id
+      FROM carts c
+      WHERE c.session_key_hi = /* sessionKey.hi */0
+        AND c.session_key_lo = /* sessionKey.lo */0
+  )
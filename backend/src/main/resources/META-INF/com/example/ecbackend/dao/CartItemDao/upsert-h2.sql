@@ -0,0 +1,16 @@
+SELECT id, cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at
+FROM FINAL TABLE (
+    MERGE INTO cart_items t
+    USING (
+        SELECT CAST(/* cartId */1 AS BIGINT) AS cart_id, p.id AS product_id, CAST(/* quantity */1 AS INT) AS quantity,
+               p.price AS unit_price, p.price_version
+        FROM products p
+        WHERE p.id = /* productId */1
+    ) AS s
+    ON t.cart_id = s.cart_id AND t.product_id = s.product_id
+    WHEN MATCHED THEN
+        UPDATE SET quantity = t.quantity + s.quantity, updated_at = CURRENT_TIMESTAMP
+    WHEN NOT MATCHED THEN
+        INSERT (cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at)
+        VALUES (s.cart_id, s.product_id, s.quantity, s.unit_price, s.price_version, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+)
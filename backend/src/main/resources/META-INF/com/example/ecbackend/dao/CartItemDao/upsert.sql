@@ -0,0 +1,8 @@
+INSERT INTO cart_items (cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at)
+SELECT /* cartId */1, p.id, /* quantity */1, p.price, p.price_version, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+FROM products p
+WHERE p.id = /* productId */1
+ON CONFLICT (cart_id, product_id)
+DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity,
+              updated_at = CURRENT_TIMESTAMP
+RETURNING id, cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at
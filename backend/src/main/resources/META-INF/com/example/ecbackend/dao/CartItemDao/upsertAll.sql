@@ -0,0 +1,7 @@
+INSERT INTO cart_items (cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at)
+SELECT /* cartItems.cartId */1, p.id, /* cartItems.quantity */1, p.price, p.price_version, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+FROM products p
+WHERE p.id = /* cartItems.productId */1
+ON CONFLICT (cart_id, product_id)
+DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity,
+              updated_at = CURRENT_TIMESTAMP
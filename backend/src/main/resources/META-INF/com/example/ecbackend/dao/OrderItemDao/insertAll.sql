@@ -0,0 +1,2 @@
+INSERT INTO order_items (order_id, product_id, quantity, unit_price, subtotal, created_at, updated_at)
+VALUES (/* orderItems.orderId */1, /* orderItems.productId */1, /* orderItems.quantity */1, /* orderItems.unitPrice */0, /* orderItems.subtotal */0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
\ No newline at end of file
@@ -0,0 +1,5 @@
+UPDATE products
+SET stock = stock - /* orderItems.quantity */1,
+    updated_at = CURRENT_TIMESTAMP
+WHERE id = /* orderItems.productId */1
+  AND stock >= /* orderItems.quantity */1
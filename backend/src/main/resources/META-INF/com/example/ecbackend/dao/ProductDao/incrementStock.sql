@@ -0,0 +1,4 @@
+UPDATE products
+SET stock = stock + /* orderItems.quantity */1,
+    updated_at = CURRENT_TIMESTAMP
+WHERE id = /* orderItems.productId */1
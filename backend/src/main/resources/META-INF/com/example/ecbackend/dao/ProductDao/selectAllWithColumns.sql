@@ -0,0 +1,2 @@
+SELECT /*# columns */
+FROM products
\ No newline at end of file
@@ -0,0 +1,3 @@
+SELECT /*# columns */
+FROM products
+WHERE id = /* id */1
\ No newline at end of file
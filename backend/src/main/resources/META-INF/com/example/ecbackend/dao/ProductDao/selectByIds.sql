@@ -0,0 +1,3 @@
+SELECT /*%expand*/*
+FROM products
+WHERE id IN /* ids */(1, 2)
@@ -0,0 +1,2 @@
+SELECT id, stock
+FROM products
\ No newline at end of file
@@ -0,0 +1,3 @@
+SELECT id, stock
+FROM products
+WHERE id IN /* ids */(1, 2)
@@ -0,0 +1,17 @@
+-- カート更新APIの Idempotency-Key と、最初のリクエストの応答
+-- status が NULL の行は処理中 (応答が確定する前に同じキーで再送された場合は409を返す)
+CREATE TABLE cart_idempotency_keys (
+    session_key_hi BIGINT NOT NULL,
+    session_key_lo BIGINT NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    fingerprint VARCHAR(512) NOT NULL,
+    status INTEGER,
+    content_type VARCHAR(255),
+    body BYTEA,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (session_key_hi, session_key_lo, idempotency_key)
+);
+
+-- 期限切れのキーの定期削除用
+CREATE INDEX idx_cart_idempotency_keys_expires_at ON cart_idempotency_keys(expires_at);
@@ -0,0 +1,14 @@
+-- 分析用のカート操作イベント (追記のみ。カートの削除後も残すため外部キーは設定しない)
+CREATE TABLE cart_events (
+    id BIGSERIAL PRIMARY KEY,
+    session_key_hi BIGINT NOT NULL,
+    session_key_lo BIGINT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    product_id BIGINT,
+    item_id BIGINT,
+    quantity INTEGER,
+    occurred_at TIMESTAMP NOT NULL
+);
+
+-- 期間を指定した集計用
+CREATE INDEX idx_cart_events_occurred_at ON cart_events(occurred_at);
@@ -0,0 +1,7 @@
+-- 商品エンティティが参照する在庫数・画像URL・作成日時・更新日時
+-- (在庫インデックスの読み込み、在庫確認、注文時の在庫の加減算で使う)
+-- 手動で列を追加済みのDBでも適用できるよう、既存の列は作成しない
+ALTER TABLE products ADD COLUMN IF NOT EXISTS stock INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE products ADD COLUMN IF NOT EXISTS image_url VARCHAR(255);
+ALTER TABLE products ADD COLUMN IF NOT EXISTS created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE products ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
@@ -0,0 +1,23 @@
+-- 同一カート内の同一商品の重複行を、数量を合算して最小IDの行にまとめる
+UPDATE cart_items ci
+SET quantity = d.total_quantity,
+    updated_at = CURRENT_TIMESTAMP
+FROM (
+    SELECT MIN(id) AS keep_id, SUM(quantity) AS total_quantity
+    FROM cart_items
+    GROUP BY cart_id, product_id
+    HAVING COUNT(*) > 1
+) d
+WHERE ci.id = d.keep_id;
+
+DELETE FROM cart_items ci
+USING cart_items keep
+WHERE ci.cart_id = keep.cart_id
+  AND ci.product_id = keep.product_id
+  AND ci.id > keep.id;
+
+-- カート内商品の一意制約 (upsertの競合対象)
+CREATE UNIQUE INDEX uq_cart_items_cart_id_product_id ON cart_items(cart_id, product_id);
+
+-- cart_id 単独のインデックスは一意インデックスの先頭列で代替できるため削除
+DROP INDEX IF EXISTS idx_cart_items_cart_id;
\ No newline at end of file
@@ -0,0 +1,31 @@
+-- 同じセッションIDのカートが複数ある場合は最小IDのカートに統合する
+INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at)
+SELECT k.keep_id, ci.product_id, SUM(ci.quantity), MIN(ci.created_at), MAX(ci.updated_at)
+FROM cart_items ci
+JOIN carts c ON c.id = ci.cart_id
+JOIN (
+    SELECT session_id, MIN(id) AS keep_id
+    FROM carts
+    GROUP BY session_id
+    HAVING COUNT(*) > 1
+) k ON k.session_id = c.session_id
+WHERE c.id <> k.keep_id
+GROUP BY k.keep_id, ci.product_id
+ON CONFLICT (cart_id, product_id)
+DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity,
+              updated_at = CURRENT_TIMESTAMP;
+
+DELETE FROM cart_items
+WHERE cart_id IN (
+    SELECT c.id
+    FROM carts c
+    JOIN carts k ON k.session_id = c.session_id AND k.id < c.id
+);
+
+DELETE FROM carts c
+USING carts k
+WHERE k.session_id = c.session_id
+  AND k.id < c.id;
+
+-- セッションIDによるカート検索用の一意インデックス
+CREATE UNIQUE INDEX uq_carts_session_id ON carts(session_id);
\ No newline at end of file
@@ -0,0 +1,31 @@
+-- セッションIDを128ビットのセッションキー (BIGINT 2カラム) に置き換える
+ALTER TABLE carts
+    ADD COLUMN session_key_hi BIGINT,
+    ADD COLUMN session_key_lo BIGINT;
+
+-- 既存データの移行
+-- UUID形式のセッションIDはそのまま上位・下位64ビットに分割し、
+-- それ以外の形式はMD5ハッシュを用いて一意なキーに変換する
+UPDATE carts c
+SET session_key_hi = ('x' || substr(s.hex, 1, 16))::bit(64)::bigint,
+    session_key_lo = ('x' || substr(s.hex, 17, 16))::bit(64)::bigint
+FROM (
+    SELECT id,
+           CASE
+               WHEN session_id ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$'
+                   THEN replace(lower(session_id), '-', '')
+               ELSE md5(session_id)
+           END AS hex
+    FROM carts
+) s
+WHERE s.id = c.id;
+
+ALTER TABLE carts
+    ALTER COLUMN session_key_hi SET NOT NULL,
+    ALTER COLUMN session_key_lo SET NOT NULL;
+
+-- セッションキーによるカート検索用の一意インデックス
+CREATE UNIQUE INDEX uq_carts_session_key ON carts(session_key_hi, session_key_lo);
+
+DROP INDEX uq_carts_session_id;
+ALTER TABLE carts DROP COLUMN session_id;
@@ -0,0 +1,2 @@
+-- 放置されたカートの定期削除 (最終更新日時による検索) 用のインデックス
+CREATE INDEX idx_carts_updated_at ON carts(updated_at);
@@ -0,0 +1,5 @@
+-- ログインユーザーのカート (ゲストのカートは user_id が NULL)
+ALTER TABLE carts ADD COLUMN user_id BIGINT;
+
+-- ユーザーごとのカートは1つ
+CREATE UNIQUE INDEX uq_carts_user_id ON carts(user_id) WHERE user_id IS NOT NULL;
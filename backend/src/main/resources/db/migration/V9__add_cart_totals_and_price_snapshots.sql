@@ -0,0 +1,51 @@
+-- 商品価格の版数 (価格を変更するたびに1増やす)
+ALTER TABLE products ADD COLUMN price_version INTEGER NOT NULL DEFAULT 1;
+
+-- カートに追加した時点の単価と価格の版数
+ALTER TABLE cart_items ADD COLUMN unit_price INTEGER;
+ALTER TABLE cart_items ADD COLUMN price_version INTEGER;
+
+UPDATE cart_items ci
+SET unit_price = p.price,
+    price_version = p.price_version
+FROM products p
+WHERE p.id = ci.product_id;
+
+ALTER TABLE cart_items ALTER COLUMN unit_price SET NOT NULL;
+ALTER TABLE cart_items ALTER COLUMN price_version SET NOT NULL;
+
+-- カートの合計金額と商品点数 (数量の合計)
+ALTER TABLE carts ADD COLUMN total_amount INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE carts ADD COLUMN item_count INTEGER NOT NULL DEFAULT 0;
+
+UPDATE carts c
+SET total_amount = t.total_amount,
+    item_count = t.item_count
+FROM (
+    SELECT cart_id, SUM(unit_price * quantity) AS total_amount, SUM(quantity) AS item_count
+    FROM cart_items
+    GROUP BY cart_id
+) t
+WHERE t.cart_id = c.id;
+
+-- cart_items の変更と同じ文の中で、変更前後の差分だけカートの合計を更新する
+CREATE FUNCTION maintain_cart_totals() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    IF TG_OP <> ''INSERT'' THEN
+        UPDATE carts
+        SET total_amount = total_amount - OLD.unit_price * OLD.quantity,
+            item_count = item_count - OLD.quantity
+        WHERE id = OLD.cart_id;
+    END IF;
+    IF TG_OP <> ''DELETE'' THEN
+        UPDATE carts
+        SET total_amount = total_amount + NEW.unit_price * NEW.quantity,
+            item_count = item_count + NEW.quantity
+        WHERE id = NEW.cart_id;
+    END IF;
+    RETURN NULL;
+END';
+
+CREATE TRIGGER trg_cart_items_totals
+AFTER INSERT OR DELETE OR UPDATE OF cart_id, quantity, unit_price ON cart_items
+FOR EACH ROW EXECUTE FUNCTION maintain_cart_totals();
@@ -1,13 +1,26 @@
 package com.example.ecbackend;
 
+import com.example.ecbackend.filter.RateLimitFilter;
+import com.example.ecbackend.service.CartActivityTracker;
+import com.example.ecbackend.service.CartCountCache;
+import com.example.ecbackend.service.CartEventLog;
+import com.example.ecbackend.service.CartIdCache;
+import com.example.ecbackend.service.IdempotencyStore;
+import com.example.ecbackend.service.OrderService;
+import com.example.ecbackend.service.TransactionRetryExecutor;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
 import org.springframework.test.context.TestPropertySource;
 import com.example.ecbackend.dao.ProductDao;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
 class EcBackendApplicationTests {
@@ -15,7 +28,23 @@ class EcBackendApplicationTests {
     @MockBean
     private ProductDao productDao;
 
+    @Autowired
+    private ApplicationContext context;
+
     @Test
     void contextLoads() {
     }
-} 
\ No newline at end of file
+
+    @Test
+    @DisplayName("設定用とテスト用のコンストラクタを持つBeanも生成され、チェックアウト処理を組み立てられる")
+    void shouldWireBeansWithTestConstructors() {
+        assertThat(context.getBean(TransactionRetryExecutor.class)).isNotNull();
+        assertThat(context.getBean(OrderService.class)).isNotNull();
+        assertThat(context.getBean(CartIdCache.class)).isNotNull();
+        assertThat(context.getBean(CartCountCache.class)).isNotNull();
+        assertThat(context.getBean(CartActivityTracker.class)).isNotNull();
+        assertThat(context.getBean(CartEventLog.class)).isNotNull();
+        assertThat(context.getBean(IdempotencyStore.class)).isNotNull();
+        assertThat(context.getBean(RateLimitFilter.class)).isNotNull();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.ecbackend.benchmark;
+
+import com.example.ecbackend.dao.OrderDao;
+import com.example.ecbackend.dao.OrderItemDao;
+import com.example.ecbackend.entity.Order;
+import com.example.ecbackend.entity.OrderItem;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 注文明細の登録方法 (1行ずつの INSERT / JDBCバッチ) による
+ * 注文確定トランザクションのコミットまでの時間を比較するベンチマーク
+ *
+ * テスト用のインメモリH2で実行するため、ネットワークの往復は含まれない。
+ * PostgreSQLでは1行ごとに往復が発生するため、差はこれより大きくなる。
+ *
+ * 実行方法: ./gradlew benchmark --tests '*OrderCheckoutBenchmark'
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@DisplayName("OrderCheckoutBenchmark: 注文明細の登録方法の比較")
+class OrderCheckoutBenchmark {
+
+    private static final int[] LINE_COUNTS = {1, 10, 100};
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 1_000;
+
+    @Autowired
+    private OrderDao orderDao;
+
+    @Autowired
+    private OrderItemDao orderItemDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("1・10・100行の注文のコミットまでの時間")
+    void checkout() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        System.out.printf("%n%-6s %-8s %12s %12s%n", "lines", "insert", "median(us)", "p95(us)");
+        for (int lines : LINE_COUNTS) {
+            measure(transaction, lines, "single", items -> items.forEach(orderItemDao::insert));
+            measure(transaction, lines, "batch", orderItemDao::insertAll);
+        }
+    }
+
+    private void measure(TransactionTemplate transaction, int lines, String label, Consumer<List<OrderItem>> insert) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            transaction.executeWithoutResult(status -> checkout(lines, insert));
+        }
+
+        long[] elapsed = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            transaction.executeWithoutResult(status -> checkout(lines, insert));
+            elapsed[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(elapsed);
+
+        Long lastOrderId = transaction.execute(status -> checkout(lines, insert));
+        assertThat(orderItemDao.findByOrderId(lastOrderId)).hasSize(lines);
+        System.out.printf("%-6d %-8s %12.1f %12.1f%n", lines, label,
+                elapsed[MEASURED_ITERATIONS / 2] / 1_000.0,
+                elapsed[(int) (MEASURED_ITERATIONS * 0.95)] / 1_000.0);
+    }
+
+    private Long checkout(int lines, Consumer<List<OrderItem>> insert) {
+        LocalDateTime now = LocalDateTime.now();
+        Order order = new Order();
+        order.setUserId(1L);
+        order.setOrderDate(now);
+        order.setStatus("PENDING");
+        order.setTotalAmount(1000 * lines);
+        order.setShippingAddress("テスト住所");
+        order.setPaymentMethod("CREDIT_CARD");
+        order.setCreatedAt(now);
+        order.setUpdatedAt(now);
+        orderDao.insert(order);
+
+        List<OrderItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            OrderItem item = new OrderItem();
+            item.setOrderId(order.getId());
+            item.setProductId((long) (i % 3) + 1);
+            item.setQuantity(1);
+            item.setUnitPrice(1000);
+            item.setSubtotal(1000);
+            item.setCreatedAt(now);
+            item.setUpdatedAt(now);
+            items.add(item);
+        }
+        insert.accept(items);
+        return order.getId();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.ecbackend.benchmark;
+
+import com.example.ecbackend.entity.CartItem;
+import com.example.ecbackend.entity.Product;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * APIレスポンスのJSON / CBOR / Smile のペイロードサイズと
+ * エンコード・デコード時間を比較するベンチマーク
+ *
+ * 実行方法: ./gradlew benchmark --tests '*PayloadFormatBenchmark'
+ */
+@Tag("benchmark")
+@DisplayName("PayloadFormatBenchmark: レスポンス形式の比較")
+class PayloadFormatBenchmark {
+
+    private static final int CATALOG_SIZE = 500;
+    private static final int CART_LINES = 50;
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int MEASURED_ITERATIONS = 5_000;
+
+    private final Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+
+    PayloadFormatBenchmark() {
+        mappers.put("json", Jackson2ObjectMapperBuilder.json().build());
+        mappers.put("cbor", Jackson2ObjectMapperBuilder.cbor().build());
+        mappers.put("smile", Jackson2ObjectMapperBuilder.smile().build());
+    }
+
+    @Test
+    @DisplayName("商品カタログ (GET /api/products)")
+    void catalog() throws Exception {
+        List<Product> catalog = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (long i = 1; i <= CATALOG_SIZE; i++) {
+            Product product = new Product();
+            product.setId(i);
+            product.setName("テスト商品" + i);
+            product.setDescription("テスト商品" + i + "の説明です。素材やサイズなどの詳細情報を含みます。");
+            product.setPrice(1000 + (int) (i % 50) * 100);
+            product.setStock((int) (i % 30));
+            product.setImageUrl("https://example.com/images/product-" + i + ".jpg");
+            product.setCreatedAt(now);
+            product.setUpdatedAt(now);
+            catalog.add(product);
+        }
+        compare("catalog(" + CATALOG_SIZE + " products)", catalog, Product.class);
+    }
+
+    @Test
+    @DisplayName("50行のカート (GET /api/cart)")
+    void cart() throws Exception {
+        List<CartItem> cart = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (long i = 1; i <= CART_LINES; i++) {
+            CartItem item = new CartItem();
+            item.setId(i);
+            item.setCartId(1L);
+            item.setProductId(i);
+            item.setQuantity((int) (i % 5) + 1);
+            item.setCreatedAt(now);
+            item.setUpdatedAt(now);
+            cart.add(item);
+        }
+        compare("cart(" + CART_LINES + " lines)", cart, CartItem.class);
+    }
+
+    private <T> void compare(String label, List<T> payload, Class<T> elementType) throws Exception {
+        int jsonSize = 0;
+        System.out.printf("%n%-24s %-6s %10s %14s %14s%n", "payload", "format", "bytes", "encode(us/op)", "decode(us/op)");
+        for (Map.Entry<String, ObjectMapper> entry : mappers.entrySet()) {
+            ObjectMapper mapper = entry.getValue();
+            JavaType type = mapper.getTypeFactory().constructCollectionType(List.class, elementType);
+            byte[] bytes = mapper.writeValueAsBytes(payload);
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                mapper.readValue(mapper.writeValueAsBytes(payload), type);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                mapper.writeValueAsBytes(payload);
+            }
+            double encodeMicros = (System.nanoTime() - start) / 1_000.0 / MEASURED_ITERATIONS;
+
+            start = System.nanoTime();
+            List<T> decoded = null;
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                decoded = mapper.readValue(bytes, type);
+            }
+            double decodeMicros = (System.nanoTime() - start) / 1_000.0 / MEASURED_ITERATIONS;
+
+            assertThat(decoded).hasSize(payload.size());
+            if ("json".equals(entry.getKey())) {
+                jsonSize = bytes.length;
+            } else {
+                assertThat(bytes.length).isLessThan(jsonSize);
+            }
+            System.out.printf("%-24s %-6s %10d %14.2f %14.2f%n",
+                    label, entry.getKey(), bytes.length, encodeMicros, decodeMicros);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.ecbackend.config;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * テスト用のH2で、PostgreSQLのトリガー関数 maintain_cart_totals() (V9) をエミュレートする
+ *
+ * cart_items の行の変更前後の差分だけ、carts の合計金額と商品点数を更新する。
+ */
+public class H2CartTotalsTrigger implements Trigger {
+
+    /** cart_items の列の位置 (schema.sql の定義順) */
+    private static final int CART_ID = 1;
+    private static final int QUANTITY = 3;
+    private static final int UNIT_PRICE = 4;
+
+    private static final String UPDATE_TOTALS =
+            "UPDATE carts SET total_amount = total_amount + ?, item_count = item_count + ? WHERE id = ?";
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (oldRow != null) {
+            apply(conn, oldRow, -1);
+        }
+        if (newRow != null) {
+            apply(conn, newRow, 1);
+        }
+    }
+
+    private void apply(Connection conn, Object[] row, int sign) throws SQLException {
+        int quantity = ((Number) row[QUANTITY]).intValue();
+        int unitPrice = ((Number) row[UNIT_PRICE]).intValue();
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE_TOTALS)) {
+            ps.setInt(1, sign * unitPrice * quantity);
+            ps.setInt(2, sign * quantity);
+            ps.setLong(3, ((Number) row[CART_ID]).longValue());
+            ps.executeUpdate();
+        }
+    }
+}
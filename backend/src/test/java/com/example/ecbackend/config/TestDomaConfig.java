@@ -6,6 +6,7 @@ import org.seasar.doma.jdbc.dialect.H2Dialect;
 import org.seasar.doma.jdbc.tx.LocalTransactionDataSource;
 import org.seasar.doma.jdbc.tx.LocalTransactionManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -30,11 +31,13 @@ public class TestDomaConfig implements Config {
 
     private final DataSource dataSource;
     private final Dialect dialect;
+    private final int batchSize;
 
     @Autowired
-    public TestDomaConfig(DataSource dataSource) {
+    public TestDomaConfig(DataSource dataSource, @Value("${doma.batch-size:100}") int batchSize) {
         this.dataSource = new TransactionAwareDataSourceProxy(dataSource);
         this.dialect = new H2SequenceDialect();
+        this.batchSize = batchSize;
         setupH2Functions();
     }
     
@@ -71,6 +74,11 @@ public class TestDomaConfig implements Config {
     public Dialect getDialect() {
         return this.dialect;
     }
+
+    @Override
+    public int getBatchSize() {
+        return this.batchSize;
+    }
     
     @Bean
     @Primary
@@ -1,13 +1,24 @@
 package com.example.ecbackend.controller;
 
+import com.example.ecbackend.domain.SessionKey;
 import com.example.ecbackend.entity.CartItem;
+import com.example.ecbackend.entity.CartShortage;
+import com.example.ecbackend.entity.CartViewLine;
+import com.example.ecbackend.model.CartAvailability;
+import com.example.ecbackend.model.CartOperation;
+import com.example.ecbackend.model.CartSummary;
+import com.example.ecbackend.model.CartSyncRequest;
+import com.example.ecbackend.model.CartView;
+import com.example.ecbackend.model.FieldSelection;
 import com.example.ecbackend.service.CartService;
+import com.example.ecbackend.service.IdempotencyStore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -22,16 +33,23 @@ import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequ
 import org.springframework.web.bind.MissingRequestHeaderException;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willDoNothing;
@@ -67,8 +85,12 @@ class CartControllerTest {
     @MockBean
     private CartService cartService;
 
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
     private final String SESSION_ID_HEADER = "X-Session-ID";
-    private final String sessionId = "test-session-id";
+    private final String sessionId = "123e4567-e89b-12d3-a456-426614174000";
+    private final SessionKey sessionKey = SessionKey.parse(sessionId);
 
     // テスト用データ生成ヘルパーメソッド
     private CartItem createCartItem(Long id, Long cartId, Long productId, int quantity) {
@@ -112,6 +134,13 @@ class CartControllerTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody != null ? objectMapper.writeValueAsString(requestBody) : ""))
                         .andDo(print());
+            case "PATCH":
+                return mockMvc.perform(patch(uri)
+                        .with(withCsrf ? SecurityMockMvcRequestPostProcessors.csrf() : req -> req)
+                        .header(SESSION_ID_HEADER, sessionId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody != null ? objectMapper.writeValueAsString(requestBody) : ""))
+                        .andDo(print());
             case "DELETE":
                 return mockMvc.perform(delete(uri)
                         .with(withCsrf ? SecurityMockMvcRequestPostProcessors.csrf() : req -> req)
@@ -122,6 +151,14 @@ class CartControllerTest {
         }
     }
 
+    /**
+     * IdempotencyFilter と同じ形式のフィンガープリント (メソッドとパス + ボディのSHA-256)
+     */
+    private static String fingerprint(String target, String body) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+        return target + " " + HexFormat.of().formatHex(digest);
+    }
+
     @Nested
     @DisplayName("GET /api/cart: カート内商品一覧取得")
     class GetCartTests {
@@ -134,7 +171,7 @@ class CartControllerTest {
                 createCartItem(1L, 1L, 1L, 2),
                 createCartItem(2L, 1L, 2L, 1)
             );
-            given(cartService.getCartItems(sessionId)).willReturn(cartItems);
+            given(cartService.getCartItems(eq(sessionKey), any(FieldSelection.class))).willReturn(cartItems);
 
             // When: カート一覧APIを呼び出す
             ResultActions response = performRequest("GET", "/api/cart", sessionId, null, false);
@@ -151,14 +188,14 @@ class CartControllerTest {
                 .andExpect(jsonPath("$[1].id", is(2)))
                 .andExpect(jsonPath("$[1].quantity", is(1)));
 
-            verify(cartService, times(1)).getCartItems(sessionId);
+            verify(cartService, times(1)).getCartItems(eq(sessionKey), any(FieldSelection.class));
         }
         
         @Test
         @DisplayName("空のカートの場合は空配列を返す")
         void shouldReturnEmptyArrayWhenCartIsEmpty() throws Exception {
             // Given: カートが空の場合
-            given(cartService.getCartItems(sessionId)).willReturn(Collections.emptyList());
+            given(cartService.getCartItems(eq(sessionKey), any(FieldSelection.class))).willReturn(Collections.emptyList());
 
             // When: カート一覧APIを呼び出す
             ResultActions response = performRequest("GET", "/api/cart", sessionId, null, false);
@@ -170,7 +207,7 @@ class CartControllerTest {
                 .andExpect(jsonPath("$", hasSize(0)))
                 .andExpect(jsonPath("$", is(empty())));
 
-            verify(cartService, times(1)).getCartItems(sessionId);
+            verify(cartService, times(1)).getCartItems(eq(sessionKey), any(FieldSelection.class));
         }
         
         @Test
@@ -184,7 +221,7 @@ class CartControllerTest {
             // Then: 400 Bad Requestが返される
             response.andExpect(status().isBadRequest());
             
-            verify(cartService, never()).getCartItems(any());
+            verify(cartService, never()).getCartItems(any(), any(FieldSelection.class));
         }
         
         @Test
@@ -192,7 +229,7 @@ class CartControllerTest {
         void shouldReturnInternalServerErrorWhenUnexpectedExceptionOccurs() throws Exception {
             // Given: サービス層で予期しない例外が発生する
             String errorMessage = "Database connection error";
-            given(cartService.getCartItems(sessionId)).willThrow(new RuntimeException(errorMessage));
+            given(cartService.getCartItems(eq(sessionKey), any(FieldSelection.class))).willThrow(new RuntimeException(errorMessage));
             
             // When: カート一覧APIを呼び出す
             ResultActions response = performRequest("GET", "/api/cart", sessionId, null, false);
@@ -200,7 +237,160 @@ class CartControllerTest {
             // Then: 500エラーが返される
             response.andExpect(status().isInternalServerError());
             
-            verify(cartService, times(1)).getCartItems(sessionId);
+            verify(cartService, times(1)).getCartItems(eq(sessionKey), any(FieldSelection.class));
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/cart/view: カート表示取得")
+    class GetCartViewTests {
+
+        @Test
+        @DisplayName("商品名・単価・小計・合計を含むカート表示を取得できる")
+        void shouldReturnCartView() throws Exception {
+            // Given: カート表示が存在する
+            CartViewLine line = new CartViewLine();
+            line.setItemId(1L);
+            line.setProductId(1L);
+            line.setProductName("テスト商品1");
+            line.setUnitPrice(1000);
+            line.setQuantity(2);
+            line.setSubtotal(2000);
+            line.setCartTotal(2000);
+            given(cartService.getCartView(sessionKey)).willReturn(CartView.of(List.of(line)));
+
+            // When: カート表示APIを呼び出す
+            ResultActions response = performRequest("GET", "/api/cart/view", sessionId, null, false);
+
+            // Then: 明細と合計が返される
+            response
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].productName", is("テスト商品1")))
+                .andExpect(jsonPath("$.items[0].unitPrice", is(1000)))
+                .andExpect(jsonPath("$.items[0].subtotal", is(2000)))
+                .andExpect(jsonPath("$.totalAmount", is(2000)));
+
+            verify(cartService, times(1)).getCartView(sessionKey);
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/cart/summary: カートの要約取得")
+    class GetCartSummaryTests {
+
+        @Test
+        @DisplayName("商品点数と合計金額を取得できる")
+        void shouldReturnCartSummary() throws Exception {
+            // Given: 商品3点・合計5000円のカート
+            given(cartService.getCartSummary(sessionKey)).willReturn(new CartSummary(3, 5000));
+
+            // When: 要約APIを呼び出す
+            ResultActions response = performRequest("GET", "/api/cart/summary", sessionId, null, false);
+
+            // Then: 2つの値のみが返される
+            response
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.itemCount", is(3)))
+                .andExpect(jsonPath("$.totalAmount", is(5000)));
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/cart/availability: 注文前の在庫確認")
+    class GetAvailabilityTests {
+
+        @Test
+        @DisplayName("在庫が不足している明細と不足数を返す")
+        void shouldReturnShortages() throws Exception {
+            // Given: 商品1の在庫が1個不足している
+            CartShortage shortage = new CartShortage();
+            shortage.setItemId(1L);
+            shortage.setProductId(1L);
+            shortage.setProductName("テスト商品1");
+            shortage.setRequested(2);
+            shortage.setAvailable(1);
+            shortage.setShortfall(1);
+            given(cartService.getAvailability(sessionKey)).willReturn(new CartAvailability(List.of(shortage)));
+
+            // When: 在庫確認APIを呼び出す
+            ResultActions response = performRequest("GET", "/api/cart/availability", sessionId, null, false);
+
+            // Then: 注文できないことと不足している明細が返される
+            response
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available", is(false)))
+                .andExpect(jsonPath("$.shortages", hasSize(1)))
+                .andExpect(jsonPath("$.shortages[0].itemId", is(1)))
+                .andExpect(jsonPath("$.shortages[0].requested", is(2)))
+                .andExpect(jsonPath("$.shortages[0].available", is(1)))
+                .andExpect(jsonPath("$.shortages[0].shortfall", is(1)));
+        }
+
+        @Test
+        @DisplayName("在庫が足りていれば空の一覧を返す")
+        void shouldReturnAvailableWhenNoShortage() throws Exception {
+            // Given: 不足している明細がない
+            given(cartService.getAvailability(sessionKey)).willReturn(new CartAvailability(List.of()));
+
+            // When & Then
+            performRequest("GET", "/api/cart/availability", sessionId, null, false)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available", is(true)))
+                .andExpect(jsonPath("$.shortages", hasSize(0)));
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/cart/count: カートバッジの商品点数取得")
+    class GetCartCountTests {
+
+        @Test
+        @DisplayName("商品点数とETagを返す")
+        void shouldReturnCountWithEtag() throws Exception {
+            // Given: 商品3点のカート
+            given(cartService.getCartCount(sessionKey)).willReturn(3);
+
+            // When: 点数APIを呼び出す
+            ResultActions response = performRequest("GET", "/api/cart/count", sessionId, null, false);
+
+            // Then: 点数とETagが返される
+            response
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(jsonPath("$.count", is(3)));
+        }
+
+        @Test
+        @DisplayName("点数が変わっていなければ本文なしの304を返す")
+        void shouldReturnNotModifiedWhenEtagMatches() throws Exception {
+            // Given: 商品3点のカート
+            given(cartService.getCartCount(sessionKey)).willReturn(3);
+
+            // When: 前回のETagを付けて呼び出す
+            mockMvc.perform(get("/api/cart/count")
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .header("If-None-Match", "\"3\""))
+                .andDo(print())
+                // Then: 304が返される
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        }
+
+        @Test
+        @DisplayName("点数が変わっていれば新しい点数を返す")
+        void shouldReturnNewCountWhenEtagDiffers() throws Exception {
+            // Given: 商品が追加され4点になった
+            given(cartService.getCartCount(sessionKey)).willReturn(4);
+
+            // When: 3点のときのETagを付けて呼び出す
+            mockMvc.perform(get("/api/cart/count")
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .header("If-None-Match", "\"3\""))
+                // Then: 200と新しい点数が返される
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.count", is(4)));
         }
     }
 
@@ -215,7 +405,7 @@ class CartControllerTest {
             CartItem itemToAdd = createCartItem(null, null, 1L, 2);
             CartItem addedItem = createCartItem(1L, 1L, 1L, 2);
             
-            given(cartService.addToCart(eq(sessionId), eq(1L), eq(2))).willReturn(addedItem);
+            given(cartService.addToCart(eq(sessionKey), eq(1L), eq(2))).willReturn(addedItem);
 
             // When: カート追加APIを呼び出す
             ResultActions response = performRequest("POST", "/api/cart", sessionId, itemToAdd, true);
@@ -229,7 +419,7 @@ class CartControllerTest {
                 .andExpect(jsonPath("$.productId", is(1)))
                 .andExpect(jsonPath("$.quantity", is(2)));
 
-            verify(cartService, times(1)).addToCart(sessionId, 1L, 2);
+            verify(cartService, times(1)).addToCart(sessionKey, 1L, 2);
         }
         
         @Test
@@ -256,7 +446,7 @@ class CartControllerTest {
             // productIdが設定されていない
             
             // Mockサービス層でエラーをスロー
-            given(cartService.addToCart(anyString(), isNull(), anyInt()))
+            given(cartService.addToCart(any(SessionKey.class), isNull(), anyInt()))
                 .willThrow(new IllegalArgumentException("Product ID cannot be null"));
             
             // When: 不正なデータでAPIを呼び出す
@@ -279,18 +469,18 @@ class CartControllerTest {
             ResultMatcher expectedStatus;
             if (quantity < 0) {
                 // 負の数量はバリデーションエラー
-                given(cartService.addToCart(eq(sessionId), eq(1L), eq(quantity)))
+                given(cartService.addToCart(eq(sessionKey), eq(1L), eq(quantity)))
                     .willThrow(new IllegalArgumentException("Quantity must be positive"));
                 expectedStatus = status().isBadRequest();
             } else if (quantity > 99) {
                 // 過剰な数量はバリデーションエラー
-                given(cartService.addToCart(eq(sessionId), eq(1L), eq(quantity)))
+                given(cartService.addToCart(eq(sessionKey), eq(1L), eq(quantity)))
                     .willThrow(new IllegalArgumentException("Quantity exceeds maximum allowed"));
                 expectedStatus = status().isBadRequest();
             } else {
                 // 正常範囲内
                 CartItem addedItem = createCartItem(1L, 1L, 1L, quantity);
-                given(cartService.addToCart(eq(sessionId), eq(1L), eq(quantity))).willReturn(addedItem);
+                given(cartService.addToCart(eq(sessionKey), eq(1L), eq(quantity))).willReturn(addedItem);
                 expectedStatus = status().isCreated();
             }
             
@@ -307,7 +497,7 @@ class CartControllerTest {
             // Given: サービス層で例外が発生する場合
             CartItem itemToAdd = createCartItem(null, null, 1L, 2);
             
-            given(cartService.addToCart(anyString(), anyLong(), anyInt()))
+            given(cartService.addToCart(any(SessionKey.class), anyLong(), anyInt()))
                 .willThrow(new RuntimeException("Database error"));
 
             // When: APIを呼び出す
@@ -316,7 +506,223 @@ class CartControllerTest {
             // Then: 500 Internal Server Errorが返される
             response.andExpect(status().isInternalServerError());
             
-            verify(cartService, times(1)).addToCart(eq(sessionId), eq(1L), eq(2));
+            verify(cartService, times(1)).addToCart(eq(sessionKey), eq(1L), eq(2));
+        }
+        @Test
+        @DisplayName("在庫が不足している場合は409エラーを返す")
+        void shouldReturnConflictWhenStockIsInsufficient() throws Exception {
+            // Given: 在庫を超える数量
+            CartItem itemToAdd = createCartItem(null, null, 1L, 50);
+            given(cartService.addToCart(sessionKey, 1L, 50))
+                .willThrow(new IllegalStateException("Insufficient stock for product id: 1"));
+
+            // When: カート追加APIを呼び出す
+            ResultActions response = performRequest("POST", "/api/cart", sessionId, itemToAdd, true);
+
+            // Then: 409 Conflictが返される
+            response.andExpect(status().isConflict());
+        }
+    }
+
+    @Nested
+    @DisplayName("PATCH /api/cart: カート操作の一括適用")
+    class ApplyOperationsTests {
+
+        @Test
+        @DisplayName("操作のリストを1リクエストで適用し、適用後のカートを返す")
+        void shouldApplyOperationsAndReturnCart() throws Exception {
+            // Given: add / update / remove を含むリクエスト
+            String body = "[{\"op\":\"add\",\"productId\":1,\"quantity\":2},"
+                + "{\"op\":\"update\",\"itemId\":2,\"quantity\":3},"
+                + "{\"op\":\"remove\",\"itemId\":3}]";
+            given(cartService.applyOperations(eq(sessionKey), anyList()))
+                .willReturn(List.of(createCartItem(1L, 1L, 1L, 2), createCartItem(2L, 1L, 2L, 3)));
+
+            // When: 一括操作APIを呼び出す
+            ResultActions response = mockMvc.perform(patch("/api/cart")
+                    .with(SecurityMockMvcRequestPostProcessors.csrf())
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body))
+                .andDo(print());
+
+            // Then: 適用後のカートが返され、操作は指定順にサービスへ渡される
+            response
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].quantity", is(3)));
+
+            ArgumentCaptor<List<CartOperation>> captor = ArgumentCaptor.forClass(List.class);
+            verify(cartService, times(1)).applyOperations(eq(sessionKey), captor.capture());
+            assertThat(captor.getValue())
+                .extracting(CartOperation::getOp, CartOperation::getProductId, CartOperation::getItemId, CartOperation::getQuantity)
+                .containsExactly(
+                    tuple(CartOperation.Op.ADD, 1L, null, 2),
+                    tuple(CartOperation.Op.UPDATE, null, 2L, 3),
+                    tuple(CartOperation.Op.REMOVE, null, 3L, 0));
+        }
+
+        @Test
+        @DisplayName("不正な操作が含まれる場合は400エラーを返す")
+        void shouldReturnBadRequestWhenOperationIsInvalid() throws Exception {
+            // Given: サービス層で検証エラーとなる
+            given(cartService.applyOperations(eq(sessionKey), anyList()))
+                .willThrow(new IllegalArgumentException("Quantity must be positive"));
+
+            // When: 一括操作APIを呼び出す
+            ResultActions response = performRequest("PATCH", "/api/cart", sessionId,
+                List.of(CartOperation.update(1L, 0)), true);
+
+            // Then: 400 Bad Requestが返される
+            response
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Quantity must be positive")));
+        }
+
+        @Test
+        @DisplayName("未知の操作種別は400エラーを返す")
+        void shouldReturnBadRequestForUnknownOp() throws Exception {
+            // When: 未知のopを含むリクエスト
+            ResultActions response = mockMvc.perform(patch("/api/cart")
+                    .with(SecurityMockMvcRequestPostProcessors.csrf())
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[{\"op\":\"replace\",\"itemId\":1}]"))
+                .andDo(print());
+
+            // Then: 400 Bad Requestが返され、サービスは呼ばれない
+            response.andExpect(status().isBadRequest());
+            verifyNoInteractions(cartService);
+        }
+    }
+
+    @Nested
+    @DisplayName("PUT /api/cart/sync: ブラウザ側カートとの突き合わせ")
+    class SyncCartTests {
+
+        @Test
+        @DisplayName("ブラウザ側のカートを受け取り、突き合わせ後のカートを返す")
+        void shouldSyncCart() throws Exception {
+            // Given: localStorage のカートと最終変更日時
+            String body = "{\"items\":[{\"productId\":1,\"quantity\":2},{\"productId\":3,\"quantity\":1}],"
+                + "\"clientUpdatedAt\":\"2024-05-01T10:15:30.000Z\"}";
+            given(cartService.syncCart(eq(sessionKey), any(CartSyncRequest.class)))
+                .willReturn(List.of(createCartItem(1L, 1L, 1L, 2), createCartItem(2L, 1L, 3L, 1)));
+
+            // When: 突き合わせAPIを呼び出す
+            ResultActions response = mockMvc.perform(put("/api/cart/sync")
+                    .with(SecurityMockMvcRequestPostProcessors.csrf())
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body))
+                .andDo(print());
+
+            // Then: 突き合わせ後のカートが返され、リクエストの内容がサービスへ渡される
+            response
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].productId", is(3)));
+
+            ArgumentCaptor<CartSyncRequest> captor = ArgumentCaptor.forClass(CartSyncRequest.class);
+            verify(cartService, times(1)).syncCart(eq(sessionKey), captor.capture());
+            assertThat(captor.getValue().getClientUpdatedAt()).isEqualTo(Instant.parse("2024-05-01T10:15:30Z"));
+            assertThat(captor.getValue().getItems())
+                .extracting(CartSyncRequest.Item::getProductId, CartSyncRequest.Item::getQuantity)
+                .containsExactly(tuple(1L, 2), tuple(3L, 1));
+        }
+
+        @Test
+        @DisplayName("商品の指定が不正な場合は400エラーを返す")
+        void shouldReturnBadRequestWhenItemsAreInvalid() throws Exception {
+            // Given: サービス層で検証エラーとなる
+            given(cartService.syncCart(eq(sessionKey), any(CartSyncRequest.class)))
+                .willThrow(new IllegalArgumentException("Duplicate product ID: 1"));
+
+            // When: 突き合わせAPIを呼び出す
+            ResultActions response = performRequest("PUT", "/api/cart/sync", sessionId,
+                new CartSyncRequest(List.of(new CartSyncRequest.Item(1L, 1), new CartSyncRequest.Item(1L, 1)), null), true);
+
+            // Then: 400 Bad Requestが返される
+            response
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Duplicate product ID: 1")));
+        }
+    }
+
+    @Nested
+    @DisplayName("POST /api/cart/{id}/increment: 数量の加減算")
+    class IncrementCartItemTests {
+
+        @Test
+        @DisplayName("加算後のカート内商品を返す")
+        void shouldReturnIncrementedItem() throws Exception {
+            // Given: 加算後の商品
+            given(cartService.incrementCartItem(sessionKey, 1L, 2))
+                .willReturn(Optional.of(createCartItem(1L, 1L, 1L, 4)));
+
+            // When: 2加算
+            ResultActions response = performRequest("POST", "/api/cart/1/increment?delta=2", sessionId, null, true);
+
+            // Then: 200と更新後の数量が返される
+            response
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(4)));
+        }
+
+        @Test
+        @DisplayName("数量が0以下になり削除された場合は204を返す")
+        void shouldReturnNoContentWhenDeleted() throws Exception {
+            // Given: 減算により削除される
+            given(cartService.incrementCartItem(sessionKey, 1L, -1)).willReturn(Optional.empty());
+
+            // When: 1減算
+            ResultActions response = performRequest("POST", "/api/cart/1/increment?delta=-1", sessionId, null, true);
+
+            // Then: 204 No Content
+            response.andExpect(status().isNoContent());
+        }
+
+        @Test
+        @DisplayName("このカートに商品が存在しない場合は404を返す")
+        void shouldReturnNotFoundWhenItemMissing() throws Exception {
+            // Given: 商品が存在しない
+            given(cartService.incrementCartItem(sessionKey, 99L, 1))
+                .willThrow(new NoSuchElementException("Cart item not found"));
+
+            // When: delta省略 (1加算)
+            ResultActions response = performRequest("POST", "/api/cart/99/increment", sessionId, null, true);
+
+            // Then: 404 Not Found
+            response.andExpect(status().isNotFound());
+        }
+    }
+
+    @Nested
+    @DisplayName("DELETE /api/cart: カートを空にする")
+    class ClearCartTests {
+
+        @Test
+        @DisplayName("カート内商品を削除し、カート自体は残す")
+        void shouldClearCart() throws Exception {
+            // When: カートを空にするAPIを呼び出す
+            ResultActions response = performRequest("DELETE", "/api/cart", sessionId, null, true);
+
+            // Then: 204 No Contentが返される
+            response.andExpect(status().isNoContent());
+            verify(cartService, times(1)).clearCart(sessionKey);
+            verify(cartService, never()).deleteCart(any(SessionKey.class));
+        }
+
+        @Test
+        @DisplayName("drop=trueの場合はカート自体も削除する")
+        void shouldDropCart() throws Exception {
+            // When: drop=trueで呼び出す
+            ResultActions response = performRequest("DELETE", "/api/cart?drop=true", sessionId, null, true);
+
+            // Then: 204 No Contentが返される
+            response.andExpect(status().isNoContent());
+            verify(cartService, times(1)).deleteCart(sessionKey);
+            verify(cartService, never()).clearCart(any(SessionKey.class));
         }
     }
 
@@ -332,7 +738,7 @@ class CartControllerTest {
             CartItem itemToUpdate = new CartItem();
             itemToUpdate.setQuantity(3);
             
-            willDoNothing().given(cartService).updateCartItem(sessionId, cartItemId, 3);
+            willDoNothing().given(cartService).updateCartItem(sessionKey, cartItemId, 3);
 
             // When: カート更新APIを呼び出す
             ResultActions response = performRequest("PUT", "/api/cart/" + cartItemId, sessionId, itemToUpdate, true);
@@ -340,7 +746,7 @@ class CartControllerTest {
             // Then: 204 No Contentが返される
             response.andExpect(status().isNoContent());
             
-            verify(cartService, times(1)).updateCartItem(sessionId, cartItemId, 3);
+            verify(cartService, times(1)).updateCartItem(sessionKey, cartItemId, 3);
         }
         
         @Test
@@ -352,7 +758,7 @@ class CartControllerTest {
             itemToUpdate.setQuantity(3);
             
             willThrow(new NoSuchElementException("Cart item not found"))
-                .given(cartService).updateCartItem(sessionId, nonExistentItemId, 3);
+                .given(cartService).updateCartItem(sessionKey, nonExistentItemId, 3);
 
             // When: 存在しないIDでAPIを呼び出す
             ResultActions response = performRequest("PUT", "/api/cart/" + nonExistentItemId, sessionId, itemToUpdate, true);
@@ -360,7 +766,7 @@ class CartControllerTest {
             // Then: 404 Not Foundが返される
             response.andExpect(status().isNotFound());
             
-            verify(cartService, times(1)).updateCartItem(sessionId, nonExistentItemId, 3);
+            verify(cartService, times(1)).updateCartItem(sessionKey, nonExistentItemId, 3);
         }
         
         @Test
@@ -377,7 +783,7 @@ class CartControllerTest {
             // Then: 400 Bad Requestが返される（型変換エラー）
             response.andExpect(status().isBadRequest());
             
-            verify(cartService, never()).updateCartItem(anyString(), anyLong(), anyInt());
+            verify(cartService, never()).updateCartItem(any(SessionKey.class), anyLong(), anyInt());
         }
         
         @ParameterizedTest
@@ -394,16 +800,16 @@ class CartControllerTest {
             if (quantity < 0) {
                 // 負の数量はバリデーションエラー
                 willThrow(new IllegalArgumentException("Quantity must be positive"))
-                    .given(cartService).updateCartItem(sessionId, cartItemId, quantity);
+                    .given(cartService).updateCartItem(sessionKey, cartItemId, quantity);
                 expectedStatus = status().isBadRequest();
             } else if (quantity > 99) {
                 // 過剰な数量はバリデーションエラー
                 willThrow(new IllegalArgumentException("Quantity exceeds maximum allowed"))
-                    .given(cartService).updateCartItem(sessionId, cartItemId, quantity);
+                    .given(cartService).updateCartItem(sessionKey, cartItemId, quantity);
                 expectedStatus = status().isBadRequest();
             } else {
                 // 正常範囲内
-                willDoNothing().given(cartService).updateCartItem(sessionId, cartItemId, quantity);
+                willDoNothing().given(cartService).updateCartItem(sessionKey, cartItemId, quantity);
                 expectedStatus = status().isNoContent();
             }
             
@@ -423,7 +829,7 @@ class CartControllerTest {
             itemToUpdate.setQuantity(3);
             
             willThrow(new SecurityException("Access denied to cart item"))
-                .given(cartService).updateCartItem(sessionId, cartItemId, 3);
+                .given(cartService).updateCartItem(sessionKey, cartItemId, 3);
             
             // When: カート更新APIを呼び出す
             ResultActions response = performRequest("PUT", "/api/cart/" + cartItemId, sessionId, itemToUpdate, true);
@@ -431,7 +837,7 @@ class CartControllerTest {
             // Then: 403 Forbiddenが返される
             response.andExpect(status().isForbidden());
             
-            verify(cartService, times(1)).updateCartItem(sessionId, cartItemId, 3);
+            verify(cartService, times(1)).updateCartItem(sessionKey, cartItemId, 3);
         }
     }
 
@@ -445,7 +851,7 @@ class CartControllerTest {
             // Given: 削除する商品ID
             Long cartItemId = 1L;
             
-            willDoNothing().given(cartService).removeFromCart(sessionId, cartItemId);
+            willDoNothing().given(cartService).removeFromCart(sessionKey, cartItemId);
 
             // When: カート削除APIを呼び出す
             ResultActions response = performRequest("DELETE", "/api/cart/" + cartItemId, sessionId, null, true);
@@ -453,7 +859,7 @@ class CartControllerTest {
             // Then: 204 No Contentが返される
             response.andExpect(status().isNoContent());
             
-            verify(cartService, times(1)).removeFromCart(sessionId, cartItemId);
+            verify(cartService, times(1)).removeFromCart(sessionKey, cartItemId);
         }
         
         @Test
@@ -463,7 +869,7 @@ class CartControllerTest {
             Long nonExistentItemId = 999L;
             
             willThrow(new NoSuchElementException("Cart item not found"))
-                .given(cartService).removeFromCart(sessionId, nonExistentItemId);
+                .given(cartService).removeFromCart(sessionKey, nonExistentItemId);
 
             // When: 存在しないIDでAPIを呼び出す
             ResultActions response = performRequest("DELETE", "/api/cart/" + nonExistentItemId, sessionId, null, true);
@@ -471,7 +877,7 @@ class CartControllerTest {
             // Then: 404 Not Foundが返される
             response.andExpect(status().isNotFound());
             
-            verify(cartService, times(1)).removeFromCart(sessionId, nonExistentItemId);
+            verify(cartService, times(1)).removeFromCart(sessionKey, nonExistentItemId);
         }
         
         @Test
@@ -486,7 +892,7 @@ class CartControllerTest {
             // Then: 400 Bad Requestが返される（型変換エラー）
             response.andExpect(status().isBadRequest());
             
-            verify(cartService, never()).removeFromCart(anyString(), anyLong());
+            verify(cartService, never()).removeFromCart(any(SessionKey.class), anyLong());
         }
         
         @Test
@@ -496,7 +902,7 @@ class CartControllerTest {
             Long cartItemId = 1L;
             
             willThrow(new SecurityException("Access denied to cart item"))
-                .given(cartService).removeFromCart(sessionId, cartItemId);
+                .given(cartService).removeFromCart(sessionKey, cartItemId);
             
             // When: カート削除APIを呼び出す
             ResultActions response = performRequest("DELETE", "/api/cart/" + cartItemId, sessionId, null, true);
@@ -504,10 +910,147 @@ class CartControllerTest {
             // Then: 403 Forbiddenが返される
             response.andExpect(status().isForbidden());
             
-            verify(cartService, times(1)).removeFromCart(sessionId, cartItemId);
+            verify(cartService, times(1)).removeFromCart(sessionKey, cartItemId);
         }
     }
     
+    @Nested
+    @DisplayName("Idempotency-Key: 更新リクエストの再送検出")
+    class IdempotencyKeyTests {
+
+        private static final String IDEMPOTENCY_KEY = "op-1";
+
+        @Test
+        @DisplayName("初回のリクエストは処理し、応答を記録する")
+        void shouldRecordResponseOfFirstRequest() throws Exception {
+            // Given: 未使用のキー
+            String content = objectMapper.writeValueAsString(createCartItem(null, null, 1L, 2));
+            given(idempotencyStore.begin(sessionKey, IDEMPOTENCY_KEY, fingerprint("POST /api/cart", content)))
+                .willReturn(Optional.empty());
+            given(cartService.addToCart(sessionKey, 1L, 2)).willReturn(createCartItem(1L, 1L, 1L, 2));
+
+            // When: Idempotency-Key を付けてカート追加APIを呼び出す
+            mockMvc.perform(post("/api/cart")
+                    .with(SecurityMockMvcRequestPostProcessors.csrf())
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .header("Idempotency-Key", IDEMPOTENCY_KEY)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(content))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+            // Then: 201の応答がキーに記録される
+            ArgumentCaptor<IdempotencyStore.StoredResponse> captor = ArgumentCaptor.forClass(IdempotencyStore.StoredResponse.class);
+            verify(idempotencyStore).complete(eq(sessionKey), eq(IDEMPOTENCY_KEY), captor.capture());
+            assertThat(captor.getValue().getStatus()).isEqualTo(201);
+            assertThat(new String(captor.getValue().getBody(), StandardCharsets.UTF_8)).contains("\"productId\":1");
+        }
+
+        @Test
+        @DisplayName("再送されたリクエストは処理せず、記録した応答を返す")
+        void shouldReplayRecordedResponse() throws Exception {
+            // Given: 処理済みのキー
+            byte[] body = "{\"id\":1,\"productId\":1,\"quantity\":2}".getBytes(StandardCharsets.UTF_8);
+            String content = objectMapper.writeValueAsString(createCartItem(null, null, 1L, 2));
+            given(idempotencyStore.begin(sessionKey, IDEMPOTENCY_KEY, fingerprint("POST /api/cart", content)))
+                .willReturn(Optional.of(new IdempotencyStore.StoredResponse(201, MediaType.APPLICATION_JSON_VALUE, body)));
+
+            // When: 同じキーで再送する
+            mockMvc.perform(post("/api/cart")
+                    .with(SecurityMockMvcRequestPostProcessors.csrf())
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .header("Idempotency-Key", IDEMPOTENCY_KEY)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(content))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.quantity", is(2)));
+
+            // Then: カートは操作されない
+            verifyNoInteractions(cartService);
+        }
+
+        @Test
+        @DisplayName("同じキーを別の内容のリクエストに使った場合は400エラーを返す")
+        void shouldRejectKeyReusedWithDifferentBody() throws Exception {
+            // Given: 数量2の追加で使用済みのキーに、数量3の追加を送る
+            String first = objectMapper.writeValueAsString(createCartItem(null, null, 1L, 2));
+            String second = objectMapper.writeValueAsString(createCartItem(null, null, 1L, 3));
+            assertThat(fingerprint("POST /api/cart", second)).isNotEqualTo(fingerprint("POST /api/cart", first));
+            given(idempotencyStore.begin(sessionKey, IDEMPOTENCY_KEY, fingerprint("POST /api/cart", second)))
+                .willThrow(new IllegalArgumentException("Idempotency-Key was already used for a different request"));
+
+            // When: 同じキーで別の内容を送る
+            mockMvc.perform(post("/api/cart")
+                    .with(SecurityMockMvcRequestPostProcessors.csrf())
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .header("Idempotency-Key", IDEMPOTENCY_KEY)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(second))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status", is(400)));
+
+            // Then: カートは操作されない
+            verifyNoInteractions(cartService);
+        }
+
+        @Test
+        @DisplayName("同じキーのリクエストが処理中の場合は409エラーを返す")
+        void shouldReturnConflictWhileInProgress() throws Exception {
+            // Given: 処理中のキー
+            given(idempotencyStore.begin(sessionKey, IDEMPOTENCY_KEY, "DELETE /api/cart/1"))
+                .willThrow(new IllegalStateException("Request with the same Idempotency-Key is in progress"));
+
+            // When: 同じキーで削除APIを呼び出す
+            mockMvc.perform(delete("/api/cart/1")
+                    .with(SecurityMockMvcRequestPostProcessors.csrf())
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .header("Idempotency-Key", IDEMPOTENCY_KEY))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status", is(409)));
+
+            // Then: カートは操作されない
+            verifyNoInteractions(cartService);
+        }
+
+        @Test
+        @DisplayName("処理が500エラーになった場合はキーを解放し、再実行を許可する")
+        void shouldReleaseKeyOnServerError() throws Exception {
+            // Given: サービスでシステムエラーが発生する
+            given(idempotencyStore.begin(sessionKey, IDEMPOTENCY_KEY, "DELETE /api/cart")).willReturn(Optional.empty());
+            willThrow(new RuntimeException("Simulated failure")).given(cartService).clearCart(sessionKey);
+
+            // When: Idempotency-Key を付けてカートを空にする
+            mockMvc.perform(delete("/api/cart")
+                    .with(SecurityMockMvcRequestPostProcessors.csrf())
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .header("Idempotency-Key", IDEMPOTENCY_KEY))
+                .andExpect(status().isInternalServerError());
+
+            // Then: 応答は記録されず、キーが解放される
+            verify(idempotencyStore).release(sessionKey, IDEMPOTENCY_KEY);
+            verify(idempotencyStore, never()).complete(any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("参照系のリクエストではキーを記録しない")
+        void shouldIgnoreKeyOnReadRequests() throws Exception {
+            // Given: カートは空
+            given(cartService.getCartItems(eq(sessionKey), any(FieldSelection.class))).willReturn(Collections.emptyList());
+
+            // When: Idempotency-Key を付けてGETする
+            mockMvc.perform(get("/api/cart")
+                    .header(SESSION_ID_HEADER, sessionId)
+                    .header("Idempotency-Key", IDEMPOTENCY_KEY))
+                .andExpect(status().isOk());
+
+            // Then: キーの記録は行われない
+            verifyNoInteractions(idempotencyStore);
+        }
+    }
+
     @Nested
     @DisplayName("例外ハンドリングの全般テスト")
     class ExceptionHandlingTests {
@@ -522,14 +1065,44 @@ class CartControllerTest {
                 .andDo(print())
                 .andExpect(status().isBadRequest());
             
-            verify(cartService, never()).getCartItems(anyString());
+            verify(cartService, never()).getCartItems(any(SessionKey.class), any(FieldSelection.class));
+        }
+        
+        @ParameterizedTest
+        @ValueSource(strings = {"test-session-id", "123e4567-e89b-12d3-a456-42661417400", "123e4567xe89b-12d3-a456-426614174000", "123e4567-e89b-12d3-a456-42661417400g"})
+        @DisplayName("セッションIDがUUID形式でない場合はDBに到達する前に400エラーを返す")
+        void shouldReturn400WhenSessionIdIsMalformed(String malformedSessionId) throws Exception {
+            // When: 不正な形式のセッションIDでAPIを呼び出す
+            ResultActions response = performRequest("GET", "/api/cart", malformedSessionId, null, false);
+            
+            // Then: 400 Bad Requestとエラーメッセージが返される
+            response
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status", is(400)))
+                .andExpect(jsonPath("$.message", is("セッションIDの形式が不正です")));
+            
+            verifyNoInteractions(cartService);
+        }
+        
+        @Test
+        @DisplayName("大文字のUUIDも小文字と同じセッションとして扱う")
+        void shouldTreatUpperCaseUuidAsSameSession() throws Exception {
+            // Given: 小文字のセッションキーでカートが存在する
+            given(cartService.getCartItems(eq(sessionKey), any(FieldSelection.class))).willReturn(Collections.emptyList());
+            
+            // When: 大文字のセッションIDでAPIを呼び出す
+            ResultActions response = performRequest("GET", "/api/cart", sessionId.toUpperCase(), null, false);
+            
+            // Then: 同じセッションキーでサービスが呼ばれる
+            response.andExpect(status().isOk());
+            verify(cartService, times(1)).getCartItems(eq(sessionKey), any(FieldSelection.class));
         }
         
         @Test
         @DisplayName("メモリ不足などのシステムエラーでは500エラーを返す")
         void shouldReturn500ForOutOfMemoryError() throws Exception {
             // Given: システムエラーが発生する場合
-            given(cartService.getCartItems(sessionId))
+            given(cartService.getCartItems(eq(sessionKey), any(FieldSelection.class)))
                 .willThrow(new OutOfMemoryError("Simulated system error"));
             
             // When: APIを呼び出す
@@ -539,4 +1112,4 @@ class CartControllerTest {
             response.andExpect(status().isInternalServerError());
         }
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,11 @@
 package com.example.ecbackend.controller;
 
+import com.example.ecbackend.service.IdempotencyStore;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -21,6 +23,10 @@ class HomeControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    // IdempotencyFilter の依存 (カートAPI以外では使用しない)
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
     @Test
     @WithMockUser
     @DisplayName("ルートパスにアクセスすると正常なレスポンスが返される")
@@ -2,6 +2,9 @@ package com.example.ecbackend.controller;
 
 import com.example.ecbackend.dao.ProductDao;
 import com.example.ecbackend.entity.Product;
+import com.example.ecbackend.service.IdempotencyStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -10,7 +13,9 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.security.test.context.support.WithMockUser;
 
@@ -19,6 +24,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
@@ -41,12 +47,19 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @DisplayName("ProductController: 商品APIのテスト")
 class ProductControllerTest {
 
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockBean
     private ProductDao productDao;
 
+    // IdempotencyFilter の依存 (カートAPI以外では使用しない)
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
     // テスト用データの準備
     private Product createTestProduct(Long id, String name, String description, int price) {
         Product product = new Product();
@@ -115,6 +128,110 @@ class ProductControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("/api/products?fields=: 部分レスポンス")
+    class FieldSelectionTests {
+
+        @Test
+        @DisplayName("指定した項目のみをSQLで射影して返す")
+        void shouldReturnOnlySelectedFields() throws Exception {
+            // Given: 射影クエリが選択カラムのみを返す
+            Product product = new Product();
+            product.setId(1L);
+            product.setName("テスト商品1");
+            product.setPrice(1000);
+            given(productDao.selectAllWithColumns("id, name, price")).willReturn(List.of(product));
+
+            // When: fields付きで商品一覧APIを呼び出す
+            ResultActions response = mockMvc.perform(get("/api/products")
+                .param("fields", "name,price")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print());
+
+            // Then: 選択した項目のみが出力される
+            response
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].name", is("テスト商品1")))
+                .andExpect(jsonPath("$[0].price", is(1000)))
+                .andExpect(jsonPath("$[0].description").doesNotExist())
+                .andExpect(jsonPath("$[0].stock").doesNotExist());
+
+            verify(productDao, never()).selectAll();
+        }
+
+        @Test
+        @DisplayName("不明な項目が指定された場合は400エラーを返す")
+        void shouldReturnBadRequestForUnknownField() throws Exception {
+            // When: 存在しない項目を指定
+            ResultActions response = mockMvc.perform(get("/api/products")
+                .param("fields", "name,secret")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print());
+
+            // Then: 400 Bad Requestが返され、DAOは呼ばれない
+            response.andExpect(status().isBadRequest());
+            verifyNoInteractions(productDao);
+        }
+    }
+
+    @Nested
+    @DisplayName("/api/products: バイナリ形式のコンテントネゴシエーション")
+    class BinaryContentNegotiationTests {
+
+        private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+
+        @Test
+        @DisplayName("Accept: application/cbor の場合はCBORで返す")
+        void shouldReturnCborWhenRequested() throws Exception {
+            // Given: 商品データが存在する
+            given(productDao.selectAll()).willReturn(List.of(
+                createTestProduct(1L, "テスト商品1", "商品1の説明", 1000)));
+
+            // When: CBORを要求して商品一覧APIを呼び出す
+            MvcResult result = mockMvc.perform(get("/api/products")
+                .accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CBOR))
+                .andReturn();
+
+            // Then: CBORとしてデコードできる
+            JsonNode body = cborMapper.readTree(result.getResponse().getContentAsByteArray());
+            assertThat(body.get(0).get("name").asText()).isEqualTo("テスト商品1");
+            assertThat(body.get(0).get("price").asInt()).isEqualTo(1000);
+        }
+
+        @Test
+        @DisplayName("Accept: application/x-jackson-smile の場合はSmileで返す")
+        void shouldReturnSmileWhenRequested() throws Exception {
+            // Given: 商品データが存在する
+            given(productDao.selectById(1L)).willReturn(createTestProduct(1L, "テスト商品1", "商品1の説明", 1000));
+
+            // When & Then: Smileで商品詳細が返される
+            mockMvc.perform(get("/api/products/{id}", 1L)
+                .accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE));
+        }
+
+        @Test
+        @DisplayName("エラー時のResultエンベロープもCBORで返す")
+        void shouldReturnErrorEnvelopeInCbor() throws Exception {
+            // When: 不正なfieldsをCBORで要求
+            MvcResult result = mockMvc.perform(get("/api/products")
+                .param("fields", "unknown")
+                .accept(CBOR))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(CBOR))
+                .andReturn();
+
+            // Then: Result形式のエラー情報が含まれる
+            JsonNode body = cborMapper.readTree(result.getResponse().getContentAsByteArray());
+            assertThat(body.get("status").asInt()).isEqualTo(400);
+            assertThat(body.get("message").asText()).contains("unknown");
+        }
+    }
+
     @Nested
     @DisplayName("/api/products/{id}: 商品詳細取得API")
     class GetProductByIdTests {
@@ -1,6 +1,10 @@
 package com.example.ecbackend.dao;
 
+import com.example.ecbackend.domain.SessionKey;
 import com.example.ecbackend.entity.Cart;
+import com.example.ecbackend.entity.CartShortage;
+import com.example.ecbackend.entity.CartViewLine;
+import com.example.ecbackend.entity.Product;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,9 +12,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 /**
  * CartDao のシンプルなテスト
@@ -21,29 +28,47 @@ import static org.assertj.core.api.Assertions.assertThat;
 @Transactional
 public class CartDaoTest {
 
+    // data.sqlの初期データのセッションID 00000000-0000-0000-0000-000000000001
+    private static final SessionKey SESSION_1 = SessionKey.parse("00000000-0000-0000-0000-000000000001");
+    private static final SessionKey NON_EXISTENT = SessionKey.parse("ffffffff-ffff-ffff-ffff-ffffffffffff");
+
     @Autowired
     private CartDao cartDao;
 
+    @Autowired
+    private CartItemDao cartItemDao;
+
+    @Autowired
+    private ProductDao productDao;
+
     @Test
-    @DisplayName("findBySessionId: 既存のカートを取得できる")
+    @DisplayName("findBySessionKey: 既存のカートを取得できる")
     void shouldFindExistingCart() {
-        // data.sqlの初期データにあるセッションIDで検索
-        Optional<Cart> cart = cartDao.findBySessionId("test-session-1");
+        // data.sqlの初期データにあるセッションキーで検索
+        Optional<Cart> cart = cartDao.findBySessionKey(SESSION_1);
         
         // 検証
         assertThat(cart).isPresent();
-        assertThat(cart.get().getSessionId()).isEqualTo("test-session-1");
+        assertThat(cart.get().getSessionKey()).isEqualTo(SESSION_1);
     }
     
     @Test
-    @DisplayName("findBySessionId: 存在しないセッションIDでは空のOptionalが返される")
-    void shouldReturnEmptyForNonExistentSessionId() {
-        // 存在しないセッションIDで検索
-        Optional<Cart> cart = cartDao.findBySessionId("non-existent-session");
+    @DisplayName("findBySessionKey: 存在しないセッションキーでは空のOptionalが返される")
+    void shouldReturnEmptyForNonExistentSessionKey() {
+        // 存在しないセッションキーで検索
+        Optional<Cart> cart = cartDao.findBySessionKey(NON_EXISTENT);
         
         // 検証
         assertThat(cart).isEmpty();
     }
+
+    @Test
+    @DisplayName("findItemCount: カートの商品点数のみを取得できる")
+    void shouldFindItemCount() {
+        // data.sqlの初期データ: カート1は数量2 + 1
+        assertThat(cartDao.findItemCount(SESSION_1)).contains(3);
+        assertThat(cartDao.findItemCount(NON_EXISTENT)).isEmpty();
+    }
     
     @Test
     @DisplayName("findById: 既存のIDでカートを取得できる")
@@ -54,7 +79,7 @@ public class CartDaoTest {
         // 検証
         assertThat(cart).isPresent();
         assertThat(cart.get().getId()).isEqualTo(1L);
-        assertThat(cart.get().getSessionId()).isEqualTo("test-session-1");
+        assertThat(cart.get().getSessionKey()).isEqualTo(SESSION_1);
     }
     
     @Test
@@ -66,4 +91,224 @@ public class CartDaoTest {
         // 検証
         assertThat(cart).isEmpty();
     }
-} 
\ No newline at end of file
+    
+    @Test
+    @DisplayName("findViewBySessionKey: 商品名・単価・小計・合計を1回のクエリで取得できる")
+    void shouldFindCartViewBySessionKey() {
+        // data.sqlのカート1には 商品1×2 と 商品3×1 が入っている
+        List<CartViewLine> lines = cartDao.findViewBySessionKey(SESSION_1);
+        
+        // 検証
+        assertThat(lines).hasSize(2);
+        assertThat(lines)
+            .extracting("productId", "productName", "unitPrice", "quantity", "subtotal")
+            .containsExactly(
+                tuple(1L, "テスト商品1", 1000, 2, 2000),
+                tuple(3L, "テスト商品3", 3000, 1, 3000));
+        assertThat(lines).allSatisfy(line -> assertThat(line.getCartTotal()).isEqualTo(5000));
+    }
+    
+    @Test
+    @DisplayName("findViewBySessionKey: 存在しないセッションキーでは空のリストが返される")
+    void shouldReturnEmptyViewForNonExistentSessionKey() {
+        // 存在しないセッションキーで検索
+        List<CartViewLine> lines = cartDao.findViewBySessionKey(NON_EXISTENT);
+        
+        // 検証
+        assertThat(lines).isEmpty();
+    }
+    
+    @Test
+    @DisplayName("deleteById: カート内商品を削除した後にカートを削除できる")
+    void shouldDeleteCartById() {
+        // Given: カート1の商品を先に削除
+        cartItemDao.deleteByCartId(1L);
+        
+        // When: カートを削除
+        int result = cartDao.deleteById(1L);
+        
+        // 検証
+        assertThat(result).isEqualTo(1);
+        assertThat(cartDao.findById(1L)).isEmpty();
+        assertThat(cartDao.findBySessionKey(SESSION_1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("findIdleForUpdate: 期限より前に更新され、商品も更新されていないカートのみ取得できる")
+    void shouldFindIdleCarts() {
+        // Given: 30日前に更新された空のカートと、商品を追加したばかりのカート (data.sqlのカートは最近更新)
+        LocalDateTime old = LocalDateTime.now().minusDays(30);
+        Cart idle = insertCart(SessionKey.parse("00000000-0000-0000-0000-0000000000a1"), old);
+        Cart active = insertCart(SessionKey.parse("00000000-0000-0000-0000-0000000000a2"), old);
+        cartItemDao.upsert(active.getId(), 1L, 1);
+
+        // When: 7日前を期限として検索
+        List<Cart> result = cartDao.findIdleForUpdate(LocalDateTime.now().minusDays(7), 0L, 10);
+
+        // 検証
+        assertThat(result).extracting(Cart::getId).containsExactly(idle.getId());
+        assertThat(result.get(0).getSessionKey()).isEqualTo(idle.getSessionKey());
+    }
+
+    @Test
+    @DisplayName("findIdleForUpdate: 指定したIDより後ろのカートを件数上限まで取得する")
+    void shouldPageIdleCartsByKey() {
+        // Given: 期限切れのカート3件
+        LocalDateTime old = LocalDateTime.now().minusDays(30);
+        Cart first = insertCart(SessionKey.parse("00000000-0000-0000-0000-0000000000b1"), old);
+        Cart second = insertCart(SessionKey.parse("00000000-0000-0000-0000-0000000000b2"), old);
+        Cart third = insertCart(SessionKey.parse("00000000-0000-0000-0000-0000000000b3"), old);
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(7);
+
+        // When: 2件ずつ取得
+        List<Cart> page1 = cartDao.findIdleForUpdate(cutoff, 0L, 2);
+        List<Cart> page2 = cartDao.findIdleForUpdate(cutoff, page1.get(1).getId(), 2);
+
+        // 検証
+        assertThat(page1).extracting(Cart::getId).containsExactly(first.getId(), second.getId());
+        assertThat(page2).extracting(Cart::getId).containsExactly(third.getId());
+    }
+
+    @Test
+    @DisplayName("deleteByIds: 複数のカートをまとめて削除できる")
+    void shouldDeleteCartsByIds() {
+        // Given: カート1・2の商品を先に削除
+        int items = cartItemDao.deleteByCartIds(List.of(1L, 2L));
+
+        // When: カートを削除
+        int result = cartDao.deleteByIds(List.of(1L, 2L));
+
+        // 検証
+        assertThat(items).isEqualTo(3);
+        assertThat(result).isEqualTo(2);
+        assertThat(cartDao.findById(1L)).isEmpty();
+        assertThat(cartDao.findById(2L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("assignOwner: カートをユーザーのものとし、セッションキーを付け替えられる")
+    void shouldAssignOwner() {
+        // Given: 新しいセッションキー
+        SessionKey newKey = SessionKey.parse("00000000-0000-0000-0000-0000000000c1");
+
+        // When: カート1をユーザー42のものとする
+        int result = cartDao.assignOwner(1L, newKey, 42L);
+
+        // 検証
+        assertThat(result).isEqualTo(1);
+        Optional<Cart> cart = cartDao.findByUserId(42L);
+        assertThat(cart).isPresent();
+        assertThat(cart.get().getId()).isEqualTo(1L);
+        assertThat(cart.get().getSessionKey()).isEqualTo(newKey);
+        assertThat(cartDao.findBySessionKey(SESSION_1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("カート内商品の追加・加算・削除と同じ文でカートの合計金額と商品点数が更新される")
+    void shouldMaintainTotalsOnItemChanges() {
+        // data.sqlのカート1: 商品1(1000円)×2 + 商品3(3000円)×1
+        assertThat(cartDao.findById(1L).get())
+            .extracting(Cart::getTotalAmount, Cart::getItemCount)
+            .containsExactly(5000, 3);
+
+        // When: 商品2(2000円)を2個追加、商品1を1個加算、商品3を削除
+        cartItemDao.upsert(1L, 2L, 2);
+        cartItemDao.incrementQuantity(1L, 1L, 1);
+        cartItemDao.deleteInSession(2L, SESSION_1);
+
+        // Then: 1000×3 + 2000×2
+        assertThat(cartDao.findBySessionKey(SESSION_1).get())
+            .extracting(Cart::getTotalAmount, Cart::getItemCount)
+            .containsExactly(7000, 5);
+    }
+
+    @Test
+    @DisplayName("touchAll: 複数のカートの最終更新日時を1文で更新し、より新しい日時は巻き戻さない")
+    void shouldTouchCartsInOneStatement() {
+        // Given: カート1は現在より新しい日時、カート2は現在より古い日時で参照された
+        LocalDateTime current = cartDao.findById(2L).orElseThrow().getUpdatedAt();
+        LocalDateTime touched = LocalDateTime.of(2099, 1, 1, 0, 0);
+        Cart cart1 = new Cart();
+        cart1.setId(1L);
+        cart1.setUpdatedAt(touched);
+        Cart cart2 = new Cart();
+        cart2.setId(2L);
+        cart2.setUpdatedAt(current.minusDays(1));
+
+        // When
+        int updated = cartDao.touchAll(List.of(cart1, cart2));
+
+        // Then: カート1のみ更新される
+        assertThat(updated).isEqualTo(1);
+        assertThat(cartDao.findById(1L).orElseThrow().getUpdatedAt()).isEqualTo(touched);
+        assertThat(cartDao.findById(2L).orElseThrow().getUpdatedAt()).isEqualTo(current);
+    }
+
+    @Test
+    @DisplayName("findViewBySessionKey: 価格が変更されても追加時の単価を使い、変更された明細を示す")
+    void shouldUsePriceSnapshotInView() {
+        // Given: 商品1の価格を1000円から1500円に変更
+        Product product = productDao.selectById(1L);
+        product.setPrice(1500);
+        product.setPriceVersion(product.getPriceVersion() + 1);
+        productDao.update(product);
+
+        // When: カート表示を取得
+        List<CartViewLine> lines = cartDao.findViewBySessionKey(SESSION_1);
+
+        // Then: 単価と合計は追加時のまま、商品1のみ価格変更として示される
+        assertThat(lines)
+            .extracting(CartViewLine::getProductId, CartViewLine::getUnitPrice, CartViewLine::isPriceChanged)
+            .containsExactly(tuple(1L, 1000, true), tuple(3L, 3000, false));
+        assertThat(lines).allSatisfy(line -> assertThat(line.getCartTotal()).isEqualTo(5000));
+        assertThat(cartItemDao.findPriceChanged(1L))
+            .extracting(item -> item.getProductId(), item -> item.getUnitPrice())
+            .containsExactly(tuple(1L, 1000));
+    }
+
+    @Test
+    @DisplayName("findShortagesBySessionKey: 現在の在庫が数量に足りない明細のみを返す")
+    void shouldFindShortages() {
+        // 初期データでは在庫が足りている (商品1: 数量2・在庫10、商品3: 数量1・在庫30)
+        assertThat(cartDao.findShortagesBySessionKey(SESSION_1)).isEmpty();
+
+        // Given: 商品1の在庫が1個に減る
+        Product product = productDao.selectById(1L);
+        product.setStock(1);
+        productDao.update(product);
+
+        // When
+        List<CartShortage> shortages = cartDao.findShortagesBySessionKey(SESSION_1);
+
+        // Then: 商品1の明細のみ、不足数とともに返される
+        assertThat(shortages)
+            .extracting(CartShortage::getItemId, CartShortage::getProductId, CartShortage::getRequested,
+                CartShortage::getAvailable, CartShortage::getShortfall)
+            .containsExactly(tuple(1L, 1L, 2, 1, 1));
+        assertThat(cartDao.findShortagesBySessionKey(NON_EXISTENT)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("insertIfAbsent: カートがなければ作成し、既にあれば同じカートIDを返す")
+    void shouldInsertCartOnlyOnce() {
+        // When: 存在しないセッションキーで2回呼び出す
+        Long created = cartDao.insertIfAbsent(NON_EXISTENT);
+        Long existing = cartDao.insertIfAbsent(NON_EXISTENT);
+
+        // Then: 一意制約違反にならず、同じカートが返される
+        assertThat(created).isNotNull();
+        assertThat(existing).isEqualTo(created);
+        assertThat(cartDao.findBySessionKey(NON_EXISTENT)).map(Cart::getId).contains(created);
+        // 既存のカートではそのカートIDを返す
+        assertThat(cartDao.insertIfAbsent(SESSION_1)).isEqualTo(cartDao.findBySessionKey(SESSION_1).get().getId());
+    }
+
+    private Cart insertCart(SessionKey sessionKey, LocalDateTime updatedAt) {
+        Cart cart = new Cart();
+        cart.setSessionKey(sessionKey);
+        cart.setCreatedAt(updatedAt);
+        cart.setUpdatedAt(updatedAt);
+        cartDao.insert(cart);
+        return cart;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.ecbackend.dao;
+
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.CartEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class CartEventDaoTest {
+
+    private static final SessionKey SESSION = SessionKey.parse("00000000-0000-0000-0000-000000000001");
+    private static final SessionKey OTHER_SESSION = SessionKey.parse("00000000-0000-0000-0000-000000000002");
+
+    @Autowired
+    private CartEventDao cartEventDao;
+
+    @Test
+    @DisplayName("insertAll: イベントをバッチで追記し、セッションごとに発生順で取得できる")
+    void shouldInsertEventsInBatch() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<CartEvent> events = List.of(
+            CartEvent.of(SESSION, CartEvent.Type.ADD, 1L, 10L, 2, now),
+            CartEvent.of(OTHER_SESSION, CartEvent.Type.ADD, 2L, 20L, 1, now),
+            CartEvent.of(SESSION, CartEvent.Type.REMOVE, null, 10L, null, now.plusSeconds(1)));
+
+        int[] counts = cartEventDao.insertAll(events);
+
+        assertThat(counts).containsExactly(1, 1, 1);
+        assertThat(cartEventDao.findBySessionKey(SESSION))
+            .extracting(CartEvent::getEventType, CartEvent::getProductId, CartEvent::getItemId, CartEvent::getQuantity)
+            .containsExactly(
+                tuple(CartEvent.Type.ADD, 1L, 10L, 2),
+                tuple(CartEvent.Type.REMOVE, null, 10L, null));
+    }
+}
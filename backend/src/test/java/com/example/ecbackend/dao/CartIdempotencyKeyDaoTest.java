@@ -0,0 +1,81 @@
+package com.example.ecbackend.dao;
+
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.CartIdempotencyKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class CartIdempotencyKeyDaoTest {
+
+    private static final SessionKey SESSION = SessionKey.parse("00000000-0000-0000-0000-000000000001");
+    private static final String KEY = "op-1";
+    private static final String FINGERPRINT = "POST /api/cart";
+
+    @Autowired
+    private CartIdempotencyKeyDao idempotencyKeyDao;
+
+    @Test
+    @DisplayName("claim: 同じキーは1回だけ登録できる")
+    void shouldClaimKeyOnlyOnce() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusHours(1);
+
+        assertThat(idempotencyKeyDao.claim(SESSION, KEY, FINGERPRINT, expiresAt)).isEqualTo(1);
+        assertThat(idempotencyKeyDao.claim(SESSION, KEY, FINGERPRINT, expiresAt)).isZero();
+
+        // 処理中の行は status がnull
+        Optional<CartIdempotencyKey> row = idempotencyKeyDao.findByKey(SESSION, KEY);
+        assertThat(row).isPresent();
+        assertThat(row.get().getFingerprint()).isEqualTo(FINGERPRINT);
+        assertThat(row.get().getStatus()).isNull();
+    }
+
+    @Test
+    @DisplayName("complete: 処理中のキーに応答を記録し、release では削除されない")
+    void shouldCompleteKeyWithResponse() {
+        idempotencyKeyDao.claim(SESSION, KEY, FINGERPRINT, LocalDateTime.now().plusHours(1));
+        byte[] body = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(idempotencyKeyDao.complete(SESSION, KEY, 201, "application/json", body)).isEqualTo(1);
+        assertThat(idempotencyKeyDao.release(SESSION, KEY)).isZero();
+
+        CartIdempotencyKey row = idempotencyKeyDao.findByKey(SESSION, KEY).orElseThrow();
+        assertThat(row.getStatus()).isEqualTo(201);
+        assertThat(row.getContentType()).isEqualTo("application/json");
+        assertThat(row.getBody()).isEqualTo(body);
+    }
+
+    @Test
+    @DisplayName("release: 処理中のキーを削除し、再登録できるようにする")
+    void shouldReleaseInProgressKey() {
+        idempotencyKeyDao.claim(SESSION, KEY, FINGERPRINT, LocalDateTime.now().plusHours(1));
+
+        assertThat(idempotencyKeyDao.release(SESSION, KEY)).isEqualTo(1);
+        assertThat(idempotencyKeyDao.findByKey(SESSION, KEY)).isEmpty();
+        assertThat(idempotencyKeyDao.claim(SESSION, KEY, FINGERPRINT, LocalDateTime.now().plusHours(1))).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deleteExpired: 期限切れのキーのみ削除する")
+    void shouldDeleteOnlyExpiredKeys() {
+        LocalDateTime now = LocalDateTime.now();
+        idempotencyKeyDao.claim(SESSION, "expired", FINGERPRINT, now.minusMinutes(1));
+        idempotencyKeyDao.claim(SESSION, KEY, FINGERPRINT, now.plusHours(1));
+
+        assertThat(idempotencyKeyDao.deleteExpired(now)).isEqualTo(1);
+        assertThat(idempotencyKeyDao.findByKey(SESSION, "expired")).isEmpty();
+        assertThat(idempotencyKeyDao.findByKey(SESSION, KEY)).isPresent();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.ecbackend.dao;
 
+import com.example.ecbackend.domain.SessionKey;
 import com.example.ecbackend.entity.CartItem;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -146,6 +147,8 @@ public class CartItemDaoTest {
             duplicateItem.setCartId(1L);
             duplicateItem.setProductId(1L);
             duplicateItem.setQuantity(10);
+            duplicateItem.setUnitPrice(1000);
+            duplicateItem.setPriceVersion(1);
             duplicateItem.setCreatedAt(fixedTime);
             duplicateItem.setUpdatedAt(fixedTime);
             
@@ -164,6 +167,8 @@ public class CartItemDaoTest {
             invalidItem.setCartId(1L);
             invalidItem.setProductId(2L);
             invalidItem.setQuantity(invalidQuantity);
+            invalidItem.setUnitPrice(1000);
+            invalidItem.setPriceVersion(1);
             invalidItem.setCreatedAt(fixedTime);
             invalidItem.setUpdatedAt(fixedTime);
             
@@ -181,6 +186,8 @@ public class CartItemDaoTest {
             invalidItem.setCartId(999L); // 存在しないカートID
             invalidItem.setProductId(1L);
             invalidItem.setQuantity(1);
+            invalidItem.setUnitPrice(1000);
+            invalidItem.setPriceVersion(1);
             invalidItem.setCreatedAt(fixedTime);
             invalidItem.setUpdatedAt(fixedTime);
             
@@ -191,6 +198,56 @@ public class CartItemDaoTest {
         }
     }
     
+    @Nested
+    @DisplayName("upsert(): カートアイテムの追加または数量加算")
+    class UpsertTests {
+        
+        @Test
+        @DisplayName("既に存在する商品の場合は同じ行の数量を加算する")
+        void shouldAddQuantityToExistingRow() {
+            // Given: カートID=1, 商品ID=1 は数量2で存在する
+            
+            // When: 同じ商品を3個追加
+            CartItem result = cartItemDao.upsert(1L, 1L, 3);
+            
+            // Then: 既存行 (ID=1) の数量が5になり、行は増えない
+            assertThat(result.getId()).isEqualTo(1L);
+            assertThat(result.getQuantity()).isEqualTo(5);
+            assertThat(cartItemDao.findByCartId(1L)).hasSize(2);
+        }
+        
+        @Test
+        @DisplayName("存在しない商品の場合は新しい行を登録する")
+        void shouldInsertNewRow() {
+            // When: カートID=1 に商品ID=2 を追加
+            CartItem result = cartItemDao.upsert(1L, 2L, 4);
+            
+            // Then: 新しい行が登録される
+            assertThat(result.getId()).isNotNull();
+            assertThat(result.getCartId()).isEqualTo(1L);
+            assertThat(result.getProductId()).isEqualTo(2L);
+            assertThat(result.getQuantity()).isEqualTo(4);
+            assertThat(cartItemDao.findByCartId(1L))
+                .extracting("productId")
+                .containsExactlyInAnyOrder(1L, 2L, 3L);
+
+            // 追加した時点の単価と価格の版数が記録される
+            assertThat(result.getUnitPrice()).isEqualTo(2000);
+            assertThat(result.getPriceVersion()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("商品マスタにない商品IDの場合は何も登録せずnullを返す")
+        void shouldReturnNullForUnknownProduct() {
+            // When: 存在しない商品を追加
+            CartItem result = cartItemDao.upsert(1L, 999L, 1);
+
+            // Then: 行は登録されない
+            assertThat(result).isNull();
+            assertThat(cartItemDao.findByCartId(1L)).hasSize(2);
+        }
+    }
+    
     @Nested
     @DisplayName("update(): カートアイテム更新処理")
     class UpdateTests {
@@ -296,4 +353,189 @@ public class CartItemDaoTest {
             assertThat(result).isEqualTo(0);
         }
     }
-} 
\ No newline at end of file
+
+    @Nested
+    @DisplayName("upsertAll() / updateQuantities() / deleteAll(): バッチ操作")
+    class BatchTests {
+
+        private CartItem item(Long id, Long cartId, Long productId, int quantity) {
+            CartItem item = new CartItem();
+            item.setId(id);
+            item.setCartId(cartId);
+            item.setProductId(productId);
+            item.setQuantity(quantity);
+            return item;
+        }
+
+        @Test
+        @DisplayName("upsertAll: 新しい商品は追加し、既存の商品は数量を加算する")
+        void shouldUpsertAll() {
+            // Given: カート1には 商品1×2 と 商品3×1 が入っている
+            // When: 商品1×3 と 商品2×1 をバッチで追加
+            int[] counts = cartItemDao.upsertAll(List.of(item(null, 1L, 1L, 3), item(null, 1L, 2L, 1)));
+
+            // Then: 商品1は加算され、商品2が追加される
+            assertThat(counts).hasSize(2);
+            assertThat(cartItemDao.findByCartId(1L))
+                .extracting(CartItem::getProductId, CartItem::getQuantity)
+                .containsExactlyInAnyOrder(tuple(1L, 5), tuple(2L, 1), tuple(3L, 1));
+        }
+
+        @Test
+        @DisplayName("updateQuantities: 自分のカートの商品のみ更新し、他のカートの商品は件数0になる")
+        void shouldUpdateQuantitiesOnlyInOwnCart() {
+            // When: カート1として、カート1の商品(id=1)とカート2の商品(id=3)を更新
+            int[] counts = cartItemDao.updateQuantities(List.of(item(1L, 1L, null, 7), item(3L, 1L, null, 7)));
+
+            // Then: カート2の商品は更新されない
+            assertThat(counts).containsExactly(1, 0);
+            assertThat(cartItemDao.findById(1L)).get().extracting(CartItem::getQuantity).isEqualTo(7);
+            assertThat(cartItemDao.findById(3L)).get().extracting(CartItem::getQuantity).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("deleteAll: 自分のカートの商品のみ削除し、他のカートの商品は件数0になる")
+        void shouldDeleteAllOnlyInOwnCart() {
+            // When: カート1として、カート1の商品(id=1, 2)とカート2の商品(id=3)を削除
+            int[] counts = cartItemDao.deleteAll(List.of(item(1L, 1L, null, 0), item(2L, 1L, null, 0), item(3L, 1L, null, 0)));
+
+            // Then: カート2の商品は残る
+            assertThat(counts).containsExactly(1, 1, 0);
+            assertThat(cartItemDao.findByCartId(1L)).isEmpty();
+            assertThat(cartItemDao.findById(3L)).isPresent();
+        }
+    }
+
+    @Nested
+    @DisplayName("deleteByCartId(): カート単位の一括削除")
+    class DeleteByCartIdTests {
+
+        @Test
+        @DisplayName("指定したカートの商品のみをすべて削除する")
+        void shouldDeleteAllItemsOfCart() {
+            // When: カート1の商品を削除
+            int result = cartItemDao.deleteByCartId(1L);
+
+            // Then: カート1の2件のみが削除される
+            assertThat(result).isEqualTo(2);
+            assertThat(cartItemDao.findByCartId(1L)).isEmpty();
+            assertThat(cartItemDao.findByCartId(2L)).hasSize(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("mergeCart(): カート間の商品の統合")
+    class MergeCartTests {
+
+        @Test
+        @DisplayName("移し元の商品を移し先へ追加し、同じ商品は数量を加算する")
+        void shouldMergeItemsAndSumQuantities() {
+            // Given: カート2にもカート1と同じ商品1が5個入っている
+            cartItemDao.upsert(2L, 1L, 5);
+
+            // When: カート1の商品をカート2へ統合
+            int result = cartItemDao.mergeCart(1L, 2L);
+
+            // Then: 商品1は加算、商品3は追加され、移し元はそのまま残る
+            assertThat(result).isEqualTo(2);
+            assertThat(cartItemDao.findByCartId(2L))
+                .extracting(CartItem::getProductId, CartItem::getQuantity)
+                .containsExactlyInAnyOrder(tuple(1L, 7), tuple(2L, 3), tuple(3L, 1));
+            assertThat(cartItemDao.findByCartId(1L)).hasSize(2);
+        }
+    }
+
+    @Nested
+    @DisplayName("incrementQuantity() / deleteIfDepleted(): 数量の加減算")
+    class IncrementQuantityTests {
+
+        @Test
+        @DisplayName("数量をDB上で加算し、更新後の行を返す")
+        void shouldIncrementQuantity() {
+            // When: カート1の商品1 (数量2) に3を加算
+            Optional<CartItem> result = cartItemDao.incrementQuantity(1L, 1L, 3);
+
+            // Then: 更新後の数量が返される
+            assertThat(result).isPresent();
+            assertThat(result.get().getQuantity()).isEqualTo(5);
+            assertThat(cartItemDao.findById(1L).get().getQuantity()).isEqualTo(5);
+        }
+
+        @Test
+        @DisplayName("他のカートの商品は更新しない")
+        void shouldNotIncrementItemOfAnotherCart() {
+            // When: カート2の商品をカート1として加算
+            Optional<CartItem> result = cartItemDao.incrementQuantity(3L, 1L, 1);
+
+            // Then: 更新されない
+            assertThat(result).isEmpty();
+            assertThat(cartItemDao.findById(3L).get().getQuantity()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("数量が0以下になる場合は更新せず、削除で取り除く")
+        void shouldDeleteWhenDepleted() {
+            // When: 数量2の商品から2を減算
+            Optional<CartItem> updated = cartItemDao.incrementQuantity(1L, 1L, -2);
+            int deleted = cartItemDao.deleteIfDepleted(1L, 1L, -2);
+
+            // Then: 更新はされず、削除される
+            assertThat(updated).isEmpty();
+            assertThat(deleted).isEqualTo(1);
+            assertThat(cartItemDao.findById(1L)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("数量が残る場合は削除しない")
+        void shouldNotDeleteWhenQuantityRemains() {
+            // When: 数量2の商品に対して1減算で削除を試みる
+            int deleted = cartItemDao.deleteIfDepleted(1L, 1L, -1);
+
+            // Then: 削除されない
+            assertThat(deleted).isZero();
+            assertThat(cartItemDao.findById(1L)).isPresent();
+        }
+
+        @Test
+        @DisplayName("findByIdForUpdate: このカートの商品のみを取得する")
+        void shouldFindItemForUpdateOnlyInCart() {
+            // When & Then: カート1の商品1は取得でき、カート2の商品はカート1としては取得できない
+            assertThat(cartItemDao.findByIdForUpdate(1L, 1L)).map(CartItem::getQuantity).contains(2);
+            assertThat(cartItemDao.findByIdForUpdate(3L, 1L)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("updateQuantityInSession() / deleteInSession(): 所有者の条件付き更新・削除")
+    class InSessionTests {
+
+        private final SessionKey session1 = SessionKey.parse("00000000-0000-0000-0000-000000000001");
+
+        @Test
+        @DisplayName("セッションのカートの商品は更新・削除できる")
+        void shouldWriteItemOfOwnCart() {
+            // When: カート1 (セッション1) の商品を更新・削除
+            int updated = cartItemDao.updateQuantityInSession(1L, session1, 9);
+            int deleted = cartItemDao.deleteInSession(2L, session1);
+
+            // Then: それぞれ1件
+            assertThat(updated).isEqualTo(1);
+            assertThat(deleted).isEqualTo(1);
+            assertThat(cartItemDao.findById(1L).get().getQuantity()).isEqualTo(9);
+            assertThat(cartItemDao.findById(2L)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("他のセッションのカートの商品は更新・削除されない")
+        void shouldNotWriteItemOfAnotherCart() {
+            // When: カート2 の商品をセッション1として更新・削除
+            int updated = cartItemDao.updateQuantityInSession(3L, session1, 9);
+            int deleted = cartItemDao.deleteInSession(3L, session1);
+
+            // Then: 0件で、商品はそのまま
+            assertThat(updated).isZero();
+            assertThat(deleted).isZero();
+            assertThat(cartItemDao.findById(3L).get().getQuantity()).isEqualTo(3);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.ecbackend.dao;
+
+import com.example.ecbackend.entity.OrderItem;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class OrderItemDaoTest {
+
+    @Autowired
+    private OrderItemDao orderItemDao;
+
+    @Test
+    @DisplayName("insertAll: 注文明細をバッチでまとめて登録できる")
+    void shouldInsertOrderItemsInBatch() {
+        List<OrderItem> orderItems = List.of(
+            orderItem(2L, 3L, 2, 3000),
+            orderItem(2L, 3L, 1, 3000),
+            orderItem(2L, 2L, 4, 2000));
+
+        int[] counts = orderItemDao.insertAll(orderItems);
+
+        assertThat(counts).containsExactly(1, 1, 1);
+        assertThat(orderItemDao.findByOrderId(2L))
+            .extracting(OrderItem::getProductId, OrderItem::getQuantity, OrderItem::getUnitPrice, OrderItem::getSubtotal)
+            .contains(
+                tuple(3L, 2, 3000, 6000),
+                tuple(3L, 1, 3000, 3000),
+                tuple(2L, 4, 2000, 8000))
+            .hasSize(5);
+    }
+
+    private OrderItem orderItem(Long orderId, Long productId, int quantity, int unitPrice) {
+        OrderItem orderItem = new OrderItem();
+        orderItem.setOrderId(orderId);
+        orderItem.setProductId(productId);
+        orderItem.setQuantity(quantity);
+        orderItem.setUnitPrice(unitPrice);
+        orderItem.setSubtotal(unitPrice * quantity);
+        return orderItem;
+    }
+}
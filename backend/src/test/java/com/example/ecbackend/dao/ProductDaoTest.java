@@ -1,5 +1,6 @@
 package com.example.ecbackend.dao;
 
+import com.example.ecbackend.entity.OrderItem;
 import com.example.ecbackend.entity.Product;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -127,4 +128,95 @@ public class ProductDaoTest {
             productDao.update(productToUpdate);
         }
     }
-} 
\ No newline at end of file
+
+    @Test
+    @DisplayName("全商品のIDと在庫数のみを取得できる")
+    void shouldSelectIdAndStockOnly() {
+        // When: IDと在庫数を取得
+        List<Product> products = productDao.selectIdAndStock();
+
+        // Then: IDと在庫数のみが設定されている
+        assertThat(products)
+            .extracting(Product::getId, Product::getStock, Product::getName)
+            .containsExactlyInAnyOrder(
+                tuple(1L, 10, null),
+                tuple(2L, 20, null),
+                tuple(3L, 30, null)
+            );
+    }
+
+    @Test
+    @DisplayName("在庫が足りる商品のみ在庫が減算され、足りない商品は0件になる")
+    void shouldDecrementStockOnlyWhenSufficient() {
+        // Given: 商品1 (在庫10) から3個、商品2 (在庫20) から21個、存在しない商品から1個
+        List<OrderItem> orderItems = List.of(
+            orderItem(EXISTING_PRODUCT_ID_1, 3),
+            orderItem(EXISTING_PRODUCT_ID_2, 21),
+            orderItem(NON_EXISTING_PRODUCT_ID, 1));
+
+        // When: 在庫を減算
+        int[] counts = productDao.decrementStock(orderItems);
+
+        // Then: 在庫が足りた商品のみ更新される
+        assertThat(counts).containsExactly(1, 0, 0);
+        assertThat(productDao.selectIdAndStockByIds(List.of(EXISTING_PRODUCT_ID_1, EXISTING_PRODUCT_ID_2)))
+            .extracting(Product::getId, Product::getStock)
+            .containsExactlyInAnyOrder(
+                tuple(EXISTING_PRODUCT_ID_1, 7),
+                tuple(EXISTING_PRODUCT_ID_2, 20)
+            );
+    }
+
+    @Test
+    @DisplayName("在庫をちょうど使い切る減算はでき、その後の減算は0件になる")
+    void shouldDecrementStockDownToZero() {
+        // When: 在庫10の商品1から10個、続けて1個減算
+        int[] first = productDao.decrementStock(List.of(orderItem(EXISTING_PRODUCT_ID_1, 10)));
+        int[] second = productDao.decrementStock(List.of(orderItem(EXISTING_PRODUCT_ID_1, 1)));
+
+        // Then: 在庫がマイナスにならない
+        assertThat(first).containsExactly(1);
+        assertThat(second).containsExactly(0);
+        assertThat(productDao.selectById(EXISTING_PRODUCT_ID_1).getStock()).isZero();
+    }
+
+    @Test
+    @DisplayName("注文明細の数量だけ在庫を戻せる")
+    void shouldIncrementStock() {
+        // When: 商品1に2個、商品3に1個戻す
+        int[] counts = productDao.incrementStock(List.of(
+            orderItem(EXISTING_PRODUCT_ID_1, 2),
+            orderItem(EXISTING_PRODUCT_ID_3, 1)));
+
+        // Then
+        assertThat(counts).containsExactly(1, 1);
+        assertThat(productDao.selectIdAndStockByIds(List.of(EXISTING_PRODUCT_ID_1, EXISTING_PRODUCT_ID_3)))
+            .extracting(Product::getId, Product::getStock)
+            .containsExactlyInAnyOrder(
+                tuple(EXISTING_PRODUCT_ID_1, 12),
+                tuple(EXISTING_PRODUCT_ID_3, 31)
+            );
+    }
+
+    @Test
+    @DisplayName("複数のIDで商品を取得すると存在する商品のみが返る")
+    void shouldSelectByIds() {
+        // When
+        List<Product> products = productDao.selectByIds(List.of(EXISTING_PRODUCT_ID_1, EXISTING_PRODUCT_ID_3, NON_EXISTING_PRODUCT_ID));
+
+        // Then
+        assertThat(products)
+            .extracting(Product::getId, Product::getName)
+            .containsExactlyInAnyOrder(
+                tuple(EXISTING_PRODUCT_ID_1, "テスト商品1"),
+                tuple(EXISTING_PRODUCT_ID_3, "テスト商品3")
+            );
+    }
+
+    private OrderItem orderItem(Long productId, int quantity) {
+        OrderItem orderItem = new OrderItem();
+        orderItem.setProductId(productId);
+        orderItem.setQuantity(quantity);
+        return orderItem;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.ecbackend.domain;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SessionKey: セッションキーのテスト")
+class SessionKeyTest {
+
+    @Test
+    @DisplayName("UUID文字列を上位・下位64ビットに分割する")
+    void shouldSplitUuidIntoHighAndLowBits() {
+        // Given: ランダムなUUID
+        UUID uuid = UUID.randomUUID();
+
+        // When: 文字列から解析
+        SessionKey key = SessionKey.parse(uuid.toString());
+
+        // Then: java.util.UUID と同じビット列になる
+        assertThat(key.getHi()).isEqualTo(uuid.getMostSignificantBits());
+        assertThat(key.getLo()).isEqualTo(uuid.getLeastSignificantBits());
+        assertThat(key.toString()).isEqualTo(uuid.toString());
+    }
+
+    @Test
+    @DisplayName("大文字・小文字を区別せず同じキーとして扱う")
+    void shouldIgnoreCase() {
+        // When: 大文字と小文字のUUIDを解析
+        SessionKey lower = SessionKey.parse("123e4567-e89b-12d3-a456-426614174000");
+        SessionKey upper = SessionKey.parse("123E4567-E89B-12D3-A456-426614174000");
+
+        // Then: 等価になる
+        assertThat(upper).isEqualTo(lower);
+        assertThat(upper.hashCode()).isEqualTo(lower.hashCode());
+        assertThat(upper.toString()).isEqualTo("123e4567-e89b-12d3-a456-426614174000");
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {
+        "test-session-id",
+        "1-1-1-1-1",
+        "123e4567e89b12d3a456426614174000",
+        "123e4567-e89b-12d3-a456-4266141740000",
+        "123e4567-e89b-12d3-a456_426614174000",
+        "123e4567-e89b-12d3-a456-42661417400z"
+    })
+    @DisplayName("UUID形式でない文字列は拒否する")
+    void shouldRejectMalformedValue(String value) {
+        // When & Then: IllegalArgumentExceptionがスローされる
+        assertThatThrownBy(() -> SessionKey.parse(value))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("セッションIDの形式が不正です");
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.ecbackend.entity;
 
+import com.example.ecbackend.domain.SessionKey;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -15,19 +16,21 @@ class CartEntityTest {
     void shouldSetAndGetCartProperties() {
         // Given: テスト用のデータ
         Long id = 1L;
-        String sessionId = "test-session-id";
+        SessionKey sessionKey = new SessionKey(1L, 2L);
         LocalDateTime now = LocalDateTime.now();
         
         // When: カートエンティティにプロパティを設定
         Cart cart = new Cart();
         cart.setId(id);
-        cart.setSessionId(sessionId);
+        cart.setSessionKey(sessionKey);
         cart.setCreatedAt(now);
         cart.setUpdatedAt(now);
         
         // Then: プロパティが正しく取得できる
         assertThat(cart.getId()).isEqualTo(id);
-        assertThat(cart.getSessionId()).isEqualTo(sessionId);
+        assertThat(cart.getSessionKey()).isEqualTo(sessionKey);
+        assertThat(cart.getSessionKeyHi()).isEqualTo(1L);
+        assertThat(cart.getSessionKeyLo()).isEqualTo(2L);
         assertThat(cart.getCreatedAt()).isEqualTo(now);
         assertThat(cart.getUpdatedAt()).isEqualTo(now);
     }
@@ -40,7 +43,7 @@ class CartEntityTest {
         
         // When & Then: すべてのプロパティがnull
         assertThat(cart.getId()).isNull();
-        assertThat(cart.getSessionId()).isNull();
+        assertThat(cart.getSessionKey()).isNull();
         assertThat(cart.getCreatedAt()).isNull();
         assertThat(cart.getUpdatedAt()).isNull();
     }
@@ -51,24 +54,24 @@ class CartEntityTest {
         // Given: 初期値を持つカートエンティティ
         Cart cart = new Cart();
         cart.setId(1L);
-        cart.setSessionId("old-session-id");
+        cart.setSessionKey(new SessionKey(0L, 1L));
         LocalDateTime oldTime = LocalDateTime.of(2023, 1, 1, 0, 0);
         cart.setCreatedAt(oldTime);
         cart.setUpdatedAt(oldTime);
         
         // When: プロパティを更新
         Long newId = 2L;
-        String newSessionId = "new-session-id";
+        SessionKey newSessionKey = new SessionKey(0L, 2L);
         LocalDateTime newTime = LocalDateTime.now();
         
         cart.setId(newId);
-        cart.setSessionId(newSessionId);
+        cart.setSessionKey(newSessionKey);
         // 作成日時は変更しない
         cart.setUpdatedAt(newTime);
         
         // Then: 更新したプロパティが新しい値になり、更新していないプロパティは元の値のまま
         assertThat(cart.getId()).isEqualTo(newId);
-        assertThat(cart.getSessionId()).isEqualTo(newSessionId);
+        assertThat(cart.getSessionKey()).isEqualTo(newSessionKey);
         assertThat(cart.getCreatedAt()).isEqualTo(oldTime);
         assertThat(cart.getUpdatedAt()).isEqualTo(newTime);
     }
@@ -0,0 +1,195 @@
+package com.example.ecbackend.filter;
+
+import com.example.ecbackend.config.RateLimitProperties;
+import com.example.ecbackend.exception.RateLimitExceededException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RateLimitFilter: カート・注文APIのレート制限のテスト")
+class RateLimitFilterTest {
+
+    private static final String SESSION_ID = "00000000-0000-0000-0000-000000000001";
+    private static final String OTHER_SESSION_ID = "00000000-0000-0000-0000-000000000002";
+
+    @Mock
+    private HandlerExceptionResolver handlerExceptionResolver;
+
+    private RateLimitProperties properties;
+    private AtomicLong nanoTime;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.getSession().setBurst(2);
+        properties.getSession().setRefillInterval(Duration.ofSeconds(1));
+        properties.getIp().setBurst(5);
+        properties.getIp().setRefillInterval(Duration.ofMillis(100));
+        nanoTime = new AtomicLong(1_000_000_000L);
+        filter = new RateLimitFilter(properties, handlerExceptionResolver, nanoTime::get);
+    }
+
+    @Nested
+    @DisplayName("セッションごとの制限")
+    class SessionLimitTests {
+
+        @Test
+        @DisplayName("バケットの容量までは受け付け、超えたリクエストは Retry-After 付きで拒否する")
+        void shouldRejectRequestsBeyondBurst() throws Exception {
+            // Given: 容量2のバケットを使い切る
+            assertThat(send(SESSION_ID, "10.0.0.1")).isTrue();
+            assertThat(send(SESSION_ID, "10.0.0.1")).isTrue();
+
+            // When
+            boolean passed = send(SESSION_ID, "10.0.0.1");
+
+            // Then: 次のトークンの補充 (1秒後) を待つよう指示される
+            assertThat(passed).isFalse();
+            assertThat(rejection().getRetryAfterSeconds()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("補充間隔が経過すると再び受け付ける")
+        void shouldAcceptAfterRefill() throws Exception {
+            // Given
+            send(SESSION_ID, "10.0.0.1");
+            send(SESSION_ID, "10.0.0.1");
+
+            // When: 1秒経過する
+            nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+
+            // Then
+            assertThat(send(SESSION_ID, "10.0.0.1")).isTrue();
+            assertThat(send(SESSION_ID, "10.0.0.1")).isFalse();
+        }
+
+        @Test
+        @DisplayName("セッションごとに別のバケットを使う")
+        void shouldKeepSeparateBucketsPerSession() throws Exception {
+            // Given
+            send(SESSION_ID, "10.0.0.1");
+            send(SESSION_ID, "10.0.0.1");
+
+            // When / Then: 別のセッションは影響を受けない
+            assertThat(send(OTHER_SESSION_ID, "10.0.0.1")).isTrue();
+        }
+    }
+
+    @Nested
+    @DisplayName("IPごとの制限")
+    class IpLimitTests {
+
+        @Test
+        @DisplayName("セッションIDを変えても同じIPからのリクエストは制限する")
+        void shouldLimitByClientIp() throws Exception {
+            // Given: 同じIPから毎回別のセッションIDで容量(5件)まで送る
+            for (int i = 0; i < 5; i++) {
+                assertThat(send("00000000-0000-0000-0000-00000000001" + i, "10.0.0.1")).isTrue();
+            }
+
+            // When / Then
+            assertThat(send("00000000-0000-0000-0000-000000000099", "10.0.0.1")).isFalse();
+            assertThat(send("00000000-0000-0000-0000-000000000099", "10.0.0.2")).isTrue();
+        }
+
+        @Test
+        @DisplayName("不正なセッションIDでもIPごとの制限は適用し、検証は後続のフィルターに任せる")
+        void shouldApplyIpLimitWithoutValidSession() throws Exception {
+            // When / Then
+            for (int i = 0; i < 5; i++) {
+                assertThat(send("invalid", "10.0.0.1")).isTrue();
+            }
+            assertThat(send("invalid", "10.0.0.1")).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("対象外のリクエスト")
+    class ExcludedRequestTests {
+
+        @Test
+        @DisplayName("対象のパス以外は制限しない")
+        void shouldNotLimitOtherPaths() throws Exception {
+            // When / Then
+            for (int i = 0; i < 10; i++) {
+                MockHttpServletRequest request = request("GET", "/api/products", SESSION_ID, "10.0.0.1");
+                assertThat(pass(request)).isTrue();
+            }
+            assertThat(filter.bucketCount()).isZero();
+        }
+
+        @Test
+        @DisplayName("無効化されている場合は制限しない")
+        void shouldNotLimitWhenDisabled() throws Exception {
+            // Given
+            properties.setEnabled(false);
+
+            // When / Then
+            for (int i = 0; i < 10; i++) {
+                assertThat(send(SESSION_ID, "10.0.0.1")).isTrue();
+            }
+            verify(handlerExceptionResolver, never()).resolveException(any(), any(), any(), any());
+        }
+    }
+
+    @Test
+    @DisplayName("補充が終わったバケットのみ削除する")
+    void shouldCleanupRefilledBuckets() throws Exception {
+        // Given: 2セッション分のバケット (IP 1件を含む)
+        send(SESSION_ID, "10.0.0.1");
+        nanoTime.addAndGet(Duration.ofMillis(500).toNanos());
+        send(OTHER_SESSION_ID, "10.0.0.1");
+        assertThat(filter.bucketCount()).isEqualTo(3);
+
+        // When: 最初のセッションのみ補充が終わる
+        nanoTime.addAndGet(Duration.ofMillis(600).toNanos());
+        filter.cleanup();
+
+        // Then: 補充中の OTHER_SESSION_ID のバケットのみ残る
+        assertThat(filter.bucketCount()).isEqualTo(1);
+    }
+
+    private boolean send(String sessionId, String remoteAddr) throws Exception {
+        return pass(request("POST", "/api/cart", sessionId, remoteAddr));
+    }
+
+    private boolean pass(MockHttpServletRequest request) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return chain.getRequest() != null;
+    }
+
+    private RateLimitExceededException rejection() {
+        ArgumentCaptor<Exception> captor = ArgumentCaptor.forClass(Exception.class);
+        verify(handlerExceptionResolver).resolveException(any(), any(), isNull(), captor.capture());
+        assertThat(captor.getValue()).isInstanceOf(RateLimitExceededException.class);
+        return (RateLimitExceededException) captor.getValue();
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String sessionId, String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.addHeader(SessionKeyFilter.HEADER, sessionId);
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.ecbackend.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("FieldSelection: 部分レスポンスの項目選択のテスト")
+class FieldSelectionTest {
+
+    @Test
+    @DisplayName("fieldsが未指定の場合はすべての項目を選択する")
+    void shouldSelectAllWhenFieldsIsAbsent() {
+        // When: nullと空白を解析
+        FieldSelection fromNull = FieldSelection.parse(null, FieldSelection.PRODUCT_COLUMNS);
+        FieldSelection fromBlank = FieldSelection.parse("  ", FieldSelection.PRODUCT_COLUMNS);
+
+        // Then: すべての項目が対象となる
+        assertThat(fromNull.isAll()).isTrue();
+        assertThat(fromBlank.isAll()).isTrue();
+    }
+
+    @Test
+    @DisplayName("指定されたプロパティをカラム名に変換し、idを常に含める")
+    void shouldMapPropertiesToColumnsIncludingId() {
+        // When: 商品一覧向けの項目を解析
+        FieldSelection selection = FieldSelection.parse("name, price,imageUrl", FieldSelection.PRODUCT_COLUMNS);
+
+        // Then: idを先頭に、指定順でカラムが並ぶ
+        assertThat(selection.isAll()).isFalse();
+        assertThat(selection.getProperties()).containsExactly("id", "name", "price", "imageUrl");
+        assertThat(selection.getColumns()).isEqualTo("id, name, price, image_url");
+    }
+
+    @Test
+    @DisplayName("許可されていないプロパティは拒否する")
+    void shouldRejectUnknownProperty() {
+        // When & Then: 存在しないプロパティやSQL断片は例外となる
+        assertThatThrownBy(() -> FieldSelection.parse("name,password", FieldSelection.PRODUCT_COLUMNS))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("password");
+        assertThatThrownBy(() -> FieldSelection.parse("id; DROP TABLE products", FieldSelection.PRODUCT_COLUMNS))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
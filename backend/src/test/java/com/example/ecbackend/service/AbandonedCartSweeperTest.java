@@ -0,0 +1,146 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.dao.CartDao;
+import com.example.ecbackend.dao.CartItemDao;
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.Cart;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AbandonedCartSweeper: 放置カートの定期削除のテスト")
+class AbandonedCartSweeperTest {
+
+    @Mock
+    private CartDao cartDao;
+
+    @Mock
+    private CartItemDao cartItemDao;
+
+    @Mock
+    private WriteBehindCartStore cartStore;
+
+    @Mock
+    private CartActivityTracker activityTracker;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final CartIdCache cartIdCache = new CartIdCache(100, Duration.ofMinutes(5).toNanos(), System::nanoTime);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AbandonedCartSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        CartProperties properties = new CartProperties();
+        properties.getSweeper().setChunkSize(2);
+        properties.getSweeper().setPause(Duration.ZERO);
+        sweeper = new AbandonedCartSweeper(properties, cartDao, cartItemDao, cartIdCache, cartStore, activityTracker,
+                transactionManager, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("チャンクごとに前回の最後のIDから続けて削除し、件数をメトリクスに記録する")
+    void shouldPurgeInKeysetChunks() {
+        // Given: 期限切れのカートが3件 (チャンクサイズ2)
+        Cart cart1 = cart(1L);
+        Cart cart2 = cart(2L);
+        Cart cart3 = cart(5L);
+        given(cartDao.findIdleForUpdate(any(LocalDateTime.class), eq(0L), eq(2))).willReturn(List.of(cart1, cart2));
+        given(cartDao.findIdleForUpdate(any(LocalDateTime.class), eq(2L), eq(2))).willReturn(List.of(cart3));
+        given(cartItemDao.deleteByCartIds(List.of(1L, 2L))).willReturn(4);
+        given(cartItemDao.deleteByCartIds(List.of(5L))).willReturn(1);
+
+        // When: 削除を実行
+        int purged = sweeper.sweep();
+
+        // Then: チャンクごとに商品 → カートの順で削除される
+        assertThat(purged).isEqualTo(3);
+        InOrder inOrder = inOrder(cartItemDao, cartDao);
+        inOrder.verify(cartItemDao).deleteByCartIds(List.of(1L, 2L));
+        inOrder.verify(cartDao).deleteByIds(List.of(1L, 2L));
+        inOrder.verify(cartItemDao).deleteByCartIds(List.of(5L));
+        inOrder.verify(cartDao).deleteByIds(List.of(5L));
+
+        // 最後のチャンクが上限未満なので、それ以上は検索しない
+        verify(cartDao, never()).findIdleForUpdate(any(LocalDateTime.class), eq(5L), anyInt());
+
+        assertThat(meterRegistry.get("cart.sweeper.purged").tag("table", "carts").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("cart.sweeper.purged").tag("table", "cart_items").counter().count()).isEqualTo(5);
+        assertThat(meterRegistry.get("cart.sweeper.duration").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("削除したカートのIDをキャッシュから取り除く")
+    void shouldEvictPurgedCartsFromCache() {
+        // Given: キャッシュ済みのカートが期限切れになっている
+        Cart cart = cart(1L);
+        cartIdCache.put(cart.getSessionKey(), 1L);
+        given(cartDao.findIdleForUpdate(any(LocalDateTime.class), eq(0L), eq(2))).willReturn(List.of(cart));
+
+        // When: 削除を実行
+        sweeper.sweep();
+
+        // Then: キャッシュから取り除かれる
+        assertThat(cartIdCache.get(cart.getSessionKey())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("メモリ上の参照日時をDBへ反映してから期限切れのカートを検索する")
+    void shouldFlushActivityBeforeSearching() {
+        // Given: 期限切れのカートがない
+        given(cartDao.findIdleForUpdate(any(LocalDateTime.class), anyLong(), anyInt())).willReturn(List.of());
+
+        // When: 削除を実行
+        sweeper.sweep();
+
+        // Then: 参照日時の反映 → 検索の順に行われる
+        InOrder inOrder = inOrder(activityTracker, cartDao);
+        inOrder.verify(activityTracker).flush();
+        inOrder.verify(cartDao).findIdleForUpdate(any(LocalDateTime.class), eq(0L), eq(2));
+    }
+
+    @Test
+    @DisplayName("期限切れのカートがなければ何も削除しない")
+    void shouldDoNothingWhenNoIdleCarts() {
+        // Given: 期限切れのカートがない
+        given(cartDao.findIdleForUpdate(any(LocalDateTime.class), anyLong(), anyInt())).willReturn(List.of());
+
+        // When: 削除を実行
+        int purged = sweeper.sweep();
+
+        // Then: 削除は行われない
+        assertThat(purged).isZero();
+        verify(cartItemDao, never()).deleteByCartIds(any());
+        verify(cartDao, never()).deleteByIds(any());
+    }
+
+    private Cart cart(Long id) {
+        Cart cart = new Cart();
+        cart.setId(id);
+        cart.setSessionKey(new SessionKey(0L, id));
+        return cart;
+    }
+}
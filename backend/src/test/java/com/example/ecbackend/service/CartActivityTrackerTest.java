@@ -0,0 +1,105 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.dao.CartDao;
+import com.example.ecbackend.entity.Cart;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CartActivityTracker: カートの参照日時の記録のテスト")
+class CartActivityTrackerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0, 0);
+
+    @Mock
+    private CartDao cartDao;
+
+    private final AtomicReference<LocalDateTime> now = new AtomicReference<>(T0);
+    private CartActivityTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new CartActivityTracker(cartDao, 2, now::get);
+    }
+
+    @Test
+    @DisplayName("同じカートの参照は最新の日時1件にまとめて反映する")
+    void shouldCoalesceTouchesPerCart() {
+        // Given: カート1を2回、カート2を1回参照
+        tracker.touch(1L);
+        now.set(T0.plusSeconds(10));
+        tracker.touch(1L);
+        tracker.touch(2L);
+        given(cartDao.touchAll(anyList())).willReturn(2);
+
+        // When: 反映する
+        int updated = tracker.flush();
+
+        // Then: 1文で2件が反映され、カート1は最新の日時になる
+        assertThat(updated).isEqualTo(2);
+        ArgumentCaptor<List<Cart>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cartDao).touchAll(captor.capture());
+        assertThat(captor.getValue())
+            .extracting(Cart::getId, Cart::getUpdatedAt)
+            .containsExactlyInAnyOrder(tuple(1L, T0.plusSeconds(10)), tuple(2L, T0.plusSeconds(10)));
+        assertThat(tracker.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("1文あたりの件数を超える場合は複数のUPDATEに分ける")
+    void shouldSplitIntoBatches() {
+        // Given: 上限2件に対して3件のカートを参照
+        tracker.touch(1L);
+        tracker.touch(2L);
+        tracker.touch(3L);
+        given(cartDao.touchAll(anyList())).willReturn(2, 1);
+
+        // When
+        int updated = tracker.flush();
+
+        // Then
+        assertThat(updated).isEqualTo(3);
+        verify(cartDao, times(2)).touchAll(anyList());
+    }
+
+    @Test
+    @DisplayName("参照がなければDBへアクセスしない")
+    void shouldNotWriteWhenNothingTouched() {
+        assertThat(tracker.flush()).isZero();
+        verify(cartDao, never()).touchAll(anyList());
+    }
+
+    @Test
+    @DisplayName("反映に失敗したカートは記録に戻し、次回に再度反映する")
+    void shouldKeepTouchesWhenFlushFails() {
+        // Given: 1回目の反映は失敗する
+        tracker.touch(1L);
+        given(cartDao.touchAll(anyList())).willThrow(new RuntimeException("connection lost")).willReturn(1);
+
+        // When & Then: 失敗しても記録は残る
+        assertThatThrownBy(() -> tracker.flush()).isInstanceOf(RuntimeException.class);
+        assertThat(tracker.pending()).isEqualTo(1);
+
+        // 次回の反映で書き込まれる
+        assertThat(tracker.flush()).isEqualTo(1);
+        assertThat(tracker.pending()).isZero();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.domain.SessionKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CartCountCache: セッションキー → 商品点数 キャッシュのテスト")
+class CartCountCacheTest {
+
+    private static final SessionKey SESSION_1 = new SessionKey(0, 1);
+    private static final SessionKey SESSION_2 = new SessionKey(0, 2);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    @DisplayName("読み込み前に取得した世代で登録した点数を取得できる")
+    void shouldReturnRegisteredCount() {
+        // Given: 点数を登録
+        CartCountCache cache = new CartCountCache(10, 1_000, now::get);
+        cache.put(SESSION_1, 3, cache.stamp(SESSION_1));
+
+        // When & Then: 同じセッションキーで取得できる
+        assertThat(cache.get(SESSION_1)).contains(3);
+        assertThat(cache.get(SESSION_2)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("破棄より前に読み始めた点数は登録しない")
+    void shouldRejectCountReadBeforeEviction() {
+        // Given: DBから点数を読み始める
+        CartCountCache cache = new CartCountCache(10, 1_000, now::get);
+        long stamp = cache.stamp(SESSION_1);
+
+        // When: 読み込み中に他のリクエストがカートを更新してキャッシュを破棄し、その後に古い点数を登録する
+        cache.evict(SESSION_1);
+        cache.put(SESSION_1, 3, stamp);
+
+        // Then: 古い点数は登録されず、破棄後に読んだ点数は登録できる
+        assertThat(cache.get(SESSION_1)).isEmpty();
+        cache.put(SESSION_1, 5, cache.stamp(SESSION_1));
+        assertThat(cache.get(SESSION_1)).contains(5);
+    }
+
+    @Test
+    @DisplayName("コミット後の書き込みが前後しても、新しい世代の点数を残す")
+    void shouldKeepNewerVersionWhenUpdatesArriveOutOfOrder() {
+        // Given: 2つのトランザクションが順に更新し、それぞれ世代を取得した
+        CartCountCache cache = new CartCountCache(10, 1_000, now::get);
+        long older = cache.version();
+        long newer = cache.version();
+
+        // When: 後の更新のコミット後処理が先に実行される
+        cache.update(SESSION_1, 5, newer);
+        cache.update(SESSION_1, 3, older);
+
+        // Then: 後の更新の点数が残る
+        assertThat(cache.get(SESSION_1)).contains(5);
+    }
+
+    @Test
+    @DisplayName("コミット前に読んで登録した点数は、コミット後の書き込みで上書きされる")
+    void shouldOverwriteLoadedCountWithCommittedUpdate() {
+        // Given: 更新中のトランザクションが世代を取得した後、コミット前の点数がDBから読まれて登録される
+        CartCountCache cache = new CartCountCache(10, 1_000, now::get);
+        long version = cache.version();
+        cache.put(SESSION_1, 3, cache.stamp(SESSION_1));
+
+        // When: コミット後に更新後の点数を書き込む
+        cache.update(SESSION_1, 5, version);
+
+        // Then: 更新後の点数が返され、書き込み前に読み始めた点数では上書きされない
+        long stamp = cache.stamp(SESSION_1);
+        assertThat(cache.get(SESSION_1)).contains(5);
+        cache.update(SESSION_1, 4, cache.version());
+        cache.put(SESSION_1, 5, stamp);
+        assertThat(cache.get(SESSION_1)).contains(4);
+    }
+
+    @Test
+    @DisplayName("破棄より前に取得した世代の点数は書き込まない")
+    void shouldRejectUpdateOlderThanEviction() {
+        // Given: 更新中のトランザクションが世代を取得した
+        CartCountCache cache = new CartCountCache(10, 1_000, now::get);
+        long version = cache.version();
+
+        // When: 先に他の処理がキャッシュを破棄し、その後に書き込む
+        cache.evict(SESSION_1);
+        cache.update(SESSION_1, 3, version);
+
+        // Then: 書き込まれない
+        assertThat(cache.get(SESSION_1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("有効期間を過ぎたエントリは返さない")
+    void shouldExpireEntriesAfterTtl() {
+        // Given: 有効期間1000ナノ秒で登録
+        CartCountCache cache = new CartCountCache(10, 1_000, now::get);
+        cache.put(SESSION_1, 3, cache.stamp(SESSION_1));
+
+        // When: 期限を過ぎる
+        now.addAndGet(1_000);
+
+        // Then: 取得できず、エントリも削除される
+        assertThat(cache.get(SESSION_1)).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.dao.CartEventDao;
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.CartEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CartEventLog: カート操作イベントの非同期書き込みのテスト")
+class CartEventLogTest {
+
+    private static final SessionKey SESSION = new SessionKey(0L, 1L);
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Mock
+    private CartEventDao cartEventDao;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CartProperties.Events properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CartProperties.Events();
+        properties.setCapacity(4);
+        properties.setBatchSize(2);
+    }
+
+    @Test
+    @DisplayName("記録したイベントをバッチサイズごとにまとめて書き込む")
+    @SuppressWarnings("unchecked")
+    void shouldWriteEventsInBatches() {
+        // Given: 3件のイベント
+        CartEventLog eventLog = eventLog();
+        eventLog.record(SESSION, CartEvent.Type.ADD, 1L, 10L, 2);
+        eventLog.record(SESSION, CartEvent.Type.UPDATE, null, 10L, 5);
+        eventLog.record(SESSION, CartEvent.Type.REMOVE, null, 10L, null);
+        assertThat(meterRegistry.get("cart.events.queue.depth").gauge().value()).isEqualTo(3.0);
+
+        // When
+        int written = eventLog.drainAll();
+
+        // Then: 2件・1件の2回のバッチで、記録順に書き込まれる
+        assertThat(written).isEqualTo(3);
+        ArgumentCaptor<List<CartEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cartEventDao, times(2)).insertAll(captor.capture());
+        assertThat(captor.getAllValues().get(0))
+            .extracting(CartEvent::getEventType, CartEvent::getProductId, CartEvent::getQuantity, CartEvent::getOccurredAt)
+            .containsExactly(tuple(CartEvent.Type.ADD, 1L, 2, NOW), tuple(CartEvent.Type.UPDATE, null, 5, NOW));
+        assertThat(captor.getAllValues().get(1)).extracting(CartEvent::getEventType).containsExactly(CartEvent.Type.REMOVE);
+        assertThat(meterRegistry.get("cart.events.batch.size").summary().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("cart.events.batch.size").summary().totalAmount()).isEqualTo(3.0);
+        assertThat(eventLog.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("DROP ではバッファが満杯の場合にイベントを破棄して数える")
+    void shouldDropAndCountOnOverflow() {
+        // Given: 容量4のバッファ
+        CartEventLog eventLog = eventLog();
+
+        // When: 5件記録する
+        for (int i = 0; i < 5; i++) {
+            eventLog.record(SESSION, CartEvent.Type.ADD, (long) i, null, 1);
+        }
+
+        // Then: 5件目は破棄される
+        assertThat(eventLog.pending()).isEqualTo(4);
+        assertThat(dropped("overflow")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("BLOCK ではバッファに空きができるまで記録を待つ")
+    void shouldBlockUntilSpaceIsAvailable() throws Exception {
+        // Given: 満杯のバッファ
+        properties.setOverflow(CartProperties.Events.Overflow.BLOCK);
+        CartEventLog eventLog = eventLog();
+        for (int i = 0; i < 4; i++) {
+            eventLog.record(SESSION, CartEvent.Type.ADD, (long) i, null, 1);
+        }
+
+        // When: 5件目の記録は書き込みを待つ
+        Thread producer = new Thread(() -> eventLog.record(SESSION, CartEvent.Type.ADD, 4L, null, 1));
+        producer.start();
+        producer.join(100);
+        assertThat(producer.isAlive()).isTrue();
+        eventLog.drain();
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+
+        // Then: 破棄されずにバッファに追加される
+        assertThat(producer.isAlive()).isFalse();
+        assertThat(eventLog.pending()).isEqualTo(3);
+        assertThat(dropped("overflow")).isZero();
+    }
+
+    @Test
+    @DisplayName("書き込みに失敗したバッチは破棄して数え、次のバッチを書き込む")
+    void shouldCountFailedBatchAndContinue() {
+        // Given: 1回目の書き込みが失敗する
+        CartEventLog eventLog = eventLog();
+        given(cartEventDao.insertAll(anyList()))
+            .willThrow(new RuntimeException("connection refused"))
+            .willReturn(new int[] {1});
+        for (int i = 0; i < 3; i++) {
+            eventLog.record(SESSION, CartEvent.Type.ADD, (long) i, null, 1);
+        }
+
+        // When
+        eventLog.drainAll();
+
+        // Then
+        assertThat(dropped("write-failed")).isEqualTo(2.0);
+        verify(cartEventDao, times(2)).insertAll(anyList());
+        assertThat(eventLog.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("複数のスレッドから同時に記録しても、イベントを失わずに書き込む")
+    void shouldKeepEventsFromConcurrentProducers() throws Exception {
+        // Given: 8スレッドから1000件ずつ記録する
+        properties.setCapacity(8192);
+        properties.setBatchSize(500);
+        CartEventLog eventLog = eventLog();
+        AtomicInteger written = new AtomicInteger();
+        willAnswer(invocation -> {
+            written.addAndGet(invocation.<List<CartEvent>>getArgument(0).size());
+            return new int[0];
+        }).given(cartEventDao).insertAll(anyList());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1000; i++) {
+                    eventLog.record(SESSION, CartEvent.Type.ADD, (long) i, null, 1);
+                }
+                return null;
+            }));
+        }
+
+        // When: 記録と並行して取り出す
+        start.countDown();
+        int drained = 0;
+        while (drained < 8000 && !futures.stream().allMatch(Future::isDone)) {
+            drained += eventLog.drain();
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        drained += eventLog.drainAll();
+
+        // Then
+        assertThat(drained).isEqualTo(8000);
+        assertThat(written.get()).isEqualTo(8000);
+        assertThat(dropped("overflow")).isZero();
+    }
+
+    @Test
+    @DisplayName("無効化されている場合は記録しない")
+    void shouldIgnoreEventsWhenDisabled() {
+        // Given
+        properties.setEnabled(false);
+        CartEventLog eventLog = eventLog();
+
+        // When
+        eventLog.record(SESSION, CartEvent.Type.ADD, 1L, null, 1);
+
+        // Then
+        assertThat(eventLog.pending()).isZero();
+        assertThat(eventLog.drainAll()).isZero();
+        verifyNoInteractions(cartEventDao);
+    }
+
+    private CartEventLog eventLog() {
+        return new CartEventLog(cartEventDao, properties, meterRegistry, () -> NOW);
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("cart.events.dropped").tag("reason", reason).counter().count();
+    }
+}
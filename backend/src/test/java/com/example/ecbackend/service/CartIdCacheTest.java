@@ -0,0 +1,75 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.domain.SessionKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CartIdCache: セッションキー → カートID キャッシュのテスト")
+class CartIdCacheTest {
+
+    private static final SessionKey SESSION_1 = new SessionKey(0, 1);
+    private static final SessionKey SESSION_2 = new SessionKey(0, 2);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    @DisplayName("登録したカートIDを取得できる")
+    void shouldReturnRegisteredCartId() {
+        // Given: カートIDを登録
+        CartIdCache cache = new CartIdCache(10, 1_000, now::get);
+        cache.put(SESSION_1, 1L);
+
+        // When & Then: 同じセッションキーで取得できる
+        assertThat(cache.get(SESSION_1)).contains(1L);
+        assertThat(cache.get(SESSION_2)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("有効期間を過ぎたエントリは返さない")
+    void shouldExpireEntriesAfterTtl() {
+        // Given: 有効期間1000ナノ秒で登録
+        CartIdCache cache = new CartIdCache(10, 1_000, now::get);
+        cache.put(SESSION_1, 1L);
+
+        // When: 期限を過ぎる
+        now.addAndGet(1_000);
+
+        // Then: 取得できず、エントリも削除される
+        assertThat(cache.get(SESSION_1)).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("明示的に削除したエントリは返さない")
+    void shouldEvictEntry() {
+        // Given: カートIDを登録
+        CartIdCache cache = new CartIdCache(10, 1_000, now::get);
+        cache.put(SESSION_1, 1L);
+
+        // When: カート削除に合わせて削除
+        cache.evict(SESSION_1);
+
+        // Then: 取得できない
+        assertThat(cache.get(SESSION_1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("上限を超えると上限以下まで削減する")
+    void shouldStayWithinMaxSize() {
+        // Given: 上限10件
+        CartIdCache cache = new CartIdCache(10, 1_000_000, now::get);
+
+        // When: 100件登録
+        for (long i = 0; i < 100; i++) {
+            cache.put(new SessionKey(0, i), i);
+        }
+
+        // Then: 件数は上限以下
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+        assertThat(cache.get(new SessionKey(0, 99))).contains(99L);
+    }
+}
@@ -2,29 +2,49 @@ package com.example.ecbackend.service;
 
 import com.example.ecbackend.dao.CartDao;
 import com.example.ecbackend.dao.CartItemDao;
+import com.example.ecbackend.domain.SessionKey;
 import com.example.ecbackend.entity.Cart;
+import com.example.ecbackend.entity.CartEvent;
 import com.example.ecbackend.entity.CartItem;
+import com.example.ecbackend.entity.CartShortage;
+import com.example.ecbackend.entity.CartViewLine;
+import com.example.ecbackend.model.CartAvailability;
+import com.example.ecbackend.model.CartOperation;
+import com.example.ecbackend.model.CartSummary;
+import com.example.ecbackend.model.CartSyncRequest;
+import com.example.ecbackend.model.CartView;
+import com.example.ecbackend.model.FieldSelection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Mockito.*;
 
 /**
@@ -46,10 +66,31 @@ class CartServiceTest {
     @Mock
     private CartItemDao cartItemDao;
 
+    @Mock
+    private WriteBehindCartStore cartStore;
+
+    @Mock
+    private ProductCatalogIndex catalogIndex;
+
+    @Mock
+    private CartActivityTracker activityTracker;
+
+    @Mock
+    private CartEventLog eventLog;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private CartIdCache cartIdCache = new CartIdCache(100, Duration.ofMinutes(5).toNanos(), System::nanoTime);
+
+    @Spy
+    private CartCountCache cartCountCache = new CartCountCache(100, Duration.ofMinutes(5).toNanos(), System::nanoTime);
+
     @InjectMocks
     private CartService cartService;
 
-    private final String sessionId = "test-session-id";
+    private final SessionKey sessionKey = SessionKey.parse("123e4567-e89b-12d3-a456-426614174000");
     private Cart testCart;
     private CartItem testCartItem;
 
@@ -58,7 +99,7 @@ class CartServiceTest {
         // テスト用データの初期化
         testCart = new Cart();
         testCart.setId(1L);
-        testCart.setSessionId(sessionId);
+        testCart.setSessionKey(sessionKey);
         
         testCartItem = new CartItem();
         testCartItem.setId(1L);
@@ -75,11 +116,11 @@ class CartServiceTest {
         @DisplayName("カートが存在する場合、商品のリストを返す")
         void shouldReturnItemsWhenCartExists() {
             // Given: カートが存在し、商品が含まれている
-            given(cartDao.findBySessionId(sessionId)).willReturn(Optional.of(testCart));
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
             given(cartItemDao.findByCartId(testCart.getId())).willReturn(Arrays.asList(testCartItem));
 
             // When: カート内商品を取得
-            List<CartItem> result = cartService.getCartItems(sessionId);
+            List<CartItem> result = cartService.getCartItems(sessionKey);
 
             // Then: 正しい商品リストが返される
             assertThat(result).isNotNull().hasSize(1);
@@ -88,27 +129,286 @@ class CartServiceTest {
             assertThat(result.get(0).getProductId()).isEqualTo(1L);
             assertThat(result.get(0).getQuantity()).isEqualTo(2);
             
-            verify(cartDao).findBySessionId(sessionId);
+            verify(cartDao).findBySessionKey(sessionKey);
             verify(cartItemDao).findByCartId(testCart.getId());
         }
 
+        @Test
+        @DisplayName("カートの参照はメモリに記録し、DBへは書き込まない")
+        void shouldTouchCartWithoutWriting() {
+            // Given: カートが存在する
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.findByCartId(testCart.getId())).willReturn(List.of(testCartItem));
+
+            // When: カート内商品を取得
+            cartService.getCartItems(sessionKey);
+
+            // Then: 参照日時の記録のみ行われ、カートは更新されない
+            verify(activityTracker).touch(testCart.getId());
+            verify(cartDao, never()).touchAll(anyList());
+        }
+
+        @Test
+        @DisplayName("2回目以降はキャッシュしたカートIDを使い、セッション検索を省略する")
+        void shouldUseCachedCartIdOnSubsequentCalls() {
+            // Given: カートが存在し、商品が含まれている
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.findByCartId(testCart.getId())).willReturn(List.of(testCartItem));
+
+            // When: カート内商品を2回取得
+            cartService.getCartItems(sessionKey);
+            List<CartItem> result = cartService.getCartItems(sessionKey);
+
+            // Then: セッション検索は1回のみ
+            assertThat(result).hasSize(1);
+            verify(cartDao, times(1)).findBySessionKey(sessionKey);
+            verify(cartItemDao, times(2)).findByCartId(testCart.getId());
+        }
+
         @Test
         @DisplayName("カートが存在しない場合、空のリストを返す")
         void shouldReturnEmptyListWhenCartDoesNotExist() {
             // Given: カートが存在しない
-            given(cartDao.findBySessionId(sessionId)).willReturn(Optional.empty());
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.empty());
 
             // When: カート内商品を取得
-            List<CartItem> result = cartService.getCartItems(sessionId);
+            List<CartItem> result = cartService.getCartItems(sessionKey);
 
             // Then: 空のリストが返される
             assertThat(result).isNotNull().isEmpty();
             
-            verify(cartDao).findBySessionId(sessionId);
+            verify(cartDao).findBySessionKey(sessionKey);
             verify(cartItemDao, never()).findByCartId(anyLong());
         }
     }
 
+    @Nested
+    @DisplayName("getCartView(): カート表示取得")
+    class GetCartViewTests {
+
+        @Test
+        @DisplayName("結合クエリ1回で明細と合計を返す")
+        void shouldBuildViewFromSingleQuery() {
+            // Given: カートIDはキャッシュ済みで、結合クエリが明細行を返す
+            cartIdCache.put(sessionKey, testCart.getId());
+            CartViewLine line1 = createViewLine(1L, 1L, 1000, 2, 5000);
+            CartViewLine line2 = createViewLine(2L, 3L, 3000, 1, 5000);
+            given(cartDao.findViewBySessionKey(sessionKey)).willReturn(List.of(line1, line2));
+
+            // When: カート表示を取得
+            CartView view = cartService.getCartView(sessionKey);
+
+            // Then: 明細と合計が返され、他のクエリは発行されない
+            assertThat(view.getItems()).containsExactly(line1, line2);
+            assertThat(view.getTotalAmount()).isEqualTo(5000);
+            verify(cartDao, never()).findBySessionKey(any(SessionKey.class));
+            verifyNoInteractions(cartItemDao);
+        }
+
+        @Test
+        @DisplayName("カートIDがキャッシュにない場合もDBから引いて参照を記録する")
+        void shouldTouchCartWhenCartIdIsNotCached() {
+            // Given: 放置後に戻ってきたため、カートIDのキャッシュは期限切れ
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartDao.findViewBySessionKey(sessionKey)).willReturn(List.of());
+
+            // When: カート表示を取得
+            cartService.getCartView(sessionKey);
+
+            // Then: 参照日時が記録され、定期削除の対象から外れる
+            verify(activityTracker).touch(testCart.getId());
+        }
+
+        @Test
+        @DisplayName("カートが存在しない場合は空の表示を返す")
+        void shouldReturnEmptyViewWhenCartDoesNotExist() {
+            // Given: 明細行がない
+            given(cartDao.findViewBySessionKey(sessionKey)).willReturn(List.of());
+
+            // When: カート表示を取得
+            CartView view = cartService.getCartView(sessionKey);
+
+            // Then: 空の明細と合計0
+            assertThat(view.getItems()).isEmpty();
+            assertThat(view.getTotalAmount()).isZero();
+        }
+
+        @Test
+        @DisplayName("データベースモードでは読み取り専用トランザクションで取得する")
+        void shouldReadInReadOnlyTransaction() {
+            // Given
+            given(cartDao.findViewBySessionKey(sessionKey)).willReturn(List.of());
+
+            // When
+            cartService.getCartView(sessionKey);
+
+            // Then
+            ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+            verify(transactionManager).getTransaction(definition.capture());
+            assertThat(definition.getValue().isReadOnly()).isTrue();
+            verify(cartStore, never()).flush(any(SessionKey.class));
+        }
+
+        private CartViewLine createViewLine(Long itemId, Long productId, int unitPrice, int quantity, int cartTotal) {
+            CartViewLine line = new CartViewLine();
+            line.setItemId(itemId);
+            line.setProductId(productId);
+            line.setUnitPrice(unitPrice);
+            line.setQuantity(quantity);
+            line.setSubtotal(unitPrice * quantity);
+            line.setCartTotal(cartTotal);
+            return line;
+        }
+    }
+
+    @Nested
+    @DisplayName("getCartSummary() / getAvailability() / getPriceChangedItems(): カートの要約・在庫確認・価格変更の検出")
+    class GetCartSummaryTests {
+
+        @Test
+        @DisplayName("カートに保持している商品点数と合計金額を返し、カート内商品は参照しない")
+        void shouldReadTotalsFromCart() {
+            // Given: 合計を保持しているカート
+            testCart.setItemCount(3);
+            testCart.setTotalAmount(5000);
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+
+            // When: 要約を取得
+            CartSummary summary = cartService.getCartSummary(sessionKey);
+
+            // Then: カートの2列のみから組み立てられる
+            assertThat(summary.getItemCount()).isEqualTo(3);
+            assertThat(summary.getTotalAmount()).isEqualTo(5000);
+            verifyNoInteractions(cartItemDao);
+        }
+
+        @Test
+        @DisplayName("カートが存在しない場合は0件・0円を返す")
+        void shouldReturnEmptySummaryWhenCartDoesNotExist() {
+            // Given: カートが存在しない
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.empty());
+
+            // When: 要約を取得
+            CartSummary summary = cartService.getCartSummary(sessionKey);
+
+            // Then: 0件・0円
+            assertThat(summary.getItemCount()).isZero();
+            assertThat(summary.getTotalAmount()).isZero();
+        }
+
+        @Test
+        @DisplayName("在庫確認は不足している明細のみを1回のクエリで取得する")
+        void shouldReportShortages() {
+            // Given: 商品1の在庫が1個不足している
+            CartShortage shortage = new CartShortage();
+            shortage.setItemId(1L);
+            shortage.setProductId(1L);
+            shortage.setRequested(2);
+            shortage.setAvailable(1);
+            shortage.setShortfall(1);
+            given(cartDao.findShortagesBySessionKey(sessionKey)).willReturn(List.of(shortage));
+
+            // When: 在庫を確認
+            CartAvailability availability = cartService.getAvailability(sessionKey);
+
+            // Then: 注文できず、不足している明細が返される
+            assertThat(availability.isAvailable()).isFalse();
+            assertThat(availability.getShortages()).containsExactly(shortage);
+            verifyNoInteractions(cartItemDao);
+        }
+
+        @Test
+        @DisplayName("在庫が足りていれば注文できる")
+        void shouldBeAvailableWithoutShortages() {
+            // Given: 不足している明細がない
+            given(cartDao.findShortagesBySessionKey(sessionKey)).willReturn(List.of());
+
+            // When & Then
+            assertThat(cartService.getAvailability(sessionKey).isAvailable()).isTrue();
+        }
+
+        @Test
+        @DisplayName("価格が変更された商品はカートIDで検索する")
+        void shouldFindPriceChangedItems() {
+            // Given: 商品1の価格が変更されている
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.findPriceChanged(testCart.getId())).willReturn(List.of(testCartItem));
+
+            // When: 価格が変更された商品を取得
+            List<CartItem> result = cartService.getPriceChangedItems(sessionKey);
+
+            // Then: DAOの結果がそのまま返される
+            assertThat(result).containsExactly(testCartItem);
+        }
+    }
+
+    @Nested
+    @DisplayName("getCartCount(): カートバッジ向けの商品点数")
+    class GetCartCountTests {
+
+        @Test
+        @DisplayName("初回のみカートの点数を読み、以降はキャッシュから返す")
+        void shouldLoadCountOnceAndServeFromCache() {
+            // Given: カートの点数は3
+            given(cartDao.findItemCount(sessionKey)).willReturn(Optional.of(3));
+
+            // When: 2回取得する
+            int first = cartService.getCartCount(sessionKey);
+            int second = cartService.getCartCount(sessionKey);
+
+            // Then: DBは1回だけ参照され、参照日時の記録のためのカートIDの検索も行わない
+            assertThat(first).isEqualTo(3);
+            assertThat(second).isEqualTo(3);
+            verify(cartDao, times(1)).findItemCount(sessionKey);
+            verify(cartDao, never()).findBySessionKey(any());
+            verifyNoInteractions(cartItemDao, activityTracker);
+        }
+
+        @Test
+        @DisplayName("カートが存在しない場合は0を返す")
+        void shouldReturnZeroWhenCartDoesNotExist() {
+            // Given: カートが存在しない
+            given(cartDao.findItemCount(sessionKey)).willReturn(Optional.empty());
+
+            // When & Then
+            assertThat(cartService.getCartCount(sessionKey)).isZero();
+        }
+
+        @Test
+        @DisplayName("カートを更新するとコミット後に更新後の点数をキャッシュへ書き込み、次の取得ではDBを読まない")
+        void shouldWriteCountThroughAfterMutation() {
+            // Given: 点数3がキャッシュされている
+            given(cartDao.findItemCount(sessionKey)).willReturn(Optional.of(3), Optional.of(5));
+            cartService.getCartCount(sessionKey);
+
+            // When: 商品を追加する (追加後の点数はトランザクション内で読む)
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.upsert(1L, 1L, 2)).willReturn(testCartItem);
+            cartService.addToCart(sessionKey, 1L, 2);
+            verify(cartDao, times(2)).findItemCount(sessionKey);
+
+            // Then: 追加後の点数をキャッシュから返し、DBは読み直さない
+            assertThat(cartService.getCartCount(sessionKey)).isEqualTo(5);
+            assertThat(cartService.getCartCount(sessionKey)).isEqualTo(5);
+            verify(cartDao, times(2)).findItemCount(sessionKey);
+        }
+
+        @Test
+        @DisplayName("カートを空にすると点数は0になる")
+        void shouldResetCountWhenCartIsCleared() {
+            // Given: 点数4がキャッシュされている
+            given(cartDao.findItemCount(sessionKey)).willReturn(Optional.of(4), Optional.of(0));
+            cartService.getCartCount(sessionKey);
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+
+            // When: カートを空にする
+            cartService.clearCart(sessionKey);
+
+            // Then: 0が返される
+            assertThat(cartService.getCartCount(sessionKey)).isZero();
+        }
+    }
+
     @Nested
     @DisplayName("addToCart(): カートへの商品追加")
     class AddToCartTests {
@@ -120,15 +420,11 @@ class CartServiceTest {
             Long productId = 1L;
             int quantity = 2;
             
-            given(cartDao.findBySessionId(sessionId)).willReturn(Optional.of(testCart));
-            given(cartItemDao.insert(any(CartItem.class))).willAnswer(invocation -> {
-                CartItem item = invocation.getArgument(0);
-                item.setId(1L);
-                return 1;
-            });
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.upsert(testCart.getId(), productId, quantity)).willReturn(testCartItem);
 
             // When: カートに商品を追加
-            CartItem result = cartService.addToCart(sessionId, productId, quantity);
+            CartItem result = cartService.addToCart(sessionKey, productId, quantity);
 
             // Then: 商品が正しく追加される
             assertThat(result).isNotNull();
@@ -137,8 +433,33 @@ class CartServiceTest {
             assertThat(result.getProductId()).isEqualTo(productId);
             assertThat(result.getQuantity()).isEqualTo(quantity);
             
-            verify(cartDao).findBySessionId(sessionId);
-            verify(cartItemDao).insert(any(CartItem.class));
+            verify(cartDao).findBySessionKey(sessionKey);
+            verify(cartItemDao).upsert(testCart.getId(), productId, quantity);
+            verify(cartItemDao, never()).insert(any(CartItem.class));
+            // 追加した数量がイベントとして記録される
+            verify(eventLog).record(sessionKey, CartEvent.Type.ADD, productId, 1L, quantity);
+        }
+
+        @Test
+        @DisplayName("同じ商品が既にある場合は1文のupsertで数量を加算する")
+        void shouldMergeQuantityOfExistingProduct() {
+            // Given: 商品1が数量2で入っているカートに3個追加する
+            CartItem merged = new CartItem();
+            merged.setId(1L);
+            merged.setCartId(1L);
+            merged.setProductId(1L);
+            merged.setQuantity(5);
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.upsert(1L, 1L, 3)).willReturn(merged);
+
+            // When: カートに商品を追加
+            CartItem result = cartService.addToCart(sessionKey, 1L, 3);
+
+            // Then: 既存行の数量が加算され、重複行は作られない
+            assertThat(result.getId()).isEqualTo(1L);
+            assertThat(result.getQuantity()).isEqualTo(5);
+            verify(cartItemDao, never()).insert(any(CartItem.class));
+            verify(cartItemDao, never()).findByCartIdAndProductId(anyLong(), anyLong());
         }
 
         @Test
@@ -148,20 +469,12 @@ class CartServiceTest {
             Long productId = 1L;
             int quantity = 2;
             
-            given(cartDao.findBySessionId(sessionId)).willReturn(Optional.empty());
-            given(cartDao.insert(any(Cart.class))).willAnswer(invocation -> {
-                Cart cart = invocation.getArgument(0);
-                cart.setId(1L);
-                return 1;
-            });
-            given(cartItemDao.insert(any(CartItem.class))).willAnswer(invocation -> {
-                CartItem item = invocation.getArgument(0);
-                item.setId(1L);
-                return 1;
-            });
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.empty());
+            given(cartDao.insertIfAbsent(sessionKey)).willReturn(1L);
+            given(cartItemDao.upsert(1L, productId, quantity)).willReturn(testCartItem);
 
             // When: カートに商品を追加
-            CartItem result = cartService.addToCart(sessionId, productId, quantity);
+            CartItem result = cartService.addToCart(sessionKey, productId, quantity);
 
             // Then: 新しいカートが作成され、商品が追加される
             assertThat(result).isNotNull();
@@ -170,9 +483,38 @@ class CartServiceTest {
             assertThat(result.getProductId()).isEqualTo(productId);
             assertThat(result.getQuantity()).isEqualTo(quantity);
             
-            verify(cartDao).findBySessionId(sessionId);
-            verify(cartDao).insert(any(Cart.class));
-            verify(cartItemDao).insert(any(CartItem.class));
+            verify(cartDao).findBySessionKey(sessionKey);
+            verify(cartDao).insertIfAbsent(sessionKey);
+            verify(cartItemDao).upsert(1L, productId, quantity);
+        }
+
+        @Test
+        @DisplayName("存在しない商品の追加はカートへアクセスせずに拒否する")
+        void shouldRejectUnknownProductWithoutTouchingCart() {
+            // Given: 商品インデックスに存在しない商品
+            willThrow(new NoSuchElementException("Product not found with id: 999"))
+                .given(catalogIndex).requireAvailable(999L, 1);
+
+            // When & Then: NoSuchElementExceptionがスローされる
+            assertThatThrownBy(() -> cartService.addToCart(sessionKey, 999L, 1))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessage("Product not found with id: 999");
+
+            // カートへのアクセスは行われず、イベントも記録されない
+            verifyNoInteractions(cartDao, cartItemDao, cartStore, eventLog);
+        }
+
+        @Test
+        @DisplayName("インデックスの反映前に商品が削除されていた場合は例外をスローする")
+        void shouldThrowWhenProductWasDeletedConcurrently() {
+            // Given: upsertで商品が見つからず、行が登録されない
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.upsert(testCart.getId(), 5L, 1)).willReturn(null);
+
+            // When & Then: NoSuchElementExceptionがスローされる
+            assertThatThrownBy(() -> cartService.addToCart(sessionKey, 5L, 1))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessage("Product not found with id: 5");
         }
     }
 
@@ -181,68 +523,54 @@ class CartServiceTest {
     class UpdateCartItemTests {
         
         @Test
-        @DisplayName("商品が存在する場合、数量を更新できる")
+        @DisplayName("商品が存在する場合、所有者の条件付きの1文で数量を更新できる")
         void shouldUpdateQuantityOfExistingItem() {
-            // Given: カートと商品が存在する
+            // Given: セッションのカートに商品が存在する
             Long cartItemId = 1L;
             int newQuantity = 5;
             
-            given(cartDao.findBySessionId(sessionId)).willReturn(Optional.of(testCart));
-            given(cartItemDao.findById(cartItemId)).willReturn(Optional.of(testCartItem));
-            given(cartItemDao.update(any(CartItem.class))).willReturn(1);
+            given(cartItemDao.updateQuantityInSession(cartItemId, sessionKey, newQuantity)).willReturn(1);
 
             // When: 商品の数量を更新
-            assertDoesNotThrow(() -> cartService.updateCartItem(sessionId, cartItemId, newQuantity));
+            assertDoesNotThrow(() -> cartService.updateCartItem(sessionKey, cartItemId, newQuantity));
 
-            // Then: 数量が更新される
-            ArgumentCaptor<CartItem> cartItemCaptor = ArgumentCaptor.forClass(CartItem.class);
-            verify(cartItemDao).update(cartItemCaptor.capture());
-            
-            CartItem capturedItem = cartItemCaptor.getValue();
-            assertThat(capturedItem.getQuantity()).isEqualTo(newQuantity);
-            
-            verify(cartDao).findBySessionId(sessionId);
-            verify(cartItemDao).findById(cartItemId);
-            verify(cartItemDao).update(any(CartItem.class));
+            // Then: カートや商品の検索は行わない
+            verify(cartItemDao).updateQuantityInSession(cartItemId, sessionKey, newQuantity);
+            verify(cartDao, never()).findBySessionKey(any());
+            verify(cartItemDao, never()).findById(anyLong());
+            verify(cartItemDao, never()).update(any(CartItem.class));
         }
 
         @Test
-        @DisplayName("カートが存在しない場合、例外がスローされる")
-        void shouldThrowExceptionWhenCartDoesNotExist() {
-            // Given: カートが存在しない
+        @DisplayName("他のカートの商品の場合、SecurityExceptionがスローされる")
+        void shouldThrowExceptionWhenItemBelongsToAnotherCart() {
+            // Given: 更新件数が0で、商品自体は存在する
             Long cartItemId = 1L;
             int newQuantity = 5;
             
-            given(cartDao.findBySessionId(sessionId)).willReturn(Optional.empty());
+            given(cartItemDao.updateQuantityInSession(cartItemId, sessionKey, newQuantity)).willReturn(0);
+            given(cartItemDao.findById(cartItemId)).willReturn(Optional.of(testCartItem));
 
             // When & Then: 例外がスローされる
-            assertThatThrownBy(() -> cartService.updateCartItem(sessionId, cartItemId, newQuantity))
-                .isInstanceOf(IllegalArgumentException.class)
-                .hasMessageContaining("Cart not found");
-            
-            verify(cartDao).findBySessionId(sessionId);
-            verify(cartItemDao, never()).findById(anyLong());
-            verify(cartItemDao, never()).update(any(CartItem.class));
+            assertThatThrownBy(() -> cartService.updateCartItem(sessionKey, cartItemId, newQuantity))
+                .isInstanceOf(SecurityException.class)
+                .hasMessageContaining("does not belong to this cart");
         }
 
         @Test
-        @DisplayName("商品が存在しない場合、例外がスローされる")
+        @DisplayName("商品が存在しない場合、NoSuchElementExceptionがスローされる")
         void shouldThrowExceptionWhenItemDoesNotExist() {
-            // Given: カートは存在するが商品が存在しない
+            // Given: 更新件数が0で、商品も存在しない
             Long cartItemId = 999L;
             int newQuantity = 5;
             
-            given(cartDao.findBySessionId(sessionId)).willReturn(Optional.of(testCart));
+            given(cartItemDao.updateQuantityInSession(cartItemId, sessionKey, newQuantity)).willReturn(0);
             given(cartItemDao.findById(cartItemId)).willReturn(Optional.empty());
 
             // When & Then: 例外がスローされる
-            assertThatThrownBy(() -> cartService.updateCartItem(sessionId, cartItemId, newQuantity))
-                .isInstanceOf(IllegalArgumentException.class)
+            assertThatThrownBy(() -> cartService.updateCartItem(sessionKey, cartItemId, newQuantity))
+                .isInstanceOf(NoSuchElementException.class)
                 .hasMessageContaining("Cart item not found");
-            
-            verify(cartDao).findBySessionId(sessionId);
-            verify(cartItemDao).findById(cartItemId);
-            verify(cartItemDao, never()).update(any(CartItem.class));
         }
     }
 
@@ -251,40 +579,648 @@ class CartServiceTest {
     class RemoveFromCartTests {
         
         @Test
-        @DisplayName("商品が存在する場合、削除できる")
+        @DisplayName("商品が存在する場合、所有者の条件付きの1文で削除できる")
         void shouldRemoveExistingItem() {
-            // Given: カートと商品が存在する
+            // Given: セッションのカートに商品が存在する
             Long cartItemId = 1L;
             
-            given(cartDao.findBySessionId(sessionId)).willReturn(Optional.of(testCart));
-            given(cartItemDao.findById(cartItemId)).willReturn(Optional.of(testCartItem));
-            given(cartItemDao.delete(any(CartItem.class))).willReturn(1);
+            given(cartItemDao.deleteInSession(cartItemId, sessionKey)).willReturn(1);
 
             // When: 商品を削除
-            assertDoesNotThrow(() -> cartService.removeFromCart(sessionId, cartItemId));
+            assertDoesNotThrow(() -> cartService.removeFromCart(sessionKey, cartItemId));
 
-            // Then: 商品が削除される
-            verify(cartDao).findBySessionId(sessionId);
-            verify(cartItemDao).findById(cartItemId);
-            verify(cartItemDao).delete(any(CartItem.class));
+            // Then: カートや商品の検索は行わない
+            verify(cartItemDao).deleteInSession(cartItemId, sessionKey);
+            verify(cartDao, never()).findBySessionKey(any());
+            verify(cartItemDao, never()).findById(anyLong());
+            verify(cartItemDao, never()).delete(any(CartItem.class));
         }
 
         @Test
-        @DisplayName("カートが存在しない場合、例外がスローされる")
-        void shouldThrowExceptionWhenCartDoesNotExist() {
-            // Given: カートが存在しない
+        @DisplayName("他のカートの商品の場合、SecurityExceptionがスローされる")
+        void shouldThrowExceptionWhenItemBelongsToAnotherCart() {
+            // Given: 削除件数が0で、商品自体は存在する (セッションにカートがない場合も含む)
             Long cartItemId = 1L;
             
-            given(cartDao.findBySessionId(sessionId)).willReturn(Optional.empty());
+            given(cartItemDao.deleteInSession(cartItemId, sessionKey)).willReturn(0);
+            given(cartItemDao.findById(cartItemId)).willReturn(Optional.of(testCartItem));
 
             // When & Then: 例外がスローされる
-            assertThatThrownBy(() -> cartService.removeFromCart(sessionId, cartItemId))
-                .isInstanceOf(IllegalArgumentException.class)
-                .hasMessageContaining("Cart not found");
+            assertThatThrownBy(() -> cartService.removeFromCart(sessionKey, cartItemId))
+                .isInstanceOf(SecurityException.class);
+        }
+
+        @Test
+        @DisplayName("商品が存在しない場合、NoSuchElementExceptionがスローされる")
+        void shouldThrowExceptionWhenItemDoesNotExist() {
+            // Given: 削除件数が0で、商品も存在しない
+            Long cartItemId = 999L;
             
-            verify(cartDao).findBySessionId(sessionId);
+            given(cartItemDao.deleteInSession(cartItemId, sessionKey)).willReturn(0);
+            given(cartItemDao.findById(cartItemId)).willReturn(Optional.empty());
+
+            // When & Then: 例外がスローされる
+            assertThatThrownBy(() -> cartService.removeFromCart(sessionKey, cartItemId))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessageContaining("Cart item not found");
+        }
+    }
+
+    @Nested
+    @DisplayName("applyOperations(): カート操作の一括適用")
+    class ApplyOperationsTests {
+
+        @Test
+        @DisplayName("連続する同じ種類の操作をまとめてバッチ実行し、指定順に適用する")
+        void shouldBatchConsecutiveOperationsInOrder() {
+            // Given: add×2 → update → remove×2 の操作
+            List<CartOperation> operations = List.of(
+                CartOperation.add(1L, 2),
+                CartOperation.add(2L, 1),
+                CartOperation.update(10L, 5),
+                CartOperation.remove(11L),
+                CartOperation.remove(12L));
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.upsertAll(anyList())).willReturn(new int[] {1, 1});
+            given(cartItemDao.updateQuantities(anyList())).willReturn(new int[] {1});
+            given(cartItemDao.deleteAll(anyList())).willReturn(new int[] {1, 1});
+            given(cartItemDao.findByCartId(testCart.getId())).willReturn(List.of(testCartItem));
+
+            // When: 一括適用
+            List<CartItem> result = cartService.applyOperations(sessionKey, operations);
+
+            // Then: 種類ごとに1回ずつ、指定順にバッチが実行される
+            assertThat(result).containsExactly(testCartItem);
+            InOrder inOrder = inOrder(cartItemDao);
+            ArgumentCaptor<List<CartItem>> captor = ArgumentCaptor.forClass(List.class);
+            inOrder.verify(cartItemDao).upsertAll(captor.capture());
+            assertThat(captor.getValue())
+                .extracting(CartItem::getCartId, CartItem::getProductId, CartItem::getQuantity)
+                .containsExactly(tuple(1L, 1L, 2), tuple(1L, 2L, 1));
+            inOrder.verify(cartItemDao).updateQuantities(captor.capture());
+            assertThat(captor.getValue())
+                .extracting(CartItem::getId, CartItem::getCartId, CartItem::getQuantity)
+                .containsExactly(tuple(10L, 1L, 5));
+            inOrder.verify(cartItemDao).deleteAll(captor.capture());
+            assertThat(captor.getValue()).extracting(CartItem::getId).containsExactly(11L, 12L);
+            inOrder.verify(cartItemDao).findByCartId(testCart.getId());
             verify(cartItemDao, never()).findById(anyLong());
+
+            // 各操作が指定順にイベントとして記録される (削除の数量は記録しない)
+            InOrder events = inOrder(eventLog);
+            events.verify(eventLog).record(sessionKey, CartEvent.Type.ADD, 1L, null, 2);
+            events.verify(eventLog).record(sessionKey, CartEvent.Type.ADD, 2L, null, 1);
+            events.verify(eventLog).record(sessionKey, CartEvent.Type.UPDATE, null, 10L, 5);
+            events.verify(eventLog).record(sessionKey, CartEvent.Type.REMOVE, null, 11L, null);
+            events.verify(eventLog).record(sessionKey, CartEvent.Type.REMOVE, null, 12L, null);
+        }
+
+        @Test
+        @DisplayName("カートが存在せずaddを含む場合は、カートを作成してから適用する")
+        void shouldCreateCartWhenAddingToMissingCart() {
+            // Given: カートが存在しない
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.empty());
+            given(cartDao.insertIfAbsent(sessionKey)).willReturn(1L);
+            given(cartItemDao.upsertAll(anyList())).willReturn(new int[] {1});
+            given(cartItemDao.findByCartId(1L)).willReturn(List.of(testCartItem));
+
+            // When: 商品を追加
+            List<CartItem> result = cartService.applyOperations(sessionKey, List.of(CartOperation.add(1L, 2)));
+
+            // Then: カートが作成される
+            assertThat(result).hasSize(1);
+            verify(cartDao).insertIfAbsent(sessionKey);
+        }
+
+        @Test
+        @DisplayName("他のカートの商品を対象とした操作があれば例外をスローする")
+        void shouldRejectItemOfAnotherCart() {
+            // Given: 2件目の更新件数が0 (他のカートの商品)
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.updateQuantities(anyList())).willReturn(new int[] {1, 0});
+
+            // When & Then: 例外がスローされ、結果は取得されない
+            assertThatThrownBy(() -> cartService.applyOperations(sessionKey,
+                    List.of(CartOperation.update(10L, 2), CartOperation.update(99L, 2))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("99");
+            verify(cartItemDao, never()).findByCartId(anyLong());
+            // 失敗した操作のイベントは記録されない
+            verifyNoInteractions(eventLog);
+        }
+
+        @Test
+        @DisplayName("追加件数が0の商品 (商品マスタにない) があれば例外をスローする")
+        void shouldRejectAddOfMissingProduct() {
+            // Given: 2件目の追加件数が0
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.upsertAll(anyList())).willReturn(new int[] {1, 0});
+
+            // When & Then: NoSuchElementExceptionがスローされる
+            assertThatThrownBy(() -> cartService.applyOperations(sessionKey,
+                    List.of(CartOperation.add(1L, 1), CartOperation.add(7L, 1))))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessage("Product not found with id: 7");
+            verify(cartItemDao, never()).findByCartId(anyLong());
+        }
+
+        @Test
+        @DisplayName("不正な操作が含まれる場合は何も実行せずに例外をスローする")
+        void shouldValidateAllOperationsBeforeApplying() {
+            // Given: 2件目の数量が0
+            List<CartOperation> operations = List.of(CartOperation.add(1L, 1), CartOperation.update(10L, 0));
+
+            // When & Then: 例外がスローされ、DBにはアクセスしない
+            assertThatThrownBy(() -> cartService.applyOperations(sessionKey, operations))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Quantity must be positive");
+            verifyNoInteractions(cartDao, cartItemDao);
+        }
+
+        @Test
+        @DisplayName("操作が空または上限を超える場合は例外をスローする")
+        void shouldRejectEmptyOrTooManyOperations() {
+            // Given: 上限を1件超える操作
+            List<CartOperation> tooMany = Collections.nCopies(CartService.MAX_OPERATIONS + 1, CartOperation.add(1L, 1));
+
+            // When & Then: どちらも例外がスローされる
+            assertThatThrownBy(() -> cartService.applyOperations(sessionKey, List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> cartService.applyOperations(sessionKey, tooMany))
+                .isInstanceOf(IllegalArgumentException.class);
+            verifyNoInteractions(cartDao, cartItemDao);
+        }
+
+        @Test
+        @DisplayName("在庫が不足する商品のaddが含まれる場合は何も実行せずに例外をスローする")
+        void shouldRejectAddBeyondStockBeforeApplying() {
+            // Given: 2件目のaddが在庫を超える
+            List<CartOperation> operations = List.of(CartOperation.update(10L, 1), CartOperation.add(2L, 50));
+            willThrow(new IllegalStateException("Insufficient stock for product id: 2"))
+                .given(catalogIndex).requireAvailable(2L, 50);
+
+            // When & Then: 例外がスローされ、DBにはアクセスしない
+            assertThatThrownBy(() -> cartService.applyOperations(sessionKey, operations))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Insufficient stock for product id: 2");
+            verifyNoInteractions(cartDao, cartItemDao);
+        }
+    }
+
+    @Nested
+    @DisplayName("clearCart() / deleteCart(): カートの一括削除")
+    class ClearCartTests {
+
+        @Test
+        @DisplayName("clearCart: カート内商品を1文で削除し、個別の取得・削除は行わない")
+        void shouldClearCartWithSingleStatement() {
+            // Given: カートが存在する
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.deleteByCartId(testCart.getId())).willReturn(2);
+
+            // When: カートを空にする
+            cartService.clearCart(sessionKey);
+
+            // Then: deleteByCartIdのみが実行され、カート自体は残る
+            verify(cartItemDao).deleteByCartId(testCart.getId());
+            verify(cartItemDao, never()).findByCartId(anyLong());
             verify(cartItemDao, never()).delete(any(CartItem.class));
+            verify(cartDao, never()).deleteById(anyLong());
+        }
+
+        @Test
+        @DisplayName("clearCart: カートが存在しない場合は何もしない")
+        void shouldDoNothingWhenCartDoesNotExist() {
+            // Given: カートが存在しない
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.empty());
+
+            // When: カートを空にする
+            cartService.clearCart(sessionKey);
+
+            // Then: 削除は実行されない
+            verify(cartItemDao, never()).deleteByCartId(anyLong());
+        }
+
+        @Test
+        @DisplayName("deleteCart: カート内商品とカートを削除し、キャッシュからも削除する")
+        void shouldDeleteCartAndEvictCache() {
+            // Given: カートが存在し、カートIDがキャッシュされている
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            cartService.getCartItems(sessionKey);
+
+            // When: カートを削除
+            cartService.deleteCart(sessionKey);
+
+            // Then: 商品→カートの順に削除され、キャッシュからも消える
+            InOrder inOrder = inOrder(cartItemDao, cartDao);
+            inOrder.verify(cartItemDao).deleteByCartId(testCart.getId());
+            inOrder.verify(cartDao).deleteById(testCart.getId());
+            assertThat(cartIdCache.get(sessionKey)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("incrementCartItem(): 数量の加減算")
+    class IncrementCartItemTests {
+
+        @Test
+        @DisplayName("DB上で加算し、読み込み・書き戻しは行わない")
+        void shouldIncrementInDatabase() {
+            // Given: 加算後の行が返される
+            testCartItem.setQuantity(3);
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.incrementQuantity(1L, 1L, 1)).willReturn(Optional.of(testCartItem));
+
+            // When: 1加算
+            Optional<CartItem> result = cartService.incrementCartItem(sessionKey, 1L, 1);
+
+            // Then: 更新後の商品が返される
+            assertThat(result).contains(testCartItem);
+            verify(cartItemDao, never()).findById(anyLong());
+            verify(cartItemDao, never()).update(any(CartItem.class));
+            verify(cartItemDao, never()).deleteIfDepleted(anyLong(), anyLong(), anyInt());
+        }
+
+        @Test
+        @DisplayName("数量が0以下になる場合は削除し、空を返す")
+        void shouldDeleteWhenDepleted() {
+            // Given: 加算では更新されず、削除される
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.incrementQuantity(1L, 1L, -2)).willReturn(Optional.empty());
+            given(cartItemDao.deleteIfDepleted(1L, 1L, -2)).willReturn(1);
+
+            // When: 2減算
+            Optional<CartItem> result = cartService.incrementCartItem(sessionKey, 1L, -2);
+
+            // Then: 空が返され、削除として記録される
+            assertThat(result).isEmpty();
+            verify(eventLog).record(sessionKey, CartEvent.Type.REMOVE, null, 1L, null);
+        }
+
+        @Test
+        @DisplayName("このカートに商品が存在しない場合は例外をスローする")
+        void shouldThrowWhenItemNotInCart() {
+            // Given: 更新も削除もされない
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.incrementQuantity(99L, 1L, 1)).willReturn(Optional.empty());
+            given(cartItemDao.deleteIfDepleted(99L, 1L, 1)).willReturn(0);
+            given(cartItemDao.findByIdForUpdate(99L, 1L)).willReturn(Optional.empty());
+
+            // When & Then: 行がないことを確かめてからNoSuchElementExceptionがスローされる
+            assertThatThrownBy(() -> cartService.incrementCartItem(sessionKey, 99L, 1))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessage("Cart item not found");
+        }
+
+        @Test
+        @DisplayName("加算と削除の間に数量が変わってどちらにも一致しない場合は、行をロックして再実行する")
+        void shouldRetryUnderRowLockWhenRacing() {
+            // Given: 1回目は数量1のため加算 (-1) に一致せず、削除の前に他のリクエストが数量を2にした
+            testCartItem.setQuantity(1);
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.incrementQuantity(1L, 1L, -1))
+                .willReturn(Optional.empty())
+                .willReturn(Optional.of(testCartItem));
+            given(cartItemDao.deleteIfDepleted(1L, 1L, -1)).willReturn(0);
+            given(cartItemDao.findByIdForUpdate(1L, 1L)).willReturn(Optional.of(testCartItem));
+
+            // When
+            Optional<CartItem> result = cartService.incrementCartItem(sessionKey, 1L, -1);
+
+            // Then: 404 にはならず、ロック後の加算結果が返される
+            assertThat(result).contains(testCartItem);
+            InOrder inOrder = inOrder(cartItemDao);
+            inOrder.verify(cartItemDao).incrementQuantity(1L, 1L, -1);
+            inOrder.verify(cartItemDao).deleteIfDepleted(1L, 1L, -1);
+            inOrder.verify(cartItemDao).findByIdForUpdate(1L, 1L);
+            inOrder.verify(cartItemDao).incrementQuantity(1L, 1L, -1);
+            verify(eventLog).record(sessionKey, CartEvent.Type.UPDATE, testCartItem.getProductId(), 1L, 1);
+        }
+
+        @Test
+        @DisplayName("加減算する数量が0の場合は例外をスローする")
+        void shouldRejectZeroDelta() {
+            // When & Then: IllegalArgumentExceptionがスローされ、DBにはアクセスしない
+            assertThatThrownBy(() -> cartService.incrementCartItem(sessionKey, 1L, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Delta cannot be zero");
+            verifyNoInteractions(cartDao, cartItemDao);
+        }
+    }
+
+    @Nested
+    @DisplayName("syncCart(): ブラウザ側カートとの突き合わせ")
+    class SyncCartTests {
+
+        private CartItem serverItem(Long id, Long productId, int quantity, LocalDateTime updatedAt) {
+            CartItem item = new CartItem();
+            item.setId(id);
+            item.setCartId(1L);
+            item.setProductId(productId);
+            item.setQuantity(quantity);
+            item.setUpdatedAt(updatedAt);
+            return item;
+        }
+
+        @Test
+        @DisplayName("ブラウザ側が新しい場合、差分のみを削除 → 更新 → 追加の各1回のバッチで適用する")
+        void shouldApplyOnlyDifferencesWhenClientIsNewer() {
+            // Given: サーバー側は1時間前に更新、ブラウザ側は現在更新
+            LocalDateTime hourAgo = LocalDateTime.now().minusHours(1);
+            List<CartItem> server = List.of(
+                serverItem(10L, 1L, 2, hourAgo),
+                serverItem(11L, 2L, 1, hourAgo),
+                serverItem(12L, 4L, 5, hourAgo));
+            CartSyncRequest request = new CartSyncRequest(List.of(
+                new CartSyncRequest.Item(1L, 3),
+                new CartSyncRequest.Item(3L, 1),
+                new CartSyncRequest.Item(4L, 5)), Instant.now());
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.findByCartId(1L)).willReturn(server, List.of(testCartItem));
+            given(cartItemDao.deleteAll(anyList())).willReturn(new int[] {1});
+            given(cartItemDao.updateQuantities(anyList())).willReturn(new int[] {1});
+            given(cartItemDao.upsertAll(anyList())).willReturn(new int[] {1});
+
+            // When: 突き合わせ
+            List<CartItem> result = cartService.syncCart(sessionKey, request);
+
+            // Then: 変更のない商品 (商品4) には触れず、種類ごとに1回ずつバッチが実行される
+            assertThat(result).containsExactly(testCartItem);
+            InOrder inOrder = inOrder(cartItemDao);
+            ArgumentCaptor<List<CartItem>> captor = ArgumentCaptor.forClass(List.class);
+            inOrder.verify(cartItemDao).deleteAll(captor.capture());
+            assertThat(captor.getValue()).extracting(CartItem::getId).containsExactly(11L);
+            inOrder.verify(cartItemDao).updateQuantities(captor.capture());
+            assertThat(captor.getValue())
+                .extracting(CartItem::getId, CartItem::getQuantity)
+                .containsExactly(tuple(10L, 3));
+            inOrder.verify(cartItemDao).upsertAll(captor.capture());
+            assertThat(captor.getValue())
+                .extracting(CartItem::getProductId, CartItem::getQuantity)
+                .containsExactly(tuple(3L, 1));
+        }
+
+        @Test
+        @DisplayName("サーバー側が新しい場合、ブラウザ側にしかない商品のみ追加する")
+        void shouldOnlyAddMissingItemsWhenServerIsNewer() {
+            // Given: サーバー側はブラウザ側より後に更新されている
+            Instant clientUpdatedAt = Instant.now().minusSeconds(3600);
+            List<CartItem> server = List.of(serverItem(10L, 1L, 2, LocalDateTime.now()));
+            CartSyncRequest request = new CartSyncRequest(List.of(
+                new CartSyncRequest.Item(1L, 9),
+                new CartSyncRequest.Item(3L, 1)), clientUpdatedAt);
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.findByCartId(1L)).willReturn(server, List.of(testCartItem));
+            given(cartItemDao.upsertAll(anyList())).willReturn(new int[] {1});
+
+            // When: 突き合わせ
+            cartService.syncCart(sessionKey, request);
+
+            // Then: サーバー側の数量は変更・削除されない
+            verify(cartItemDao).upsertAll(argThat(items -> items.size() == 1 && items.get(0).getProductId().equals(3L)));
+            verify(cartItemDao, never()).updateQuantities(anyList());
+            verify(cartItemDao, never()).deleteAll(anyList());
+        }
+
+        @Test
+        @DisplayName("差分がなければ書き込みを行わない")
+        void shouldNotWriteWhenNothingChanged() {
+            // Given: ブラウザ側とサーバー側が同じ内容
+            List<CartItem> server = List.of(serverItem(10L, 1L, 2, LocalDateTime.now().minusHours(1)));
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.findByCartId(1L)).willReturn(server);
+
+            // When: 突き合わせ
+            List<CartItem> result = cartService.syncCart(sessionKey,
+                new CartSyncRequest(List.of(new CartSyncRequest.Item(1L, 2)), Instant.now()));
+
+            // Then: サーバー側のカートがそのまま返される
+            assertThat(result).isEqualTo(server);
+            verify(cartItemDao, times(1)).findByCartId(1L);
+            verify(cartItemDao, never()).upsertAll(anyList());
+        }
+
+        @Test
+        @DisplayName("同じ商品が重複している場合は例外をスローする")
+        void shouldRejectDuplicateProducts() {
+            // Given: 商品1が2回含まれる
+            CartSyncRequest request = new CartSyncRequest(List.of(
+                new CartSyncRequest.Item(1L, 1),
+                new CartSyncRequest.Item(1L, 2)), Instant.now());
+
+            // When & Then: 例外がスローされ、DBにはアクセスしない
+            assertThatThrownBy(() -> cartService.syncCart(sessionKey, request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Duplicate product ID: 1");
+            verifyNoInteractions(cartDao, cartItemDao);
+        }
+    }
+
+    @Nested
+    @DisplayName("mergeGuestCart(): ログイン時のカート統合")
+    class MergeGuestCartTests {
+
+        private final SessionKey userSessionKey = SessionKey.parse("00000000-0000-0000-0000-0000000000aa");
+
+        private Cart userCart() {
+            Cart cart = new Cart();
+            cart.setId(2L);
+            cart.setSessionKey(userSessionKey);
+            cart.setUserId(42L);
+            return cart;
+        }
+
+        @Test
+        @DisplayName("ユーザーのカートがあれば、ゲストのカートを1文で統合してから削除し、セッションキーを付け替える")
+        void shouldMergeGuestCartIntoUserCart() {
+            // Given: ゲストのカート(1)とユーザーのカート(2)
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartDao.findByUserId(42L)).willReturn(Optional.of(userCart()));
+            given(cartItemDao.findByCartId(2L)).willReturn(List.of(testCartItem));
+
+            // When: 統合
+            List<CartItem> result = cartService.mergeGuestCart(sessionKey, 42L);
+
+            // Then: 統合 → ゲストのカートの削除 → 付け替えの順に実行される
+            assertThat(result).containsExactly(testCartItem);
+            InOrder inOrder = inOrder(cartItemDao, cartDao);
+            inOrder.verify(cartItemDao).mergeCart(1L, 2L);
+            inOrder.verify(cartItemDao).deleteByCartId(1L);
+            inOrder.verify(cartDao).deleteById(1L);
+            inOrder.verify(cartDao).assignOwner(2L, sessionKey, 42L);
+            verify(cartItemDao, never()).upsert(anyLong(), anyLong(), anyInt());
+
+            // 現在のセッションキーは統合後のカートを指す
+            assertThat(cartIdCache.get(sessionKey)).contains(2L);
+            assertThat(cartIdCache.get(userSessionKey)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("ユーザーのカートがなければ、ゲストのカートをそのままユーザーのカートにする")
+        void shouldAdoptGuestCartWhenUserHasNoCart() {
+            // Given: ゲストのカートのみ存在する
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartDao.findByUserId(42L)).willReturn(Optional.empty());
+            given(cartItemDao.findByCartId(1L)).willReturn(List.of(testCartItem));
+
+            // When: 統合
+            cartService.mergeGuestCart(sessionKey, 42L);
+
+            // Then: 商品の移動や削除は行わない
+            verify(cartDao).assignOwner(1L, sessionKey, 42L);
+            verify(cartItemDao, never()).mergeCart(anyLong(), anyLong());
+            verify(cartDao, never()).deleteById(anyLong());
+        }
+
+        @Test
+        @DisplayName("ユーザーIDが指定されていない場合は例外をスローする")
+        void shouldRejectNullUserId() {
+            // When & Then: 例外がスローされ、DBにはアクセスしない
+            assertThatThrownBy(() -> cartService.mergeGuestCart(sessionKey, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("User ID cannot be null");
+            verifyNoInteractions(cartDao, cartItemDao);
+        }
+    }
+
+    @Nested
+    @DisplayName("write-behind モード")
+    class WriteBehindModeTests {
+
+        @BeforeEach
+        void enableWriteBehind() {
+            lenient().when(cartStore.isEnabled()).thenReturn(true);
+        }
+
+        @Test
+        @DisplayName("商品の追加はメモリ上のカートに委譲し、DBにアクセスせずトランザクションも開始しない")
+        void shouldDelegateAddToStore() {
+            // Given: ストアが追加後の商品を返す
+            given(cartStore.add(sessionKey, 1L, 2)).willReturn(testCartItem);
+
+            // When: 商品を追加
+            CartItem result = cartService.addToCart(sessionKey, 1L, 2);
+
+            // Then: ストアの結果が返され、DBにはアクセスしない
+            assertThat(result).isSameAs(testCartItem);
+            verifyNoInteractions(cartDao, cartItemDao, transactionManager);
+        }
+
+        @Test
+        @DisplayName("数量の変更・削除・加減算もトランザクションを開始せずにメモリ上のカートへ適用する")
+        void shouldMutateStoreWithoutTransaction() {
+            // Given: 加減算後の商品
+            given(cartStore.increment(sessionKey, 1L, 1)).willReturn(Optional.of(testCartItem));
+
+            // When: 数量の変更・削除・加減算を行う
+            cartService.updateCartItem(sessionKey, 1L, 3);
+            cartService.incrementCartItem(sessionKey, 1L, 1);
+            cartService.removeFromCart(sessionKey, 1L);
+
+            // Then: ストアに委譲され、トランザクションは開始されない
+            verify(cartStore).update(sessionKey, 1L, 3);
+            verify(cartStore).remove(sessionKey, 1L);
+            verifyNoInteractions(cartDao, cartItemDao, transactionManager);
+        }
+
+        @Test
+        @DisplayName("一括操作は検証後にメモリ上のカートへ適用する")
+        void shouldValidateBeforeApplyingToStore() {
+            // Given: 不正な操作を含むリスト
+            List<CartOperation> operations = List.of(CartOperation.add(1L, 1), CartOperation.update(1L, 0));
+
+            // When & Then: 検証エラーとなり、ストアには適用されない
+            assertThatThrownBy(() -> cartService.applyOperations(sessionKey, operations))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Quantity must be positive");
+            verify(cartStore, never()).apply(any(), anyList());
+        }
+
+        @Test
+        @DisplayName("カート表示の取得前に未反映の変更をDBへ反映する")
+        void shouldFlushBeforeReadingView() {
+            // Given: カート表示の明細
+            given(cartDao.findViewBySessionKey(sessionKey)).willReturn(List.of());
+
+            // When: カート表示を取得
+            cartService.getCartView(sessionKey);
+
+            // Then: 書き込み可能なトランザクション内で反映してからDBを参照する
+            InOrder inOrder = inOrder(transactionManager, cartStore, cartDao);
+            ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+            inOrder.verify(transactionManager).getTransaction(definition.capture());
+            inOrder.verify(cartStore).flush(sessionKey);
+            inOrder.verify(cartDao).findViewBySessionKey(sessionKey);
+            assertThat(definition.getValue().isReadOnly()).isFalse();
+        }
+
+        @Test
+        @DisplayName("注文用のカート内商品は、未反映の変更を反映してから単価を含めてDBから読む")
+        void shouldReadCheckoutItemsFromDatabaseAfterFlush() {
+            // Given: DBのカート内商品は追加時点の単価を持つ
+            testCartItem.setUnitPrice(1000);
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+            given(cartItemDao.findByCartId(1L)).willReturn(List.of(testCartItem));
+
+            // When
+            List<CartItem> result = cartService.getCheckoutItems(sessionKey);
+
+            // Then: 反映後にDBから読み、メモリ上のカートは参照しない
+            assertThat(result).extracting(CartItem::getUnitPrice).containsExactly(1000);
+            InOrder inOrder = inOrder(cartStore, cartItemDao);
+            inOrder.verify(cartStore).flush(sessionKey);
+            inOrder.verify(cartItemDao).findByCartId(1L);
+            verify(cartStore, never()).getItems(any());
+        }
+
+        @Test
+        @DisplayName("項目を指定した場合は、メモリ上のカートからも指定された項目のみを返す")
+        void shouldProjectItemsFromStore() {
+            // Given: メモリ上のカートの商品
+            testCartItem.setUnitPrice(1000);
+            given(cartStore.getItems(sessionKey)).willReturn(List.of(testCartItem));
+            FieldSelection fields = FieldSelection.parse("productId,quantity", FieldSelection.CART_ITEM_COLUMNS);
+
+            // When
+            List<CartItem> result = cartService.getCartItems(sessionKey, fields);
+
+            // Then: DBから指定された列のみを読んだ場合と同じく、id と指定された項目のみが設定される
+            assertThat(result).singleElement().satisfies(item -> {
+                assertThat(item.getId()).isEqualTo(testCartItem.getId());
+                assertThat(item.getProductId()).isEqualTo(testCartItem.getProductId());
+                assertThat(item.getQuantity()).isEqualTo(testCartItem.getQuantity());
+                assertThat(item.getCartId()).isNull();
+                assertThat(item.getUnitPrice()).isNull();
+            });
+            verifyNoInteractions(cartDao, cartItemDao);
+        }
+
+        @Test
+        @DisplayName("商品点数はメモリ上のカートから数える")
+        void shouldCountItemsInStore() {
+            // Given: メモリ上のカートに数量2と3の商品がある
+            CartItem other = new CartItem();
+            other.setProductId(2L);
+            other.setQuantity(3);
+            given(cartStore.getItems(sessionKey)).willReturn(List.of(testCartItem, other));
+
+            // When & Then: DBにはアクセスしない
+            assertThat(cartService.getCartCount(sessionKey)).isEqualTo(5);
+            verifyNoInteractions(cartDao, cartItemDao);
+        }
+
+        @Test
+        @DisplayName("カートを空にした場合、メモリ上のカートも空にする")
+        void shouldClearStoreWhenClearingCart() {
+            // Given: カートが存在する
+            given(cartDao.findBySessionKey(sessionKey)).willReturn(Optional.of(testCart));
+
+            // When: カートを空にする
+            cartService.clearCart(sessionKey);
+
+            // Then: DBとメモリ上のカートの両方が空になる
+            verify(cartItemDao).deleteByCartId(1L);
+            verify(cartStore).clear(sessionKey);
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,158 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.domain.SessionKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DisplayName("CartWriteAheadLog: カート更新WALのテスト")
+class CartWriteAheadLogTest {
+
+    private static final SessionKey KEY_1 = new SessionKey(0L, 1L);
+    private static final SessionKey KEY_2 = new SessionKey(0L, 2L);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("fsync済みのレコードを書き込み順に読み込める")
+    void shouldReadBackDurableRecordsInOrder() throws IOException {
+        // Given: 2つのセッションのレコードを追記
+        try (CartWriteAheadLog wal = new CartWriteAheadLog(dir, 1024 * 1024)) {
+            wal.open();
+            wal.append(KEY_1, 10L, 2);
+            wal.append(KEY_2, 20L, 1);
+            long seq = wal.append(KEY_1, CartWriteAheadLog.CLEAR, 0);
+
+            // When: 最後のレコードの永続化を待つ
+            wal.awaitDurable(seq);
+        }
+
+        // Then: 閉じた後に全レコードを書き込み順に読み込める
+        List<CartWriteAheadLog.Record> records = new CartWriteAheadLog(dir, 1024 * 1024).readAll();
+        assertThat(records)
+            .extracting(r -> r.sessionKey, r -> r.productId, r -> r.quantity, CartWriteAheadLog.Record::isClear)
+            .containsExactly(
+                tuple(KEY_1, 10L, 2, false),
+                tuple(KEY_2, 20L, 1, false),
+                tuple(KEY_1, CartWriteAheadLog.CLEAR, 0, true)
+            );
+    }
+
+    @Test
+    @DisplayName("末尾の書きかけのレコードは読み飛ばす")
+    void shouldIgnoreTornTail() throws IOException {
+        // Given: 1レコードを書き込んだ後、書きかけのレコードが残っている
+        try (CartWriteAheadLog wal = new CartWriteAheadLog(dir, 1024 * 1024)) {
+            wal.open();
+            wal.awaitDurable(wal.append(KEY_1, 10L, 3));
+        }
+        Path segment = singleSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[CartWriteAheadLog.RECORD_SIZE - 5]));
+        }
+
+        // When: 読み込む
+        List<CartWriteAheadLog.Record> records = new CartWriteAheadLog(dir, 1024 * 1024).readAll();
+
+        // Then: 完全なレコードのみ返される
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).quantity).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("CRCが一致しないレコード以降は読み込まない")
+    void shouldStopAtCorruptRecord() throws IOException {
+        // Given: 2レコード目の数量が壊れている
+        try (CartWriteAheadLog wal = new CartWriteAheadLog(dir, 1024 * 1024)) {
+            wal.open();
+            wal.append(KEY_1, 10L, 1);
+            wal.append(KEY_1, 11L, 1);
+            wal.awaitDurable(wal.append(KEY_1, 12L, 1));
+        }
+        Path segment = singleSegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[CartWriteAheadLog.RECORD_SIZE + 27] ^= 0x7f;
+        Files.write(segment, bytes);
+
+        // When: 読み込む
+        List<CartWriteAheadLog.Record> records = new CartWriteAheadLog(dir, 1024 * 1024).readAll();
+
+        // Then: 壊れたレコードより前のみ返される
+        assertThat(records).extracting(r -> r.productId).containsExactly(10L);
+    }
+
+    @Test
+    @DisplayName("切り替え前のセグメントを削除すると、切り替え後のレコードのみ残る")
+    void shouldDeleteSegmentsBeforeRotation() throws IOException {
+        try (CartWriteAheadLog wal = new CartWriteAheadLog(dir, 1024 * 1024)) {
+            // Given: 切り替え前後にレコードを追記
+            wal.open();
+            wal.awaitDurable(wal.append(KEY_1, 10L, 1));
+            long segment = wal.rotate();
+            wal.awaitDurable(wal.append(KEY_2, 20L, 5));
+
+            // When: 切り替え前のセグメントを削除
+            wal.deleteSegmentsBefore(segment);
+        }
+
+        // Then: 切り替え後のレコードのみ読み込まれる
+        List<CartWriteAheadLog.Record> records = new CartWriteAheadLog(dir, 1024 * 1024).readAll();
+        assertThat(records).extracting(r -> r.sessionKey).containsExactly(KEY_2);
+    }
+
+    @Test
+    @DisplayName("セグメントが上限サイズに達すると新しいセグメントに切り替える")
+    void shouldRollSegmentWhenFull() throws IOException {
+        // Given: 1レコードで上限に達するセグメントサイズ
+        try (CartWriteAheadLog wal = new CartWriteAheadLog(dir, CartWriteAheadLog.RECORD_SIZE)) {
+            wal.open();
+
+            // When: 2レコードを順に永続化
+            wal.awaitDurable(wal.append(KEY_1, 10L, 1));
+            wal.awaitDurable(wal.append(KEY_1, 11L, 1));
+        }
+
+        // Then: セグメントが分かれても書き込み順に読み込める
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.count()).isGreaterThanOrEqualTo(2);
+        }
+        List<CartWriteAheadLog.Record> records = new CartWriteAheadLog(dir, CartWriteAheadLog.RECORD_SIZE).readAll();
+        assertThat(records).extracting(r -> r.productId).containsExactly(10L, 11L);
+    }
+
+    @Test
+    @DisplayName("閉じた後の追記は拒否する")
+    void shouldRejectAppendAfterClose() throws IOException {
+        // Given: 閉じたWAL
+        CartWriteAheadLog wal = new CartWriteAheadLog(dir, 1024 * 1024);
+        wal.open();
+        wal.close();
+
+        // When & Then: IllegalStateExceptionがスローされる
+        assertThatThrownBy(() -> wal.append(KEY_1, 10L, 1))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Cart WAL is closed");
+    }
+
+    private Path singleSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = files.toList();
+            assertThat(segments).hasSize(1);
+            return segments.get(0);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.dao.CartIdempotencyKeyDao;
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.CartIdempotencyKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("IdempotencyStore: Idempotency-Key の記録のテスト")
+class IdempotencyStoreTest {
+
+    private static final SessionKey SESSION = new SessionKey(0L, 1L);
+    private static final String KEY = "op-1";
+    private static final String FINGERPRINT = "POST /api/cart";
+    private static final Duration TTL = Duration.ofHours(24);
+
+    @Mock
+    private CartIdempotencyKeyDao idempotencyKeyDao;
+
+    private MutableClock clock;
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        store = new IdempotencyStore(idempotencyKeyDao, 100, TTL, true, clock);
+    }
+
+    @Test
+    @DisplayName("初回はDBにキーを登録し、空を返す")
+    void shouldClaimNewKey() {
+        // Given: DBへの登録に成功する
+        given(idempotencyKeyDao.claim(eq(SESSION), eq(KEY), eq(FINGERPRINT), any())).willReturn(1);
+
+        // When / Then: 呼び出し側が処理を行う
+        assertThat(store.begin(SESSION, KEY, FINGERPRINT)).isEmpty();
+        verify(idempotencyKeyDao).claim(SESSION, KEY, FINGERPRINT, now().plus(TTL));
+    }
+
+    @Test
+    @DisplayName("処理中のキーの再送はDBにアクセスせずIllegalStateExceptionで拒否する")
+    void shouldRejectWhileInProgress() {
+        // Given: キーを登録済み
+        given(idempotencyKeyDao.claim(eq(SESSION), eq(KEY), eq(FINGERPRINT), any())).willReturn(1);
+        store.begin(SESSION, KEY, FINGERPRINT);
+
+        // When / Then
+        assertThatThrownBy(() -> store.begin(SESSION, KEY, FINGERPRINT))
+            .isInstanceOf(IllegalStateException.class);
+        verify(idempotencyKeyDao, times(1)).claim(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("完了したキーの再送には記録した応答をメモリから返す")
+    void shouldReplayCompletedResponse() {
+        // Given: 処理を終えて応答を記録済み
+        given(idempotencyKeyDao.claim(eq(SESSION), eq(KEY), eq(FINGERPRINT), any())).willReturn(1);
+        store.begin(SESSION, KEY, FINGERPRINT);
+        store.complete(SESSION, KEY, response(201, "{\"id\":1}"));
+
+        // When
+        Optional<IdempotencyStore.StoredResponse> replayed = store.begin(SESSION, KEY, FINGERPRINT);
+
+        // Then: 記録した応答が返され、DBには再登録しない
+        assertThat(replayed).isPresent();
+        assertThat(replayed.get().getStatus()).isEqualTo(201);
+        assertThat(new String(replayed.get().getBody(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":1}");
+        verify(idempotencyKeyDao).complete(eq(SESSION), eq(KEY), eq(201), eq("application/json"), any());
+        verify(idempotencyKeyDao, never()).findByKey(any(), any());
+    }
+
+    @Test
+    @DisplayName("別のリクエストに使われたキーはIllegalArgumentExceptionで拒否する")
+    void shouldRejectDifferentRequestWithSameKey() {
+        // Given: POST で使用済みのキー
+        given(idempotencyKeyDao.claim(eq(SESSION), eq(KEY), eq(FINGERPRINT), any())).willReturn(1);
+        store.begin(SESSION, KEY, FINGERPRINT);
+        store.complete(SESSION, KEY, response(201, "{}"));
+
+        // When / Then: 同じキーで DELETE する
+        assertThatThrownBy(() -> store.begin(SESSION, KEY, "DELETE /api/cart"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("他のノードで完了したキーはDBの記録から応答を返す")
+    void shouldReplayResponseRecordedByAnotherNode() {
+        // Given: DBに完了済みの行がある
+        given(idempotencyKeyDao.claim(eq(SESSION), eq(KEY), eq(FINGERPRINT), any())).willReturn(0);
+        given(idempotencyKeyDao.findByKey(SESSION, KEY)).willReturn(Optional.of(row(204, now().plusHours(1))));
+
+        // When
+        Optional<IdempotencyStore.StoredResponse> replayed = store.begin(SESSION, KEY, FINGERPRINT);
+
+        // Then
+        assertThat(replayed).isPresent();
+        assertThat(replayed.get().getStatus()).isEqualTo(204);
+    }
+
+    @Test
+    @DisplayName("DBに残った期限切れの行は削除して登録し直す")
+    void shouldReclaimExpiredRow() {
+        // Given: 1回目の登録は期限切れの行と衝突する
+        given(idempotencyKeyDao.claim(eq(SESSION), eq(KEY), eq(FINGERPRINT), any())).willReturn(0, 1);
+        given(idempotencyKeyDao.findByKey(SESSION, KEY)).willReturn(Optional.of(row(200, now().minusMinutes(1))));
+
+        // When / Then
+        assertThat(store.begin(SESSION, KEY, FINGERPRINT)).isEmpty();
+        verify(idempotencyKeyDao).deleteExpiredKey(SESSION, KEY, now());
+    }
+
+    @Test
+    @DisplayName("有効期間を過ぎたキーは新しいリクエストとして扱う")
+    void shouldTreatExpiredKeyAsNew() {
+        // Given: 完了済みのキー
+        given(idempotencyKeyDao.claim(eq(SESSION), eq(KEY), eq(FINGERPRINT), any())).willReturn(1);
+        store.begin(SESSION, KEY, FINGERPRINT);
+        store.complete(SESSION, KEY, response(201, "{}"));
+
+        // When: 有効期間が過ぎる
+        clock.advance(TTL);
+
+        // Then: 再度登録される
+        assertThat(store.begin(SESSION, KEY, FINGERPRINT)).isEmpty();
+        verify(idempotencyKeyDao, times(2)).claim(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("解放したキーは同じキーで再実行できる")
+    void shouldAllowRetryAfterRelease() {
+        // Given: 処理が失敗してキーを解放した
+        given(idempotencyKeyDao.claim(eq(SESSION), eq(KEY), eq(FINGERPRINT), any())).willReturn(1);
+        store.begin(SESSION, KEY, FINGERPRINT);
+        store.release(SESSION, KEY);
+
+        // When / Then
+        assertThat(store.begin(SESSION, KEY, FINGERPRINT)).isEmpty();
+        verify(idempotencyKeyDao).release(SESSION, KEY);
+    }
+
+    @Test
+    @DisplayName("共有しない設定ではDBにアクセスせず、上限を超えると古いキーから破棄する")
+    void shouldKeepBoundedLocalEntriesWhenNotShared() {
+        // Given: 上限2件・DBと共有しない
+        IdempotencyStore local = new IdempotencyStore(idempotencyKeyDao, 2, TTL, false, clock);
+
+        // When: 3件のキーを処理する
+        for (String key : new String[] {"a", "b", "c"}) {
+            local.begin(SESSION, key, FINGERPRINT);
+            local.complete(SESSION, key, response(200, "{}"));
+        }
+
+        // Then: 最も古いキーは破棄され、新しいリクエストとして扱われる
+        assertThat(local.size()).isEqualTo(2);
+        assertThat(local.begin(SESSION, "c", FINGERPRINT)).isPresent();
+        assertThat(local.begin(SESSION, "a", FINGERPRINT)).isEmpty();
+        verifyNoInteractions(idempotencyKeyDao);
+    }
+
+    @Test
+    @DisplayName("期限切れのキーを現在日時でDBから削除する")
+    void shouldPurgeExpiredKeys() {
+        // Given
+        given(idempotencyKeyDao.deleteExpired(now())).willReturn(3);
+
+        // When
+        store.purgeExpired();
+
+        // Then
+        verify(idempotencyKeyDao).deleteExpired(now());
+    }
+
+    private LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
+    private static IdempotencyStore.StoredResponse response(int status, String body) {
+        return new IdempotencyStore.StoredResponse(status, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CartIdempotencyKey row(int status, LocalDateTime expiresAt) {
+        CartIdempotencyKey row = new CartIdempotencyKey();
+        row.setSessionKeyHi(SESSION.getHi());
+        row.setSessionKeyLo(SESSION.getLo());
+        row.setIdempotencyKey(KEY);
+        row.setFingerprint(FINGERPRINT);
+        row.setStatus(status);
+        row.setExpiresAt(expiresAt);
+        return row;
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.dao.ProductDao;
+import com.example.ecbackend.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProductCatalogIndex: 商品在庫インデックスのテスト")
+class ProductCatalogIndexTest {
+
+    @Mock
+    private ProductDao productDao;
+
+    private ProductCatalogIndex index;
+
+    @BeforeEach
+    void setUp() {
+        given(productDao.selectIdAndStock()).willReturn(List.of(product(1L, 10), product(2L, 0)));
+        index = new ProductCatalogIndex(productDao);
+        index.reload();
+    }
+
+    @Test
+    @DisplayName("在庫の範囲内であれば追加を許可する")
+    void shouldAllowQuantityWithinStock() {
+        assertThatCode(() -> index.requireAvailable(1L, 10)).doesNotThrowAnyException();
+    }
+
+    @Test
+    @DisplayName("DBにも存在しない商品はNoSuchElementExceptionで拒否する")
+    void shouldRejectUnknownProduct() {
+        given(productDao.selectIdAndStockByIds(List.of(999L))).willReturn(List.of());
+
+        assertThatThrownBy(() -> index.requireAvailable(999L, 1))
+            .isInstanceOf(NoSuchElementException.class)
+            .hasMessage("Product not found with id: 999");
+        assertThatThrownBy(() -> index.requireAvailable(null, 1))
+            .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    @DisplayName("DBでも在庫を超える数量はIllegalStateExceptionで拒否する")
+    void shouldRejectQuantityBeyondStock() {
+        given(productDao.selectIdAndStockByIds(List.of(1L))).willReturn(List.of(product(1L, 10)));
+        given(productDao.selectIdAndStockByIds(List.of(2L))).willReturn(List.of(product(2L, 0)));
+
+        assertThatThrownBy(() -> index.requireAvailable(1L, 11))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Insufficient stock for product id: 1");
+        assertThatThrownBy(() -> index.requireAvailable(2L, 1))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("表の容量を超えて登録しても、すべての商品を参照できる")
+    void shouldGrowWhenManyProductsAreAdded() {
+        // When: 初期容量を大きく超える商品を登録
+        for (long id = 100; id < 1100; id++) {
+            index.put(id, (int) id);
+        }
+
+        // Then: 既存の商品も新しい商品も参照できる
+        assertThatCode(() -> {
+            index.requireAvailable(1L, 10);
+            for (long id = 100; id < 1100; id++) {
+                index.requireAvailable(id, (int) id);
+            }
+        }).doesNotThrowAnyException();
+    }
+
+    @Test
+    @DisplayName("在庫数の更新を反映する")
+    void shouldReflectUpdates() {
+        // When: 商品2の在庫を補充
+        index.putAfterCommit(2L, 5);
+
+        // Then: トランザクション外なので即時に反映され、DBは読まない
+        assertThatCode(() -> index.requireAvailable(2L, 5)).doesNotThrowAnyException();
+        then(productDao).should(never()).selectIdAndStockByIds(anyList());
+    }
+
+    @Test
+    @DisplayName("インデックスにない商品・在庫はDBで確認し、インデックスに反映する")
+    void shouldFallBackToDatabaseOnMiss() {
+        // Given: 他のノードで登録された商品3と、読み直しで古い在庫数に戻った商品2
+        given(productDao.selectIdAndStockByIds(List.of(3L))).willReturn(List.of(product(3L, 4)));
+        given(productDao.selectIdAndStockByIds(List.of(2L))).willReturn(List.of(product(2L, 6)));
+
+        // When & Then: DBの在庫数で許可される
+        assertThatCode(() -> {
+            index.requireAvailable(3L, 4);
+            index.requireAvailable(2L, 6);
+        }).doesNotThrowAnyException();
+
+        // 以降はインデックスで確認でき、DBは1回ずつしか読まない
+        assertThatCode(() -> {
+            index.requireAvailable(3L, 1);
+            index.requireAvailable(2L, 1);
+        }).doesNotThrowAnyException();
+        then(productDao).should().selectIdAndStockByIds(List.of(3L));
+        then(productDao).should().selectIdAndStockByIds(List.of(2L));
+    }
+
+    private Product product(Long id, int stock) {
+        Product product = new Product();
+        product.setId(id);
+        product.setStock(stock);
+        return product;
+    }
+}
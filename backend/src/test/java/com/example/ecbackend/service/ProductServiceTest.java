@@ -53,6 +53,9 @@ class ProductServiceTest {
     @Mock
     private ProductDao productDao;
 
+    @Mock
+    private ProductCatalogIndex catalogIndex;
+
     @InjectMocks
     private ProductService productService;
     
@@ -256,6 +259,7 @@ class ProductServiceTest {
             expectedProduct.setPrice(2000);
             expectedProduct.setStock(50);
             expectedProduct.setImageUrl("http://example.com/updated.jpg");
+            expectedProduct.setPriceVersion(2); // 価格が変わるので版数が上がる
             expectedProduct.setCreatedAt(existingProduct.getCreatedAt()); // 作成日時は変更なし
             expectedProduct.setUpdatedAt(now); // 更新日時のみ更新
             
@@ -291,6 +295,9 @@ class ProductServiceTest {
                 assertThat(capturedProduct)
                     .usingRecursiveComparison()
                     .isEqualTo(expectedProduct);
+
+                // 更新後の在庫数が商品インデックスに反映される
+                then(catalogIndex).should().putAfterCommit(productId, 50);
             }
         }
 
@@ -406,6 +413,7 @@ class ProductServiceTest {
                         assertThat(product.getPrice()).isEqualTo(1500);
                         assertThat(product.getStock()).isEqualTo(100);
                         assertThat(product.getImageUrl()).isEqualTo("http://example.com/new.jpg");
+                        assertThat(product.getPriceVersion()).isEqualTo(1);
                         // 日時が設定されていることを確認
                         assertThat(product.getCreatedAt()).isEqualTo(now);
                         assertThat(product.getUpdatedAt()).isEqualTo(now);
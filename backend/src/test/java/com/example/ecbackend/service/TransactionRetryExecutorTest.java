@@ -0,0 +1,183 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.TransactionRetryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TransactionRetryExecutor: デッドロック・直列化の失敗時の再試行のテスト")
+class TransactionRetryExecutorTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TransactionRetryProperties properties = new TransactionRetryProperties();
+    private final List<Long> sleeps = new ArrayList<>();
+    private TransactionRetryExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new TransactionRetryExecutor(new TransactionTemplate(transactionManager), properties, meterRegistry,
+                sleeps::add);
+    }
+
+    @Test
+    @DisplayName("デッドロックで失敗した場合は、新しいトランザクションで最初からやり直す")
+    void shouldRetryWholeTransactionOnDeadlock() {
+        // Given: 2回デッドロックで失敗し、3回目で成功する
+        given(transactionManager.getTransaction(any())).willAnswer(invocation -> new SimpleTransactionStatus());
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        String result = executor.execute("checkout", status -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw deadlock();
+            }
+            return "ok";
+        });
+
+        // Then: 失敗した試行はロールバックされ、成功した試行のみコミットされる
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts.get()).isEqualTo(3);
+        then(transactionManager).should(times(3)).getTransaction(any());
+        then(transactionManager).should(times(2)).rollback(any());
+        then(transactionManager).should(times(1)).commit(any());
+        // 待ち時間は 20ms・40ms を上限とする範囲から選ばれる
+        assertThat(sleeps).hasSize(2);
+        assertThat(sleeps.get(0)).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(20));
+        assertThat(sleeps.get(1)).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(40));
+        assertThat(retries("40P01", "retried")).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("最大試行回数まで失敗した場合は、最後の例外をそのままスローする")
+    void shouldGiveUpAfterMaxAttempts() {
+        // Given: 毎回直列化の失敗になる
+        given(transactionManager.getTransaction(any())).willAnswer(invocation -> new SimpleTransactionStatus());
+        AtomicInteger attempts = new AtomicInteger();
+        RuntimeException failure = new CannotAcquireLockException("could not serialize access",
+                new SQLException("could not serialize access due to concurrent update", "40001"));
+
+        // When & Then
+        assertThatThrownBy(() -> executor.execute("checkout", status -> {
+            attempts.incrementAndGet();
+            throw failure;
+        })).isSameAs(failure);
+
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(sleeps).hasSize(2);
+        assertThat(retries("40001", "retried")).isEqualTo(2.0);
+        assertThat(retries("40001", "exhausted")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("デッドロック・直列化の失敗以外の例外は再試行しない")
+    void shouldNotRetryOtherFailures() {
+        // Given
+        given(transactionManager.getTransaction(any())).willAnswer(invocation -> new SimpleTransactionStatus());
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When & Then
+        assertThatThrownBy(() -> executor.execute("checkout", status -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Insufficient stock for product: テスト商品1");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(sleeps).isEmpty();
+        assertThat(meterRegistry.find("transaction.retries").counters()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("呼び出し元のトランザクションに参加している場合は再試行しない")
+    void shouldNotRetryInsideOuterTransaction() {
+        // Given: 呼び出し元のトランザクション内
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            given(transactionManager.getTransaction(any())).willAnswer(invocation -> new SimpleTransactionStatus(false));
+            AtomicInteger attempts = new AtomicInteger();
+
+            // When & Then: 一部だけをやり直せないため、そのままスローする
+            assertThatThrownBy(() -> executor.execute("checkout", status -> {
+                attempts.incrementAndGet();
+                throw deadlock();
+            })).isInstanceOf(RuntimeException.class);
+
+            assertThat(attempts.get()).isEqualTo(1);
+            assertThat(sleeps).isEmpty();
+            then(transactionManager).should(never()).commit(any());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    @DisplayName("原因や、バッチ実行の失敗に連なる例外から SQLSTATE を判定する")
+    void shouldFindRetryableSqlStateInCauseChain() {
+        // Given: バッチ実行の失敗の次の例外がデッドロック
+        BatchUpdateException batchFailure = new BatchUpdateException("Batch entry 1 was aborted", "XX000", new int[0]);
+        batchFailure.setNextException(new SQLException("deadlock detected", "40P01"));
+
+        // When & Then
+        assertThat(TransactionRetryExecutor.retryableSqlState(new RuntimeException(batchFailure))).isEqualTo("40P01");
+        assertThat(TransactionRetryExecutor.retryableSqlState(deadlock())).isEqualTo("40P01");
+        assertThat(TransactionRetryExecutor.retryableSqlState(
+                new RuntimeException(new SQLException("duplicate key", "23505")))).isNull();
+        assertThat(TransactionRetryExecutor.retryableSqlState(new IllegalStateException())).isNull();
+    }
+
+    @Test
+    @DisplayName("待ち時間の上限は再試行ごとに倍になり、max-backoff を超えない")
+    void shouldCapBackoff() {
+        // Given
+        properties.setInitialBackoff(Duration.ofMillis(20));
+        properties.setMaxBackoff(Duration.ofMillis(50));
+
+        // When & Then
+        for (int i = 0; i < 100; i++) {
+            assertThat(executor.backoffNanos(1)).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(20));
+            assertThat(executor.backoffNanos(2)).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(40));
+            assertThat(executor.backoffNanos(10)).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    private static RuntimeException deadlock() {
+        return new RuntimeException("Failed to execute SQL", new SQLException("deadlock detected", "40P01"));
+    }
+
+    private double retries(String sqlState, String outcome) {
+        return meterRegistry.get("transaction.retries")
+                .tag("operation", "checkout")
+                .tag("sqlstate", sqlState)
+                .tag("outcome", outcome)
+                .counter()
+                .count();
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.ecbackend.service;
+
+import com.example.ecbackend.config.CartProperties;
+import com.example.ecbackend.dao.CartDao;
+import com.example.ecbackend.dao.CartItemDao;
+import com.example.ecbackend.domain.SessionKey;
+import com.example.ecbackend.entity.Cart;
+import com.example.ecbackend.entity.CartItem;
+import com.example.ecbackend.model.CartOperation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WriteBehindCartStore: write-behind モードのカートストアのテスト")
+class WriteBehindCartStoreTest {
+
+    private static final SessionKey KEY = new SessionKey(0L, 1L);
+
+    @Mock
+    private CartDao cartDao;
+
+    @Mock
+    private CartItemDao cartItemDao;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path walDir;
+
+    private final CartIdCache cartIdCache = new CartIdCache(100, Duration.ofMinutes(5).toNanos(), System::nanoTime);
+
+    private WriteBehindCartStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = newStore();
+        store.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.stop();
+    }
+
+    private WriteBehindCartStore newStore() {
+        CartProperties properties = new CartProperties();
+        properties.getStorage().setMode(CartProperties.Storage.Mode.WRITE_BEHIND);
+        properties.getStorage().setWalDir(walDir);
+        properties.getStorage().setShards(4);
+        // テスト中に定期反映が動かないようにする
+        properties.getStorage().setFlushInterval(Duration.ofHours(1));
+        return new WriteBehindCartStore(properties, cartDao, cartItemDao, cartIdCache, transactionManager);
+    }
+
+    @Nested
+    @DisplayName("存在しないカート内商品の指定")
+    class MissingItemTests {
+
+        @Test
+        @DisplayName("カートがない場合、数量の変更は NoSuchElementException となる")
+        void shouldThrowNotFoundWhenCartMissing() {
+            // When & Then: データベースモードと同じく404となる例外
+            assertThatThrownBy(() -> store.update(KEY, 1L, 2))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessage("Cart not found");
+        }
+
+        @Test
+        @DisplayName("カート内商品がない場合、数量の変更・削除は NoSuchElementException となる")
+        void shouldThrowNotFoundWhenItemMissing() {
+            // Given: 別の商品がカートにある
+            store.add(KEY, 10L, 1);
+
+            // When & Then
+            assertThatThrownBy(() -> store.update(KEY, 999L, 2))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessage("Cart item not found");
+            assertThatThrownBy(() -> store.remove(KEY, 999L))
+                .isInstanceOf(NoSuchElementException.class);
+        }
+
+        @Test
+        @DisplayName("一括適用ではデータベースモードと同じく不正な操作として扱う")
+        void shouldRejectOperationForMissingItem() {
+            // Given: 別の商品がカートにある
+            store.add(KEY, 10L, 1);
+
+            // When & Then
+            assertThatThrownBy(() -> store.apply(KEY, List.of(CartOperation.update(999L, 2))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cart item not found in this cart: 999");
+        }
+    }
+
+    @Nested
+    @DisplayName("仮IDの置き換え")
+    class ProvisionalIdTests {
+
+        @Test
+        @DisplayName("DBへ反映した後はDBのIDを返し、仮IDでも引き続き更新できる")
+        void shouldReplaceProvisionalIdAfterFlush() {
+            // Given: DBにカートがあり、反映後の商品のIDは42となる
+            Cart cart = new Cart();
+            cart.setId(5L);
+            given(cartDao.findBySessionKey(KEY)).willReturn(Optional.of(cart));
+            CartItem persisted = new CartItem();
+            persisted.setId(42L);
+            persisted.setCartId(5L);
+            persisted.setProductId(10L);
+            given(cartItemDao.findByCartIds(List.of(5L))).willReturn(List.of(persisted));
+            long provisionalId = store.add(KEY, 10L, 1).getId();
+
+            // When: DBへ反映する
+            store.flush(KEY);
+
+            // Then: 仮ID (負の値) がDBのIDに置き換わる
+            assertThat(provisionalId).isNegative();
+            assertThat(store.getItems(KEY)).extracting(CartItem::getId).containsExactly(42L);
+
+            // And: 反映前に返した仮IDでも更新できる
+            store.update(KEY, provisionalId, 3);
+            assertThat(store.getItems(KEY))
+                .extracting(CartItem::getId, CartItem::getQuantity)
+                .containsExactly(tuple(42L, 3));
+        }
+    }
+
+    @Nested
+    @DisplayName("トランザクション内でカートを空にする")
+    class ClearInTransactionTests {
+
+        @BeforeEach
+        void beginTransaction() {
+            TransactionSynchronizationManager.initSynchronization();
+        }
+
+        @AfterEach
+        void endTransaction() {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        @Test
+        @DisplayName("コミットの前にCLEARをWALへ永続化し、コミット後はカートが空になる")
+        void shouldPersistClearBeforeCommit() throws IOException {
+            // Given: カートに商品がある
+            store.add(KEY, 10L, 1);
+
+            // When: カートを空にしてコミットする
+            store.clear(KEY);
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+
+            // Then: コミット前の時点でCLEARがWALに記録されている
+            assertThat(readWal()).last().satisfies(record -> assertThat(record.isClear()).isTrue());
+
+            TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            assertThat(store.getItems(KEY)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("ロールバックされた場合は商品を戻し、WALにも記録し直す")
+        void shouldRestoreItemsOnRollback() throws IOException {
+            // Given: カートに商品がある
+            store.add(KEY, 10L, 2);
+
+            // When: カートを空にした後、コミットに失敗する
+            store.clear(KEY);
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+            // Then: 商品が戻り、WAL再生でもCLEARの後に商品が復元される
+            assertThat(store.getItems(KEY))
+                .extracting(CartItem::getProductId, CartItem::getQuantity)
+                .containsExactly(tuple(10L, 2));
+            assertThat(readWal())
+                .extracting(record -> record.productId, record -> record.quantity)
+                .endsWith(tuple(CartWriteAheadLog.CLEAR, 0), tuple(10L, 2));
+        }
+
+        private List<CartWriteAheadLog.Record> readWal() throws IOException {
+            return new CartWriteAheadLog(walDir, 1024 * 1024).readAll();
+        }
+    }
+}
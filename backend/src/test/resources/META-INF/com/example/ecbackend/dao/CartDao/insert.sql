@@ -1,2 +1,2 @@
-INSERT INTO carts (session_id, created_at, updated_at)
-VALUES (/* cart.sessionId */1, /* cart.createdAt */CURRENT_TIMESTAMP, /* cart.updatedAt */CURRENT_TIMESTAMP) 
\ No newline at end of file
+INSERT INTO carts (session_key_hi, session_key_lo, created_at, updated_at)
+VALUES (/* cart.sessionKeyHi */0, /* cart.sessionKeyLo */0, /* cart.createdAt */CURRENT_TIMESTAMP, /* cart.updatedAt */CURRENT_TIMESTAMP)
\ No newline at end of file
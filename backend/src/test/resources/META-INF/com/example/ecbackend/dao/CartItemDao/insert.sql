@@ -1,2 +1,2 @@
-INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at)
-VALUES (/* cartItem.cartId */1, /* cartItem.productId */1, /* cartItem.quantity */1, /* cartItem.createdAt */CURRENT_TIMESTAMP, /* cartItem.updatedAt */CURRENT_TIMESTAMP) 
\ No newline at end of file
+INSERT INTO cart_items (cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at)
+VALUES (/* cartItem.cartId */1, /* cartItem.productId */1, /* cartItem.quantity */1, /* cartItem.unitPrice */1000, /* cartItem.priceVersion */1, /* cartItem.createdAt */CURRENT_TIMESTAMP, /* cartItem.updatedAt */CURRENT_TIMESTAMP) 
\ No newline at end of file
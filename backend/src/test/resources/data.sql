@@ -13,16 +13,16 @@ INSERT INTO products (name, description, price, stock, image_url, created_at, up
 ('テスト商品2', 'テスト商品2の説明です', 2000, 20, 'https://example.com/image2.jpg', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
 ('テスト商品3', 'テスト商品3の説明です', 3000, 30, 'https://example.com/image3.jpg', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
 
--- テスト用のカート
-INSERT INTO carts (session_id, created_at, updated_at) VALUES 
-('test-session-1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
-('test-session-2', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+-- テスト用のカート (セッションID 00000000-0000-0000-0000-000000000001 / ...0002)
+INSERT INTO carts (session_key_hi, session_key_lo, created_at, updated_at) VALUES 
+(0, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+(0, 2, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
 
 -- テスト用のカートアイテム
-INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at) VALUES 
-(1, 1, 2, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
-(1, 3, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
-(2, 2, 3, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+INSERT INTO cart_items (cart_id, product_id, quantity, unit_price, price_version, created_at, updated_at) VALUES 
+(1, 1, 2, 1000, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+(1, 3, 1, 3000, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+(2, 2, 3, 2000, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
 
 -- テスト用の注文
 INSERT INTO orders (user_id, order_date, status, total_amount, shipping_address, payment_method, created_at, updated_at) VALUES 
@@ -30,8 +30,8 @@ INSERT INTO orders (user_id, order_date, status, total_amount, shipping_address,
 ('test-user-2', CURRENT_TIMESTAMP, 'SHIPPED', 7000, 'テスト住所2', 'BANK_TRANSFER', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
 
 -- テスト用の注文明細
-INSERT INTO order_items (order_id, product_id, quantity, price, created_at, updated_at) VALUES 
-(1, 1, 2, 1000, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
-(1, 3, 1, 3000, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
-(2, 2, 3, 2000, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
-(2, 1, 1, 1000, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP); 
\ No newline at end of file
+INSERT INTO order_items (order_id, product_id, quantity, unit_price, subtotal, created_at, updated_at) VALUES 
+(1, 1, 2, 1000, 2000, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+(1, 3, 1, 3000, 3000, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+(2, 2, 3, 2000, 6000, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+(2, 1, 1, 1000, 1000, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP); 
\ No newline at end of file
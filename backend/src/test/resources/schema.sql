@@ -11,6 +11,8 @@ CREATE SEQUENCE IF NOT EXISTS orders_id_seq START WITH 1;
 CREATE SEQUENCE IF NOT EXISTS order_items_id_seq START WITH 1;
 
 -- テーブル作成前にドロップ（クリーンな初期化のため）
+DROP TABLE IF EXISTS cart_events;
+DROP TABLE IF EXISTS cart_idempotency_keys;
 DROP TABLE IF EXISTS order_items;
 DROP TABLE IF EXISTS orders;
 DROP TABLE IF EXISTS cart_items;
@@ -25,6 +27,7 @@ CREATE TABLE products (
     price DECIMAL(10, 2) NOT NULL,
     stock INT NOT NULL DEFAULT 0,
     image_url VARCHAR(255),
+    price_version INT NOT NULL DEFAULT 1,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
@@ -32,9 +35,15 @@ CREATE TABLE products (
 -- カートテーブル
 CREATE TABLE carts (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    session_id VARCHAR(255) NOT NULL UNIQUE,
+    session_key_hi BIGINT NOT NULL,
+    session_key_lo BIGINT NOT NULL,
+    user_id BIGINT,
+    total_amount INT NOT NULL DEFAULT 0,
+    item_count INT NOT NULL DEFAULT 0,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE (session_key_hi, session_key_lo),
+    UNIQUE (user_id)
 );
 
 -- カート内アイテムテーブル
@@ -43,6 +52,8 @@ CREATE TABLE cart_items (
     cart_id BIGINT NOT NULL,
     product_id BIGINT NOT NULL,
     quantity INT NOT NULL CHECK (quantity > 0),
+    unit_price INT NOT NULL,
+    price_version INT NOT NULL,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (cart_id) REFERENCES carts(id) ON DELETE CASCADE,
@@ -50,6 +61,37 @@ CREATE TABLE cart_items (
     UNIQUE (cart_id, product_id)
 );
 
+-- カートの合計金額と商品点数を cart_items の変更と同じ文の中で更新する (PostgreSQLのトリガー関数のエミュレート)
+CREATE TRIGGER trg_cart_items_totals
+AFTER INSERT, UPDATE, DELETE ON cart_items
+FOR EACH ROW CALL 'com.example.ecbackend.config.H2CartTotalsTrigger';
+
+-- カート更新APIの Idempotency-Key と応答 (status がNULLの行は処理中)
+CREATE TABLE cart_idempotency_keys (
+    session_key_hi BIGINT NOT NULL,
+    session_key_lo BIGINT NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    fingerprint VARCHAR(512) NOT NULL,
+    status INT,
+    content_type VARCHAR(255),
+    body BYTEA,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (session_key_hi, session_key_lo, idempotency_key)
+);
+
+-- 分析用のカート操作イベント (追記のみ)
+CREATE TABLE cart_events (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    session_key_hi BIGINT NOT NULL,
+    session_key_lo BIGINT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    product_id BIGINT,
+    item_id BIGINT,
+    quantity INT,
+    occurred_at TIMESTAMP NOT NULL
+);
+
 -- 注文テーブル
 CREATE TABLE orders (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -70,7 +112,8 @@ CREATE TABLE order_items (
     order_id BIGINT NOT NULL,
     product_id BIGINT NOT NULL,
     quantity INT NOT NULL,
-    price DECIMAL(10, 2) NOT NULL,
+    unit_price INT NOT NULL,
+    subtotal INT NOT NULL,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE,